@@ -12,10 +12,28 @@ package org.eclipse.ecf.ai.mcp.tools.service;
 import java.util.List;
 
 import org.eclipse.ecf.ai.mcp.tools.util.ToolDescription;
+import org.eclipse.ecf.ai.mcp.tools.util.ToolHandle;
 
 public interface ToolGroupService {
 
+	/**
+	 * Describe the tools of this service. The descriptions are created from the
+	 * interface methods on every call. Servers that list the tools repeatedly
+	 * should add the service to a {@link ToolRegistry}, and get the descriptions
+	 * with {@link ToolRegistry#getToolDescriptions(Object)}.
+	 */
 	default List<ToolDescription> getToolDescriptions(String interfaceClassName) {
 		return ToolDescription.fromService(this, interfaceClassName);
 	}
+
+	/**
+	 * Create the tool handles of this service. Used by
+	 * {@link ToolRegistry#addToolGroupService(Object, String)}, which keeps the
+	 * handles until the service is removed.
+	 *
+	 * @since 1.2
+	 */
+	default List<ToolHandle> getToolHandles(String interfaceClassName) {
+		return ToolHandle.fromService(this, interfaceClassName);
+	}
 }
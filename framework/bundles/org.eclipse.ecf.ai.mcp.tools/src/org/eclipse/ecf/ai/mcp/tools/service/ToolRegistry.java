@@ -0,0 +1,185 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.ai.mcp.tools.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.ecf.ai.mcp.tools.util.ToolDescription;
+import org.eclipse.ecf.ai.mcp.tools.util.ToolHandle;
+
+/**
+ * The tools of all registered tool group services, by tool name. Tool
+ * descriptions, input schemas and invocation handles are created once when a
+ * service is added, using {@link ToolGroupService#getToolHandles(String)} for
+ * tool group services. Listing the tools, of all services or of one service,
+ * and calling a tool are lookups that do not use reflection, and do not block
+ * while services are added or removed.
+ * <p>
+ * Thread safe.
+ *
+ * @since 1.2
+ */
+public class ToolRegistry {
+
+	/**
+	 * A tool of a registered service.
+	 */
+	public record RegisteredTool(Object service, ToolHandle handle) {
+
+		public ToolDescription getToolDescription() {
+			return handle.getToolDescription();
+		}
+
+		public Object call(Map<String, ?> arguments) throws Exception {
+			return handle.invoke(service, arguments);
+		}
+	}
+
+	private record Snapshot(Map<String, RegisteredTool> tools, List<ToolDescription> descriptions,
+			Map<Object, List<RegisteredTool>> services) {
+	}
+
+	private static final Snapshot EMPTY = new Snapshot(Collections.emptyMap(), Collections.emptyList(),
+			Collections.emptyMap());
+
+	// replaced on every change, so readers do not need to synchronize
+	private volatile Snapshot snapshot = EMPTY;
+
+	/**
+	 * Add the tools of a service.
+	 *
+	 * @param svc                the service. Must not be <code>null</code>. If
+	 *                           it is a {@link ToolGroupService}, its
+	 *                           {@link ToolGroupService#getToolHandles(String)}
+	 *                           is used to get the tools.
+	 * @param interfaceClassName name of the service interface with the
+	 *                           {@link org.eclipse.ecf.ai.mcp.tools.annotation.Tool}
+	 *                           annotated methods. Must be directly implemented
+	 *                           by the service class.
+	 * @return the descriptions of the tools added
+	 * @throws IllegalArgumentException if a tool with the same name is already
+	 *                                  registered by another service
+	 */
+	public synchronized List<ToolDescription> addToolGroupService(Object svc, String interfaceClassName) {
+		Objects.requireNonNull(svc, "Service must not be null");
+		List<ToolHandle> handles = (svc instanceof ToolGroupService tgs) ? tgs.getToolHandles(interfaceClassName)
+				: ToolHandle.fromService(svc, interfaceClassName);
+		if (handles.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Map<String, RegisteredTool> tools = new LinkedHashMap<String, RegisteredTool>(this.snapshot.tools());
+		List<ToolDescription> added = new ArrayList<ToolDescription>(handles.size());
+		for (ToolHandle h : handles) {
+			RegisteredTool existing = tools.get(h.getName());
+			if (existing != null) {
+				// the handles are new on every call, so only the service identifies a tool
+				if (existing.service() != svc) {
+					throw new IllegalArgumentException("Tool " + h.getName() + " of " + svc
+							+ " is already registered by " + existing.service());
+				}
+				continue;
+			}
+			tools.put(h.getName(), new RegisteredTool(svc, h));
+			added.add(h.getToolDescription());
+		}
+		this.snapshot = newSnapshot(tools);
+		return added;
+	}
+
+	/**
+	 * Remove all tools of a service.
+	 *
+	 * @param svc the service. Must not be <code>null</code>.
+	 * @return <code>true</code> if any tools of the service have been removed
+	 */
+	public synchronized boolean removeToolGroupService(Object svc) {
+		Map<String, RegisteredTool> tools = new LinkedHashMap<String, RegisteredTool>(this.snapshot.tools());
+		if (!tools.values().removeIf(t -> t.service() == svc)) {
+			return false;
+		}
+		this.snapshot = tools.isEmpty() ? EMPTY : newSnapshot(tools);
+		return true;
+	}
+
+	/**
+	 * @return unmodifiable list of the descriptions of all registered tools
+	 */
+	public List<ToolDescription> getToolDescriptions() {
+		return this.snapshot.descriptions();
+	}
+
+	/**
+	 * @param svc the service
+	 * @return unmodifiable list of the descriptions of the tools of the given
+	 *         service. Empty if the service is not registered.
+	 */
+	public List<ToolDescription> getToolDescriptions(Object svc) {
+		return getTools(svc).stream().map(RegisteredTool::getToolDescription).toList();
+	}
+
+	/**
+	 * @param svc the service
+	 * @return unmodifiable list of the registered tools of the given service.
+	 *         Empty if the service is not registered.
+	 */
+	public List<RegisteredTool> getTools(Object svc) {
+		return this.snapshot.services().getOrDefault(svc, Collections.emptyList());
+	}
+
+	/**
+	 * @param name the tool name
+	 * @return the registered tool with the given name, or <code>null</code> if
+	 *         there is none
+	 */
+	public RegisteredTool getTool(String name) {
+		return this.snapshot.tools().get(name);
+	}
+
+	/**
+	 * Call a registered tool.
+	 *
+	 * @param name      the tool name
+	 * @param arguments the arguments by parameter name. May be
+	 *                  <code>null</code>.
+	 * @return the result of the tool, or <code>null</code> if it has none
+	 * @throws IllegalArgumentException if there is no tool with the given name,
+	 *                                  or the arguments do not match its
+	 *                                  parameters
+	 * @throws Exception                any exception thrown by the tool
+	 * @see ToolHandle#invoke(Object, Map)
+	 */
+	public Object callTool(String name, Map<String, ?> arguments) throws Exception {
+		RegisteredTool tool = getTool(name);
+		if (tool == null) {
+			throw new IllegalArgumentException("Unknown tool " + name);
+		}
+		return tool.call(arguments);
+	}
+
+	private static Snapshot newSnapshot(Map<String, RegisteredTool> tools) {
+		Map<Object, List<RegisteredTool>> services = new IdentityHashMap<Object, List<RegisteredTool>>();
+		for (RegisteredTool t : tools.values()) {
+			services.computeIfAbsent(t.service(), k -> new ArrayList<RegisteredTool>()).add(t);
+		}
+		services.replaceAll((k, v) -> List.copyOf(v));
+		return new Snapshot(Collections.unmodifiableMap(tools),
+				tools.values().stream().map(RegisteredTool::getToolDescription).toList(),
+				Collections.unmodifiableMap(services));
+	}
+}
@@ -10,6 +10,7 @@
 package org.eclipse.ecf.ai.mcp.tools.util;
 
 import java.io.Serializable;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.Collections;
@@ -24,23 +25,32 @@ import org.eclipse.ecf.ai.mcp.tools.annotation.ToolAnnotations;
 public record ToolDescription(String name, String description, List<ToolParamDescription> toolParamDescriptions,
 		ToolResultDescription resultDescription, ToolAnnotationsDescription toolAnnotationsDescription) implements Serializable {
 
+	/**
+	 * Get the descriptions of all {@link Tool} annotated methods of the given
+	 * class.
+	 *
+	 * @param clazz the class or interface. Must not be <code>null</code>.
+	 * @return list of tool descriptions
+	 */
 	public static List<ToolDescription> fromClass(Class<?> clazz) {
 		return Arrays.asList(clazz.getMethods()).stream().map(m -> {
 			// skip static methods
-			if (!Modifier.isStatic(m.getModifiers())) {
-				// Look for Tool annotation
-				Tool ma = m.getAnnotation(Tool.class);
-				if (ma != null) {
-					// Look for ToolAnnotations method annotation
-					ToolAnnotations tas = m.getAnnotation(ToolAnnotations.class);
-					return new ToolDescription(m.getName(), ma.description(),
-							ToolParamDescription.fromParameters(m.getParameters()), ToolResultDescription.fromMethod(m),
-							ToolAnnotationsDescription.fromAnnotations(tas));
-				}
+			if (!Modifier.isStatic(m.getModifiers()) && m.isAnnotationPresent(Tool.class)) {
+				return fromMethod(m);
 			}
 			return null;
 		}).filter(Objects::nonNull).collect(Collectors.toList());
+	}
 
+	/**
+	 * Create the description of a {@link Tool} annotated method.
+	 */
+	static ToolDescription fromMethod(Method m) {
+		// Look for ToolAnnotations method annotation
+		ToolAnnotations tas = m.getAnnotation(ToolAnnotations.class);
+		return new ToolDescription(m.getName(), m.getAnnotation(Tool.class).description(),
+				List.copyOf(ToolParamDescription.fromParameters(m.getParameters())), ToolResultDescription.fromMethod(m),
+				ToolAnnotationsDescription.fromAnnotations(tas));
 	}
 
 	public static List<ToolDescription> fromService(Object svc, String serviceClass) {
@@ -0,0 +1,401 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.ai.mcp.tools.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.eclipse.ecf.ai.mcp.tools.annotation.Tool;
+import org.eclipse.ecf.ai.mcp.tools.annotation.ToolParam;
+
+/**
+ * An invocable tool. Holds the {@link ToolDescription} and JSON input schema of
+ * a {@link Tool} annotated interface method, and a {@link MethodHandle} to
+ * invoke it with arguments given by name. The description, schema and argument
+ * binding are computed when the handle is created, and the method handle on the
+ * first invocation, so {@link #invoke(Object, Map)} does not use reflection.
+ * <p>
+ * Handles are not cached globally. Keep them as long as the service they were
+ * created for is in use, e.g. in a {@link org.eclipse.ecf.ai.mcp.tools.service.ToolRegistry}.
+ *
+ * @since 1.2
+ */
+public final class ToolHandle {
+
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class,
+			Object[].class);
+
+	private final Method method;
+
+	private final ToolDescription description;
+
+	private final Map<String, Object> inputSchema;
+
+	private final String inputSchemaJson;
+
+	// (Object svc, Object[] args)Object, created on first invocation
+	private volatile MethodHandle invoker;
+
+	private final ParamBinding[] bindings;
+
+	private record ParamBinding(String name, boolean required, Object missing, Function<Object, Object> converter) {
+	}
+
+	private ToolHandle(Method method) {
+		this.method = method;
+		this.description = ToolDescription.fromMethod(method);
+		Parameter[] parameters = method.getParameters();
+		this.bindings = new ParamBinding[parameters.length];
+		Map<String, Object> properties = new LinkedHashMap<String, Object>();
+		List<String> required = new ArrayList<String>();
+		for (int i = 0; i < parameters.length; i++) {
+			Parameter p = parameters[i];
+			ToolParam tp = p.getAnnotation(ToolParam.class);
+			String name = (tp == null || "".equals(tp.name())) ? p.getName() : tp.name();
+			boolean req = tp != null && tp.required();
+			Class<?> type = p.getType();
+			this.bindings[i] = new ParamBinding(name, req, defaultValue(type), converter(type));
+			// parameters without ToolParam are not described, and bound to their default
+			if (tp != null) {
+				Map<String, Object> property = typeSchema(type);
+				if (!"".equals(tp.description())) {
+					property.put("description", tp.description());
+				}
+				properties.put(name, Collections.unmodifiableMap(property));
+				if (req) {
+					required.add(name);
+				}
+			}
+		}
+		Map<String, Object> schema = new LinkedHashMap<String, Object>();
+		schema.put("type", "object");
+		schema.put("properties", Collections.unmodifiableMap(properties));
+		if (!required.isEmpty()) {
+			schema.put("required", List.copyOf(required));
+		}
+		this.inputSchema = Collections.unmodifiableMap(schema);
+		this.inputSchemaJson = toJson(new StringBuilder(), this.inputSchema).toString();
+	}
+
+	/**
+	 * Create a tool handle for the given method.
+	 *
+	 * @param method a non-static method annotated with {@link Tool}. Must not be
+	 *               <code>null</code>.
+	 * @return the tool handle
+	 * @throws IllegalArgumentException if the method is not annotated with
+	 *                                  {@link Tool}
+	 */
+	public static ToolHandle fromMethod(Method method) {
+		Objects.requireNonNull(method, "Method must not be null");
+		if (!method.isAnnotationPresent(Tool.class)) {
+			throw new IllegalArgumentException("Method " + method + " is not annotated with Tool");
+		}
+		return new ToolHandle(method);
+	}
+
+	/**
+	 * Create tool handles for all {@link Tool} annotated methods of the given
+	 * class.
+	 *
+	 * @param clazz the class or interface. Must not be <code>null</code>.
+	 * @return unmodifiable list of tool handles
+	 */
+	public static List<ToolHandle> fromClass(Class<?> clazz) {
+		List<ToolHandle> tools = new ArrayList<ToolHandle>();
+		for (Method m : clazz.getMethods()) {
+			// skip static methods
+			if (!Modifier.isStatic(m.getModifiers()) && m.isAnnotationPresent(Tool.class)) {
+				tools.add(new ToolHandle(m));
+			}
+		}
+		return List.copyOf(tools);
+	}
+
+	/**
+	 * Get the tool handles of the given service interface.
+	 *
+	 * @param svc          the service. Must not be <code>null</code>.
+	 * @param serviceClass name of an interface directly implemented by the
+	 *                     service class
+	 * @return unmodifiable list of tool handles. Empty if the service class
+	 *         does not implement the interface.
+	 */
+	public static List<ToolHandle> fromService(Object svc, String serviceClass) {
+		for (Class<?> c : svc.getClass().getInterfaces()) {
+			if (c.getName().equals(serviceClass)) {
+				return fromClass(c);
+			}
+		}
+		return Collections.emptyList();
+	}
+
+	public String getName() {
+		return this.description.name();
+	}
+
+	public Method getMethod() {
+		return this.method;
+	}
+
+	public ToolDescription getToolDescription() {
+		return this.description;
+	}
+
+	/**
+	 * @return the JSON schema of the tool arguments as an unmodifiable map of
+	 *         JSON values (maps, lists, strings and booleans)
+	 */
+	public Map<String, Object> getInputSchema() {
+		return this.inputSchema;
+	}
+
+	/**
+	 * @return the JSON schema of the tool arguments as JSON text
+	 */
+	public String getInputSchemaJson() {
+		return this.inputSchemaJson;
+	}
+
+	/**
+	 * Invoke the tool.
+	 *
+	 * @param svc       the service implementing the tool method. Must not be
+	 *                  <code>null</code>.
+	 * @param arguments the arguments by parameter name. JSON numbers, strings,
+	 *                  booleans and arrays are converted to the parameter types.
+	 *                  May be <code>null</code> if the tool has no required
+	 *                  parameters.
+	 * @return the result of the tool method, or <code>null</code> if it is void
+	 * @throws IllegalArgumentException if a required argument is missing, or an
+	 *                                  argument cannot be converted to its
+	 *                                  parameter type
+	 * @throws IllegalStateException    if the tool method is not accessible
+	 * @throws Exception                any exception thrown by the tool method
+	 */
+	public Object invoke(Object svc, Map<String, ?> arguments) throws Exception {
+		Objects.requireNonNull(svc, "Service must not be null");
+		Object[] args = new Object[this.bindings.length];
+		for (int i = 0; i < args.length; i++) {
+			ParamBinding b = this.bindings[i];
+			Object value = arguments == null ? null : arguments.get(b.name());
+			if (value == null) {
+				if (b.required()) {
+					throw new IllegalArgumentException(
+							"Missing required argument '" + b.name() + "' for tool " + getName());
+				}
+				args[i] = b.missing();
+			} else {
+				try {
+					args[i] = b.converter().apply(value);
+				} catch (RuntimeException e) {
+					throw new IllegalArgumentException(
+							"Invalid argument '" + b.name() + "' for tool " + getName() + ": " + value, e);
+				}
+			}
+		}
+		MethodHandle h = this.invoker;
+		if (h == null) {
+			// benign race, the handles are equivalent
+			h = createInvoker();
+			this.invoker = h;
+		}
+		try {
+			return (Object) h.invokeExact(svc, args);
+		} catch (Exception | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+	private MethodHandle createInvoker() {
+		MethodHandle h;
+		try {
+			h = MethodHandles.publicLookup().unreflect(this.method);
+		} catch (IllegalAccessException e) {
+			// e.g. a tool interface that is not public
+			try {
+				this.method.setAccessible(true);
+				h = MethodHandles.publicLookup().unreflect(this.method);
+			} catch (IllegalAccessException | RuntimeException e1) {
+				IllegalStateException ise = new IllegalStateException(
+						"Tool method " + this.method + " is not accessible", e1);
+				ise.addSuppressed(e);
+				throw ise;
+			}
+		}
+		return h.asSpreader(Object[].class, this.bindings.length).asType(INVOKER_TYPE);
+	}
+
+	@Override
+	public String toString() {
+		return "ToolHandle[name=" + getName() + ";method=" + this.method + "]";
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (!type.isPrimitive()) {
+			return null;
+		}
+		// the zero value, e.g. Integer 0 for int
+		return Array.get(Array.newInstance(type, 1), 0);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Function<Object, Object> converter(Class<?> type) {
+		if (type == int.class || type == Integer.class) {
+			return v -> v instanceof Number n ? Integer.valueOf(n.intValue()) : Integer.valueOf(v.toString());
+		} else if (type == long.class || type == Long.class) {
+			return v -> v instanceof Number n ? Long.valueOf(n.longValue()) : Long.valueOf(v.toString());
+		} else if (type == double.class || type == Double.class) {
+			return v -> v instanceof Number n ? Double.valueOf(n.doubleValue()) : Double.valueOf(v.toString());
+		} else if (type == float.class || type == Float.class) {
+			return v -> v instanceof Number n ? Float.valueOf(n.floatValue()) : Float.valueOf(v.toString());
+		} else if (type == short.class || type == Short.class) {
+			return v -> v instanceof Number n ? Short.valueOf(n.shortValue()) : Short.valueOf(v.toString());
+		} else if (type == byte.class || type == Byte.class) {
+			return v -> v instanceof Number n ? Byte.valueOf(n.byteValue()) : Byte.valueOf(v.toString());
+		} else if (type == boolean.class || type == Boolean.class) {
+			return v -> v instanceof Boolean ? v : Boolean.valueOf(v.toString());
+		} else if (type == char.class || type == Character.class) {
+			return v -> {
+				if (v instanceof Character) {
+					return v;
+				}
+				String s = v.toString();
+				if (s.length() != 1) {
+					throw new IllegalArgumentException("Not a single character");
+				}
+				return Character.valueOf(s.charAt(0));
+			};
+		} else if (type == String.class) {
+			return v -> v.toString();
+		} else if (type == BigDecimal.class) {
+			return v -> v instanceof BigDecimal ? v : new BigDecimal(v.toString());
+		} else if (type == BigInteger.class) {
+			return v -> v instanceof BigInteger ? v : new BigDecimal(v.toString()).toBigIntegerExact();
+		} else if (type.isEnum()) {
+			return v -> type.isInstance(v) ? v : Enum.valueOf((Class<? extends Enum>) type, v.toString());
+		} else if (type.isArray()) {
+			Class<?> componentType = type.getComponentType();
+			Function<Object, Object> element = converter(componentType);
+			return v -> {
+				if (type.isInstance(v)) {
+					return v;
+				}
+				Collection<?> c = (Collection<?>) v;
+				Object array = Array.newInstance(componentType, c.size());
+				Iterator<?> it = c.iterator();
+				for (int i = 0; it.hasNext(); i++) {
+					Object e = it.next();
+					Array.set(array, i, e == null ? null : element.apply(e));
+				}
+				return array;
+			};
+		}
+		return v -> type.cast(v);
+	}
+
+	private static Map<String, Object> typeSchema(Class<?> type) {
+		Map<String, Object> schema = new LinkedHashMap<String, Object>();
+		if (type == boolean.class || type == Boolean.class) {
+			schema.put("type", "boolean");
+		} else if (type == int.class || type == long.class || type == short.class || type == byte.class
+				|| type == Integer.class || type == Long.class || type == Short.class || type == Byte.class
+				|| type == BigInteger.class) {
+			schema.put("type", "integer");
+		} else if (type == double.class || type == float.class || Number.class.isAssignableFrom(type)) {
+			schema.put("type", "number");
+		} else if (type == String.class || type == char.class || type == Character.class
+				|| CharSequence.class.isAssignableFrom(type)) {
+			schema.put("type", "string");
+		} else if (type.isEnum()) {
+			schema.put("type", "string");
+			List<String> values = new ArrayList<String>();
+			for (Object c : type.getEnumConstants()) {
+				values.add(((Enum<?>) c).name());
+			}
+			schema.put("enum", List.copyOf(values));
+		} else if (type.isArray()) {
+			schema.put("type", "array");
+			schema.put("items", Collections.unmodifiableMap(typeSchema(type.getComponentType())));
+		} else if (Collection.class.isAssignableFrom(type)) {
+			schema.put("type", "array");
+		} else {
+			schema.put("type", "object");
+		}
+		return schema;
+	}
+
+	private static StringBuilder toJson(StringBuilder sb, Object value) {
+		if (value instanceof Map<?, ?> map) {
+			sb.append('{');
+			boolean first = true;
+			for (Map.Entry<?, ?> e : map.entrySet()) {
+				if (!first) {
+					sb.append(',');
+				}
+				first = false;
+				toJson(sb, e.getKey().toString()).append(':');
+				toJson(sb, e.getValue());
+			}
+			return sb.append('}');
+		} else if (value instanceof List<?> list) {
+			sb.append('[');
+			for (int i = 0; i < list.size(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				toJson(sb, list.get(i));
+			}
+			return sb.append(']');
+		} else if (value instanceof String s) {
+			sb.append('"');
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				switch (c) {
+				case '"' -> sb.append("\\\"");
+				case '\\' -> sb.append("\\\\");
+				case '\n' -> sb.append("\\n");
+				case '\r' -> sb.append("\\r");
+				case '\t' -> sb.append("\\t");
+				default -> {
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+				}
+				}
+			}
+			return sb.append('"');
+		}
+		return sb.append(String.valueOf(value));
+	}
+}
@@ -16,17 +16,26 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,6 +82,34 @@ public abstract class AbstractStringChannel {
 		return this.connectTimeout;
 	}
 
+	public static int DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024 * 1024; // bytes
+
+	protected int maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
+
+	protected void setMaxMessageSize(int size) {
+		this.maxMessageSize = size;
+	}
+
+	protected int getMaxMessageSize() {
+		return this.maxMessageSize;
+	}
+
+	public static int DEFAULT_MAX_QUEUED_BYTES = 16 * 1024 * 1024; // bytes
+
+	protected int maxQueuedBytes = DEFAULT_MAX_QUEUED_BYTES;
+
+	/**
+	 * Set the maximum number of bytes queued for writing per connection. A
+	 * write that would exceed it fails, unless nothing else is queued.
+	 */
+	protected void setMaxQueuedBytes(int size) {
+		this.maxQueuedBytes = size;
+	}
+
+	protected int getMaxQueuedBytes() {
+		return this.maxQueuedBytes;
+	}
+
 	public static int DEFAULT_TERMINATION_TIMEOUT = 2000; // ms
 
 	protected int terminationTimeout = DEFAULT_TERMINATION_TIMEOUT;
@@ -91,6 +128,11 @@ public abstract class AbstractStringChannel {
 
 	protected final ExecutorService executor;
 
+	/**
+	 * @deprecated no longer used. Writes are queued per connection, see
+	 *             {@link AttachedIO#outbound}.
+	 */
+	@Deprecated
 	protected final Object writeLock = new Object();
 
 	@FunctionalInterface
@@ -100,12 +142,61 @@ public abstract class AbstractStringChannel {
 
 	}
 
+	/**
+	 * A message queued for writing, and the future to complete once it has been
+	 * written.
+	 */
+	protected static class PendingWrite {
+
+		final ByteBuffer[] buffers;
+
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+
+		/**
+		 * The number of bytes of the message.
+		 */
+		final long size;
+
+		PendingWrite(ByteBuffer... buffers) {
+			this.buffers = buffers;
+			this.size = remaining();
+		}
+
+		long remaining() {
+			long r = 0;
+			for (int i = 0; i < this.buffers.length; i++) {
+				r += this.buffers[i].remaining();
+			}
+			return r;
+		}
+
+	}
+
 	protected class AttachedIO {
 
+		/**
+		 * @deprecated no longer used, see {@link #outbound}
+		 */
+		@Deprecated
 		public ByteBuffer writing;
 
+		/**
+		 * Messages not yet (completely) written, in order. Guarded by this
+		 * AttachedIO. Drained by the selector thread when the channel is
+		 * writable.
+		 */
+		protected final Deque<PendingWrite> outbound = new ArrayDeque<PendingWrite>();
+
+		protected long outboundBytes;
+
+		/**
+		 * @deprecated no longer used, see {@link #decoder}
+		 */
+		@Deprecated
 		public StringBuffer reading;
 
+		public MessageDecoder decoder;
+
 	}
 
 	public AbstractStringChannel(Selector selector, int incomingBufferSize, ExecutorService executor) {
@@ -139,16 +230,20 @@ public abstract class AbstractStringChannel {
 					Iterator<SelectionKey> iter = selectedKeys.iterator();
 					while (iter.hasNext()) {
 						key = iter.next();
+						iter.remove();
 						if (key.isConnectable()) {
 							handleConnectable(key, connectHandler);
 						} else if (key.isAcceptable()) {
 							handleAcceptable(key, acceptHandler);
-						} else if (key.isReadable()) {
-							handleReadable(key, readHandler);
-						} else if (key.isWritable()) {
-							handleWritable(key);
+						} else {
+							// a key may be both readable and writable
+							if (key.isValid() && key.isReadable()) {
+								handleReadable(key, readHandler);
+							}
+							if (key.isValid() && key.isWritable()) {
+								handleWritable(key);
+							}
 						}
-						iter.remove();
 					}
 				}
 			} catch (Throwable e) {
@@ -215,51 +310,125 @@ public abstract class AbstractStringChannel {
 		return io;
 	}
 
+	protected MessageDecoder createMessageDecoder() {
+		return new MessageDecoder(this.messageDelimiter, this.inBuffer.capacity(), this.maxMessageSize);
+	}
+
 	protected void handleReadable(SelectionKey key, IOConsumer<String> readHandler) throws IOException {
 		SocketChannel client = (SocketChannel) key.channel();
 		AttachedIO io = getAttachedIO(key);
+		if (io.decoder == null) {
+			io.decoder = createMessageDecoder();
+		}
 		debug("read client={}", client);
-		// read
-		int r = client.read(this.inBuffer);
+		// read directly into the connection's buffer
+		int r = io.decoder.read(client);
 		// Check if we should expect any more reads
 		if (r == -1) {
 			throw new IOException("Channel read reached end of stream");
 		}
-		this.inBuffer.flip();
-		String partial = new String(this.inBuffer.array(), 0, r, StandardCharsets.UTF_8);
-		// If there is previous partial, get the io.reading string Buffer
-		StringBuffer sb = (io.reading != null) ? (StringBuffer) io.reading : new StringBuffer();
-		// append the just read partial to the existing or new string buffer
-		sb.append(partial);
-		if (partial.endsWith(messageDelimiter)) {
-			// Get the entire message from the string buffer
-			String message = sb.toString();
-			// Set the io.reading value to null as we are done with this message
-			io.reading = null;
-			debug("read client={} msg=", client, message);
-			if (readHandler != null) {
-				String[] messages = splitMessage(message);
-				for (int i = 0; i < messages.length; i++) {
-					readHandler.apply(messages[i]);
-				}
+		// deliver every message completed by this read
+		String message;
+		while ((message = io.decoder.next()) != null) {
+			debug("read client={} msg={}", client, message);
+			if (readHandler != null && !message.isEmpty()) {
+				readHandler.apply(message);
 			}
-		} else {
-			io.reading = sb;
-			debug("read partial={}", partial);
 		}
-		// Clear inbuffer for next read
-		this.inBuffer.clear();
+		debug("read pending={}", io.decoder.getPending());
 	}
 
 	protected void handleWritable(SelectionKey key) throws IOException {
-		ByteBuffer buf = getAttachedIO(key).writing;
+		AttachedIO io = getAttachedIO(key);
 		SocketChannel client = (SocketChannel) key.channel();
-		if (buf != null) {
-			doWrite(key, client, buf, (o) -> {
-				synchronized (writeLock) {
-					writeLock.notifyAll();
+		List<PendingWrite> written = new ArrayList<PendingWrite>();
+		try {
+			synchronized (io) {
+				PendingWrite w;
+				while ((w = io.outbound.peek()) != null) {
+					long remaining = w.remaining();
+					client.write(w.buffers);
+					long left = w.remaining();
+					io.outboundBytes -= remaining - left;
+					if (left > 0) {
+						// socket buffer is full, wait until writable again
+						debug("write client={} remaining={}", client, left);
+						break;
+					}
+					io.outbound.poll();
+					written.add(w);
 				}
-			});
+				if (io.outbound.isEmpty()) {
+					key.interestOpsAnd(~SelectionKey.OP_WRITE);
+				}
+			}
+		} finally {
+			for (PendingWrite w : written) {
+				w.future.complete(null);
+			}
+		}
+	}
+
+	/**
+	 * Queue the given buffers for writing to the client. If nothing is queued
+	 * for the client yet, as much as possible is written right away by the
+	 * calling thread. Whatever cannot be written without blocking is written by
+	 * the selector thread once the channel becomes writable.
+	 *
+	 * @return a future completed when all buffers have been written, or
+	 *         completed exceptionally if writing fails, the channel is closed,
+	 *         or too many bytes are already queued for the client
+	 */
+	protected CompletableFuture<Void> enqueueWrite(SelectionKey key, SocketChannel client, ByteBuffer... buffers) {
+		PendingWrite w = new PendingWrite(buffers);
+		if (key == null || !key.isValid() || !(key.attachment() instanceof AttachedIO)) {
+			w.future.completeExceptionally(new ClosedChannelException());
+			return w.future;
+		}
+		AttachedIO io = (AttachedIO) key.attachment();
+		boolean done = false;
+		try {
+			synchronized (io) {
+				if (io.outbound.isEmpty()) {
+					client.write(buffers);
+					done = w.remaining() == 0;
+				}
+				if (!done) {
+					long size = w.remaining();
+					if (!io.outbound.isEmpty() && io.outboundBytes + size > this.maxQueuedBytes) {
+						throw new IOException("Write queue full. queued=" + io.outboundBytes + " bytes");
+					}
+					io.outbound.add(w);
+					io.outboundBytes += size;
+					key.interestOpsOr(SelectionKey.OP_WRITE);
+				}
+			}
+		} catch (IOException | CancelledKeyException e) {
+			w.future.completeExceptionally(e);
+			return w.future;
+		}
+		if (done) {
+			w.future.complete(null);
+		} else {
+			// make the selector pick up the write interest
+			this.selector.wakeup();
+		}
+		return w.future;
+	}
+
+	/**
+	 * Fail all writes queued for the given connection, e.g. because it has been
+	 * closed.
+	 */
+	protected void failPendingWrites(AttachedIO io, Throwable cause) {
+		List<PendingWrite> failed;
+		synchronized (io) {
+			failed = new ArrayList<PendingWrite>(io.outbound);
+			io.outbound.clear();
+			io.outboundBytes = 0;
+		}
+		for (PendingWrite w : failed) {
+			w.future.completeExceptionally(cause);
 		}
 	}
 
@@ -272,23 +441,20 @@ public abstract class AbstractStringChannel {
 
 	protected void doWrite(SelectionKey key, SocketChannel client, ByteBuffer buf, IOConsumer<Object> writeHandler)
 			throws IOException {
-		AttachedIO io = (AttachedIO) key.attachment();
-		synchronized (writeLock) {
-			int written = client.write(buf);
-			if (buf.hasRemaining()) {
-				debug("doWrite written={}, remaining={}", written, buf.remaining());
-				io.writing = buf.slice();
-				key.interestOpsOr(SelectionKey.OP_WRITE);
-			} else {
-				if (logger.isDebugEnabled()) {
-					logger.debug("doWrite message={}", new String(buf.array(), 0, written));
-				}
-				io.writing = null;
-				key.interestOps(SelectionKey.OP_READ);
-				if (writeHandler != null) {
+		CompletableFuture<Void> f = enqueueWrite(key, client, buf);
+		if (f.isCompletedExceptionally()) {
+			awaitWrite(f, 0);
+		}
+		if (writeHandler != null) {
+			f.thenRun(() -> {
+				try {
 					writeHandler.apply(null);
+				} catch (IOException e) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("writeHandler exception", e);
+					}
 				}
-			}
+			});
 		}
 	}
 
@@ -309,55 +475,171 @@ public abstract class AbstractStringChannel {
 	protected void hardCloseClient(SocketChannel client, IOConsumer<SocketChannel> closeHandler) {
 		if (client != null) {
 			debug("hardClose client={}", client);
-			synchronized (writeLock) {
-				try {
-					if (closeHandler != null) {
-						closeHandler.apply(client);
-					}
-					client.close();
-				} catch (IOException e) {
-					if (logger.isDebugEnabled()) {
-						logger.debug("hardClose client socketchannel.close exception", e);
-					}
+			SelectionKey key = client.keyFor(this.selector);
+			if (key != null && key.attachment() instanceof AttachedIO) {
+				failPendingWrites((AttachedIO) key.attachment(), new ClosedChannelException());
+			}
+			try {
+				if (closeHandler != null) {
+					closeHandler.apply(client);
+				}
+				client.close();
+			} catch (IOException e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("hardClose client socketchannel.close exception", e);
 				}
 			}
 			executorShutdown();
 		}
 	}
 
-	protected void writeMessageToChannel(SocketChannel client, String message) throws IOException {
+	/**
+	 * Escape any embedded line breaks in the given (JSON) message, and encode
+	 * it.
+	 */
+	protected ByteBuffer encodeMessage(String message) {
+		int i = 0;
+		final int length = message.length();
+		while (i < length && message.charAt(i) != '\r' && message.charAt(i) != '\n') {
+			i++;
+		}
+		String escaped = message;
+		if (i < length) {
+			StringBuilder sb = new StringBuilder(length + 16).append(message, 0, i);
+			for (; i < length; i++) {
+				char c = message.charAt(i);
+				if (c == '\r' || c == '\n') {
+					sb.append("\\n");
+					// \r\n is one line break
+					if (c == '\r' && i + 1 < length && message.charAt(i + 1) == '\n') {
+						i++;
+					}
+				} else {
+					sb.append(c);
+				}
+			}
+			escaped = sb.toString();
+		}
+		return ByteBuffer.wrap(escaped.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Write a message without blocking. The message is queued for the client
+	 * and written by the selector thread if the socket cannot take it right
+	 * away.
+	 *
+	 * @return a future completed when the message has been written
+	 */
+	protected CompletableFuture<Void> writeMessageToChannelAsync(SocketChannel client, String message) {
 		Objects.requireNonNull(client, "Client must not be null");
 		Objects.requireNonNull(message, "Message must not be null");
-		// Escape any embedded newlines in the JSON message
-		String outputMessage = message.replace("\r\n", "\\n").replace("\n", "\\n").replace("\r", "\\n")
-				// add message delimiter
-				.concat(DEFAULT_MESSAGE_DELIMITER);
-		debug("writing msg={}", outputMessage);
-		synchronized (writeLock) {
-			// do the non blocking write in thread while holding lock.
-			doWrite(client, outputMessage, null);
-			ByteBuffer bufRemaining = null;
-			long waitTime = System.currentTimeMillis() + this.writeTimeout;
-			while (waitTime - System.currentTimeMillis() > 0) {
-				// Before releasing lock, check for writing buffer remaining
-				bufRemaining = getAttachedIO(client.keyFor(this.selector)).writing;
-				if (bufRemaining == null || bufRemaining.remaining() == 0) {
-					// It's done
+		debug("writing msg={}", message);
+		return enqueueWrite(client.keyFor(this.selector), client, encodeMessage(message),
+				ByteBuffer.wrap(this.messageDelimiter.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Write a message and wait until it has been written, or the write timeout
+	 * has expired. On timeout the message is given up, see
+	 * {@link #abortWrite(SocketChannel, CompletableFuture, IOException)}.
+	 */
+	protected void writeMessageToChannel(SocketChannel client, String message) throws IOException {
+		CompletableFuture<Void> future = writeMessageToChannelAsync(client, message);
+		try {
+			awaitWrite(future, this.writeTimeout);
+		} catch (WriteTimeoutException e) {
+			abortWrite(client, future, e);
+			// the selector thread may have completed the write in the meantime
+			if (!future.isDone() || future.isCompletedExceptionally()) {
+				throw e;
+			}
+		}
+		debug("writing done msg={}", message);
+	}
+
+	/**
+	 * Thrown by {@link AbstractStringChannel#awaitWrite(CompletableFuture, long)}
+	 * if a write has not completed in time.
+	 */
+	protected static class WriteTimeoutException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		WriteTimeoutException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Give up on a queued write that the caller no longer waits for. If none of
+	 * the bytes of the message have been written yet, the message is removed
+	 * from the queue and the connection stays usable. If the message has been
+	 * written in part, the peer has an incomplete message that cannot be ended
+	 * any more, so the connection is closed and all writes queued for it fail.
+	 *
+	 * @param client the connection the message was written to
+	 * @param future the future returned for the write
+	 * @param cause  the exception to complete the write with
+	 */
+	protected void abortWrite(SocketChannel client, CompletableFuture<Void> future, IOException cause) {
+		SelectionKey key = client.keyFor(this.selector);
+		if (key == null || !(key.attachment() instanceof AttachedIO)) {
+			future.completeExceptionally(cause);
+			return;
+		}
+		AttachedIO io = (AttachedIO) key.attachment();
+		boolean partial = false;
+		synchronized (io) {
+			for (Iterator<PendingWrite> it = io.outbound.iterator(); it.hasNext();) {
+				PendingWrite w = it.next();
+				if (w.future == future) {
+					long remaining = w.remaining();
+					if (remaining == w.size) {
+						it.remove();
+						io.outboundBytes -= remaining;
+						if (io.outbound.isEmpty() && key.isValid()) {
+							try {
+								key.interestOpsAnd(~SelectionKey.OP_WRITE);
+							} catch (CancelledKeyException e) {
+								// closed concurrently
+							}
+						}
+					} else {
+						partial = true;
+					}
 					break;
 				}
-				// If write is *not* completed, then wait timeout /10
-				try {
-					debug("writeBlocking WAITING(ms)={} msg={}", String.valueOf(waitTime / 10), outputMessage);
-					writeLock.wait(waitTime / 10);
-				} catch (InterruptedException e) {
-					throw new InterruptedIOException("write message wait interrupted");
-				}
 			}
-			if (bufRemaining != null && bufRemaining.remaining() > 0) {
-				throw new IOException("Write not completed.  Non empty buffer remaining after timeout");
+		}
+		if (!partial) {
+			future.completeExceptionally(cause);
+			return;
+		}
+		debug("closing client={} after partial write", client);
+		failPendingWrites(io, cause);
+		try {
+			client.close();
+		} catch (IOException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("abortWrite client socketchannel.close exception", e);
+			}
+		}
+	}
+
+	protected void awaitWrite(CompletableFuture<Void> future, long timeout) throws IOException {
+		try {
+			future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("write message wait interrupted");
+		} catch (TimeoutException e) {
+			throw new WriteTimeoutException("Write not completed after timeout=" + timeout + "ms");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
 			}
+			throw new IOException("Write failed", cause);
 		}
-		debug("writing done msg={}", outputMessage);
 	}
 
 	protected void configureConnectSocketChannel(SocketChannel client, SocketAddress connectAddress)
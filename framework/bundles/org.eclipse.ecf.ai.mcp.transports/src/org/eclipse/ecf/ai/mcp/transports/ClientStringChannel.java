@@ -18,6 +18,7 @@ import java.net.StandardProtocolFamily;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
@@ -108,4 +109,17 @@ public class ClientStringChannel extends AbstractStringChannel {
 		writeMessageToChannel(client, message);
 	}
 
+	/**
+	 * Write a message without blocking.
+	 *
+	 * @return a future completed when the message has been written
+	 */
+	public CompletableFuture<Void> writeMessageAsync(String message) {
+		SocketChannel c = this.client;
+		if (c == null) {
+			return CompletableFuture.failedFuture(new IOException("Cannot write until client connected"));
+		}
+		return writeMessageToChannelAsync(c, message);
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.ai.mcp.transports;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Selector;
+import java.util.concurrent.ExecutorService;
+
+public class Inet6MultiClientServerStringChannel extends MultiClientServerStringChannel {
+
+	public Inet6MultiClientServerStringChannel() throws IOException {
+		super();
+	}
+
+	public Inet6MultiClientServerStringChannel(Selector selector, int incomingBufferSize, ExecutorService executor,
+			ExecutorService workers) {
+		super(selector, incomingBufferSize, executor, workers);
+	}
+
+	public Inet6MultiClientServerStringChannel(Selector selector, int incomingBufferSize, ExecutorService executor) {
+		super(selector, incomingBufferSize, executor);
+	}
+
+	public Inet6MultiClientServerStringChannel(Selector selector, int incomingBufferSize) {
+		super(selector, incomingBufferSize);
+	}
+
+	public Inet6MultiClientServerStringChannel(Selector selector) {
+		super(selector);
+	}
+
+	public void start(Inet6Address address, int port, IOConsumer<Connection> acceptHandler,
+			MessageHandler messageHandler, IOConsumer<Connection> closeHandler) throws IOException {
+		super.start(StandardProtocolFamily.INET6, new InetSocketAddress(address, port), acceptHandler, messageHandler, closeHandler);
+	}
+
+}
@@ -0,0 +1,227 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.ai.mcp.transports;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Splits the bytes received on one connection into delimited UTF-8 messages.
+ * <p>
+ * Bytes are read into a buffer that is kept for the lifetime of the
+ * connection. It grows as needed for a large message, and goes back to its
+ * initial size once that message has been decoded. The delimiter
+ * is searched for on the bytes, so a multibyte character split across reads
+ * is never decoded in parts, and every byte is scanned only once regardless of
+ * how many reads a message takes. A message is decoded as soon as its
+ * delimiter has been read, even if more messages follow in the same read.
+ * <p>
+ * Not thread safe. Intended to be used by the selector thread only.
+ */
+public class MessageDecoder {
+
+	private final byte[] delimiter;
+
+	private final int maxMessageSize;
+
+	private final int initialCapacity;
+
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	// bytes read are in [0, buffer.position())
+	private ByteBuffer buffer;
+
+	// start of the next message in buffer
+	private int start;
+
+	// no delimiter starts in [start, scanned)
+	private int scanned;
+
+	private CharBuffer chars;
+
+	/**
+	 * @param delimiter       the message delimiter. Must not be <code>null</code>
+	 *                        or empty.
+	 * @param initialCapacity the initial size of the buffer
+	 * @param maxMessageSize  maximum size of a message in bytes, not counting
+	 *                        the delimiter
+	 */
+	public MessageDecoder(String delimiter, int initialCapacity, int maxMessageSize) {
+		Objects.requireNonNull(delimiter, "Delimiter must not be null");
+		this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+		if (this.delimiter.length == 0) {
+			throw new IllegalArgumentException("Delimiter must not be empty");
+		}
+		this.maxMessageSize = maxMessageSize;
+		this.initialCapacity = Math.max(initialCapacity, this.delimiter.length);
+		this.buffer = ByteBuffer.allocate(this.initialCapacity);
+		this.chars = CharBuffer.allocate(this.initialCapacity);
+	}
+
+	/**
+	 * Read available bytes from the given channel.
+	 *
+	 * @param channel the channel to read from. Must not be <code>null</code>.
+	 * @return the number of bytes read, or -1 if the channel has reached end of
+	 *         stream
+	 * @throws IOException if reading fails, or the current message exceeds the
+	 *                     maximum message size
+	 */
+	public int read(ReadableByteChannel channel) throws IOException {
+		makeRoom();
+		return channel.read(this.buffer);
+	}
+
+	/**
+	 * Add the remaining bytes of the given buffer.
+	 *
+	 * @param bytes the bytes to add. Must not be <code>null</code>.
+	 * @throws IOException if the current message exceeds the maximum message
+	 *                     size
+	 */
+	public void put(ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			makeRoom();
+			int n = Math.min(bytes.remaining(), this.buffer.remaining());
+			ByteBuffer slice = bytes.slice();
+			slice.limit(n);
+			this.buffer.put(slice);
+			bytes.position(bytes.position() + n);
+		}
+	}
+
+	/**
+	 * Get the next complete message.
+	 *
+	 * @return the next message without its delimiter, or <code>null</code> if
+	 *         no complete message has been read yet
+	 * @throws IOException if the current message exceeds the maximum message
+	 *                     size
+	 */
+	public String next() throws IOException {
+		final byte[] a = this.buffer.array();
+		final int end = this.buffer.position();
+		final int last = end - this.delimiter.length;
+		for (int i = this.scanned; i <= last; i++) {
+			if (isDelimiterAt(a, i)) {
+				String message = decode(a, this.start, i - this.start);
+				this.start = i + this.delimiter.length;
+				this.scanned = this.start;
+				if (this.start == end) {
+					// all consumed, start over at the beginning of the buffer
+					this.buffer.clear();
+					this.start = 0;
+					this.scanned = 0;
+				}
+				shrink();
+				return message;
+			}
+		}
+		this.scanned = Math.max(this.start, last + 1);
+		checkSize(end - this.start);
+		return null;
+	}
+
+	/**
+	 * @return number of bytes read that are not part of a complete message yet
+	 */
+	public int getPending() {
+		return this.buffer.position() - this.start;
+	}
+
+	/**
+	 * @return the current size of the buffer in bytes
+	 */
+	public int getCapacity() {
+		return this.buffer.capacity();
+	}
+
+	private boolean isDelimiterAt(byte[] a, int i) {
+		for (int j = 0; j < this.delimiter.length; j++) {
+			if (a[i + j] != this.delimiter[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void checkSize(int size) throws IOException {
+		if (size > this.maxMessageSize + this.delimiter.length - 1) {
+			throw new IOException("Message exceeds maximum size of " + this.maxMessageSize + " bytes");
+		}
+	}
+
+	private void makeRoom() throws IOException {
+		if (this.buffer.hasRemaining()) {
+			return;
+		}
+		final int pending = getPending();
+		checkSize(pending);
+		if (this.start > 0) {
+			// move the pending message to the beginning
+			byte[] a = this.buffer.array();
+			System.arraycopy(a, this.start, a, 0, pending);
+			this.scanned -= this.start;
+			this.start = 0;
+			this.buffer.position(pending);
+		}
+		if (!this.buffer.hasRemaining()) {
+			// the pending message fills the buffer
+			int capacity = (int) Math.min((long) this.buffer.capacity() * 2,
+					(long) this.maxMessageSize + this.delimiter.length);
+			if (capacity <= this.buffer.capacity()) {
+				throw new IOException("Message exceeds maximum size of " + this.maxMessageSize + " bytes");
+			}
+			ByteBuffer grown = ByteBuffer.allocate(capacity);
+			this.buffer.flip();
+			grown.put(this.buffer);
+			this.buffer = grown;
+		}
+	}
+
+	/**
+	 * Go back to the initial buffer size after a large message, unless the
+	 * pending bytes do not fit.
+	 */
+	private void shrink() {
+		final int pending = getPending();
+		if (this.buffer.capacity() <= this.initialCapacity || pending > this.initialCapacity) {
+			return;
+		}
+		ByteBuffer small = ByteBuffer.allocate(this.initialCapacity);
+		small.put(this.buffer.array(), this.start, pending);
+		this.scanned -= this.start;
+		this.start = 0;
+		this.buffer = small;
+	}
+
+	private String decode(byte[] a, int offset, int length) {
+		// large messages are decoded into a buffer that is not kept
+		final CharBuffer out = (length <= this.chars.capacity()) ? this.chars : CharBuffer.allocate(length);
+		out.clear();
+		this.decoder.reset();
+		// UTF-8 never needs more chars than bytes, so this cannot overflow
+		this.decoder.decode(ByteBuffer.wrap(a, offset, length), out, true);
+		this.decoder.flush(out);
+		out.flip();
+		return out.toString();
+	}
+
+}
@@ -0,0 +1,434 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.ai.mcp.transports;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server channel that serves any number of concurrently connected clients.
+ * Unlike {@link ServerStringChannel}, which only keeps the most recently
+ * accepted client, every accepted client gets its own {@link Connection} with
+ * its own read and write state and attributes.
+ * <p>
+ * All socket I/O is done by the single selector thread. Received messages are
+ * handed to the message handler on a pool of worker threads, so a slow handler
+ * (e.g. a long running tool call) does not hold up the traffic of other
+ * clients. The messages of one connection are handled one at a time and in
+ * the order they were received, as required by JSON-RPC notifications such as
+ * <code>notifications/initialized</code>. The worker pool may be given in the
+ * constructor, e.g. a virtual thread per task executor.
+ */
+public class MultiClientServerStringChannel extends AbstractStringChannel {
+
+	private static final Logger logger = LoggerFactory.getLogger(MultiClientServerStringChannel.class);
+
+	public static final int DEFAULT_WORKER_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Maximum number of messages of one connection handled by a worker before
+	 * it is handed back to the pool, so that busy connections share the
+	 * workers fairly.
+	 */
+	public static final int MAX_MESSAGES_PER_DISPATCH = 16;
+
+	@FunctionalInterface
+	public interface MessageHandler {
+
+		void handleMessage(Connection connection, String message) throws IOException;
+
+	}
+
+	/**
+	 * State of one accepted client. Attached to the client's selection key.
+	 */
+	public class Connection extends AttachedIO {
+
+		private final SocketChannel client;
+
+		private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+		// received messages not yet handled, guarded by itself
+		private final Queue<String> received = new ArrayDeque<String>();
+
+		private boolean dispatching;
+
+		private volatile boolean open = true;
+
+		protected Connection(SocketChannel client) {
+			this.client = client;
+		}
+
+		public SocketChannel getSocketChannel() {
+			return this.client;
+		}
+
+		public Object getAttribute(String name) {
+			return this.attributes.get(name);
+		}
+
+		public void setAttribute(String name, Object value) {
+			if (value == null) {
+				this.attributes.remove(name);
+			} else {
+				this.attributes.put(name, value);
+			}
+		}
+
+		public boolean isOpen() {
+			return this.open;
+		}
+
+		/**
+		 * Write a message and wait until it has been written, or the write
+		 * timeout has expired.
+		 */
+		public void writeMessage(String message) throws IOException {
+			if (!this.open) {
+				throw new IOException("Connection closed");
+			}
+			writeMessageToChannel(this.client, message);
+		}
+
+		/**
+		 * Write a message without blocking.
+		 *
+		 * @return a future completed when the message has been written
+		 */
+		public CompletableFuture<Void> writeMessageAsync(String message) {
+			return writeMessageToChannelAsync(this.client, message);
+		}
+
+		public void close() {
+			closeConnection(this);
+		}
+
+		void received(String message) {
+			synchronized (this.received) {
+				this.received.add(message);
+				if (this.dispatching) {
+					return;
+				}
+				this.dispatching = true;
+			}
+			dispatch();
+		}
+
+		private void dispatch() {
+			try {
+				workers.execute(this::handleReceived);
+			} catch (RejectedExecutionException e) {
+				debug("worker pool rejected messages of connection={}", this);
+				synchronized (this.received) {
+					this.received.clear();
+					this.dispatching = false;
+				}
+			}
+		}
+
+		private void handleReceived() {
+			for (int i = 0; i < MAX_MESSAGES_PER_DISPATCH; i++) {
+				String message;
+				synchronized (this.received) {
+					message = this.received.poll();
+					if (message == null || !this.open) {
+						this.received.clear();
+						this.dispatching = false;
+						return;
+					}
+				}
+				try {
+					if (messageHandler != null) {
+						messageHandler.handleMessage(this, message);
+					}
+				} catch (Throwable e) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("messageHandler exception for connection=" + this, e);
+					}
+				}
+			}
+			// more messages may be waiting, let other connections go first
+			dispatch();
+		}
+
+		@Override
+		public String toString() {
+			return "Connection[" + this.client + "]";
+		}
+	}
+
+	protected final ExecutorService workers;
+
+	protected final Map<SocketChannel, Connection> connections = new ConcurrentHashMap<SocketChannel, Connection>();
+
+	protected ServerSocketChannel serverChannel;
+
+	protected volatile MessageHandler messageHandler;
+
+	protected volatile IOConsumer<Connection> closeHandler;
+
+	private volatile boolean closed;
+
+	private static ExecutorService createDefaultWorkers() {
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory threadFactory = (r) -> {
+			Thread t = new Thread(r, "MCP server worker " + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		return Executors.newFixedThreadPool(DEFAULT_WORKER_THREADS, threadFactory);
+	}
+
+	/**
+	 * @param selector          the selector. Must not be <code>null</code>.
+	 * @param incomingBufferSize the size of the read buffer
+	 * @param executor          executor to run the selector thread on. May be
+	 *                          <code>null</code>.
+	 * @param workers           executor to handle received messages on. May be
+	 *                          <code>null</code>, in which case a pool of
+	 *                          {@link #DEFAULT_WORKER_THREADS} threads is used.
+	 */
+	public MultiClientServerStringChannel(Selector selector, int incomingBufferSize, ExecutorService executor,
+			ExecutorService workers) {
+		super(selector, incomingBufferSize, executor);
+		this.workers = (workers == null) ? createDefaultWorkers() : workers;
+	}
+
+	public MultiClientServerStringChannel(Selector selector, int incomingBufferSize, ExecutorService executor) {
+		this(selector, incomingBufferSize, executor, null);
+	}
+
+	public MultiClientServerStringChannel(Selector selector, int incomingBufferSize) {
+		this(selector, incomingBufferSize, null);
+	}
+
+	public MultiClientServerStringChannel(Selector selector) {
+		this(selector, DEFAULT_INBUFFER_SIZE);
+	}
+
+	public MultiClientServerStringChannel() throws IOException {
+		this(Selector.open());
+	}
+
+	protected void configureServerSocketChannel(ServerSocketChannel serverSocketChannel, SocketAddress acceptAddress) {
+		// Subclasses may override
+	}
+
+	/**
+	 * Bind to the given address and start accepting clients.
+	 *
+	 * @param protocol       the protocol family
+	 * @param address        the address to bind to
+	 * @param acceptHandler  called on the selector thread for each accepted
+	 *                       client. May be <code>null</code>.
+	 * @param messageHandler called on a worker thread for each received message.
+	 *                       May be <code>null</code>.
+	 * @param closeHandler   called when a connection is closed. May be
+	 *                       <code>null</code>.
+	 * @throws IOException if the server socket cannot be bound
+	 */
+	public void start(StandardProtocolFamily protocol, SocketAddress address, IOConsumer<Connection> acceptHandler,
+			MessageHandler messageHandler, IOConsumer<Connection> closeHandler) throws IOException {
+		if (this.serverChannel != null) {
+			throw new IOException("Already started");
+		}
+		this.messageHandler = messageHandler;
+		this.closeHandler = closeHandler;
+		ServerSocketChannel sc = ServerSocketChannel.open(protocol);
+		sc.configureBlocking(false);
+		sc.register(this.selector, SelectionKey.OP_ACCEPT);
+		configureServerSocketChannel(sc, address);
+		sc.bind(address);
+		this.serverChannel = sc;
+		// Start thread/processing of incoming accept, read
+		super.start((client) -> {
+			Connection connection = this.connections.get(client);
+			if (acceptHandler != null && connection != null) {
+				acceptHandler.apply(connection);
+			}
+			// No/null connect handler for Acceptors...only accepthandler
+		}, null, null);
+	}
+
+	/**
+	 * @return the currently open connections
+	 */
+	public Collection<Connection> getConnections() {
+		return new ArrayList<Connection>(this.connections.values());
+	}
+
+	/**
+	 * Write the given message to all open connections, without blocking. A
+	 * connection the message cannot be written to is closed.
+	 *
+	 * @param message the message to write. Must not be <code>null</code>.
+	 */
+	public void writeMessageToAll(String message) {
+		for (Connection connection : getConnections()) {
+			connection.writeMessageAsync(message).whenComplete((v, e) -> {
+				if (e != null) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("writeMessage failed for connection=" + connection, e);
+					}
+					connection.close();
+				}
+			});
+		}
+	}
+
+	protected Connection createConnection(SocketChannel client) {
+		return new Connection(client);
+	}
+
+	@Override
+	protected void handleAcceptable(SelectionKey key, IOConsumer<SocketChannel> acceptHandler) throws IOException {
+		ServerSocketChannel server = (ServerSocketChannel) key.channel();
+		SocketChannel client = server.accept();
+		if (client == null) {
+			return;
+		}
+		debug("client={}", client);
+		Connection connection = createConnection(client);
+		try {
+			client.configureBlocking(false);
+			client.register(this.selector, SelectionKey.OP_READ, connection);
+			configureAcceptSocketChannel(client);
+			this.connections.put(client, connection);
+			if (acceptHandler != null) {
+				acceptHandler.apply(client);
+			}
+		} catch (IOException e) {
+			// Only this client is affected
+			if (logger.isDebugEnabled()) {
+				logger.debug("accept failed for client=" + client, e);
+			}
+			closeConnection(connection);
+		}
+	}
+
+	@Override
+	protected void handleReadable(SelectionKey key, IOConsumer<String> readHandler) throws IOException {
+		Connection connection = (Connection) getAttachedIO(key);
+		try {
+			super.handleReadable(key, connection::received);
+		} catch (IOException e) {
+			// Only this client is affected
+			debug("read failed for connection={}", connection);
+			closeConnection(connection);
+		}
+	}
+
+	@Override
+	protected void handleWritable(SelectionKey key) throws IOException {
+		Connection connection = (Connection) getAttachedIO(key);
+		try {
+			super.handleWritable(key);
+		} catch (IOException e) {
+			debug("write failed for connection={}", connection);
+			closeConnection(connection);
+		}
+	}
+
+	protected void closeConnection(Connection connection) {
+		if (this.connections.remove(connection.client) == null) {
+			return;
+		}
+		connection.open = false;
+		debug("close connection={}", connection);
+		try {
+			connection.client.close();
+		} catch (IOException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("close connection socketchannel.close exception", e);
+			}
+		}
+		failPendingWrites(connection, new ClosedChannelException());
+		IOConsumer<Connection> ch = this.closeHandler;
+		if (ch != null) {
+			try {
+				ch.apply(connection);
+			} catch (IOException e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("closeHandler exception", e);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void handleException(SelectionKey key, Throwable e) {
+		if (!this.closed && logger.isDebugEnabled()) {
+			logger.debug("handleException", e);
+		}
+		close();
+	}
+
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		ServerSocketChannel sc = this.serverChannel;
+		if (sc != null) {
+			try {
+				sc.close();
+			} catch (IOException e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("close serversocketchannel exception", e);
+				}
+			}
+		}
+		for (Connection connection : getConnections()) {
+			closeConnection(connection);
+		}
+		try {
+			// ends the selector thread
+			this.selector.close();
+		} catch (IOException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("close selector exception", e);
+			}
+		}
+		this.workers.shutdown();
+		this.executor.shutdown();
+		try {
+			this.workers.awaitTermination(this.terminationTimeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -18,6 +18,7 @@ import java.net.StandardProtocolFamily;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
@@ -89,6 +90,19 @@ public class ServerStringChannel extends AbstractStringChannel {
 		}
 	}
 
+	/**
+	 * Write a message without blocking.
+	 *
+	 * @return a future completed when the message has been written
+	 */
+	public CompletableFuture<Void> writeMessageAsync(String message) {
+		SocketChannel c = this.acceptedClient;
+		if (c == null) {
+			return CompletableFuture.failedFuture(new IOException("No acceptedClient attached"));
+		}
+		return writeMessageToChannelAsync(c, message);
+	}
+
 	@Override
 	public void close() {
 		SocketChannel client = this.acceptedClient;
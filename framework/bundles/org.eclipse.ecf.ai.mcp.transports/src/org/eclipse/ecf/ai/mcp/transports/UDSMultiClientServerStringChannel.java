@@ -0,0 +1,49 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.ai.mcp.transports;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Selector;
+import java.util.concurrent.ExecutorService;
+
+public class UDSMultiClientServerStringChannel extends MultiClientServerStringChannel {
+
+	public UDSMultiClientServerStringChannel() throws IOException {
+		super();
+	}
+
+	public UDSMultiClientServerStringChannel(Selector selector, int incomingBufferSize, ExecutorService executor,
+			ExecutorService workers) {
+		super(selector, incomingBufferSize, executor, workers);
+	}
+
+	public UDSMultiClientServerStringChannel(Selector selector, int incomingBufferSize, ExecutorService executor) {
+		super(selector, incomingBufferSize, executor);
+	}
+
+	public UDSMultiClientServerStringChannel(Selector selector, int incomingBufferSize) {
+		super(selector, incomingBufferSize);
+	}
+
+	public UDSMultiClientServerStringChannel(Selector selector) {
+		super(selector);
+	}
+
+	public void start(UnixDomainSocketAddress address, IOConsumer<Connection> acceptHandler,
+			MessageHandler messageHandler, IOConsumer<Connection> closeHandler) throws IOException {
+		super.start(StandardProtocolFamily.UNIX, address, acceptHandler, messageHandler, closeHandler);
+	}
+
+}
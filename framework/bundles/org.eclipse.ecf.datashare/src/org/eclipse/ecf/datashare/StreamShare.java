@@ -0,0 +1,769 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.datashare;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.ecf.core.identity.ID;
+import org.eclipse.ecf.core.identity.IDFactory;
+import org.eclipse.ecf.core.util.ECFException;
+import org.eclipse.ecf.datashare.events.IChannelDisconnectEvent;
+
+/**
+ * {@link IStreamContainerAdapter} implementation that carries byte streams over
+ * an {@link IChannel}, and so works with any provider that implements
+ * {@link IChannelContainerAdapter}.
+ * <p>
+ * Data written to an output stream is sent in chunks of at most
+ * {@link #getChunkSize()} bytes. Every receiver grants the sender a window of
+ * {@link #getWindowSize()} bytes, and grants more credit as the application
+ * reads from the input stream. A sender never has more than one window of
+ * unread data in flight, so streams of any length move in constant memory on
+ * both ends, and other messages sent over the same connection are never queued
+ * behind more than one window of stream data. A receiver fails a stream whose
+ * sender exceeds the granted window.
+ * </p>
+ * <p>
+ * A stream to the whole group moves at the pace of its slowest receiver. Members
+ * that granted credit for an earlier stream have no credit for a new stream until
+ * their grant for it arrives.
+ * </p>
+ * <p>
+ * Streams are opened lazily with the first chunk written. A receiver must have
+ * created its <code>StreamShare</code> on the same channel id before a stream
+ * is opened, otherwise it will not see the stream. Incoming streams are handed
+ * out in the order they were opened by {@link #getInputStream()} and
+ * {@link #getInputStream(long)}.
+ * </p>
+ *
+ * @since 3.2
+ */
+public class StreamShare implements IStreamContainerAdapter {
+
+	public static final int DEFAULT_WINDOW_SIZE = 256 * 1024;
+
+	public static final int DEFAULT_CHUNK_SIZE = 32 * 1024;
+
+	/**
+	 * Default time in milliseconds that a sender waits for credit before the
+	 * write fails.
+	 */
+	public static final long DEFAULT_CREDIT_TIMEOUT = 30000;
+
+	private static final byte OPEN = 1;
+	private static final byte DATA = 2;
+	private static final byte CLOSE = 3;
+	private static final byte CREDIT = 4;
+	// receiver to sender: stop sending
+	private static final byte CANCEL = 5;
+	// sender to receiver: stream will not be completed
+	private static final byte ABORT = 6;
+
+	// type and stream id
+	private static final int HEADER_LENGTH = 9;
+
+	private final int windowSize;
+
+	private final int chunkSize;
+
+	private long creditTimeout = DEFAULT_CREDIT_TIMEOUT;
+
+	private final Map outgoing = new HashMap();
+
+	private final Map incoming = new HashMap();
+
+	private final LinkedList pending = new LinkedList();
+
+	// IDs of the members that granted credit for a stream to the group
+	private final Set receivers = new HashSet();
+
+	private long nextStreamId = new Random().nextLong();
+
+	private final AbstractShare share;
+
+	public StreamShare(IChannelContainerAdapter adapter) throws ECFException {
+		this(adapter, null, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * @param adapter the channel container adapter. Must not be <code>null</code>.
+	 * @param channelID the id of the channel to carry the streams. If
+	 * <code>null</code>, a default id is used.
+	 * @param windowSize the number of bytes each receiver lets a sender have in
+	 * flight. Must be greater than 1.
+	 * @throws ECFException if the channel cannot be created
+	 */
+	public StreamShare(IChannelContainerAdapter adapter, ID channelID, int windowSize) throws ECFException {
+		Assert.isNotNull(adapter);
+		Assert.isLegal(windowSize > 1, "windowSize must be greater than 1"); //$NON-NLS-1$
+		this.windowSize = windowSize;
+		// chunks must not exceed the credit a receiver is guaranteed to grant back
+		this.chunkSize = Math.max(1, Math.min(DEFAULT_CHUNK_SIZE, windowSize / 4));
+		if (channelID == null)
+			channelID = IDFactory.getDefault().createStringID(StreamShare.class.getName());
+		this.share = new AbstractShare(adapter, channelID) {
+			protected void handleMessage(ID fromContainerID, byte[] data) {
+				StreamShare.this.handleMessage(fromContainerID, data);
+			}
+
+			protected void handleDisconnectEvent(IChannelDisconnectEvent cde) {
+				StreamShare.this.handleDisconnect(cde.getTargetID());
+			}
+		};
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public synchronized long getCreditTimeout() {
+		return creditTimeout;
+	}
+
+	/**
+	 * @param creditTimeout time in milliseconds that a sender waits for
+	 * credit before the write fails
+	 */
+	public synchronized void setCreditTimeout(long creditTimeout) {
+		this.creditTimeout = creditTimeout;
+	}
+
+	public IChannel getChannel() {
+		return share.getChannel();
+	}
+
+	/**
+	 * Get the next incoming stream that has not been handed out yet.
+	 *
+	 * @return the stream, or <code>null</code> if no stream is waiting
+	 */
+	public InputStream getInputStream() {
+		synchronized (pending) {
+			return (pending.isEmpty()) ? null : (InputStream) pending.removeFirst();
+		}
+	}
+
+	/**
+	 * Wait for the next incoming stream that has not been handed out yet.
+	 *
+	 * @param timeout the time to wait in milliseconds
+	 * @return the stream, or <code>null</code> if no stream was opened within
+	 * the timeout
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public InputStream getInputStream(long timeout) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + timeout;
+		synchronized (pending) {
+			while (pending.isEmpty()) {
+				final long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0)
+					return null;
+				pending.wait(wait);
+			}
+			return (InputStream) pending.removeFirst();
+		}
+	}
+
+	/**
+	 * Open a new stream to all members of the group. Not all providers support
+	 * sending to the whole group.
+	 *
+	 * @return a new output stream. Will not be <code>null</code>.
+	 */
+	public OutputStream getOutputStream() {
+		return getOutputStream(null);
+	}
+
+	/**
+	 * Open a new stream to the given receiver.
+	 *
+	 * @param receiver the receiver. If <code>null</code>, the stream is sent to
+	 * all members of the group.
+	 * @return a new output stream. Will not be <code>null</code>.
+	 */
+	public OutputStream getOutputStream(ID receiver) {
+		synchronized (outgoing) {
+			return new OutgoingStream(receiver, nextStreamId++);
+		}
+	}
+
+	/**
+	 * Abort all streams and dispose the underlying channel.
+	 */
+	public void dispose() {
+		final List out;
+		synchronized (outgoing) {
+			out = new ArrayList(outgoing.values());
+			outgoing.clear();
+		}
+		for (final Iterator i = out.iterator(); i.hasNext();)
+			((OutgoingStream) i.next()).fail(new IOException("Stream share disposed")); //$NON-NLS-1$
+		final List in;
+		synchronized (incoming) {
+			in = new ArrayList(incoming.values());
+			incoming.clear();
+		}
+		for (final Iterator i = in.iterator(); i.hasNext();)
+			((IncomingStream) i.next()).fail(new IOException("Stream share disposed")); //$NON-NLS-1$
+		share.dispose();
+	}
+
+	public boolean isDisposed() {
+		return share.isDisposed();
+	}
+
+	void handleMessage(ID fromID, byte[] data) {
+		if (fromID == null || data == null || data.length < HEADER_LENGTH)
+			return;
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		final byte type = buffer.get();
+		final long streamId = buffer.getLong();
+		final StreamKey key = new StreamKey(fromID, streamId);
+		switch (type) {
+			case OPEN :
+				handleOpen(key);
+				break;
+			case DATA :
+				final IncomingStream in = getIncoming(key, false);
+				if (in != null && !in.receive(data))
+					reject(in);
+				break;
+			case CLOSE :
+				final IncomingStream closed = getIncoming(key, true);
+				if (closed != null)
+					closed.receiveClose();
+				break;
+			case ABORT :
+				final IncomingStream aborted = getIncoming(key, true);
+				if (aborted != null)
+					aborted.fail(new IOException("Stream aborted by sender")); //$NON-NLS-1$
+				break;
+			case CREDIT :
+				synchronized (receivers) {
+					receivers.add(fromID);
+				}
+				final OutgoingStream granted = getOutgoing(streamId);
+				if (granted != null && data.length >= HEADER_LENGTH + 4)
+					granted.grant(fromID, buffer.getInt());
+				break;
+			case CANCEL :
+				final OutgoingStream cancelled = getOutgoing(streamId);
+				if (cancelled != null)
+					cancelled.cancel(fromID);
+				break;
+			default :
+				break;
+		}
+	}
+
+	void handleDisconnect(ID targetID) {
+		if (targetID == null)
+			return;
+		synchronized (receivers) {
+			receivers.remove(targetID);
+		}
+		final List out;
+		synchronized (outgoing) {
+			out = new ArrayList(outgoing.values());
+		}
+		for (final Iterator i = out.iterator(); i.hasNext();)
+			((OutgoingStream) i.next()).cancel(targetID);
+		final List in = new ArrayList();
+		synchronized (incoming) {
+			for (final Iterator i = incoming.entrySet().iterator(); i.hasNext();) {
+				final Map.Entry entry = (Map.Entry) i.next();
+				if (targetID.equals(((StreamKey) entry.getKey()).fromID)) {
+					in.add(entry.getValue());
+					i.remove();
+				}
+			}
+		}
+		for (final Iterator i = in.iterator(); i.hasNext();)
+			((IncomingStream) i.next()).fail(new IOException("Sender disconnected")); //$NON-NLS-1$
+	}
+
+	private void handleOpen(StreamKey key) {
+		final IncomingStream in = new IncomingStream(key);
+		synchronized (incoming) {
+			if (incoming.containsKey(key))
+				return;
+			incoming.put(key, in);
+		}
+		try {
+			// initial grant
+			sendCredit(key, windowSize);
+		} catch (final IOException e) {
+			synchronized (incoming) {
+				incoming.remove(key);
+			}
+			return;
+		}
+		synchronized (pending) {
+			pending.add(in);
+			pending.notifyAll();
+		}
+	}
+
+	private void reject(IncomingStream in) {
+		synchronized (incoming) {
+			incoming.remove(in.key);
+		}
+		in.fail(new IOException("Sender exceeded the flow control window")); //$NON-NLS-1$
+		try {
+			send(in.key.fromID, createFrame(CANCEL, in.key.streamId, 0));
+		} catch (final IOException e) {
+			// the sender will time out instead
+		}
+	}
+
+	private IncomingStream getIncoming(StreamKey key, boolean remove) {
+		synchronized (incoming) {
+			return (IncomingStream) (remove ? incoming.remove(key) : incoming.get(key));
+		}
+	}
+
+	private OutgoingStream getOutgoing(long streamId) {
+		synchronized (outgoing) {
+			return (OutgoingStream) outgoing.get(Long.valueOf(streamId));
+		}
+	}
+
+	static byte[] createFrame(byte type, long streamId, int extra) {
+		final byte[] frame = new byte[HEADER_LENGTH + extra];
+		ByteBuffer.wrap(frame).put(type).putLong(streamId);
+		return frame;
+	}
+
+	void sendCredit(StreamKey key, int credit) throws IOException {
+		final byte[] frame = createFrame(CREDIT, key.streamId, 4);
+		ByteBuffer.wrap(frame, HEADER_LENGTH, 4).putInt(credit);
+		send(key.fromID, frame);
+	}
+
+	void send(ID receiver, byte[] frame) throws IOException {
+		final IChannel channel = share.getChannel();
+		if (channel == null)
+			throw new IOException("Stream share disposed"); //$NON-NLS-1$
+		try {
+			if (receiver == null)
+				channel.sendMessage(frame);
+			else
+				channel.sendMessage(receiver, frame);
+		} catch (final ECFException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	static final class StreamKey {
+		final ID fromID;
+		final long streamId;
+
+		StreamKey(ID fromID, long streamId) {
+			this.fromID = fromID;
+			this.streamId = streamId;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof StreamKey))
+				return false;
+			final StreamKey other = (StreamKey) o;
+			return streamId == other.streamId && fromID.equals(other.fromID);
+		}
+
+		public int hashCode() {
+			return fromID.hashCode() ^ (int) (streamId ^ (streamId >>> 32));
+		}
+	}
+
+	/**
+	 * Stream of data received from one sender.
+	 */
+	public final class IncomingStream extends InputStream {
+
+		final StreamKey key;
+
+		// received frames, data starts at HEADER_LENGTH
+		private final LinkedList frames = new LinkedList();
+
+		// read position in the first frame
+		private int position = HEADER_LENGTH;
+
+		private int buffered;
+
+		// bytes read but not yet granted back to the sender
+		private int consumed;
+
+		// bytes the sender may still send
+		private int credit = windowSize;
+
+		private boolean eof;
+
+		private boolean closed;
+
+		private IOException error;
+
+		IncomingStream(StreamKey key) {
+			this.key = key;
+		}
+
+		/**
+		 * @return the ID of the container that sends this stream. Will not be
+		 * <code>null</code>.
+		 */
+		public ID getFromContainerID() {
+			return key.fromID;
+		}
+
+		/**
+		 * @return <code>false</code> if the frame exceeds the credit granted to
+		 * the sender
+		 */
+		synchronized boolean receive(byte[] frame) {
+			final int n = frame.length - HEADER_LENGTH;
+			if (n > credit)
+				return false;
+			credit -= n;
+			if (closed || eof || n == 0)
+				return true;
+			frames.add(frame);
+			buffered += n;
+			notifyAll();
+			return true;
+		}
+
+		synchronized void receiveClose() {
+			eof = true;
+			notifyAll();
+		}
+
+		synchronized void fail(IOException e) {
+			if (error == null && !eof)
+				error = e;
+			notifyAll();
+		}
+
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || len > b.length - off)
+				throw new IndexOutOfBoundsException();
+			if (len == 0)
+				return 0;
+			int n = 0;
+			int grant = 0;
+			synchronized (this) {
+				try {
+					while (buffered == 0 && !eof && error == null && !closed)
+						wait();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+				if (closed)
+					throw new IOException("Stream closed"); //$NON-NLS-1$
+				if (buffered == 0) {
+					if (error != null)
+						throw error;
+					return -1;
+				}
+				while (n < len && !frames.isEmpty()) {
+					final byte[] frame = (byte[]) frames.getFirst();
+					final int count = Math.min(len - n, frame.length - position);
+					System.arraycopy(frame, position, b, off + n, count);
+					position += count;
+					n += count;
+					if (position == frame.length) {
+						frames.removeFirst();
+						position = HEADER_LENGTH;
+					}
+				}
+				buffered -= n;
+				consumed += n;
+				if (consumed >= windowSize / 2 && !eof && error == null) {
+					grant = consumed;
+					credit += grant;
+					consumed = 0;
+				}
+			}
+			if (grant > 0)
+				sendCredit(key, grant);
+			return n;
+		}
+
+		public synchronized int available() throws IOException {
+			if (closed)
+				throw new IOException("Stream closed"); //$NON-NLS-1$
+			return buffered;
+		}
+
+		public void close() throws IOException {
+			final boolean cancel;
+			synchronized (this) {
+				if (closed)
+					return;
+				closed = true;
+				cancel = !eof && error == null;
+				frames.clear();
+				buffered = 0;
+				notifyAll();
+			}
+			synchronized (incoming) {
+				incoming.remove(key);
+			}
+			if (cancel)
+				send(key.fromID, createFrame(CANCEL, key.streamId, 0));
+		}
+	}
+
+	final class OutgoingStream extends OutputStream {
+
+		final ID receiver;
+
+		final long streamId;
+
+		private byte[] frame;
+
+		private int count = HEADER_LENGTH;
+
+		private boolean opened;
+
+		private boolean closed;
+
+		// guards members, credits, sent, lastGrant and error
+		private final Object creditLock = new Object();
+
+		// IDs of the receivers that limit the pace of the stream
+		private final Set members = new HashSet();
+
+		// receiver ID -> long[1] credit granted in total
+		private final Map credits = new HashMap();
+
+		// bytes sent in total
+		private long sent;
+
+		private long lastGrant;
+
+		private IOException error;
+
+		OutgoingStream(ID receiver, long streamId) {
+			this.receiver = receiver;
+			this.streamId = streamId;
+			this.frame = createFrame(DATA, streamId, chunkSize);
+			if (receiver != null)
+				members.add(receiver);
+			else {
+				synchronized (receivers) {
+					members.addAll(receivers);
+				}
+			}
+		}
+
+		void grant(ID fromID, int credit) {
+			synchronized (creditLock) {
+				if (receiver != null && !receiver.equals(fromID))
+					return;
+				members.add(fromID);
+				final long[] c = (long[]) credits.get(fromID);
+				if (c == null)
+					credits.put(fromID, new long[] {credit});
+				else
+					c[0] += credit;
+				lastGrant = System.currentTimeMillis();
+				creditLock.notifyAll();
+			}
+		}
+
+		void cancel(ID fromID) {
+			synchronized (creditLock) {
+				if (receiver != null) {
+					if (receiver.equals(fromID) && error == null)
+						error = new IOException("Stream closed by receiver"); //$NON-NLS-1$
+				} else if (members.remove(fromID) && members.isEmpty() && error == null) {
+					error = new IOException("Stream closed by all receivers"); //$NON-NLS-1$
+				} else {
+					credits.remove(fromID);
+				}
+				creditLock.notifyAll();
+			}
+		}
+
+		void fail(IOException e) {
+			synchronized (creditLock) {
+				if (error == null)
+					error = e;
+				creditLock.notifyAll();
+			}
+		}
+
+		private void acquire(int n) throws IOException {
+			final long timeout = getCreditTimeout();
+			synchronized (creditLock) {
+				final long start = System.currentTimeMillis();
+				while (true) {
+					if (error != null)
+						throw error;
+					if (!members.isEmpty() && getMinimumCredit() >= n) {
+						sent += n;
+						return;
+					}
+					// time out only if no receiver granted credit for a while
+					final long wait = Math.max(start, lastGrant) + timeout - System.currentTimeMillis();
+					if (wait <= 0 && !removeSilentMembers())
+						throw new IOException("Timed out waiting for receiver to accept data"); //$NON-NLS-1$
+					if (wait <= 0)
+						continue;
+					try {
+						creditLock.wait(wait);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException();
+					}
+				}
+			}
+		}
+
+		private long getMinimumCredit() {
+			long min = Long.MAX_VALUE;
+			for (final Iterator i = members.iterator(); i.hasNext();) {
+				final long[] c = (long[]) credits.get(i.next());
+				// members that did not grant credit yet have none
+				min = Math.min(min, (c == null) ? 0 : c[0] - sent);
+			}
+			return min;
+		}
+
+		/**
+		 * Stop waiting for group members that never granted credit for this
+		 * stream, because they do not use a stream share on this channel anymore.
+		 *
+		 * @return <code>true</code> if members were removed and the stream
+		 * still has receivers
+		 */
+		private boolean removeSilentMembers() {
+			if (receiver != null)
+				return false;
+			boolean removed = false;
+			for (final Iterator i = members.iterator(); i.hasNext();) {
+				final ID member = (ID) i.next();
+				if (!credits.containsKey(member)) {
+					i.remove();
+					synchronized (receivers) {
+						receivers.remove(member);
+					}
+					removed = true;
+				}
+			}
+			return removed && !members.isEmpty();
+		}
+
+		private void open() throws IOException {
+			if (opened)
+				return;
+			synchronized (outgoing) {
+				outgoing.put(Long.valueOf(streamId), this);
+			}
+			opened = true;
+			send(receiver, createFrame(OPEN, streamId, 0));
+		}
+
+		private void sendChunk() throws IOException {
+			open();
+			final int n = count - HEADER_LENGTH;
+			acquire(n);
+			byte[] data = frame;
+			if (count < data.length) {
+				data = new byte[count];
+				System.arraycopy(frame, 0, data, 0, count);
+			} else {
+				// the transport may still refer to the array
+				frame = createFrame(DATA, streamId, chunkSize);
+			}
+			count = HEADER_LENGTH;
+			send(receiver, data);
+		}
+
+		private void checkOpen() throws IOException {
+			if (closed)
+				throw new IOException("Stream closed"); //$NON-NLS-1$
+			synchronized (creditLock) {
+				if (error != null)
+					throw error;
+			}
+		}
+
+		public synchronized void write(int b) throws IOException {
+			checkOpen();
+			frame[count++] = (byte) b;
+			if (count == frame.length)
+				sendChunk();
+		}
+
+		public synchronized void write(byte[] b, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || len > b.length - off)
+				throw new IndexOutOfBoundsException();
+			checkOpen();
+			while (len > 0) {
+				final int n = Math.min(len, frame.length - count);
+				System.arraycopy(b, off, frame, count, n);
+				count += n;
+				off += n;
+				len -= n;
+				if (count == frame.length)
+					sendChunk();
+			}
+		}
+
+		public synchronized void flush() throws IOException {
+			checkOpen();
+			if (count > HEADER_LENGTH)
+				sendChunk();
+		}
+
+		public synchronized void close() throws IOException {
+			if (closed)
+				return;
+			try {
+				flush();
+				open();
+				send(receiver, createFrame(CLOSE, streamId, 0));
+			} catch (final IOException e) {
+				if (opened)
+					abort();
+				throw e;
+			} finally {
+				closed = true;
+				synchronized (outgoing) {
+					outgoing.remove(Long.valueOf(streamId));
+				}
+			}
+		}
+
+		private void abort() {
+			try {
+				send(receiver, createFrame(ABORT, streamId, 0));
+			} catch (final IOException e) {
+				// receivers will see the disconnect instead
+			}
+		}
+	}
+}
@@ -19,8 +19,8 @@ package org.eclipse.ecf.docshare;
 import org.eclipse.ecf.internal.docshare.Messages;
 
 import java.io.*;
-import java.util.Collections;
-import java.util.Map;
+import java.util.*;
+import java.util.List;
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.*;
@@ -38,8 +38,7 @@ import org.eclipse.ecf.internal.docshare.*;
 import org.eclipse.ecf.presence.IPresenceContainerAdapter;
 import org.eclipse.ecf.presence.roster.*;
 import org.eclipse.ecf.sync.*;
-import org.eclipse.ecf.sync.doc.DocumentChangeMessage;
-import org.eclipse.ecf.sync.doc.IDocumentSynchronizationStrategyFactory;
+import org.eclipse.ecf.sync.doc.*;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.text.*;
 import org.eclipse.jface.text.source.*;
@@ -149,6 +148,33 @@ public class DocShare extends AbstractShare {
 
 	}
 
+	/**
+	 * Time in milliseconds that local changes are held back so that they can
+	 * be merged with the changes that follow them. A value of 0 sends every
+	 * change right away.
+	 */
+	static final int COALESCE_WINDOW = Integer.getInteger("org.eclipse.ecf.docshare.coalesceWindow", 40).intValue(); //$NON-NLS-1$
+
+	/**
+	 * Maximum number of separate local changes held back, e.g. while a format
+	 * operation changes many lines.
+	 */
+	static final int MAX_PENDING_CHANGES = 256;
+
+	/**
+	 * First byte of a channel message carrying several serialized messages.
+	 * Java serialization streams start with 0xAC.
+	 */
+	private static final byte BATCH = 0x42;
+
+	/**
+	 * Whether the changes of one window are sent in a single channel message.
+	 * Peers running a version before 3.2 cannot read such messages, so they
+	 * are only sent if this has been enabled on all sites. Received batches
+	 * are always handled.
+	 */
+	static final boolean BATCH_MESSAGES = Boolean.getBoolean("org.eclipse.ecf.docshare.batchMessages"); //$NON-NLS-1$
+
 	/**
 	 * The ID of the initiator 
 	 */
@@ -194,6 +220,24 @@ public class DocShare extends AbstractShare {
 	 */
 	SelectionReceiver selectionReceiver;
 
+	/**
+	 * Local changes that have not been registered with the syncStrategy and
+	 * sent yet. Also used as lock to keep registration and sending in order.
+	 */
+	final DocumentChangeCoalescer localChanges = new DocumentChangeCoalescer();
+
+	/**
+	 * Whether a flush of the localChanges has been scheduled. Guarded by
+	 * localChanges.
+	 */
+	boolean flushScheduled;
+
+	final Runnable flushRunnable = new Runnable() {
+		public void run() {
+			flushLocalChanges();
+		}
+	};
+
 	/**
 	 * Create a document sharing session instance.
 	 * 
@@ -298,22 +342,106 @@ public class DocShare extends AbstractShare {
 			}
 			Trace.trace(Activator.PLUGIN_ID, NLS.bind("{0}.documentChanged[{1}]", DocShare.this, event)); //$NON-NLS-1$
 
-			// SYNC API.  Here is entry point usage of sync API.  When a local document is changed by an editor,
-			// this method will be called and the following code executed.  This code registers a DocumentChange
-			// with the local syncStrategy instance via syncStrategy.registerLocalChange(IModelChange).
-			// Model change messages returned from the registerLocalChange call are then sent (via ECF datashare channel)
-			// to remote participant.
-			IModelChangeMessage changeMessages[] = syncStrategy.registerLocalChange(new DocumentChangeMessage(event.getOffset(), event.getLength(), event.getText()));
-			for (int i = 0; i < changeMessages.length; i++) {
-				try {
-					sendMessage(getOtherID(), changeMessages[i].serialize());
-				} catch (final Exception e) {
-					logError(Messages.DocShare_EXCEPTION_SEND_MESSAGE, e);
+			// Keystrokes arrive as separate events.  They are collected for COALESCE_WINDOW ms
+			// and adjacent ones merged, before they are registered with the syncStrategy in
+			// flushLocalChanges.
+			final boolean flushNow;
+			synchronized (localChanges) {
+				localChanges.add(new DocumentChangeMessage(event.getOffset(), event.getLength(), event.getText()));
+				flushNow = COALESCE_WINDOW <= 0 || localChanges.size() >= MAX_PENDING_CHANGES;
+				if (!flushNow && !flushScheduled) {
+					flushScheduled = true;
+					scheduleFlush();
 				}
 			}
+			if (flushNow)
+				flushLocalChanges();
 		}
 	};
 
+	void scheduleFlush() {
+		final Display display = Display.getCurrent();
+		if (display != null) {
+			display.timerExec(COALESCE_WINDOW, flushRunnable);
+		} else {
+			Display.getDefault().asyncExec(new Runnable() {
+				public void run() {
+					Display.getCurrent().timerExec(COALESCE_WINDOW, flushRunnable);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Register all pending local changes with the syncStrategy and send the
+	 * resulting messages to the remote participant, in one channel message if
+	 * {@link #BATCH_MESSAGES} is set. Must be called before a remote change is applied to the local document,
+	 * and before anything that refers to the current content of the local
+	 * document is sent.
+	 */
+	void flushLocalChanges() {
+		synchronized (localChanges) {
+			flushScheduled = false;
+			final IDocumentChange[] changes = localChanges.flush();
+			final IModelSynchronizationStrategy strategy = syncStrategy;
+			if (changes.length == 0 || strategy == null || !isSharing())
+				return;
+			// SYNC API.  Here is entry point usage of sync API.  When a local document is changed by an editor,
+			// the change is registered with the local syncStrategy instance via
+			// syncStrategy.registerLocalChange(IModelChange).  Model change messages returned from the
+			// registerLocalChange call are then sent (via ECF datashare channel) to remote participant.
+			final List serialized = new ArrayList();
+			try {
+				for (int i = 0; i < changes.length; i++) {
+					final IModelChangeMessage changeMessages[] = strategy.registerLocalChange(changes[i]);
+					for (int j = 0; j < changeMessages.length; j++)
+						serialized.add(changeMessages[j].serialize());
+				}
+				if (BATCH_MESSAGES && serialized.size() > 1) {
+					sendMessage(getOtherID(), encodeBatch(serialized));
+				} else {
+					for (final Iterator i = serialized.iterator(); i.hasNext();)
+						sendMessage(getOtherID(), (byte[]) i.next());
+				}
+			} catch (final Exception e) {
+				logError(Messages.DocShare_EXCEPTION_SEND_MESSAGE, e);
+			}
+		}
+	}
+
+	static byte[] encodeBatch(List messages) {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(bos);
+		try {
+			dos.writeByte(BATCH);
+			dos.writeInt(messages.size());
+			for (final Iterator i = messages.iterator(); i.hasNext();) {
+				final byte[] message = (byte[]) i.next();
+				dos.writeInt(message.length);
+				dos.write(message);
+			}
+		} catch (final IOException e) {
+			// not thrown by ByteArrayOutputStream
+		}
+		return bos.toByteArray();
+	}
+
+	static byte[][] decodeBatch(byte[] data) throws IOException {
+		final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data, 1, data.length - 1));
+		final int count = dis.readInt();
+		if (count < 0 || count > data.length)
+			throw new InvalidObjectException(Messages.DocShare_EXCEPTION_DESERIALIZING_MESSAGE0);
+		final byte[][] messages = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			final int length = dis.readInt();
+			if (length < 0 || length > dis.available())
+				throw new InvalidObjectException(Messages.DocShare_EXCEPTION_DESERIALIZING_MESSAGE0);
+			messages[i] = new byte[length];
+			dis.readFully(messages[i]);
+		}
+		return messages;
+	}
+
 	ISelectionChangedListener selectionListener = new ISelectionChangedListener() {
 
 		public void selectionChanged(final SelectionChangedEvent event) {
@@ -335,6 +463,8 @@ public class DocShare extends AbstractShare {
 			}
 			final ITextSelection textSelection = (ITextSelection) event.getSelection();
 			final SelectionMessage msg = new SelectionMessage(textSelection.getOffset(), textSelection.getLength());
+			// the selection refers to the document including pending changes
+			flushLocalChanges();
 
 			try {
 				sendMessage(getOtherID(), msg.serialize());
@@ -397,6 +527,7 @@ public class DocShare extends AbstractShare {
 	public void stopShare() {
 		Trace.entering(Activator.PLUGIN_ID, DocshareDebugOptions.METHODS_ENTERING, this.getClass(), "stopShare"); //$NON-NLS-1$
 		if (isSharing()) {
+			flushLocalChanges();
 			// send stop message to other
 			sendStopMessage();
 			syncStrategy = null;
@@ -413,7 +544,11 @@ public class DocShare extends AbstractShare {
 	 */
 	protected void handleMessage(ID fromContainerID, byte[] data) {
 		try {
-			final IModelChangeMessage message = Message.deserialize(data);
+			if (data.length > 0 && data[0] == BATCH) {
+				handleBatch(fromContainerID, decodeBatch(data));
+				return;
+			}
+			final IModelChangeMessage message = deserialize(data);
 			Assert.isNotNull(message);
 
 			if (message instanceof DocumentChangeMessage) {
@@ -435,6 +570,53 @@ public class DocShare extends AbstractShare {
 		}
 	}
 
+	/**
+	 * Handle the messages of a batch in order. Consecutive document changes
+	 * are transformed and applied together.
+	 * 
+	 * @param fromContainerID
+	 *            the sender of the batch
+	 * @param messages
+	 *            the serialized messages of the batch
+	 */
+	void handleBatch(ID fromContainerID, byte[][] messages) {
+		List changes = new ArrayList();
+		for (int i = 0; i < messages.length; i++) {
+			final IModelChangeMessage message;
+			try {
+				message = deserialize(messages[i]);
+			} catch (final Exception e) {
+				logError(Messages.DocShare_EXCEPTION_HANDLE_MESSAGE, e);
+				continue;
+			}
+			if (message instanceof DocumentChangeMessage) {
+				changes.add(message);
+				continue;
+			}
+			if (!changes.isEmpty()) {
+				handleUpdateMessages(changes);
+				changes = new ArrayList();
+			}
+			handleMessage(fromContainerID, messages[i]);
+		}
+		if (!changes.isEmpty())
+			handleUpdateMessages(changes);
+	}
+
+	IModelChangeMessage deserialize(byte[] data) throws SerializationException, InvalidObjectException {
+		// Messages of this bundle use java serialization, document changes may
+		// use an encoding of the syncStrategy
+		if (data.length > 1 && data[0] == (byte) 0xAC && data[1] == (byte) 0xED)
+			return Message.deserialize(data);
+		final IModelSynchronizationStrategy strategy = syncStrategy;
+		if (strategy == null)
+			throw new InvalidObjectException(Messages.DocShare_EXCEPTION_DESERIALIZING_MESSAGE0);
+		final IModelChange change = strategy.deserializeRemoteChange(data);
+		if (!(change instanceof IModelChangeMessage))
+			throw new InvalidObjectException(NLS.bind(Messages.DocShare_EXCEPTION_INVALID_MESSAGE, String.valueOf(change)));
+		return (IModelChangeMessage) change;
+	}
+
 	/**
 	 * This method called by the {@link #handleMessage(ID, byte[])} method if
 	 * the type of the message received is a start message (sent by remote party
@@ -530,12 +712,27 @@ public class DocShare extends AbstractShare {
 	 *            the UpdateMessage received.
 	 */
 	protected void handleUpdateMessage(final DocumentChangeMessage documentChangeMessage) {
+		handleUpdateMessages(Collections.singletonList(documentChangeMessage));
+	}
+
+	/**
+	 * Apply document changes received together to the local document, or to
+	 * the start content if the user has not accepted the share yet.
+	 * 
+	 * @param documentChangeMessages
+	 *            the DocumentChangeMessages received, in the order they were
+	 *            sent.
+	 */
+	void handleUpdateMessages(final List documentChangeMessages) {
 		synchronized (stateLock) {
 			// If we're waiting on user to start then change the
 			// startContent
 			// directly
 			if (startContent != null) {
-				modifyStartContent(documentChangeMessage.getOffset(), documentChangeMessage.getLengthOfReplacedText(), documentChangeMessage.getText());
+				for (final Iterator i = documentChangeMessages.iterator(); i.hasNext();) {
+					final DocumentChangeMessage documentChangeMessage = (DocumentChangeMessage) i.next();
+					modifyStartContent(documentChangeMessage.getOffset(), documentChangeMessage.getLengthOfReplacedText(), documentChangeMessage.getText());
+				}
 				// And we're done
 				return;
 			}
@@ -544,17 +741,19 @@ public class DocShare extends AbstractShare {
 		Display.getDefault().asyncExec(new Runnable() {
 			public void run() {
 				try {
-					Trace.entering(Activator.PLUGIN_ID, DocshareDebugOptions.METHODS_ENTERING, this.getClass(), "handleUpdateMessage", documentChangeMessage); //$NON-NLS-1$
+					Trace.entering(Activator.PLUGIN_ID, DocshareDebugOptions.METHODS_ENTERING, this.getClass(), "handleUpdateMessage", documentChangeMessages); //$NON-NLS-1$
 					final IDocument document = getDocumentFromEditor();
 
 					if (document != null) {
+						// local changes must be known to the syncStrategy before remote ones are transformed
+						flushLocalChanges();
 						Trace.trace(Activator.PLUGIN_ID, NLS.bind("{0}.handleUpdateMessage calling transformIncomingMessage", DocShare.this)); //$NON-NLS-1$
 
-						// SYNC API.  Here a document change message has been received from remote via channel,
-						// and is now passed to the syncStrategy for transformation.  The returned IModelChange[]
+						// SYNC API.  Here document change messages have been received from remote via channel,
+						// and are now passed to the syncStrategy for transformation.  The returned IModelChange[]
 						// are then applied to the local document (after the synchronization strategy as transformed
 						// them as necessary).
-						IModelChange modelChanges[] = syncStrategy.transformRemoteChange(documentChangeMessage);
+						IModelChange modelChanges[] = transformRemoteChanges(syncStrategy, documentChangeMessages);
 
 						// Make editor refuse input while we are applying changes
 						setEditorToRefuseInput();
@@ -577,6 +776,21 @@ public class DocShare extends AbstractShare {
 		});
 	}
 
+	/**
+	 * Transform remote changes with the given strategy, together if it is an
+	 * {@link IBatchModelSynchronizationStrategy}.
+	 */
+	static IModelChange[] transformRemoteChanges(IModelSynchronizationStrategy strategy, List remoteChanges) {
+		if (remoteChanges.size() == 1)
+			return strategy.transformRemoteChange((IModelChange) remoteChanges.get(0));
+		if (strategy instanceof IBatchModelSynchronizationStrategy)
+			return ((IBatchModelSynchronizationStrategy) strategy).transformRemoteChanges((IModelChange[]) remoteChanges.toArray(new IModelChange[remoteChanges.size()]));
+		final List result = new ArrayList();
+		for (final Iterator i = remoteChanges.iterator(); i.hasNext();)
+			result.addAll(Arrays.asList(strategy.transformRemoteChange((IModelChange) i.next())));
+		return (IModelChange[]) result.toArray(new IModelChange[result.size()]);
+	}
+
 	/**
 	 * @param message
 	 */
@@ -751,6 +965,7 @@ public class DocShare extends AbstractShare {
 			this.initiatorID = null;
 			this.receiverID = null;
 			this.startContent = null;
+			localChanges.clear();
 			final IDocument doc = getDocumentFromEditor();
 			if (doc != null)
 				doc.removeDocumentListener(documentListener);
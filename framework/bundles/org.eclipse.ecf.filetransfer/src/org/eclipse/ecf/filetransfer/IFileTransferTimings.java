@@ -0,0 +1,83 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.filetransfer;
+
+/**
+ * Timing record for a single file transfer, available from
+ * {@link org.eclipse.ecf.filetransfer.events.IIncomingFileTransferReceiveDoneEvent#getTimings()}
+ * and
+ * {@link org.eclipse.ecf.filetransfer.events.IOutgoingFileTransferSendDoneEvent#getTimings()}.
+ * <p>
+ * All times are in milliseconds. Phases that a provider cannot observe, or
+ * that did not occur (e.g. TLS for a plain http connection), are reported as
+ * {@link #UNKNOWN}. Phases that were skipped because a pooled connection was
+ * reused are reported as 0.
+ * </p>
+ * 
+ * @since 5.2
+ */
+public interface IFileTransferTimings {
+
+	/**
+	 * Value returned for phases that were not measured.
+	 */
+	public static final long UNKNOWN = -1;
+
+	/**
+	 * @return time spent resolving the remote host name, or {@link #UNKNOWN}
+	 */
+	public long getDnsLookupTime();
+
+	/**
+	 * @return time spent establishing the connection to the remote host,
+	 *         excluding DNS lookup and TLS handshake, or {@link #UNKNOWN}
+	 */
+	public long getConnectTime();
+
+	/**
+	 * @return time spent in the TLS (or other secure channel) handshake, or
+	 *         {@link #UNKNOWN}
+	 */
+	public long getTLSHandshakeTime();
+
+	/**
+	 * @return time from the start of the request until the first byte of the
+	 *         response was received (for retrieve) or the first byte was
+	 *         written (for send), or {@link #UNKNOWN}
+	 */
+	public long getTimeToFirstByte();
+
+	/**
+	 * @return time from the start of the request until the transfer was done,
+	 *         or {@link #UNKNOWN} if the transfer is not done
+	 */
+	public long getTotalTime();
+
+	/**
+	 * @return the number of bytes transferred
+	 */
+	public long getBytesTransferred();
+
+	/**
+	 * @return total time spent in reads or writes that blocked for longer than
+	 *         the provider's stall threshold
+	 */
+	public long getStallTime();
+
+	/**
+	 * @return the number of times a request, connect or read was retried,
+	 *         including redirects and authentication challenges
+	 */
+	public int getRetryCount();
+}
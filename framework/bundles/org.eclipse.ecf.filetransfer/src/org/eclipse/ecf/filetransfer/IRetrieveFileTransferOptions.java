@@ -44,4 +44,23 @@ public interface IRetrieveFileTransferOptions {
 	 * associated with this key is of type Integer, or String value of an Integer.
 	 */
 	public static final String READ_TIMEOUT = IRetrieveFileTransferOptions.class.getName() + ".readTimeout"; //$NON-NLS-1$
+
+	/**
+	 * This constant defines a key in options Map passed to {@link IRetrieveFileTransferContainerAdapter#sendRetrieveRequest(org.eclipse.ecf.filetransfer.identity.IFileID, IFileTransferListener, java.util.Map)}.
+	 * Supporting providers will use this key to look for the expected message digest of the retrieved content, and
+	 * if found the digest will be computed while the content is received.  If the computed digest does not match, the transfer
+	 * completes with an {@link InvalidChecksumException}.  For ranged requests the digest covers only the requested range.
+	 * The expected type of the value associated with this key is a hex encoded String or a byte[].
+	 * @since 5.2
+	 */
+	public static final String EXPECTED_DIGEST = IRetrieveFileTransferOptions.class.getName() + ".expectedDigest"; //$NON-NLS-1$
+
+	/**
+	 * This constant defines a key in options Map passed to {@link IRetrieveFileTransferContainerAdapter#sendRetrieveRequest(org.eclipse.ecf.filetransfer.identity.IFileID, IFileTransferListener, java.util.Map)}.
+	 * Supporting providers will use this key to look for the name of the {@link java.security.MessageDigest} algorithm
+	 * used to compute the digest given via {@link #EXPECTED_DIGEST}.  The expected type of the value associated with this key
+	 * is of type String (e.g. "SHA-256" or "MD5").  If not present, "SHA-256" is used.
+	 * @since 5.2
+	 */
+	public static final String DIGEST_ALGORITHM = IRetrieveFileTransferOptions.class.getName() + ".digestAlgorithm"; //$NON-NLS-1$
 }
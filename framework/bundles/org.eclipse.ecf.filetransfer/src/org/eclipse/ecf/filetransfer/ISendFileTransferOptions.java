@@ -18,5 +18,23 @@ package org.eclipse.ecf.filetransfer;
  * @noimplement This interface is not intended to be implemented by clients.
  */
 public interface ISendFileTransferOptions {
-	// Nothing
+
+	/**
+	 * This constant defines a key in options Map passed to {@link ISendFileTransferContainerAdapter#sendOutgoingRequest(org.eclipse.ecf.filetransfer.identity.IFileID, IFileTransferInfo, IFileTransferListener, java.util.Map)}.
+	 * Supporting providers will use this key to look for a chunk size in bytes, and if found the local file will be
+	 * sent as a sequence of independently acknowledged chunks of at most this size.  A transfer sent in chunks can be
+	 * paused and resumed via {@link IFileTransferPausable}, and after a failure can be resumed from the last acknowledged
+	 * chunk.  The expected type of the value associated with this key is of type Integer, Long, or String value of a Long.
+	 * @since 5.2
+	 */
+	public static final String CHUNK_SIZE = ISendFileTransferOptions.class.getName() + ".chunkSize"; //$NON-NLS-1$
+
+	/**
+	 * This constant defines a key in options Map passed to {@link ISendFileTransferContainerAdapter#sendOutgoingRequest(org.eclipse.ecf.filetransfer.identity.IFileID, IFileTransferInfo, IFileTransferListener, java.util.Map)}.
+	 * Supporting providers will use this key to look for the offset in the local file to start sending from, e.g. the
+	 * number of bytes acknowledged by the receiver before a previous upload was interrupted.  The expected type of the
+	 * value associated with this key is of type Integer, Long, or String value of a Long.
+	 * @since 5.2
+	 */
+	public static final String RESUME_OFFSET = ISendFileTransferOptions.class.getName() + ".resumeOffset"; //$NON-NLS-1$
 }
@@ -0,0 +1,54 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.filetransfer;
+
+/**
+ * Exception reported by a retrieve file transfer when the digest of the
+ * received content does not match the digest given via
+ * {@link IRetrieveFileTransferOptions#EXPECTED_DIGEST}.
+ * 
+ * @since 5.2
+ */
+public class InvalidChecksumException extends IncomingFileTransferException {
+
+	private static final long serialVersionUID = -3196407255618734521L;
+
+	private final String algorithm;
+	private final String expectedDigest;
+	private final String actualDigest;
+
+	/**
+	 * @param message message
+	 * @param algorithm the digest algorithm
+	 * @param expectedDigest hex encoded expected digest
+	 * @param actualDigest hex encoded digest of the received content
+	 */
+	public InvalidChecksumException(String message, String algorithm, String expectedDigest, String actualDigest) {
+		super(message);
+		this.algorithm = algorithm;
+		this.expectedDigest = expectedDigest;
+		this.actualDigest = actualDigest;
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public String getExpectedDigest() {
+		return expectedDigest;
+	}
+
+	public String getActualDigest() {
+		return actualDigest;
+	}
+}
@@ -11,6 +11,7 @@
  *****************************************************************************/
 package org.eclipse.ecf.filetransfer.events;
 
+import org.eclipse.ecf.filetransfer.IFileTransferTimings;
 import org.eclipse.ecf.filetransfer.UserCancelledException;
 
 /**
@@ -36,4 +37,15 @@ public interface IIncomingFileTransferReceiveDoneEvent extends IIncomingFileTran
 	 */
 	public Exception getException();
 
+	/**
+	 * Get the timing record for this file transfer.
+	 * 
+	 * @return timings for this transfer, or <code>null</code> if the provider
+	 *         does not support timing instrumentation
+	 * @since 5.2
+	 */
+	default IFileTransferTimings getTimings() {
+		return null;
+	}
+
 }
@@ -12,6 +12,7 @@
 package org.eclipse.ecf.filetransfer.events;
 
 import org.eclipse.ecf.filetransfer.IFileTransferListener;
+import org.eclipse.ecf.filetransfer.IFileTransferTimings;
 import org.eclipse.ecf.filetransfer.IOutgoingFileTransfer;
 
 /**
@@ -20,6 +21,16 @@ import org.eclipse.ecf.filetransfer.IOutgoingFileTransfer;
  * 
  */
 public interface IOutgoingFileTransferSendDoneEvent extends IOutgoingFileTransferEvent {
-	// no methods for interface
+
+	/**
+	 * Get the timing record for this file transfer.
+	 * 
+	 * @return timings for this transfer, or <code>null</code> if the provider
+	 *         does not support timing instrumentation
+	 * @since 5.2
+	 */
+	default IFileTransferTimings getTimings() {
+		return null;
+	}
 
 }
@@ -0,0 +1,56 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.filetransfer.service;
+
+/**
+ * File transfer metrics service. Providers that support timing
+ * instrumentation register an instance of this service, and record the
+ * {@link org.eclipse.ecf.filetransfer.IFileTransferTimings} of every completed
+ * transfer with it. Statistics are aggregated per protocol (url scheme) and
+ * direction.
+ * 
+ * @since 5.2
+ */
+public interface IFileTransferMetrics {
+
+	/**
+	 * @return the protocols for which statistics have been recorded. Will not
+	 *         be <code>null</code>.
+	 */
+	public String[] getProtocols();
+
+	/**
+	 * Get retrieve statistics.
+	 * 
+	 * @param protocol
+	 *            the protocol, or <code>null</code> for all protocols
+	 * @return statistics for completed retrieves. Will not be
+	 *         <code>null</code>.
+	 */
+	public IFileTransferStatistics getRetrieveStatistics(String protocol);
+
+	/**
+	 * Get send statistics.
+	 * 
+	 * @param protocol
+	 *            the protocol, or <code>null</code> for all protocols
+	 * @return statistics for completed sends. Will not be <code>null</code>.
+	 */
+	public IFileTransferStatistics getSendStatistics(String protocol);
+
+	/**
+	 * Discard all recorded statistics.
+	 */
+	public void reset();
+}
@@ -0,0 +1,59 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.filetransfer.service;
+
+/**
+ * Aggregated {@link org.eclipse.ecf.filetransfer.IFileTransferTimings} for a
+ * set of completed file transfers. All times are in milliseconds. Averages
+ * only include transfers for which the respective phase was measured, and are
+ * -1 if no transfer measured it.
+ * 
+ * @since 5.2
+ */
+public interface IFileTransferStatistics {
+
+	/**
+	 * @return number of completed transfers, successful or not
+	 */
+	public long getTransferCount();
+
+	/**
+	 * @return number of transfers that completed with an exception
+	 */
+	public long getFailureCount();
+
+	public long getBytesTransferred();
+
+	public long getTotalTime();
+
+	public long getStallTime();
+
+	public long getRetryCount();
+
+	public long getAverageDnsLookupTime();
+
+	public long getAverageConnectTime();
+
+	public long getAverageTLSHandshakeTime();
+
+	public long getAverageTimeToFirstByte();
+
+	public long getMaxTimeToFirstByte();
+
+	/**
+	 * @return bytes transferred divided by total transfer time, in
+	 *         bytes/second. 0 if nothing was transferred.
+	 */
+	public double getThroughput();
+}
@@ -80,6 +80,37 @@ public abstract class AbstractRosterManager implements IRosterManager {
 
 	}
 
+	/**
+	 * Notify listeners about entries added and removed by one roster change.
+	 * {@link IRosterBatchListener}s are notified once, other listeners once
+	 * per removed and then once per added entry.
+	 *
+	 * @param added
+	 *            the entries added. Must not be <code>null</code>.
+	 * @param removed
+	 *            the entries removed. Must not be <code>null</code>.
+	 * @since 2.3
+	 */
+	protected void fireRosterEntriesChanged(IRosterEntry[] added, IRosterEntry[] removed) {
+		if (added.length == 0 && removed.length == 0)
+			return;
+		List toNotify = null;
+		synchronized (rosterUpdateListeners) {
+			toNotify = new ArrayList(rosterUpdateListeners);
+		}
+		for (Iterator i = toNotify.iterator(); i.hasNext();) {
+			IRosterListener l = (IRosterListener) i.next();
+			if (l instanceof IRosterBatchListener) {
+				((IRosterBatchListener) l).handleRosterEntriesChanged(added, removed);
+			} else {
+				for (int j = 0; j < removed.length; j++)
+					l.handleRosterEntryRemove(removed[j]);
+				for (int j = 0; j < added.length; j++)
+					l.handleRosterEntryAdd(added[j]);
+			}
+		}
+	}
+
 	protected void fireSubscriptionListener(ID fromID, IPresence.Type presencetype) {
 		List toNotify = null;
 		synchronized (rosterSubscriptionListeners) {
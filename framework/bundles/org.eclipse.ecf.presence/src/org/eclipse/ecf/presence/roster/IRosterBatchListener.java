@@ -0,0 +1,44 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.presence.roster;
+
+/**
+ * Roster listener that receives the entries added to and removed from the
+ * roster by a single roster change in one notification.
+ * <p>
+ * </p>
+ * Roster managers notify listeners implementing this interface through
+ * {@link #handleRosterEntriesChanged(IRosterEntry[], IRosterEntry[])} instead
+ * of calling {@link #handleRosterEntryAdd(IRosterEntry)} and
+ * {@link #handleRosterEntryRemove(IRosterEntry)} for every entry. Listeners
+ * implementing only {@link IRosterListener} still get one notification per
+ * entry. The threading notes of {@link IRosterListener} apply to this method as
+ * well.
+ *
+ * @since 2.3
+ */
+public interface IRosterBatchListener extends IRosterListener {
+
+	/**
+	 * Notification that roster entries have been added and/or removed.
+	 *
+	 * @param added
+	 *            the entries that have been added. Will not be
+	 *            <code>null</code>, but may be empty.
+	 * @param removed
+	 *            the entries that have been removed. Will not be
+	 *            <code>null</code>, but may be empty.
+	 */
+	public void handleRosterEntriesChanged(IRosterEntry[] added, IRosterEntry[] removed);
+
+}
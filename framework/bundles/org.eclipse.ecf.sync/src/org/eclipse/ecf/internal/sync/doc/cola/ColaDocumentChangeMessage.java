@@ -13,11 +13,14 @@
 
 package org.eclipse.ecf.internal.sync.doc.cola;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.List;
 import org.eclipse.ecf.core.util.Trace;
 import org.eclipse.ecf.internal.sync.Activator;
 import org.eclipse.ecf.internal.sync.SyncDebugOptions;
+import org.eclipse.ecf.sync.SerializationException;
 import org.eclipse.ecf.sync.doc.DocumentChangeMessage;
 
 public class ColaDocumentChangeMessage extends DocumentChangeMessage {
@@ -28,6 +31,18 @@ public class ColaDocumentChangeMessage extends DocumentChangeMessage {
 	public static final int TRANSFORM_TYPE_DELETE = 1;
 	public static final int TRANSFORM_TYPE_REPLACE = 2;
 
+	// First byte of the compact encoding written by serializeCompact(). Java
+	// serialization streams start with 0xAC, so both can be told apart.
+	private static final byte COMPACT_ENCODING = 0x43;
+
+	/**
+	 * Whether {@link #serialize()} writes the compact encoding. Peers running
+	 * a version before 2.2 can only read java serialization, so the compact
+	 * encoding is only used if this has been enabled on all sites.
+	 */
+	public static final boolean COMPACT_SERIALIZATION = Boolean
+			.getBoolean("org.eclipse.ecf.sync.cola.compactEncoding"); //$NON-NLS-1$
+
 	// TODO encapsulate in a new ColaOpOriginationState and re-implement equals,
 	// hashCode, i.e. make comparable
 	private final long localOperationsCount;
@@ -120,6 +135,89 @@ public class ColaDocumentChangeMessage extends DocumentChangeMessage {
 		return buf.toString();
 	}
 
+	/**
+	 * Serialize this message with java serialization, or with
+	 * {@link #serializeCompact()} if {@link #COMPACT_SERIALIZATION} is set.
+	 */
+	public byte[] serialize() throws SerializationException {
+		return COMPACT_SERIALIZATION ? serializeCompact() : super.serialize();
+	}
+
+	/**
+	 * Serialize this message in a compact binary form: a tag byte, offset,
+	 * length and operation counts as variable length integers, followed by
+	 * the UTF-8 encoded text. A single keystroke takes less than ten bytes.
+	 * 
+	 * @return the serialized message. Will not be <code>null</code>.
+	 */
+	public byte[] serializeCompact() {
+		final byte[] text = getText().getBytes(StandardCharsets.UTF_8);
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream(text.length + 24);
+		bos.write(COMPACT_ENCODING);
+		writeVarLong(bos, getOffset());
+		writeVarLong(bos, getLengthOfReplacedText());
+		writeVarLong(bos, localOperationsCount);
+		writeVarLong(bos, remoteOperationsCount);
+		bos.write(text, 0, text.length);
+		return bos.toByteArray();
+	}
+
+	/**
+	 * @param bytes
+	 *            serialized message
+	 * @return <code>true</code> if the given bytes were written by
+	 *         {@link #serializeCompact()}
+	 */
+	public static boolean isCompactEncoding(byte[] bytes) {
+		return bytes != null && bytes.length > 0 && bytes[0] == COMPACT_ENCODING;
+	}
+
+	/**
+	 * Deserialize a message written by {@link #serializeCompact()}.
+	 * 
+	 * @param bytes
+	 *            serialized message. Must not be <code>null</code>.
+	 * @return the message. Will not be <code>null</code>.
+	 * @throws SerializationException
+	 *             if the bytes are not a valid compact encoding
+	 */
+	public static ColaDocumentChangeMessage deserializeCompact(byte[] bytes)
+			throws SerializationException {
+		if (!isCompactEncoding(bytes))
+			throw new SerializationException("Not a compact ColaDocumentChangeMessage"); //$NON-NLS-1$
+		final int[] pos = new int[] {1};
+		final long offset = readVarLong(bytes, pos);
+		final long length = readVarLong(bytes, pos);
+		final long localCount = readVarLong(bytes, pos);
+		final long remoteCount = readVarLong(bytes, pos);
+		if (offset > Integer.MAX_VALUE || length > Integer.MAX_VALUE)
+			throw new SerializationException("Invalid ColaDocumentChangeMessage"); //$NON-NLS-1$
+		final String text = new String(bytes, pos[0], bytes.length - pos[0], StandardCharsets.UTF_8);
+		return new ColaDocumentChangeMessage(new DocumentChangeMessage((int) offset, (int) length, text), localCount, remoteCount);
+	}
+
+	private static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarLong(byte[] bytes, int[] pos)
+			throws SerializationException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (pos[0] >= bytes.length)
+				throw new SerializationException("Truncated ColaDocumentChangeMessage"); //$NON-NLS-1$
+			final byte b = bytes[pos[0]++];
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new SerializationException("Invalid ColaDocumentChangeMessage"); //$NON-NLS-1$
+	}
+
 	public void setSplitUp(boolean toBeSplitUp) {
 		this.splitUp = toBeSplitUp;
 	}
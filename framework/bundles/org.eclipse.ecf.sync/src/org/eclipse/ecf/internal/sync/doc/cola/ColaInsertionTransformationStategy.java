@@ -64,9 +64,9 @@ public class ColaInsertionTransformationStategy implements ColaTransformationStr
 		if (localAppliedMsg.isInsertion()) {
 
 			if (remoteTransformedMsg.getOffset() < localAppliedMsg.getOffset()) {
-				// coopt(remote(low),local(high)) --> (remote(low),local(low +
-				// high))
-				localAppliedMsg.setOffset(localAppliedMsg.getOffset() + remoteTransformedMsg.getOffset());
+				// coopt(remote(low),local(high)) --> (remote(low),local(high +
+				// length of remote))
+				localAppliedMsg.setOffset(localAppliedMsg.getOffset() + remoteTransformedMsg.getLengthOfInsertedText());
 			} else if (remoteTransformedMsg.getOffset() == localAppliedMsg.getOffset()) {
 				// coopt(remote(same),local(same))
 				if (localMsgHighPrio) {
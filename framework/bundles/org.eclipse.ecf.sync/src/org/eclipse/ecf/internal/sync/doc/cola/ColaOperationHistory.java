@@ -0,0 +1,207 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.internal.sync.doc.cola;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unacknowledged local operations, indexed by their local operation count
+ * (sequence number). Operations are kept in a ring buffer, so appending an
+ * operation, dropping an acknowledged prefix and looking up an operation by
+ * its sequence number are all constant time.
+ * <p>
+ * A slot holds the operation registered with that sequence number, or the
+ * parts it was split into while being transformed against remote operations.
+ * </p>
+ */
+public class ColaOperationHistory {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// ColaDocumentChangeMessage, or List<ColaDocumentChangeMessage> once split
+	private Object[] slots = new Object[INITIAL_CAPACITY];
+
+	private int head;
+
+	private int size;
+
+	// sequence number of the operation at head
+	private long firstSequence;
+
+	/**
+	 * Append a local operation.
+	 *
+	 * @param op
+	 *            the operation. Its local operations count must be the next
+	 *            sequence number, i.e. {@link #getNextSequence()}.
+	 */
+	public void add(ColaDocumentChangeMessage op) {
+		if (size == 0)
+			firstSequence = op.getLocalOperationsCount();
+		else if (op.getLocalOperationsCount() != getNextSequence())
+			throw new IllegalArgumentException("Operation out of sequence: " + op); //$NON-NLS-1$
+		if (size == slots.length) {
+			final Object[] grown = new Object[slots.length * 2];
+			for (int i = 0; i < size; i++)
+				grown[i] = slots[(head + i) % slots.length];
+			slots = grown;
+			head = 0;
+		}
+		slots[(head + size) % slots.length] = op;
+		size++;
+	}
+
+	/**
+	 * Drop all operations that the remote site had received before it
+	 * generated an operation with the given remote operations count.
+	 *
+	 * @param remoteOperationsCount
+	 *            number of local operations known to the remote site
+	 * @return number of operations dropped
+	 */
+	public int acknowledge(long remoteOperationsCount) {
+		int dropped = 0;
+		while (size > 0 && firstSequence < remoteOperationsCount) {
+			slots[head] = null;
+			head = (head + 1) % slots.length;
+			firstSequence++;
+			size--;
+			dropped++;
+		}
+		return dropped;
+	}
+
+	/**
+	 * @return sequence number of the oldest unacknowledged operation. Only
+	 *         meaningful if not {@link #isEmpty()}.
+	 */
+	public long getFirstSequence() {
+		return firstSequence;
+	}
+
+	/**
+	 * @return sequence number the next added operation must have
+	 */
+	public long getNextSequence() {
+		return firstSequence + size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return number of unacknowledged operations, not counting split up parts
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the parts of the operation with the given sequence number.
+	 *
+	 * @param sequence
+	 *            sequence number of an unacknowledged operation
+	 * @return the operation, or the parts it has been split into. The returned
+	 *         list is backed by this history.
+	 */
+	public List get(long sequence) {
+		if (sequence < firstSequence || sequence >= getNextSequence())
+			throw new IndexOutOfBoundsException(String.valueOf(sequence));
+		return getSlot((int) (sequence - firstSequence));
+	}
+
+	private List getSlot(int index) {
+		final int i = (head + index) % slots.length;
+		final Object slot = slots[i];
+		if (slot instanceof List)
+			return (List) slot;
+		// first access, e.g. by a transformation that may split the operation
+		final List parts = new ArrayList(1);
+		parts.add(slot);
+		slots[i] = parts;
+		return parts;
+	}
+
+	/**
+	 * Transform a sequence of remote operations against all operations in this
+	 * history, in one pass over the history. Each local operation is
+	 * transformed in place, and replaced by its parts if it is split up.
+	 *
+	 * @param remotes
+	 *            remote operations, in the order they were generated. All must
+	 *            have been generated without knowledge of any operation in this
+	 *            history.
+	 * @param localMsgHighPrio
+	 *            see
+	 *            {@link ColaDocumentChangeMessage#transformAgainst(ColaDocumentChangeMessage, boolean)}
+	 * @return the transformed remote operations. Will not be <code>null</code>.
+	 */
+	public List transform(List remotes, boolean localMsgHighPrio) {
+		List transformed = new ArrayList(remotes);
+		List next = new ArrayList(remotes.size() + 1);
+		for (int s = 0; s < size; s++) {
+			final List locals = getSlot(s);
+			for (int r = 0; r < transformed.size(); r++)
+				transform((ColaDocumentChangeMessage) transformed.get(r), locals, 0, localMsgHighPrio, next);
+			// swap, so no lists are allocated per local operation
+			final List swap = transformed;
+			transformed = next;
+			next = swap;
+			next.clear();
+		}
+		return transformed;
+	}
+
+	private void transform(ColaDocumentChangeMessage remote, List locals, int from, boolean localMsgHighPrio, List result) {
+		ColaDocumentChangeMessage transformed = remote;
+		for (int i = from; i < locals.size(); i++) {
+			final ColaDocumentChangeMessage local = (ColaDocumentChangeMessage) locals.get(i);
+			transformed = transformed.transformAgainst(local, localMsgHighPrio);
+			if (local.isSplitUp()) {
+				// replace the local operation by its parts, and skip over them
+				final List parts = local.getSplitUpRepresentation();
+				locals.remove(i);
+				locals.addAll(i, parts);
+				i += parts.size() - 1;
+			}
+			if (transformed.isSplitUp()) {
+				// the parts of a split deletion are relative to the document
+				// before any of them is applied. Make each relative to the
+				// document after the parts before it, then transform them
+				// against the rest of this slot in order.
+				final List parts = transformed.getSplitUpRepresentation();
+				int deleted = 0;
+				for (int p = 0; p < parts.size(); p++) {
+					final ColaDocumentChangeMessage part = (ColaDocumentChangeMessage) parts.get(p);
+					if (part.isDeletion()) {
+						part.setOffset(part.getOffset() - deleted);
+						deleted += part.getLengthOfReplacedText();
+					}
+				}
+				for (int p = 0; p < parts.size(); p++)
+					transform((ColaDocumentChangeMessage) parts.get(p), locals, i + 1, localMsgHighPrio, result);
+				return;
+			}
+		}
+		result.add(transformed);
+	}
+
+	public String toString() {
+		final StringBuffer buf = new StringBuffer("ColaOperationHistory["); //$NON-NLS-1$
+		buf.append("first=").append(firstSequence).append(";size=").append(size).append("]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		return buf.toString();
+	}
+}
@@ -23,13 +23,11 @@ import org.eclipse.ecf.internal.sync.SyncDebugOptions;
 import org.eclipse.ecf.sync.*;
 import org.eclipse.ecf.sync.doc.DocumentChangeMessage;
 import org.eclipse.ecf.sync.doc.IDocumentChange;
-import org.eclipse.osgi.util.NLS;
 
 public class ColaSynchronizationStrategy implements
-		IModelSynchronizationStrategy {
+		IBatchModelSynchronizationStrategy {
 
-	// <ColaDocumentChangeMessage>
-	private final List unacknowledgedLocalOperations;
+	private final ColaOperationHistory unacknowledgedLocalOperations;
 	private final boolean isInitiator;
 	private long localOperationsCount;
 	private long remoteOperationsCount;
@@ -39,7 +37,7 @@ public class ColaSynchronizationStrategy implements
 
 	private ColaSynchronizationStrategy(boolean isInitiator) {
 		this.isInitiator = isInitiator;
-		unacknowledgedLocalOperations = new LinkedList();
+		unacknowledgedLocalOperations = new ColaOperationHistory();
 		localOperationsCount = 0;
 		remoteOperationsCount = 0;
 	}
@@ -76,163 +74,66 @@ public class ColaSynchronizationStrategy implements
 	 *         sequential application to document
 	 */
 	public List transformIncomingMessage(final DocumentChangeMessage remoteMsg) {
-		if (!(remoteMsg instanceof ColaDocumentChangeMessage)) {
-			throw new IllegalArgumentException(
-					"DocumentChangeMessage is incompatible with Cola SynchronizationStrategy"); //$NON-NLS-1$
+		return transformIncomingMessages(Collections.singletonList(remoteMsg));
+	}
+
+	/**
+	 * Transform a batch of incoming <code>ColaDocumentChangeMessage</code>s,
+	 * in the order they were generated by the remote site. Consecutive
+	 * messages that acknowledge the same local operations are transformed
+	 * against those operations in a single pass over the unacknowledged
+	 * history.
+	 * 
+	 * @param remoteMsgs
+	 *            <code>ColaDocumentChangeMessage</code>s from the remote site
+	 * @return List contains <code>DocumentChangeMessage</code>s ready for
+	 *         sequential application to document
+	 */
+	public List transformIncomingMessages(final List remoteMsgs) {
+		for (final Iterator i = remoteMsgs.iterator(); i.hasNext();) {
+			if (!(i.next() instanceof ColaDocumentChangeMessage)) {
+				throw new IllegalArgumentException(
+						"DocumentChangeMessage is incompatible with Cola SynchronizationStrategy"); //$NON-NLS-1$
+			}
 		}
 		Trace.entering(Activator.PLUGIN_ID, SyncDebugOptions.METHODS_ENTERING,
-				this.getClass(), "transformIncomingMessage", remoteMsg); //$NON-NLS-1$
-		ColaDocumentChangeMessage transformedRemote = (ColaDocumentChangeMessage) remoteMsg;
-
-		final List transformedRemotes = new LinkedList();
-		transformedRemotes.add(transformedRemote);
-
-		remoteOperationsCount++;
-		Trace.trace(Activator.PLUGIN_ID, "unacknowledgedLocalOperations="
+				this.getClass(), "transformIncomingMessages", remoteMsgs); //$NON-NLS-1$
+		Trace.trace(Activator.PLUGIN_ID, "unacknowledgedLocalOperations=" //$NON-NLS-1$
 				+ unacknowledgedLocalOperations);
-		// this is where the concurrency algorithm is executed
-		if (!unacknowledgedLocalOperations.isEmpty()) {// Do not remove this. It
-														// is necessary. The
-														// following iterator
-														// does not suffice.
-			// remove operations from queue that have been implicitly
-			// acknowledged as received on the remote site by the reception of
-			// this message
-			for (final Iterator it = unacknowledgedLocalOperations.iterator(); it
-					.hasNext();) {
-				final ColaDocumentChangeMessage unackedLocalOp = (ColaDocumentChangeMessage) it
-						.next();
-				if (transformedRemote.getRemoteOperationsCount() > unackedLocalOp
-						.getLocalOperationsCount()) {
-					Trace.trace(
-							Activator.PLUGIN_ID,
-							NLS.bind(
-									"transformIncomingMessage.removing {0}", unackedLocalOp)); //$NON-NLS-1$
-					it.remove();
-				} else {
-					// the unackowledgedLocalOperations queue is ordered and
-					// sorted
-					// due to sequential insertion of local ops, thus once a
-					// local op with a higher
-					// or equal local op count (i.e. remote op count from the
-					// remote operation's view)
-					// is reached, we can abandon the check for the remaining
-					// queue items
-					Trace.trace(Activator.PLUGIN_ID,
-							"breaking out of unackedLocalOperations loop"); //$NON-NLS-1$
-					break;// exits for-loop
-				}
-			}
-
-			// at this point the queue has been freed of operations that
-			// don't require to be transformed against
-
-			if (!unacknowledgedLocalOperations.isEmpty()) {
-				ColaDocumentChangeMessage localOp = (ColaDocumentChangeMessage) unacknowledgedLocalOperations
-						.get(0);
-				Assert.isTrue(transformedRemote.getRemoteOperationsCount() == localOp
-						.getLocalOperationsCount());
-
-				for (final ListIterator unackOpsListIt = unacknowledgedLocalOperations
-						.listIterator(); unackOpsListIt.hasNext();) {
-					for (final ListIterator trafoRemotesIt = transformedRemotes
-							.listIterator(); trafoRemotesIt.hasNext();) {
-						// returns new instance
-						// clarify operation preference, owner/docshare
-						// initiator
-						// consistently comes first
-						localOp = (ColaDocumentChangeMessage) unackOpsListIt
-								.next();
-						transformedRemote = (ColaDocumentChangeMessage) trafoRemotesIt
-								.next();
-						transformedRemote = transformedRemote.transformAgainst(
-								localOp, isInitiator);
-
-						if (transformedRemote.isSplitUp()) {
-							// currently this only happens for a remote deletion
-							// that needs to be transformed against a locally
-							// applied insertion
-							// attention: before applying a list of deletions to
-							// docshare, the indices need to be
-							// updated/finalized one last time
-							// since deletions can only be applied sequentially
-							// and every deletion is going to change the
-							// underlying document and the
-							// respective indices!
-							trafoRemotesIt.remove();
-							for (final Iterator splitUpIterator = transformedRemote
-									.getSplitUpRepresentation().iterator(); splitUpIterator
-									.hasNext();) {
-								trafoRemotesIt.add(splitUpIterator.next());
-							}
-							// according to the ListIterator documentation it
-							// seems so as if the following line is unnecessary,
-							// as a call to next() after the last removal and
-							// additions will return what it would have returned
-							// anyway
-							// trafoRemotesIt.next();//TODO not sure about the
-							// need for this - I want to jump over the two
-							// inserted ops and reach the end of this iterator
-						}
 
-						// TODO check whether or not this collection shuffling
-						// does what it is supposed to, i.e. remove current
-						// localop in unack list and add split up representation
-						// instead
-						if (localOp.isSplitUp()) {
-							// local operation has been split up during
-							// operational transform --> remove current version
-							// and add new versions plus jump over those
-							unackOpsListIt.remove();
-							for (final Iterator splitUpOpIterator = localOp
-									.getSplitUpRepresentation().iterator(); splitUpOpIterator
-									.hasNext();) {
-								unackOpsListIt.add(splitUpOpIterator.next());
-							}
-							// according to the ListIterator documentation it
-							// seems so as if the following line is unnecessary,
-							// as a call to next() after the last removal and
-							// additions will return what it would have returned
-							// anyway
-							// unackOpsListIt.next();//TODO check whether or not
-							// this does jump over both inserted operations that
-							// replaced the current unack op
-						}// end split up localop handling
-					}// transformedRemotes List iteration
-				}
+		final List transformedRemotes = new ArrayList(remoteMsgs.size());
+		for (int start = 0; start < remoteMsgs.size();) {
+			// the batch of messages generated with the same knowledge of our
+			// operations
+			final long acknowledged = ((ColaDocumentChangeMessage) remoteMsgs
+					.get(start)).getRemoteOperationsCount();
+			int end = start + 1;
+			while (end < remoteMsgs.size()
+					&& ((ColaDocumentChangeMessage) remoteMsgs.get(end))
+							.getRemoteOperationsCount() == acknowledged)
+				end++;
+			remoteOperationsCount += end - start;
+
+			// remove operations that have been implicitly acknowledged as
+			// received on the remote site by the reception of these messages
+			unacknowledgedLocalOperations.acknowledge(acknowledged);
+
+			// this is where the concurrency algorithm is executed
+			final List batch = new ArrayList(remoteMsgs.subList(start, end));
+			if (unacknowledgedLocalOperations.isEmpty()) {
+				transformedRemotes.addAll(batch);
+			} else {
+				Assert.isTrue(acknowledged == unacknowledgedLocalOperations
+						.getFirstSequence());
+				// clarify operation preference, owner/docshare initiator
+				// consistently comes first
+				transformedRemotes.addAll(unacknowledgedLocalOperations
+						.transform(batch, isInitiator));
 			}
-
+			start = end;
 		}
 		Trace.exiting(Activator.PLUGIN_ID, SyncDebugOptions.METHODS_EXITING,
-				this.getClass(), "transformIncomingMessage", transformedRemote); //$NON-NLS-1$
-
-		// TODO find a cleaner and more OO way of cleaning up the list if it
-		// contains multiple deletions:
-		if (transformedRemotes.size() > 1) {
-			final ColaDocumentChangeMessage firstOp = (ColaDocumentChangeMessage) transformedRemotes
-					.get(0);
-			if (firstOp.isDeletion()) {
-				// this means all operations in the return list must also be
-				// deletions, i.e. modify virtual/optimistic offset for
-				// sequential application to document
-				final ListIterator deletionFinalizerIt = transformedRemotes
-						.listIterator();
-				ColaDocumentChangeMessage previousDel = (ColaDocumentChangeMessage) deletionFinalizerIt
-						.next();// jump over first del-op does not need
-								// modification, we know this is OK because of
-								// previous size check;
-				ColaDocumentChangeMessage currentDel;
-
-				for (; deletionFinalizerIt.hasNext();) {
-					currentDel = (ColaDocumentChangeMessage) deletionFinalizerIt
-							.next();
-					currentDel.setOffset(currentDel.getOffset()
-							- previousDel.getLengthOfReplacedText());
-					previousDel = currentDel;
-				}
-			}
-		}
-
+				this.getClass(), "transformIncomingMessages", transformedRemotes); //$NON-NLS-1$
 		return transformedRemotes;
 	}
 
@@ -302,6 +203,9 @@ public class ColaSynchronizationStrategy implements
 	 */
 	public IModelChange deserializeRemoteChange(byte[] bytes)
 			throws SerializationException {
+		if (ColaDocumentChangeMessage.isCompactEncoding(bytes))
+			return ColaDocumentChangeMessage.deserializeCompact(bytes);
+		// messages from peers that still use java serialization
 		return DocumentChangeMessage.deserialize(bytes);
 	}
 
@@ -319,6 +223,22 @@ public class ColaSynchronizationStrategy implements
 		return (IDocumentChange[]) l.toArray(new IDocumentChange[] {});
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.ecf.sync.IBatchModelSynchronizationStrategy#
+	 * transformRemoteChanges(org.eclipse.ecf.sync.IModelChange[])
+	 */
+	public IModelChange[] transformRemoteChanges(IModelChange[] remoteChanges) {
+		final List remoteMsgs = new ArrayList(remoteChanges.length);
+		for (int i = 0; i < remoteChanges.length; i++) {
+			if (remoteChanges[i] instanceof DocumentChangeMessage)
+				remoteMsgs.add(remoteChanges[i]);
+		}
+		final List l = this.transformIncomingMessages(remoteMsgs);
+		return (IDocumentChange[]) l.toArray(new IDocumentChange[] {});
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,40 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.sync;
+
+/**
+ * Model synchronization strategy that can transform several remote changes at
+ * once. Clients that receive remote changes in batches should check for this
+ * interface, and otherwise call
+ * {@link #transformRemoteChange(IModelChange)} for each change.
+ *
+ * @since 2.2
+ */
+public interface IBatchModelSynchronizationStrategy extends
+		IModelSynchronizationStrategy {
+
+	/**
+	 * Transform remote changes into a set of local changes to be synchronously
+	 * applied to the local model. The result is the same as calling
+	 * {@link #transformRemoteChange(IModelChange)} for each of the remote
+	 * changes in order, and concatenating the results.
+	 *
+	 * @param remoteChanges
+	 *            the remote model change instances to be transformed by this
+	 *            synchronization strategy, in the order they were made on the
+	 *            remote site. Must not be <code>null</code>.
+	 * @return IModelChange[] to apply to local model.
+	 */
+	public IModelChange[] transformRemoteChanges(IModelChange[] remoteChanges);
+
+}
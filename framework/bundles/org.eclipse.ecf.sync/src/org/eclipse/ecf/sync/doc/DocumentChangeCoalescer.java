@@ -0,0 +1,141 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.sync.doc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects local document changes so that they can be registered with an
+ * {@link org.eclipse.ecf.sync.IModelSynchronizationStrategy} and sent in one
+ * go. A change that touches the text produced by the previously added change
+ * (e.g. the next keystroke, or a backspace) is merged into it, so a burst of
+ * typing results in a single change. Other changes are kept in order.
+ * <p>
+ * Changes must be added in the order they were applied to the local document,
+ * and {@link #flush()} must be called before any remote change is applied to
+ * it.
+ * </p>
+ *
+ * @since 2.2
+ */
+public class DocumentChangeCoalescer {
+
+	/**
+	 * Default maximum length of the text of a merged change.
+	 */
+	public static final int DEFAULT_MAX_TEXT_LENGTH = 4096;
+
+	private final int maxTextLength;
+
+	// <DocumentChangeMessage>, in the order they were applied
+	private final List pending = new ArrayList();
+
+	public DocumentChangeCoalescer() {
+		this(DEFAULT_MAX_TEXT_LENGTH);
+	}
+
+	/**
+	 * @param maxTextLength
+	 *            changes are not merged if the text of the merged change
+	 *            would be longer than this
+	 */
+	public DocumentChangeCoalescer(int maxTextLength) {
+		this.maxTextLength = maxTextLength;
+	}
+
+	/**
+	 * Add a change that has been applied to the local document.
+	 *
+	 * @param change
+	 *            the change. Must not be <code>null</code>.
+	 */
+	public synchronized void add(IDocumentChange change) {
+		final String text = (change.getText() == null) ? "" : change.getText(); //$NON-NLS-1$
+		if (!pending.isEmpty()) {
+			final DocumentChangeMessage last = (DocumentChangeMessage) pending.get(pending.size() - 1);
+			final DocumentChangeMessage merged = merge(last, change.getOffset(), change.getLengthOfReplacedText(), text);
+			if (merged != null) {
+				pending.remove(pending.size() - 1);
+				if (merged.getLengthOfReplacedText() > 0 || merged.getLengthOfInsertedText() > 0)
+					pending.add(merged);
+				return;
+			}
+		}
+		if (change.getLengthOfReplacedText() > 0 || text.length() > 0)
+			pending.add(new DocumentChangeMessage(change.getOffset(), change.getLengthOfReplacedText(), text));
+	}
+
+	/**
+	 * Merge a change into the change that preceded it.
+	 *
+	 * @return the single change equivalent to applying <code>previous</code>
+	 *         and then the given change, or <code>null</code> if the given
+	 *         change does not touch the text inserted by <code>previous</code>
+	 */
+	DocumentChangeMessage merge(DocumentChangeMessage previous, int offset, int length, String text) {
+		final String previousText = previous.getText();
+		final int start = previous.getOffset();
+		final int end = start + previousText.length();
+		// both ranges are in terms of the document after previous was applied
+		if (offset > end || offset + length < start)
+			return null;
+		final StringBuffer merged = new StringBuffer();
+		if (offset > start)
+			merged.append(previousText.substring(0, offset - start));
+		merged.append(text);
+		if (offset + length < end)
+			merged.append(previousText.substring(offset + length - start));
+		if (merged.length() > maxTextLength)
+			return null;
+		final int mergedStart = Math.min(start, offset);
+		final int mergedEnd = Math.max(end, offset + length);
+		// map the merged range back to the document before previous was applied
+		final int replaced = mergedEnd - mergedStart - previousText.length() + previous.getLengthOfReplacedText();
+		return new DocumentChangeMessage(mergedStart, replaced, merged.toString());
+	}
+
+	/**
+	 * @return <code>true</code> if no changes are pending
+	 */
+	public synchronized boolean isEmpty() {
+		return pending.isEmpty();
+	}
+
+	/**
+	 * @return the number of pending changes
+	 */
+	public synchronized int size() {
+		return pending.size();
+	}
+
+	/**
+	 * Remove and return all pending changes.
+	 *
+	 * @return the pending changes in the order they are to be applied. Will not
+	 *         be <code>null</code>.
+	 */
+	public synchronized IDocumentChange[] flush() {
+		final IDocumentChange[] result = (IDocumentChange[]) pending.toArray(new IDocumentChange[pending.size()]);
+		pending.clear();
+		return result;
+	}
+
+	/**
+	 * Discard all pending changes.
+	 */
+	public synchronized void clear() {
+		pending.clear();
+	}
+}
@@ -79,6 +79,7 @@ import ch.ethz.iks.r_osgi.messages.RemoteOSGiMessage;
 import ch.ethz.iks.r_osgi.messages.RequestBundleMessage;
 import ch.ethz.iks.r_osgi.messages.RequestDependenciesMessage;
 import ch.ethz.iks.r_osgi.messages.RequestServiceMessage;
+import ch.ethz.iks.r_osgi.messages.StreamDataMessage;
 import ch.ethz.iks.r_osgi.messages.StreamRequestMessage;
 import ch.ethz.iks.r_osgi.messages.StreamResultMessage;
 import ch.ethz.iks.r_osgi.messages.TimeOffsetMessage;
@@ -149,6 +150,27 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 	private static final int TIMEOUT = Integer.parseInt(System.getProperty(
 			"ch.ethz.iks.r_osgi.channelEndpointImpl.timeout", "120000"));
 
+	/**
+	 * read-ahead window of input stream proxies in bytes. <code>0</code>
+	 * disables read-ahead, so every read is a request to the stream owner.
+	 */
+	private static final int READ_AHEAD_WINDOW = Integer.parseInt(System
+			.getProperty("ch.ethz.iks.r_osgi.streams.readAheadWindow", //$NON-NLS-1$
+					"262144")); //$NON-NLS-1$
+
+	/**
+	 * write buffer size of output stream proxies in bytes. <code>0</code>
+	 * disables buffering, so every write is sent to the stream owner.
+	 */
+	private static final int WRITE_BUFFER_SIZE = Integer.parseInt(System
+			.getProperty("ch.ethz.iks.r_osgi.streams.writeBufferSize", //$NON-NLS-1$
+					"65536")); //$NON-NLS-1$
+
+	/**
+	 * maximum size of a pushed chunk of stream data.
+	 */
+	private static final int MAX_STREAM_CHUNK = 65536;
+
 	/**
 	 * the callback register
 	 */
@@ -179,6 +201,16 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 	 */
 	private short nextStreamID = 0;
 
+	/**
+	 * map of stream id -&gt; read-ahead input stream proxy.
+	 */
+	private final HashMap streamProxies = new HashMap(0);
+
+	/**
+	 * map of stream id -&gt; read-ahead state of a local input stream.
+	 */
+	private final HashMap readAheads = new HashMap(0);
+
 	/**
 	 * the handler registration, if the remote topic space is not empty.
 	 */
@@ -196,7 +228,11 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 							+ "=org/osgi/service/remoteserviceadmin/*))" //$NON-NLS-1$
 					+ ")"; //$NON-NLS-1$
 
-	private ArrayList workQueue = new ArrayList();
+	/**
+	 * executes the incoming requests on the pool shared by all endpoints.
+	 */
+	private final EndpointExecutor executor = new EndpointExecutor(
+			RemoteOSGiServiceImpl.MAX_THREADS_PER_ENDPOINT);
 
 	/**
 	 * used by the multiplexer and serves as a marker whether or not the channel
@@ -240,7 +276,6 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 			RemoteOSGiServiceImpl.log.log(LogService.LOG_DEBUG,
 					"opening new channel " + getRemoteAddress()); //$NON-NLS-1$
 		}
-		initThreadPool();
 		RemoteOSGiServiceImpl.registerChannelEndpoint(this);
 	}
 
@@ -254,41 +289,9 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 		trace("<init>(channel="+channel+";remoteAddress="+channel.getRemoteAddress()+";localAddress="+channel.getLocalAddress()+")");
 		networkChannel = channel;
 		channel.bind(this);
-		initThreadPool();
 		RemoteOSGiServiceImpl.registerChannelEndpoint(this);
 	}
 
-	/**
-	 * initialize the thread pool
-	 */
-	private void initThreadPool() {
-		// TODO: tradeoff, could as well be central for all endpoints...
-		final ThreadGroup threadPool = new ThreadGroup("WorkerThreads"
-				+ toString());
-		for (int i = 0; i < RemoteOSGiServiceImpl.MAX_THREADS_PER_ENDPOINT; i++) {
-			final Thread t = new Thread(threadPool, "r-OSGi ChannelWorkerThread" + i) {
-				public void run() {
-					try {
-						while (!isInterrupted()) {
-							final Runnable r;
-							synchronized (workQueue) {
-								while (workQueue.isEmpty()) {
-									workQueue.wait();
-								}
-								r = (Runnable) workQueue.remove(0);
-							}
-							r.run();
-						}
-					} catch (InterruptedException ie) {
-						ie.printStackTrace();
-					}
-				}
-			};
-			t.setDaemon(true);
-			t.start();
-		}
-	}
-
 	/**
 	 * process a recieved message. Called by the channel.
 	 * 
@@ -302,6 +305,11 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 			dispose();
 			return;
 		}
+		if (msg.getFuncID() == RemoteOSGiMessage.STREAM_DATA) {
+			// deliver in order on the receiving thread, never blocks
+			receivedStreamData((StreamDataMessage) msg);
+			return;
+		}
 		final Integer xid = Integer.valueOf(msg.getXID());
 		final WaitingCallback callback;
 		synchronized (callbacks) {
@@ -330,10 +338,7 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 					}
 				}
 			};
-			synchronized (workQueue) {
-				workQueue.add(r);
-				workQueue.notify();
-			}
+			executor.execute(r);
 		}
 	}
 
@@ -606,6 +611,10 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 		proxiedServices.clear();
 		closeStreams();
 		streams.clear();
+		failStreamProxies();
+		synchronized (readAheads) {
+			readAheads.clear();
+		}
 		handlerReg = null;
 		synchronized (callbacks) {
 			callbacks.notifyAll();
@@ -737,6 +746,108 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 		doStreamOp(requestMsg);
 	}
 
+	/**
+	 * flush the output stream on the peer identified by id.
+	 * 
+	 * @param streamID
+	 *            the ID of the stream.
+	 * @throws IOException
+	 *             when an IOException occurs.
+	 * @since 1.1
+	 */
+	public void flushStream(final short streamID) throws IOException {
+		final StreamRequestMessage requestMsg = new StreamRequestMessage();
+		requestMsg.setOp(StreamRequestMessage.FLUSH);
+		requestMsg.setStreamID(streamID);
+		// wait for the stream operation to finish
+		doStreamOp(requestMsg);
+	}
+
+	/**
+	 * grant credit to the peer owning the input stream identified by id to
+	 * push more stream data. Does not wait for a reply.
+	 * 
+	 * @param streamID
+	 *            the ID of the stream.
+	 * @param credit
+	 *            the number of bytes the peer may push in addition to the
+	 *            credit already granted.
+	 * @throws IOException
+	 *             if the channel is closed.
+	 * @since 1.1
+	 */
+	public void requestStreamData(final short streamID, final int credit)
+			throws IOException {
+		final StreamRequestMessage requestMsg = new StreamRequestMessage();
+		requestMsg.setOp(StreamRequestMessage.READ_AHEAD);
+		requestMsg.setStreamID(streamID);
+		requestMsg.setLenOrVal(credit);
+		try {
+			send(requestMsg);
+		} catch (final RemoteOSGiException e) {
+			throw new IOException("Request for data on stream " + streamID //$NON-NLS-1$
+					+ " failed: " + e.getMessage()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * release a closed read-ahead input stream proxy, data pushed for it
+	 * afterwards is dropped. The stream owner is told to stop pushing.
+	 * 
+	 * @param streamID
+	 *            the ID of the stream.
+	 * @since 1.1
+	 */
+	public void releaseInputStreamProxy(final short streamID) {
+		synchronized (streamProxies) {
+			if (streamProxies.remove(Integer.valueOf(streamID)) == null) {
+				return;
+			}
+		}
+		try {
+			requestStreamData(streamID, StreamRequestMessage.RELEASE_READ_AHEAD);
+		} catch (final IOException ioe) {
+			// channel is closed, the read-ahead state is gone anyway
+		}
+	}
+
+	/**
+	 * get the number of incoming requests waiting for a worker.
+	 * 
+	 * @return the queue depth.
+	 */
+	public int getQueueDepth() {
+		return executor.getQueueDepth();
+	}
+
+	/**
+	 * get the highest number of incoming requests that were waiting for a
+	 * worker at the same time.
+	 * 
+	 * @return the peak queue depth.
+	 */
+	public int getPeakQueueDepth() {
+		return executor.getPeakQueueDepth();
+	}
+
+	/**
+	 * get the number of incoming requests that are currently processed.
+	 * 
+	 * @return the number of active workers.
+	 */
+	public int getActiveWorkers() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * get the number of incoming requests that have been processed.
+	 * 
+	 * @return the number of completed requests.
+	 */
+	public long getCompletedRequests() {
+		return executor.getCompletedCount();
+	}
+
 	/**
 	 * get the channel URI.
 	 * 
@@ -827,11 +938,26 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 		// declarations for the bundle.
 		final DeliverServiceMessage deliv = (DeliverServiceMessage) sendAndWait(req);
 
-		// generate a proxy bundle for the service
-		final InputStream in = new ProxyGenerator().generateProxyBundle(ref
-				.getURI(), deliv);
+		final ProxyBundleCache cache = RemoteOSGiServiceImpl.proxyBundleCache;
+		if (cache == null) {
+			// generate a proxy bundle for the service
+			final InputStream in = new ProxyGenerator().generateProxyBundle(
+					ref.getURI(), deliv);
+
+			installResolveAndStartBundle(ref, in, true);
+			return;
+		}
 
-		installResolveAndStartBundle(ref, in, true);
+		// get the proxy bundle from the cache or generate it
+		final byte[] bundle = cache.getProxyBundle(ref.getURI(), deliv);
+		try {
+			installResolveAndStartBundle(ref, new ByteArrayInputStream(bundle),
+					true);
+		} catch (final RemoteOSGiException e) {
+			// do not reuse a bundle that could not be installed
+			cache.remove(ref.getURI(), deliv);
+			throw e;
+		}
 	}
 
 	private void installResolveAndStartBundle(final RemoteServiceReference ref,
@@ -1269,8 +1395,17 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 
 				// invoke method
 				try {
-					Object result = method.invoke(serv.getServiceObject(),
-							arguments);
+					Object result;
+					try {
+						result = method.invoke(serv.getServiceObject(),
+								arguments);
+					} catch (final InvocationTargetException t) {
+						sendBufferedOutput(arguments, false);
+						throw t;
+					}
+					// data written to a stream argument must arrive even if
+					// the service does not flush or close it
+					sendBufferedOutput(arguments, true);
 					final RemoteCallResultMessage m = new RemoteCallResultMessage();
 					m.setXID(invMsg.getXID());
 					Class returnType = method.getReturnType();
@@ -1340,6 +1475,19 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 				}
 				// invoke operation on stream
 				switch (reqMsg.getOp()) {
+				case StreamRequestMessage.READ_AHEAD: {
+					// no reply, data and errors are pushed
+					pushStreamData(reqMsg.getStreamID(), (InputStream) stream,
+							reqMsg.getLenOrVal());
+					return null;
+				}
+				case StreamRequestMessage.FLUSH: {
+					((OutputStream) stream).flush();
+					final StreamResultMessage m = new StreamResultMessage();
+					m.setXID(reqMsg.getXID());
+					m.setResult(StreamResultMessage.RESULT_WRITE_OK);
+					return m;
+				}
 				case StreamRequestMessage.READ: {
 					final int result = ((InputStream) stream).read();
 					final StreamResultMessage m = new StreamResultMessage();
@@ -1651,7 +1799,7 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 	 * @return the placeholder object that is sent to the actual client
 	 */
 	private InputStreamHandle getInputStreamPlaceholder(final InputStream origIS) {
-		final InputStreamHandle sp = new InputStreamHandle(nextStreamID());
+		final InputStreamHandle sp = new InputStreamHandle(nextStreamID(), true);
 		streams.put(Integer.valueOf(sp.getStreamID()), origIS);
 		return sp;
 	}
@@ -1664,7 +1812,16 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 	 * @return the proxy for the input stream
 	 */
 	private InputStream getInputStreamProxy(final InputStreamHandle placeholder) {
-		return new InputStreamProxy(placeholder.getStreamID(), this);
+		if (!placeholder.isReadAhead() || READ_AHEAD_WINDOW <= 0) {
+			return new InputStreamProxy(placeholder.getStreamID(), this);
+		}
+		final InputStreamProxy proxy = new InputStreamProxy(placeholder
+				.getStreamID(), this, READ_AHEAD_WINDOW, TIMEOUT);
+		synchronized (streamProxies) {
+			streamProxies.put(Integer.valueOf(placeholder.getStreamID()),
+					proxy);
+		}
+		return proxy;
 	}
 
 	/**
@@ -1677,7 +1834,8 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 	 */
 	private OutputStreamHandle getOutputStreamPlaceholder(
 			final OutputStream origOS) {
-		final OutputStreamHandle sp = new OutputStreamHandle(nextStreamID());
+		final OutputStreamHandle sp = new OutputStreamHandle(nextStreamID(),
+				true);
 		streams.put(Integer.valueOf(sp.getStreamID()), origOS);
 		return sp;
 	}
@@ -1692,7 +1850,8 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 	 */
 	private OutputStream getOutputStreamProxy(
 			final OutputStreamHandle placeholder) {
-		return new OutputStreamProxy(placeholder.getStreamID(), this);
+		return new OutputStreamProxy(placeholder.getStreamID(), this,
+				WRITE_BUFFER_SIZE, placeholder.isFlushSupported());
 	}
 
 	/**
@@ -1707,6 +1866,157 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 		return (++nextStreamID);
 	}
 
+	/**
+	 * push data of a local input stream to the peer, as far as the credit
+	 * granted by the peer allows. Only one thread pushes data of a stream at a
+	 * time, so the chunks are sent in order. Credit granted while a thread is
+	 * pushing is used by that thread. Once the end of the stream or an
+	 * exception has been pushed, or the proxy has been released, the state is
+	 * kept as done until the channel is closed, like the stream itself. Credit
+	 * the peer sent before it saw the end of the stream is thereby ignored
+	 * instead of starting to push the stream again.
+	 * 
+	 * @param streamID
+	 *            the ID of the stream.
+	 * @param in
+	 *            the stream.
+	 * @param credit
+	 *            the credit granted by the peer, in bytes.
+	 */
+	private void pushStreamData(final short streamID, final InputStream in,
+			final int credit) {
+		final Integer key = Integer.valueOf(streamID);
+		ReadAhead ra;
+		synchronized (readAheads) {
+			ra = (ReadAhead) readAheads.get(key);
+			if (ra == null) {
+				ra = new ReadAhead();
+				readAheads.put(key, ra);
+			}
+		}
+		synchronized (ra) {
+			if (credit == StreamRequestMessage.RELEASE_READ_AHEAD) {
+				// the proxy has been closed, a pushing thread stops
+				ra.done = true;
+				ra.credit = 0;
+				return;
+			}
+			ra.credit += credit;
+			if (ra.pushing || ra.done) {
+				return;
+			}
+			ra.pushing = true;
+		}
+		boolean done = false;
+		try {
+			while (!done) {
+				final int n;
+				synchronized (ra) {
+					n = Math.min(ra.credit, MAX_STREAM_CHUNK);
+					if (n <= 0 || ra.done || networkChannel == null) {
+						ra.pushing = false;
+						return;
+					}
+				}
+				final StreamDataMessage m = new StreamDataMessage();
+				m.setStreamID(streamID);
+				int len = 0;
+				try {
+					final byte[] b = new byte[n];
+					len = in.read(b, 0, n);
+					if (len < 0) {
+						m.setEOF();
+						done = true;
+					} else {
+						m.setData(b, len);
+					}
+				} catch (final IOException ioe) {
+					m.setException(ioe);
+					done = true;
+				}
+				synchronized (ra) {
+					ra.credit -= Math.max(len, 0);
+					if (ra.done) {
+						// released while reading
+						return;
+					}
+					ra.done = done;
+				}
+				if (len != 0 || done) {
+					try {
+						send(m);
+					} catch (final RemoteOSGiException e) {
+						// channel is closed
+						return;
+					}
+				}
+			}
+		} finally {
+			synchronized (ra) {
+				ra.pushing = false;
+			}
+		}
+	}
+
+	/**
+	 * deliver pushed stream data to the input stream proxy.
+	 * 
+	 * @param msg
+	 *            the stream data message.
+	 */
+	private void receivedStreamData(final StreamDataMessage msg) {
+		final InputStreamProxy proxy;
+		synchronized (streamProxies) {
+			proxy = (InputStreamProxy) streamProxies.get(Integer.valueOf(msg
+					.getStreamID()));
+		}
+		if (proxy != null) {
+			proxy.dataReceived(msg);
+		}
+	}
+
+	/**
+	 * send the data buffered by output stream proxies that were passed as
+	 * arguments of a remote call, once the call has returned.
+	 * 
+	 * @param arguments
+	 *            the arguments of the call.
+	 * @param report
+	 *            <code>true</code> if a failure to send should be thrown,
+	 *            <code>false</code> if the call already failed.
+	 * @throws IOException
+	 *             if the data could not be sent.
+	 */
+	private static void sendBufferedOutput(final Object[] arguments,
+			final boolean report) throws IOException {
+		for (int i = 0; i < arguments.length; i++) {
+			if (arguments[i] instanceof OutputStreamProxy) {
+				try {
+					((OutputStreamProxy) arguments[i]).sendBuffer();
+				} catch (final IOException ioe) {
+					if (report) {
+						throw ioe;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * fail all read-ahead input stream proxies, the channel is closed.
+	 */
+	private void failStreamProxies() {
+		final Object[] proxies;
+		synchronized (streamProxies) {
+			proxies = streamProxies.values().toArray();
+			streamProxies.clear();
+		}
+		for (int i = 0; i < proxies.length; i++) {
+			((InputStreamProxy) proxies[i]).failed(new IOException(
+					"Channel is closed")); //$NON-NLS-1$
+		}
+	}
+
 	/**
 	 * closes all streams that are still open.
 	 */
@@ -1767,6 +2077,28 @@ public final class ChannelEndpointImpl implements ChannelEndpoint {
 		}
 	}
 
+	/**
+	 * read-ahead state of a local input stream.
+	 */
+	static final class ReadAhead {
+
+		/**
+		 * bytes the peer is still willing to receive.
+		 */
+		int credit;
+
+		/**
+		 * whether a thread is pushing data.
+		 */
+		boolean pushing;
+
+		/**
+		 * whether the end of the stream or an exception has been sent, or the
+		 * proxy has been released.
+		 */
+		boolean done;
+	}
+
 	/**
 	 * callback that signals when the result has become available.
 	 * 
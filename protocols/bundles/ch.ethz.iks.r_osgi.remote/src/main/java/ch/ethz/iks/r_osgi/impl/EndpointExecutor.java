@@ -0,0 +1,228 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package ch.ethz.iks.r_osgi.impl;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.osgi.service.log.LogService;
+
+/**
+ * Executes the incoming requests of one channel endpoint on a work stealing
+ * pool that is shared by all endpoints. At most <code>limit</code> requests of
+ * an endpoint run at the same time, the others wait in the queue of the
+ * endpoint. A worker runs one request and then reschedules the endpoint
+ * behind the requests of all other endpoints, so that a peer sending many
+ * requests cannot starve the others.
+ * <p>
+ * Requests may block for a long time, e.g., in a service method or a nested
+ * remote call. They run as managed blockers, so the pool adds threads while
+ * workers block, up to <code>ch.ethz.iks.r_osgi.maxWorkerThreads</code>.
+ * Idle threads terminate after a minute.
+ * </p>
+ */
+final class EndpointExecutor {
+
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+
+	/**
+	 * the pool shared by all endpoints.
+	 */
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime
+			.getRuntime().availableProcessors(),
+			new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+				public ForkJoinWorkerThread newThread(final ForkJoinPool p) {
+					final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+							.newThread(p);
+					t.setName("r-OSGi ChannelWorkerThread" //$NON-NLS-1$
+							+ threadNumber.getAndIncrement());
+					return t;
+				}
+			}, null, true, 0, Math.max(Runtime.getRuntime()
+					.availableProcessors(),
+					RemoteOSGiServiceImpl.MAX_WORKER_THREADS_TOTAL), 1, new Predicate() {
+				public boolean test(final Object p) {
+					// at the thread limit, block without compensation
+					return true;
+				}
+			}, 60, TimeUnit.SECONDS);
+
+	/**
+	 * the waiting requests.
+	 */
+	private final ConcurrentLinkedQueue queue = new ConcurrentLinkedQueue();
+
+	/**
+	 * the maximum number of concurrently running requests.
+	 */
+	private final int limit;
+
+	/**
+	 * number of waiting requests.
+	 */
+	private final AtomicInteger queued = new AtomicInteger();
+
+	/**
+	 * number of scheduled or running workers.
+	 */
+	private final AtomicInteger active = new AtomicInteger();
+
+	/**
+	 * the highest number of waiting requests so far.
+	 */
+	private final AtomicInteger peakQueued = new AtomicInteger();
+
+	/**
+	 * number of completed requests.
+	 */
+	private final AtomicLong completed = new AtomicLong();
+
+	/**
+	 * the worker, shared by all slots of the endpoint.
+	 */
+	private final Runnable worker = new Runnable() {
+		public void run() {
+			runNext();
+		}
+	};
+
+	/**
+	 * create a new executor for an endpoint.
+	 *
+	 * @param limit
+	 *            the maximum number of concurrently running requests.
+	 */
+	EndpointExecutor(final int limit) {
+		this.limit = Math.max(1, limit);
+	}
+
+	/**
+	 * execute a request.
+	 *
+	 * @param r
+	 *            the request.
+	 */
+	void execute(final Runnable r) {
+		queue.add(r);
+		final int depth = queued.incrementAndGet();
+		int peak;
+		while (depth > (peak = peakQueued.get())) {
+			if (peakQueued.compareAndSet(peak, depth)) {
+				break;
+			}
+		}
+		schedule();
+	}
+
+	/**
+	 * start another worker if there are waiting requests and a free slot.
+	 */
+	private void schedule() {
+		while (queued.get() > 0) {
+			final int n = active.get();
+			if (n >= limit) {
+				return;
+			}
+			if (active.compareAndSet(n, n + 1)) {
+				pool.execute(worker);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * run the next request, then either reschedule or give up the slot.
+	 */
+	void runNext() {
+		final Runnable r = (Runnable) queue.poll();
+		if (r != null) {
+			queued.decrementAndGet();
+			try {
+				ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+					private boolean done;
+
+					public boolean block() {
+						try {
+							r.run();
+						} finally {
+							done = true;
+						}
+						return true;
+					}
+
+					public boolean isReleasable() {
+						return done;
+					}
+				});
+			} catch (final InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			} catch (final Throwable t) {
+				if (RemoteOSGiServiceImpl.log != null) {
+					RemoteOSGiServiceImpl.log.log(LogService.LOG_ERROR,
+							"Exception while processing a request", t); //$NON-NLS-1$
+				}
+			}
+			completed.incrementAndGet();
+		}
+		if (queued.get() > 0) {
+			// keep the slot, but go to the end of the line
+			pool.execute(worker);
+			return;
+		}
+		active.decrementAndGet();
+		// a request might have been added before the slot was released
+		schedule();
+	}
+
+	/**
+	 * get the number of waiting requests.
+	 *
+	 * @return the queue depth.
+	 */
+	int getQueueDepth() {
+		return queued.get();
+	}
+
+	/**
+	 * get the highest number of waiting requests so far.
+	 *
+	 * @return the peak queue depth.
+	 */
+	int getPeakQueueDepth() {
+		return peakQueued.get();
+	}
+
+	/**
+	 * get the number of requests that are currently scheduled or running.
+	 *
+	 * @return the number of active workers.
+	 */
+	int getActiveCount() {
+		return active.get();
+	}
+
+	/**
+	 * get the number of completed requests.
+	 *
+	 * @return the number of completed requests.
+	 */
+	long getCompletedCount() {
+		return completed.get();
+	}
+
+}
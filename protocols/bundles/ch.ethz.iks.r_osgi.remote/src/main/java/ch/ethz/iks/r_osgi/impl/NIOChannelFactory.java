@@ -0,0 +1,839 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package ch.ethz.iks.r_osgi.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.ecf.core.util.OSGIObjectInputStream;
+import org.eclipse.ecf.core.util.OSGIObjectOutputStream;
+import org.osgi.service.log.LogService;
+
+import ch.ethz.iks.r_osgi.Remoting;
+import ch.ethz.iks.r_osgi.URI;
+import ch.ethz.iks.r_osgi.channels.ChannelEndpoint;
+import ch.ethz.iks.r_osgi.channels.NetworkChannel;
+import ch.ethz.iks.r_osgi.channels.NetworkChannelFactory;
+import ch.ethz.iks.r_osgi.messages.RemoteOSGiMessage;
+import ch.ethz.iks.util.SmartObjectInputStream;
+import ch.ethz.iks.util.SmartObjectOutputStream;
+
+/**
+ * channel factory for TCP transport with non-blocking IO. All channels share
+ * a small number of selector threads instead of having a receiver thread each.
+ * Every message is sent as a frame of its own: the length of the message
+ * followed by the message, serialized with a new object stream. Senders only
+ * append the frame to the outbound queue of the channel, the selector threads
+ * write it as soon as the socket accepts more data. Incoming messages are
+ * delivered to the channel endpoint by the selector thread of the channel, in
+ * the order in which they were received.
+ * <p>
+ * The factory is registered for the protocol <code>r-osgi-nio</code> if the
+ * property <code>ch.ethz.iks.r_osgi.registerNIOChannel</code> is set to
+ * <code>true</code>. It listens on the port set by
+ * <code>ch.ethz.iks.r_osgi.nio.port</code>, default 9279, and can be used
+ * side by side with the default <code>r-osgi</code> transport.
+ * </p>
+ */
+final class NIOChannelFactory implements NetworkChannelFactory {
+
+	static final String PROTOCOL = "r-osgi-nio"; //$NON-NLS-1$
+
+	/**
+	 * the port property.
+	 */
+	static final String PORT_PROPERTY = "ch.ethz.iks.r_osgi.nio.port"; //$NON-NLS-1$
+
+	/**
+	 * the number of selector threads.
+	 */
+	private static final int SELECTOR_THREADS = Integer.getInteger(
+			"ch.ethz.iks.r_osgi.nio.selectorThreads", //$NON-NLS-1$
+			Math.min(4, Runtime.getRuntime().availableProcessors()))
+			.intValue();
+
+	/**
+	 * the default maximum size of a single message.
+	 */
+	private static final int MAX_FRAME_SIZE = Integer.getInteger(
+			"ch.ethz.iks.r_osgi.nio.maxFrameSize", 64 * 1024 * 1024) //$NON-NLS-1$
+			.intValue();
+
+	/**
+	 * the default number of bytes that may wait in the outbound queue of a
+	 * channel before senders have to wait.
+	 */
+	private static final int MAX_QUEUED_BYTES = Integer.getInteger(
+			"ch.ethz.iks.r_osgi.nio.maxQueuedBytes", 8 * 1024 * 1024) //$NON-NLS-1$
+			.intValue();
+
+	/**
+	 * the initial size of the receive buffer of a channel.
+	 */
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	private static final String OSGI_SERIALIZATION = "osgi.basic"; //$NON-NLS-1$
+	private static final String SERIALIZATION_DEFAULT = System.getProperty(
+			"ch.ethz.iks.r_osgi.remote.serialization", OSGI_SERIALIZATION); //$NON-NLS-1$
+
+	/**
+	 * the maximum size of a single message.
+	 */
+	private final int maxFrameSize;
+
+	/**
+	 * the number of bytes that may wait in the outbound queue of a channel
+	 * before senders have to wait.
+	 */
+	private final int maxQueuedBytes;
+
+	Remoting remoting;
+
+	protected int listeningPort;
+
+	private AcceptorThread acceptor;
+
+	private SelectorThread[] selectors;
+
+	private final AtomicInteger nextSelector = new AtomicInteger();
+
+	/**
+	 * the open channels.
+	 */
+	final Set channels = new HashSet();
+
+	/**
+	 * creates a new NIOChannelFactory with the limits set by the system
+	 * properties.
+	 */
+	NIOChannelFactory() {
+		this(MAX_FRAME_SIZE, MAX_QUEUED_BYTES);
+	}
+
+	/**
+	 * creates a new NIOChannelFactory.
+	 *
+	 * @param maxFrameSize
+	 *            the maximum size of a single message.
+	 * @param maxQueuedBytes
+	 *            the number of bytes that may wait in the outbound queue of
+	 *            a channel before senders have to wait.
+	 */
+	NIOChannelFactory(final int maxFrameSize, final int maxQueuedBytes) {
+		this.maxFrameSize = maxFrameSize;
+		this.maxQueuedBytes = maxQueuedBytes;
+	}
+
+	/**
+	 * get a new connection.
+	 *
+	 * @param endpoint
+	 *            the channel endpoint.
+	 * @param endpointURI
+	 *            the URI of the remote host.
+	 * @return the transport channel.
+	 * @throws IOException
+	 *             in case of IO errors.
+	 */
+	public NetworkChannel getConnection(final ChannelEndpoint endpoint,
+			final URI endpointURI) throws IOException {
+		int port = endpointURI.getPort();
+		if (port <= 0) {
+			port = 9279;
+		}
+		final SocketChannel sc = SocketChannel.open(new InetSocketAddress(
+				endpointURI.getHost(), port));
+		final NIOChannel channel = new NIOChannel(sc, endpointURI);
+		channel.bind(endpoint);
+		return channel;
+	}
+
+	/**
+	 * Activate the factory. Is called by R-OSGi when the factory is discovered.
+	 *
+	 * @see ch.ethz.iks.r_osgi.channels.NetworkChannelFactory#activate(ch.ethz.iks.r_osgi.Remoting)
+	 */
+	public void activate(final Remoting r) throws IOException {
+		remoting = r;
+		selectors = new SelectorThread[Math.max(1, SELECTOR_THREADS)];
+		for (int i = 0; i < selectors.length; i++) {
+			selectors[i] = new SelectorThread(i);
+			selectors[i].start();
+		}
+		acceptor = new AcceptorThread();
+		acceptor.start();
+	}
+
+	/**
+	 * Deactivate the factory.
+	 *
+	 * @see ch.ethz.iks.r_osgi.channels.NetworkChannelFactory#deactivate(ch.ethz.iks.r_osgi.Remoting)
+	 */
+	public void deactivate(final Remoting r) throws IOException {
+		if (acceptor != null) {
+			acceptor.close();
+			acceptor = null;
+		}
+		final NIOChannel[] open;
+		synchronized (channels) {
+			open = (NIOChannel[]) channels.toArray(new NIOChannel[channels
+					.size()]);
+		}
+		for (int i = 0; i < open.length; i++) {
+			open[i].closed();
+		}
+		if (selectors != null) {
+			for (int i = 0; i < selectors.length; i++) {
+				selectors[i].close();
+			}
+			selectors = null;
+		}
+		remoting = null;
+	}
+
+	/**
+	 * get the listening port.
+	 *
+	 * @see ch.ethz.iks.r_osgi.channels.NetworkChannelFactory#getListeningPort(java.lang.String)
+	 */
+	public int getListeningPort(final String protocol) {
+		return listeningPort;
+	}
+
+	/**
+	 * get the selector thread for a new channel.
+	 *
+	 * @return the selector thread.
+	 */
+	SelectorThread nextSelector() {
+		final SelectorThread[] s = selectors;
+		if (s == null) {
+			throw new IllegalStateException("Factory is not active"); //$NON-NLS-1$
+		}
+		return s[(nextSelector.getAndIncrement() & Integer.MAX_VALUE)
+				% s.length];
+	}
+
+	/**
+	 * output stream that reserves space for the length of the frame.
+	 */
+	private static final class FrameOutputStream extends ByteArrayOutputStream {
+
+		FrameOutputStream() {
+			super(512);
+			count = 4;
+		}
+
+		/**
+		 * get the frame.
+		 *
+		 * @return the buffer containing the frame.
+		 */
+		ByteBuffer toFrame() {
+			final int len = count - 4;
+			buf[0] = (byte) (len >>> 24);
+			buf[1] = (byte) (len >>> 16);
+			buf[2] = (byte) (len >>> 8);
+			buf[3] = (byte) len;
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+
+	/**
+	 * a channel with non-blocking TCP transport.
+	 */
+	final class NIOChannel implements NetworkChannel {
+
+		/**
+		 * the socket channel.
+		 */
+		final SocketChannel socketChannel;
+
+		/**
+		 * the selector thread serving the channel.
+		 */
+		private final SelectorThread selector;
+
+		/**
+		 * the remote endpoint address.
+		 */
+		private final URI remoteEndpointAddress;
+
+		/**
+		 * the local endpoint address.
+		 */
+		private final URI localEndpointAddress;
+
+		/**
+		 * the channel endpoint.
+		 */
+		ChannelEndpoint endpoint;
+
+		/**
+		 * the selection key, set by the selector thread.
+		 */
+		private volatile SelectionKey key;
+
+		/**
+		 * the receive buffer, only used by the selector thread.
+		 */
+		private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+		/**
+		 * the frames waiting to be written.
+		 */
+		private final LinkedList outQueue = new LinkedList();
+
+		/**
+		 * the number of bytes in the outbound queue.
+		 */
+		private long queuedBytes;
+
+		/**
+		 * connected ?
+		 */
+		volatile boolean connected = true;
+
+		/**
+		 * create a new NIOChannel.
+		 *
+		 * @param sc
+		 *            the connected socket channel.
+		 * @param remoteAddress
+		 *            the remote peer's URI, or <code>null</code> for incoming
+		 *            connections.
+		 * @throws IOException
+		 *             in case of IO errors.
+		 */
+		NIOChannel(final SocketChannel sc, final URI remoteAddress)
+				throws IOException {
+			socketChannel = sc;
+			final Socket socket = sc.socket();
+			remoteEndpointAddress = remoteAddress != null ? remoteAddress
+					: URI.create(getProtocol() + "://" //$NON-NLS-1$
+							+ socket.getInetAddress().getHostName() + ":" //$NON-NLS-1$
+							+ socket.getPort());
+			localEndpointAddress = URI.create(getProtocol() + "://" //$NON-NLS-1$
+					+ socket.getLocalAddress().getHostName() + ":" //$NON-NLS-1$
+					+ socket.getLocalPort());
+			socket.setKeepAlive(true);
+			socket.setTcpNoDelay(true);
+			sc.configureBlocking(false);
+			selector = nextSelector();
+			synchronized (channels) {
+				channels.add(this);
+			}
+		}
+
+		/**
+		 * bind the channel to a channel endpoint and start receiving
+		 * messages.
+		 *
+		 * @param e
+		 *            the channel endpoint.
+		 *
+		 * @see ch.ethz.iks.r_osgi.channels.NetworkChannel#bind(ch.ethz.iks.r_osgi.channels.ChannelEndpoint)
+		 */
+		public void bind(final ChannelEndpoint e) {
+			endpoint = e;
+			selector.execute(new Runnable() {
+				public void run() {
+					synchronized (outQueue) {
+						if (!connected) {
+							return;
+						}
+						try {
+							key = socketChannel.register(selector.selector,
+									outQueue.isEmpty() ? SelectionKey.OP_READ
+											: SelectionKey.OP_READ
+													| SelectionKey.OP_WRITE,
+									NIOChannel.this);
+						} catch (final ClosedChannelException cce) {
+							// handled below
+						}
+					}
+					if (key == null) {
+						closed();
+					}
+				}
+			});
+		}
+
+		/**
+		 * get the String representation of the channel.
+		 *
+		 * @return the ID.
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			return "NIOChannel (" + getRemoteAddress() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		/**
+		 * close the channel.
+		 *
+		 * @throws IOException
+		 *             in case of IO errors.
+		 */
+		public void close() throws IOException {
+			synchronized (outQueue) {
+				connected = false;
+				outQueue.clear();
+				queuedBytes = 0;
+				outQueue.notifyAll();
+			}
+			synchronized (channels) {
+				channels.remove(this);
+			}
+			if (key != null) {
+				key.cancel();
+			}
+			socketChannel.close();
+		}
+
+		/**
+		 * the connection went down. Closes the channel and notifies the
+		 * endpoint.
+		 */
+		void closed() {
+			if (!connected) {
+				return;
+			}
+			try {
+				close();
+			} catch (final IOException ioe) {
+				// ignore
+			}
+			final ChannelEndpoint e = endpoint;
+			if (e != null) {
+				// disposing the endpoint must not block the selector thread
+				final Thread t = new Thread(new Runnable() {
+					public void run() {
+						e.receivedMessage(null);
+					}
+				}, "NIOChannel:Disconnect:" + getRemoteAddress()); //$NON-NLS-1$
+				t.setDaemon(true);
+				t.start();
+			}
+		}
+
+		/**
+		 * get the protocol that is implemented by the channel.
+		 *
+		 * @return the protocol.
+		 * @see ch.ethz.iks.r_osgi.channels.NetworkChannel#getProtocol()
+		 */
+		public String getProtocol() {
+			return PROTOCOL;
+		}
+
+		/**
+		 * get the remote address.
+		 *
+		 * @see ch.ethz.iks.r_osgi.channels.NetworkChannel#getRemoteAddress()
+		 */
+		public URI getRemoteAddress() {
+			return remoteEndpointAddress;
+		}
+
+		/**
+		 * get the local address.
+		 *
+		 * @see ch.ethz.iks.r_osgi.channels.NetworkChannel#getLocalAddress()
+		 */
+		public URI getLocalAddress() {
+			return localEndpointAddress;
+		}
+
+		/**
+		 * send a message through the channel. The message is serialized by
+		 * the calling thread and written as far as the socket accepts it
+		 * without blocking, the rest is written by the selector thread.
+		 * Blocks only if too many bytes are waiting in the outbound queue.
+		 *
+		 * @param message
+		 *            the message.
+		 * @throws IOException
+		 *             in case of IO errors.
+		 */
+		public void sendMessage(final RemoteOSGiMessage message)
+				throws IOException {
+			if (RemoteOSGiServiceImpl.MSG_DEBUG) {
+				RemoteOSGiServiceImpl.log.log(LogService.LOG_DEBUG,
+						"{NIO Channel} sending " + message); //$NON-NLS-1$
+			}
+			final FrameOutputStream bytes = new FrameOutputStream();
+			final ObjectOutputStream out = SERIALIZATION_DEFAULT
+					.equals(OSGI_SERIALIZATION) ? new OSGIObjectOutputStream(
+					bytes, true) : new SmartObjectOutputStream(bytes);
+			message.send(out);
+			final ByteBuffer frame = bytes.toFrame();
+			if (frame.remaining() - 4 > maxFrameSize) {
+				throw new IOException("Message too large: " + message); //$NON-NLS-1$
+			}
+
+			synchronized (outQueue) {
+				// the selector thread must never wait for itself
+				while (connected && queuedBytes > maxQueuedBytes
+						&& Thread.currentThread() != selector) {
+					try {
+						outQueue.wait();
+					} catch (final InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while sending " //$NON-NLS-1$
+								+ message);
+					}
+				}
+				if (!connected) {
+					throw new IOException("Channel is closed"); //$NON-NLS-1$
+				}
+				final boolean idle = outQueue.isEmpty();
+				outQueue.add(frame);
+				queuedBytes += frame.remaining();
+				if (idle) {
+					// nothing queued, try to write right away
+					try {
+						writeQueue();
+					} catch (final IOException ioe) {
+						selector.execute(new Runnable() {
+							public void run() {
+								closed();
+							}
+						});
+						throw ioe;
+					}
+					final SelectionKey k = key;
+					if (!outQueue.isEmpty() && k != null && k.isValid()) {
+						try {
+							k.interestOps(SelectionKey.OP_READ
+									| SelectionKey.OP_WRITE);
+						} catch (final CancelledKeyException cke) {
+							// closed concurrently
+							throw new IOException("Channel is closed"); //$NON-NLS-1$
+						}
+						selector.selector.wakeup();
+					}
+				}
+			}
+		}
+
+		/**
+		 * get the number of bytes waiting in the outbound queue.
+		 *
+		 * @return the number of bytes.
+		 */
+		long getQueuedBytes() {
+			synchronized (outQueue) {
+				return queuedBytes;
+			}
+		}
+
+		/**
+		 * write the outbound queue as far as possible without blocking. The
+		 * caller holds the outQueue lock.
+		 *
+		 * @throws IOException
+		 *             in case of IO errors.
+		 */
+		private void writeQueue() throws IOException {
+			while (!outQueue.isEmpty()) {
+				final ByteBuffer frame = (ByteBuffer) outQueue.getFirst();
+				socketChannel.write(frame);
+				if (frame.hasRemaining()) {
+					break;
+				}
+				outQueue.removeFirst();
+				queuedBytes -= frame.limit();
+			}
+			if (queuedBytes <= maxQueuedBytes) {
+				outQueue.notifyAll();
+			}
+		}
+
+		/**
+		 * the socket accepts more data. Called by the selector thread.
+		 */
+		void writable() {
+			try {
+				synchronized (outQueue) {
+					writeQueue();
+					if (outQueue.isEmpty()) {
+						key.interestOps(SelectionKey.OP_READ);
+					}
+				}
+			} catch (final IOException ioe) {
+				closed();
+			} catch (final CancelledKeyException cke) {
+				// closed concurrently
+				closed();
+			}
+		}
+
+		/**
+		 * data has arrived. Called by the selector thread.
+		 */
+		void readable() {
+			try {
+				final int n = socketChannel.read(readBuffer);
+				if (n < 0) {
+					closed();
+					return;
+				}
+			} catch (final IOException ioe) {
+				closed();
+				return;
+			}
+
+			readBuffer.flip();
+			while (connected && readBuffer.remaining() >= 4) {
+				final int start = readBuffer.position();
+				final int len = readBuffer.getInt(start);
+				if (len <= 0 || len > maxFrameSize) {
+					if (RemoteOSGiServiceImpl.log != null) {
+						RemoteOSGiServiceImpl.log.log(LogService.LOG_ERROR,
+								"Invalid frame length " + len + " on " //$NON-NLS-1$ //$NON-NLS-2$
+										+ this);
+					}
+					closed();
+					return;
+				}
+				if (readBuffer.remaining() < len + 4) {
+					if (readBuffer.capacity() < len + 4) {
+						// make room for the whole frame
+						final ByteBuffer larger = ByteBuffer.allocate(len + 4);
+						larger.put(readBuffer);
+						readBuffer = larger;
+						return;
+					}
+					break;
+				}
+				readBuffer.position(start + 4 + len);
+				received(readBuffer.array(), readBuffer.arrayOffset() + start
+						+ 4, len);
+			}
+			if (!readBuffer.hasRemaining()
+					&& readBuffer.capacity() > READ_BUFFER_SIZE) {
+				// release the buffer of a large message
+				readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			} else {
+				readBuffer.compact();
+			}
+		}
+
+		/**
+		 * decode and deliver a frame.
+		 */
+		private void received(final byte[] b, final int off, final int len) {
+			try {
+				final ByteArrayInputStream bytes = new ByteArrayInputStream(b,
+						off, len);
+				final ObjectInputStream in = SERIALIZATION_DEFAULT
+						.equals(OSGI_SERIALIZATION) ? new OSGIObjectInputStream(
+						RemoteOSGiActivator.getActivator().getContext()
+								.getBundle(), bytes)
+						: new SmartObjectInputStream(bytes);
+				final RemoteOSGiMessage msg = RemoteOSGiMessage.parse(in);
+				if (RemoteOSGiServiceImpl.MSG_DEBUG) {
+					RemoteOSGiServiceImpl.log.log(LogService.LOG_DEBUG,
+							"{NIO Channel} received " + msg); //$NON-NLS-1$
+				}
+				endpoint.receivedMessage(msg);
+			} catch (final Throwable t) {
+				// the frame is lost, but the next one can still be read
+				t.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * a thread serving the IO of a set of channels.
+	 */
+	final class SelectorThread extends Thread {
+
+		/**
+		 * the selector.
+		 */
+		final Selector selector;
+
+		/**
+		 * tasks to be run by the selector thread.
+		 */
+		private final ConcurrentLinkedQueue tasks = new ConcurrentLinkedQueue();
+
+		private volatile boolean running = true;
+
+		SelectorThread(final int i) throws IOException {
+			setName("NIOChannel:SelectorThread" + i); //$NON-NLS-1$
+			setDaemon(true);
+			selector = Selector.open();
+		}
+
+		/**
+		 * run a task on the selector thread.
+		 *
+		 * @param r
+		 *            the task.
+		 */
+		void execute(final Runnable r) {
+			tasks.add(r);
+			selector.wakeup();
+		}
+
+		/**
+		 * stop the thread.
+		 */
+		void close() {
+			running = false;
+			selector.wakeup();
+		}
+
+		/**
+		 * thread loop.
+		 *
+		 * @see java.lang.Thread#run()
+		 */
+		public void run() {
+			try {
+				while (running) {
+					selector.select();
+					Runnable r;
+					while ((r = (Runnable) tasks.poll()) != null) {
+						try {
+							r.run();
+						} catch (final RuntimeException re) {
+							// must not stop the IO of the other channels
+							re.printStackTrace();
+						}
+					}
+					final Iterator it = selector.selectedKeys().iterator();
+					while (it.hasNext()) {
+						final SelectionKey k = (SelectionKey) it.next();
+						it.remove();
+						final NIOChannel channel = (NIOChannel) k.attachment();
+						try {
+							if (k.isValid() && k.isReadable()) {
+								channel.readable();
+							}
+							if (k.isValid() && k.isWritable()) {
+								channel.writable();
+							}
+						} catch (final RuntimeException re) {
+							// e.g., the key was cancelled by a concurrent
+							// close, only this channel is affected
+							channel.closed();
+						}
+					}
+				}
+			} catch (final IOException ioe) {
+				ioe.printStackTrace();
+			} finally {
+				try {
+					selector.close();
+				} catch (final IOException ioe) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * accepts incoming connections.
+	 */
+	final class AcceptorThread extends Thread {
+
+		/**
+		 * the server socket channel.
+		 */
+		private final ServerSocketChannel server;
+
+		/**
+		 * creates a new AcceptorThread.
+		 *
+		 * @throws IOException
+		 *             if the server socket cannot be opened.
+		 */
+		AcceptorThread() throws IOException {
+			setName("NIOChannel:AcceptorThread"); //$NON-NLS-1$
+			setDaemon(true);
+
+			final String prop = RemoteOSGiActivator.getActivator()
+					.getContext().getProperty(PORT_PROPERTY);
+			final int port = prop != null ? Integer.parseInt(prop) : 9279;
+			server = ServerSocketChannel.open();
+			int e = 0;
+			while (true) {
+				try {
+					server.socket().bind(new InetSocketAddress(port + e));
+					listeningPort = port + e;
+					if (e != 0) {
+						System.err.println("WARNING: Port " + port //$NON-NLS-1$
+								+ " already in use. The R-OSGi NIO channel is running on port " //$NON-NLS-1$
+								+ listeningPort);
+					}
+					return;
+				} catch (final BindException b) {
+					e++;
+				}
+			}
+		}
+
+		/**
+		 * stop accepting connections.
+		 */
+		void close() throws IOException {
+			interrupt();
+			server.close();
+		}
+
+		/**
+		 * thread loop.
+		 *
+		 * @see java.lang.Thread#run()
+		 */
+		public void run() {
+			while (server.isOpen()) {
+				try {
+					// accept incoming connections and build channel endpoints
+					// for them
+					final NIOChannel channel = new NIOChannel(server.accept(),
+							null);
+					remoting.createEndpoint(channel);
+				} catch (final IOException ioe) {
+					if (server.isOpen()) {
+						ioe.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,273 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package ch.ethz.iks.r_osgi.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+import org.osgi.service.log.LogService;
+
+import ch.ethz.iks.r_osgi.URI;
+import ch.ethz.iks.r_osgi.messages.DeliverServiceMessage;
+
+/**
+ * Content addressed disk cache of generated proxy bundles. A proxy bundle is
+ * determined by the service URI, the R-OSGi version that generated it, and the
+ * content of the DeliverServiceMessage: the interface and smart proxy
+ * bytecode, all injected classes and the package imports and exports. The
+ * SHA-256 hash of these is the file name of the cached bundle, so a cache hit
+ * skips the bytecode generation, and a changed service interface or injection
+ * can never hit a stale entry.
+ * <p>
+ * The cache holds at most <code>maxEntries</code> bundles. Cache hits update
+ * the modification time of the file, and the least recently used bundles are
+ * deleted when the cache is full.
+ * </p>
+ */
+final class ProxyBundleCache {
+
+	private static final String SUFFIX = ".jar"; //$NON-NLS-1$
+
+	private final File dir;
+
+	private final int maxEntries;
+
+	private final String generatorVersion;
+
+	/**
+	 * create a new proxy bundle cache.
+	 *
+	 * @param dir
+	 *            the cache directory.
+	 * @param maxEntries
+	 *            the maximum number of cached bundles.
+	 * @param generatorVersion
+	 *            the version of the proxy generator, part of every key.
+	 */
+	ProxyBundleCache(final File dir, final int maxEntries,
+			final String generatorVersion) {
+		this.dir = dir;
+		this.maxEntries = maxEntries;
+		this.generatorVersion = generatorVersion;
+	}
+
+	/**
+	 * get the proxy bundle for a service, from the cache or generated.
+	 *
+	 * @param service
+	 *            the service URI.
+	 * @param deliv
+	 *            the DeliverServiceMessage.
+	 * @return the proxy bundle.
+	 * @throws IOException
+	 *             in case of proxy generation error.
+	 */
+	byte[] getProxyBundle(final URI service, final DeliverServiceMessage deliv)
+			throws IOException {
+		final String key = computeKey(service, deliv);
+		final File file = new File(dir, key + SUFFIX);
+		final byte[] cached = read(file);
+		if (cached != null) {
+			if (RemoteOSGiServiceImpl.PROXY_DEBUG) {
+				RemoteOSGiServiceImpl.log.log(LogService.LOG_DEBUG,
+						"Using cached proxy bundle " + file + " for " + service); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			return cached;
+		}
+		final byte[] bundle;
+		final InputStream in = new ProxyGenerator().generateProxyBundle(
+				service, deliv);
+		try {
+			bundle = in.readAllBytes();
+		} finally {
+			in.close();
+		}
+		write(file, bundle);
+		return bundle;
+	}
+
+	/**
+	 * remove a cached proxy bundle, e.g., because it could not be installed.
+	 *
+	 * @param service
+	 *            the service URI.
+	 * @param deliv
+	 *            the DeliverServiceMessage.
+	 */
+	void remove(final URI service, final DeliverServiceMessage deliv) {
+		new File(dir, computeKey(service, deliv) + SUFFIX).delete();
+	}
+
+	/**
+	 * compute the cache key of a proxy bundle.
+	 *
+	 * @return the hex encoded SHA-256 hash of everything the proxy bundle is
+	 *         generated from.
+	 */
+	String computeKey(final URI service, final DeliverServiceMessage deliv) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		update(digest, generatorVersion);
+		update(digest, service.toString());
+		final String[] ifaces = deliv.getInterfaceNames();
+		for (int i = 0; i < ifaces.length; i++) {
+			update(digest, ifaces[i]);
+		}
+		update(digest, deliv.getSmartProxyName());
+		update(digest, deliv.getImports());
+		update(digest, deliv.getExports());
+		update(digest, deliv.getOptionalImports());
+		final Map injections = deliv.getInjections();
+		final String[] names = (String[]) injections.keySet().toArray(
+				new String[injections.size()]);
+		// the injections map is not ordered
+		Arrays.sort(names);
+		for (int i = 0; i < names.length; i++) {
+			update(digest, names[i]);
+			final byte[] data = (byte[]) injections.get(names[i]);
+			updateLength(digest, data.length);
+			digest.update(data);
+		}
+		final byte[] hash = digest.digest();
+		final StringBuffer buffer = new StringBuffer(hash.length * 2);
+		for (int i = 0; i < hash.length; i++) {
+			buffer.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+			buffer.append(Character.forDigit(hash[i] & 0xf, 16));
+		}
+		return buffer.toString();
+	}
+
+	private static void update(final MessageDigest digest, final String s) {
+		if (s == null) {
+			updateLength(digest, -1);
+			return;
+		}
+		final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		// length prefixed, so that adjacent strings cannot be confused
+		updateLength(digest, bytes.length);
+		digest.update(bytes);
+	}
+
+	private static void updateLength(final MessageDigest digest, final int len) {
+		digest.update((byte) (len >>> 24));
+		digest.update((byte) (len >>> 16));
+		digest.update((byte) (len >>> 8));
+		digest.update((byte) len);
+	}
+
+	private byte[] read(final File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			final byte[] bytes;
+			final InputStream in = new FileInputStream(file);
+			try {
+				bytes = in.readAllBytes();
+			} finally {
+				in.close();
+			}
+			// mark as recently used
+			file.setLastModified(System.currentTimeMillis());
+			return bytes;
+		} catch (final IOException ioe) {
+			file.delete();
+			return null;
+		}
+	}
+
+	private synchronized void write(final File file, final byte[] bundle) {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			return;
+		}
+		// write to a temporary file first, so that readers never see a
+		// partially written bundle
+		File tmp = null;
+		try {
+			tmp = File.createTempFile("proxy", ".tmp", dir); //$NON-NLS-1$ //$NON-NLS-2$
+			final OutputStream out = new FileOutputStream(tmp);
+			try {
+				out.write(bundle);
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(file)) {
+				// another thread has cached the same bundle
+				tmp.delete();
+			}
+		} catch (final IOException ioe) {
+			if (tmp != null) {
+				tmp.delete();
+			}
+			if (RemoteOSGiServiceImpl.log != null) {
+				RemoteOSGiServiceImpl.log.log(LogService.LOG_WARNING,
+						"Could not cache proxy bundle " + file, ioe); //$NON-NLS-1$
+			}
+			return;
+		}
+		evict();
+	}
+
+	/**
+	 * delete the least recently used bundles if there are more than
+	 * maxEntries.
+	 */
+	private void evict() {
+		final File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		int count = 0;
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].getName().endsWith(SUFFIX)) {
+				files[count++] = files[i];
+			}
+		}
+		if (count <= maxEntries) {
+			return;
+		}
+		final File[] entries = (File[]) Arrays.copyOf(files, count);
+		final long[] modified = new long[count];
+		final Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			// read once, the times can change while sorting
+			modified[i] = entries[i].lastModified();
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator() {
+			public int compare(final Object o1, final Object o2) {
+				final long m1 = modified[((Integer) o1).intValue()];
+				final long m2 = modified[((Integer) o2).intValue()];
+				return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+			}
+		});
+		for (int i = 0; i < count - maxEntries; i++) {
+			entries[order[i].intValue()].delete();
+		}
+	}
+
+}
@@ -105,6 +105,16 @@ public final class RemoteOSGiActivator implements BundleActivator {
 					new TCPChannelFactory(), properties);
 			// TODO: add default transport supported intents
 		}
+
+		// register the NIO tcp channel
+		if ("true".equals(context //$NON-NLS-1$
+				.getProperty(RemoteOSGiServiceImpl.REGISTER_NIO_CHANNEL))) {
+			final Dictionary properties = new Hashtable();
+			properties.put(NetworkChannelFactory.PROTOCOL_PROPERTY,
+					NIOChannelFactory.PROTOCOL);
+			context.registerService(NetworkChannelFactory.class.getName(),
+					new NIOChannelFactory(), properties);
+		}
 	}
 
 	/**
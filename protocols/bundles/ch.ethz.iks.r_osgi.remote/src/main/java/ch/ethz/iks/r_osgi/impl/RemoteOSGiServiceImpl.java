@@ -149,12 +149,22 @@ final class RemoteOSGiServiceImpl implements RemoteOSGiService, Remoting {
 	 */
 	static final String REGISTER_DEFAULT_TCP_CHANNEL = "ch.ethz.iks.r_osgi.registerDefaultChannel"; //$NON-NLS-1$
 
+	/**
+	 * register the NIO tcp channel? Only if set to "true".
+	 */
+	static final String REGISTER_NIO_CHANNEL = "ch.ethz.iks.r_osgi.registerNIOChannel"; //$NON-NLS-1$
+
 	/**
 	 * register the default tcp channel? If not set to "false", the channel gets
 	 * registered.
 	 */
 	static final String THREADS_PER_ENDPOINT = "ch.ethz.iks.r_osgi.threadsPerEndpoint"; //$NON-NLS-1$
 
+	/**
+	 * the maximum number of worker threads shared by all endpoints.
+	 */
+	static final String MAX_WORKER_THREADS = "ch.ethz.iks.r_osgi.maxWorkerThreads"; //$NON-NLS-1$
+
 	/**
 	 * constant that holds the property string for proxy debug option.
 	 */
@@ -170,6 +180,12 @@ final class RemoteOSGiServiceImpl implements RemoteOSGiService, Remoting {
 	 */
 	static final String DEBUG_PROPERTY = "ch.ethz.iks.r_osgi.debug.internal"; //$NON-NLS-1$
 
+	/**
+	 * constant that holds the property string for the maximum number of
+	 * generated proxy bundles cached on disk. Set to 0 to disable the cache.
+	 */
+	static final String PROXY_CACHE_SIZE_PROPERTY = "ch.ethz.iks.r_osgi.proxyCache.maxEntries"; //$NON-NLS-1$
+
 	/**
 	 * marker for channel-registered event handlers so that they don't
 	 * contribute to the peer's topic space.
@@ -193,16 +209,29 @@ final class RemoteOSGiServiceImpl implements RemoteOSGiService, Remoting {
 	private static final int BUFFER_SIZE = 2048;
 
 	/**
-	 * how many worker threads per endpoint?
+	 * how many requests per endpoint may run concurrently on the shared worker
+	 * threads?
 	 */
 	static final int MAX_THREADS_PER_ENDPOINT = Integer.getInteger(
 			THREADS_PER_ENDPOINT, 2).intValue();
 
+	/**
+	 * how many worker threads in total?
+	 */
+	static final int MAX_WORKER_THREADS_TOTAL = Integer.getInteger(
+			MAX_WORKER_THREADS, 256).intValue();
+
 	/**
 	 * log proxy generation debug output.
 	 */
 	static boolean PROXY_DEBUG;
 
+	/**
+	 * the disk cache of generated proxy bundles, or <code>null</code> if
+	 * disabled.
+	 */
+	static ProxyBundleCache proxyBundleCache;
+
 	/**
 	 * log message traffic.
 	 */
@@ -345,6 +374,15 @@ final class RemoteOSGiServiceImpl implements RemoteOSGiService, Remoting {
 		prop = context.getProperty(R_OSGi_PORT_PROPERTY);
 		R_OSGI_PORT = prop != null ? Integer.parseInt(prop) : 9278;
 
+		// set up the proxy bundle cache
+		prop = context.getProperty(PROXY_CACHE_SIZE_PROPERTY);
+		final int cacheSize = prop != null ? Integer.parseInt(prop) : 256;
+		final File cacheDir = cacheSize > 0 ? context
+				.getDataFile("proxycache") : null; //$NON-NLS-1$
+		proxyBundleCache = cacheDir != null ? new ProxyBundleCache(cacheDir,
+				cacheSize, (String) context.getBundle().getHeaders().get(
+						Constants.BUNDLE_VERSION)) : null;
+
 		// initialize the transactionID with a random value
 		nextXid = (short) Math.round(Math.random() * Short.MAX_VALUE);
 
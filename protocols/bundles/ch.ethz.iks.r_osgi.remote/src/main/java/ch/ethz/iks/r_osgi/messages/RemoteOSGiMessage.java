@@ -117,6 +117,13 @@ public abstract class RemoteOSGiMessage {
 	 */
 	public static final short DELIVER_BUNDLES = 14;
 
+	/**
+	 * type code for stream data messages.
+	 * 
+	 * @since 1.1
+	 */
+	public static final short STREAM_DATA = 15;
+
 	
 	/**
 	 * the type code or functionID in SLP notation.
@@ -235,6 +242,9 @@ public abstract class RemoteOSGiMessage {
 		case DELIVER_BUNDLES:
 			msg = new DeliverBundlesMessage(input);
 			break;
+		case STREAM_DATA:
+			msg = new StreamDataMessage(input);
+			break;
 		default:
 			throw new RemoteOSGiException("funcID " + funcID //$NON-NLS-1$
 					+ " not supported."); //$NON-NLS-1$ 
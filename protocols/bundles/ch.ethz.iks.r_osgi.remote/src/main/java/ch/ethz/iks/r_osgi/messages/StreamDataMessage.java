@@ -0,0 +1,232 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package ch.ethz.iks.r_osgi.messages;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Stream data message. Pushes a chunk of a remote input stream to the peer
+ * holding the stream proxy, within the credit granted by
+ * {@link StreamRequestMessage#READ_AHEAD} requests. Stream data messages are
+ * not replies, so their XID does not match any request.
+ *
+ * @since 1.1
+ */
+public final class StreamDataMessage extends RemoteOSGiMessage {
+
+	/**
+	 * length indicating the end of the stream.
+	 */
+	public static final int EOF = -1;
+
+	/**
+	 * length indicating that reading the stream caused an exception.
+	 */
+	public static final int EXCEPTION = -2;
+
+	/**
+	 * stream ID of the source stream.
+	 */
+	private short streamID;
+
+	/**
+	 * number of bytes, or EOF or EXCEPTION.
+	 */
+	private int len;
+
+	/**
+	 * array containing the data.
+	 */
+	private byte[] b;
+
+	/**
+	 * the exception.
+	 */
+	private IOException exception;
+
+	/**
+	 * creates a new StreamDataMessage.
+	 */
+	public StreamDataMessage() {
+		super(STREAM_DATA);
+	}
+
+	/**
+	 * creates a new StreamDataMessage from network packet:
+	 *
+	 * <pre>
+	 *       0                   1                   2                   3
+	 *       0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	 *      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	 *      |    R-OSGi header (function = StreamDataMsg = 15)              |
+	 *      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	 *      |           streamID            |             len               \
+	 *      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	 *      |  len (ctd.)   | len &gt; 0: b, len == -2: exception            \
+	 *      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	 * </pre>
+	 *
+	 * .
+	 *
+	 * @param input
+	 *            an <code>ObjectInputStream</code> that provides the body of a
+	 *            R-OSGi network packet.
+	 * @throws IOException
+	 *             in case of IO failures.
+	 * @throws ClassNotFoundException
+	 */
+	StreamDataMessage(final ObjectInputStream input) throws IOException,
+			ClassNotFoundException {
+		super(STREAM_DATA);
+		streamID = input.readShort();
+		len = input.readInt();
+		if (len > 0) {
+			b = new byte[len];
+			input.readFully(b);
+		} else if (len == EXCEPTION) {
+			exception = (IOException) input.readObject();
+		} else if (len != EOF && len != 0) {
+			throw new IllegalArgumentException(
+					"len not within valid range: " + len); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * write the body of the message to a stream.
+	 *
+	 * @param out
+	 *            the ObjectOutputStream.
+	 * @throws IOException
+	 *             in case of IO failures.
+	 */
+	public void writeBody(final ObjectOutputStream out) throws IOException {
+		out.writeShort(streamID);
+		out.writeInt(len);
+		if (len > 0) {
+			out.write(b, 0, len);
+		} else if (len == EXCEPTION) {
+			out.writeObject(exception);
+		}
+	}
+
+	/**
+	 * get the ID of the stream.
+	 *
+	 * @return the ID of the stream.
+	 */
+	public short getStreamID() {
+		return streamID;
+	}
+
+	/**
+	 * set the ID of the stream.
+	 *
+	 * @param streamID
+	 *            the ID of the stream.
+	 */
+	public void setStreamID(final short streamID) {
+		this.streamID = streamID;
+	}
+
+	/**
+	 * get the length.
+	 *
+	 * @return the number of bytes, <code>EOF</code> or
+	 *         <code>EXCEPTION</code>.
+	 */
+	public int getLen() {
+		return len;
+	}
+
+	/**
+	 * get the data array.
+	 *
+	 * @return the array containing the data. Only the first
+	 *         <code>getLen()</code> bytes are valid.
+	 */
+	public byte[] getData() {
+		return b;
+	}
+
+	/**
+	 * set the data.
+	 *
+	 * @param b
+	 *            the array containing the data.
+	 * @param len
+	 *            the number of valid bytes in the array.
+	 */
+	public void setData(final byte[] b, final int len) {
+		this.b = b;
+		this.len = len;
+	}
+
+	/**
+	 * mark the end of the stream.
+	 */
+	public void setEOF() {
+		this.b = null;
+		this.len = EOF;
+	}
+
+	/**
+	 * did reading the stream cause an exception ?
+	 *
+	 * @return <code>true</code>, if an exception has been thrown on the remote
+	 *         side.
+	 */
+	public boolean causedException() {
+		return len == EXCEPTION;
+	}
+
+	/**
+	 * get the exception.
+	 *
+	 * @return the exception or <code>null</code> if none was thrown.
+	 */
+	public IOException getException() {
+		return exception;
+	}
+
+	/**
+	 * set the exception.
+	 *
+	 * @param exception
+	 *            the exception that was thrown.
+	 */
+	public void setException(final IOException exception) {
+		this.b = null;
+		this.len = EXCEPTION;
+		this.exception = exception;
+	}
+
+	/**
+	 * String representation for debug outputs.
+	 *
+	 * @return a string representation.
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		final StringBuffer buffer = new StringBuffer();
+		buffer.append("[STREAM_DATA] - XID: "); //$NON-NLS-1$
+		buffer.append(xid);
+		buffer.append(", streamID: "); //$NON-NLS-1$
+		buffer.append(streamID);
+		buffer.append(", len: "); //$NON-NLS-1$
+		buffer.append(len);
+		return buffer.toString();
+	}
+
+}
@@ -62,6 +62,34 @@ public final class StreamRequestMessage extends RemoteOSGiMessage {
 	 */
 	public static final byte WRITE_ARRAY = 3;
 
+	/**
+	 * operation identifier for granting credit to push stream data ahead of
+	 * demand. The length argument is the number of bytes the peer may send in
+	 * {@link StreamDataMessage}s in addition to the credit already granted.
+	 * A length of {@link #RELEASE_READ_AHEAD} tells the peer that the proxy
+	 * has been closed and no more data should be pushed. There is no reply.
+	 * Only sent for input streams whose handle announced read-ahead support.
+	 * 
+	 * @since 1.1
+	 */
+	public static final byte READ_AHEAD = 4;
+
+	/**
+	 * length argument of a {@link #READ_AHEAD} request that releases the
+	 * read-ahead state of the stream.
+	 * 
+	 * @since 1.1
+	 */
+	public static final int RELEASE_READ_AHEAD = -1;
+
+	/**
+	 * operation identifier for flushing the stream. Only sent for output
+	 * streams whose handle announced flush support.
+	 * 
+	 * @since 1.1
+	 */
+	public static final byte FLUSH = 5;
+
 	/**
 	 * stream ID of the target stream.
 	 */
@@ -123,6 +151,8 @@ public final class StreamRequestMessage extends RemoteOSGiMessage {
 			break;
 		case READ_ARRAY:
 		case WRITE:
+		case READ_AHEAD:
+		case FLUSH:
 			lenOrVal = input.readInt();
 			b = null;
 			break;
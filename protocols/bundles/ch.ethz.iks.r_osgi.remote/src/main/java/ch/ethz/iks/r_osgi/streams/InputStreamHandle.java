@@ -48,6 +48,13 @@ public class InputStreamHandle implements Serializable {
 	 */
 	private final short streamID;
 
+	/**
+	 * whether the stream owner pushes data on READ_AHEAD requests. Handles
+	 * serialized by older peers do not have this field, so it is
+	 * <code>false</code> for them.
+	 */
+	private final boolean readAhead;
+
 	/**
 	 * Create a new stream handle.
 	 * 
@@ -55,7 +62,21 @@ public class InputStreamHandle implements Serializable {
 	 *            the stream id.
 	 */
 	public InputStreamHandle(final short streamID) {
+		this(streamID, false);
+	}
+
+	/**
+	 * Create a new stream handle.
+	 * 
+	 * @param streamID
+	 *            the stream id.
+	 * @param readAhead
+	 *            <code>true</code> if the stream owner supports read-ahead.
+	 * @since 1.1
+	 */
+	public InputStreamHandle(final short streamID, final boolean readAhead) {
 		this.streamID = streamID;
+		this.readAhead = readAhead;
 	}
 
 	/**
@@ -67,4 +88,15 @@ public class InputStreamHandle implements Serializable {
 		return streamID;
 	}
 
+	/**
+	 * Does the stream owner support read-ahead ?
+	 * 
+	 * @return <code>true</code> if the stream owner pushes stream data on
+	 *         READ_AHEAD requests.
+	 * @since 1.1
+	 */
+	public boolean isReadAhead() {
+		return readAhead;
+	}
+
 }
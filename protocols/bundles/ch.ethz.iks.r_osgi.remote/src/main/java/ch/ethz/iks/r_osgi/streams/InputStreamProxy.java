@@ -30,11 +30,20 @@ package ch.ethz.iks.r_osgi.streams;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 
 import ch.ethz.iks.r_osgi.impl.ChannelEndpointImpl;
+import ch.ethz.iks.r_osgi.messages.StreamDataMessage;
 
 /**
  * Proxy object for input streams.
+ * <p>
+ * If the stream owner supports read-ahead, the proxy grants it credit for up
+ * to <code>window</code> bytes when it is first read from. The owner then
+ * pushes stream data ahead of demand, and reads are served from a local buffer.
+ * Credit is returned to the owner in batches as the buffer is consumed, so
+ * there is at most one round trip per half window instead of one per read.
+ * </p>
  * 
  * @author Michael Duller, ETH Zurich
  */
@@ -50,6 +59,52 @@ public class InputStreamProxy extends InputStream {
 	 */
 	private final ChannelEndpointImpl endpoint;
 
+	/**
+	 * the read-ahead buffer, used as a ring buffer. <code>null</code> if
+	 * every read is a request to the stream owner.
+	 */
+	private final byte[] buffer;
+
+	/**
+	 * timeout for waiting for data, in milliseconds.
+	 */
+	private final long timeout;
+
+	/**
+	 * position of the first buffered byte.
+	 */
+	private int head;
+
+	/**
+	 * number of buffered bytes.
+	 */
+	private int count;
+
+	/**
+	 * bytes consumed since credit was last returned to the stream owner.
+	 */
+	private int consumed;
+
+	/**
+	 * whether the initial credit has been granted.
+	 */
+	private boolean started;
+
+	/**
+	 * whether the stream owner has reached the end of the stream.
+	 */
+	private boolean eof;
+
+	/**
+	 * exception to throw once the buffered data has been read.
+	 */
+	private IOException exception;
+
+	/**
+	 * whether the proxy has been closed.
+	 */
+	private boolean closed;
+
 	/**
 	 * Create a new input stream proxy.
 	 * 
@@ -60,8 +115,30 @@ public class InputStreamProxy extends InputStream {
 	 */
 	public InputStreamProxy(final short streamID,
 			final ChannelEndpointImpl endpoint) {
+		this(streamID, endpoint, 0, 0);
+	}
+
+	/**
+	 * Create a new input stream proxy.
+	 * 
+	 * @param streamID
+	 *            the stream id.
+	 * @param endpoint
+	 *            the channel endpoint.
+	 * @param window
+	 *            the read-ahead window in bytes, or <code>0</code> to request
+	 *            every read from the stream owner.
+	 * @param timeout
+	 *            the timeout for waiting for pushed data, in milliseconds.
+	 * @since 1.1
+	 */
+	public InputStreamProxy(final short streamID,
+			final ChannelEndpointImpl endpoint, final int window,
+			final long timeout) {
 		this.streamID = streamID;
 		this.endpoint = endpoint;
+		this.buffer = window > 0 ? new byte[window] : null;
+		this.timeout = timeout;
 	}
 
 	/**
@@ -70,7 +147,12 @@ public class InputStreamProxy extends InputStream {
 	 * @see java.io.InputStream#read()
 	 */
 	public int read() throws IOException {
-		return endpoint.readStream(streamID);
+		if (buffer == null) {
+			return endpoint.readStream(streamID);
+		}
+		final byte[] b = new byte[1];
+		final int len = read(b, 0, 1);
+		return len > 0 ? (b[0] & 0xff) : -1;
 	}
 
 	/**
@@ -80,7 +162,160 @@ public class InputStreamProxy extends InputStream {
 	 */
 	public int read(final byte[] b, final int off, final int len)
 			throws IOException {
-		return endpoint.readStream(streamID, b, off, len);
+		if (buffer == null) {
+			return endpoint.readStream(streamID, b, off, len);
+		}
+		if (b == null) {
+			throw new NullPointerException();
+		}
+		if ((off < 0) || (len < 0) || (len + off > b.length)) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		final int credit;
+		final int n;
+		synchronized (this) {
+			if (!started) {
+				started = true;
+				// the credit is not sent while holding the lock, data is
+				// delivered under the same lock
+				credit = buffer.length;
+				n = 0;
+			} else {
+				n = take(b, off, len);
+				if (n < 0) {
+					return -1;
+				}
+				// return credit in batches of at least half the window, the
+				// owner has nothing left to push after the end of the stream
+				if (consumed >= buffer.length / 2 && !eof && exception == null) {
+					credit = consumed;
+					consumed = 0;
+				} else {
+					credit = 0;
+				}
+			}
+		}
+		if (credit > 0) {
+			endpoint.requestStreamData(streamID, credit);
+		}
+		return n > 0 ? n : read(b, off, len);
+	}
+
+	/**
+	 * take buffered bytes, waiting for data if there is none.
+	 * 
+	 * @return number of bytes taken, or -1 at the end of the stream.
+	 */
+	private int take(final byte[] b, final int off, final int len)
+			throws IOException {
+		final long deadline = System.currentTimeMillis() + timeout;
+		while (count == 0) {
+			if (closed) {
+				throw new IOException("Stream closed"); //$NON-NLS-1$
+			}
+			if (exception != null) {
+				throw exception;
+			}
+			if (eof) {
+				return -1;
+			}
+			final long wait = deadline - System.currentTimeMillis();
+			if (wait <= 0) {
+				throw new IOException("Timeout while reading from stream " //$NON-NLS-1$
+						+ streamID);
+			}
+			try {
+				wait(wait);
+			} catch (final InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+		final int n = Math.min(len, count);
+		final int first = Math.min(n, buffer.length - head);
+		System.arraycopy(buffer, head, b, off, first);
+		System.arraycopy(buffer, 0, b, off + first, n - first);
+		head = (head + n) % buffer.length;
+		count -= n;
+		consumed += n;
+		return n;
+	}
+
+	/**
+	 * get the number of bytes that can be read without blocking.
+	 * 
+	 * @see java.io.InputStream#available()
+	 */
+	public synchronized int available() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed"); //$NON-NLS-1$
+		}
+		return count;
+	}
+
+	/**
+	 * close the proxy. The stream on the remote peer is not closed.
+	 * 
+	 * @see java.io.InputStream#close()
+	 */
+	public void close() throws IOException {
+		if (buffer == null) {
+			return;
+		}
+		synchronized (this) {
+			closed = true;
+			count = 0;
+			notifyAll();
+		}
+		endpoint.releaseInputStreamProxy(streamID);
+	}
+
+	/**
+	 * called by the channel endpoint when stream data has been pushed by the
+	 * stream owner.
+	 * 
+	 * @param msg
+	 *            the stream data message.
+	 * @since 1.1
+	 */
+	public synchronized void dataReceived(final StreamDataMessage msg) {
+		if (closed) {
+			return;
+		}
+		final int len = msg.getLen();
+		if (len == StreamDataMessage.EOF) {
+			eof = true;
+		} else if (msg.causedException()) {
+			exception = msg.getException();
+		} else if (len > buffer.length - count) {
+			exception = new IOException(
+					"Stream data exceeds granted credit on stream " + streamID); //$NON-NLS-1$
+		} else {
+			final int tail = (head + count) % buffer.length;
+			final int first = Math.min(len, buffer.length - tail);
+			System.arraycopy(msg.getData(), 0, buffer, tail, first);
+			System.arraycopy(msg.getData(), first, buffer, 0, len - first);
+			count += len;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * called by the channel endpoint when the stream cannot deliver any more
+	 * data, e.g., because the channel has been closed.
+	 * 
+	 * @param e
+	 *            the exception to throw on reads after the buffered data.
+	 * @since 1.1
+	 */
+	public synchronized void failed(final IOException e) {
+		if (exception == null && !eof) {
+			exception = e;
+		}
+		notifyAll();
 	}
 
 }
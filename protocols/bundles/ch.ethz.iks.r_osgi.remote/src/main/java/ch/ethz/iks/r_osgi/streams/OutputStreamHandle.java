@@ -47,6 +47,13 @@ public final class OutputStreamHandle implements Serializable {
 	 */
 	private final short streamID;
 
+	/**
+	 * whether the stream owner handles FLUSH requests. Handles serialized by
+	 * older peers do not have this field, so it is <code>false</code> for
+	 * them.
+	 */
+	private final boolean flush;
+
 	/**
 	 * create a new output stream handle.
 	 * 
@@ -54,7 +61,21 @@ public final class OutputStreamHandle implements Serializable {
 	 *            the stream ID.
 	 */
 	public OutputStreamHandle(final short streamID) {
+		this(streamID, false);
+	}
+
+	/**
+	 * create a new output stream handle.
+	 * 
+	 * @param streamID
+	 *            the stream ID.
+	 * @param flush
+	 *            <code>true</code> if the stream owner supports flush.
+	 * @since 1.1
+	 */
+	public OutputStreamHandle(final short streamID, final boolean flush) {
 		this.streamID = streamID;
+		this.flush = flush;
 	}
 
 	/**
@@ -66,4 +87,15 @@ public final class OutputStreamHandle implements Serializable {
 		return streamID;
 	}
 
+	/**
+	 * does the stream owner support flush ?
+	 * 
+	 * @return <code>true</code> if the stream owner flushes the stream on
+	 *         FLUSH requests.
+	 * @since 1.1
+	 */
+	public boolean isFlushSupported() {
+		return flush;
+	}
+
 }
@@ -35,6 +35,15 @@ import ch.ethz.iks.r_osgi.impl.ChannelEndpointImpl;
 
 /**
  * Output stream proxy.
+ * <p>
+ * Writes are collected in a local buffer and sent to the stream owner when the
+ * buffer is full, and on {@link #flush()} and {@link #close()}. Exceptions
+ * raised by the remote stream are therefore reported by the write that sends
+ * the buffer, or by <code>flush</code>. If the stream owner supports it,
+ * <code>flush</code> also flushes the remote stream. When the proxy is an
+ * argument of a remote call, the buffered data is also sent when the call
+ * returns.
+ * </p>
  * 
  * @author Michael Duller, ETH Zurich.
  */
@@ -50,6 +59,27 @@ public class OutputStreamProxy extends OutputStream {
 	 */
 	private final ChannelEndpointImpl endpoint;
 
+	/**
+	 * the write buffer. <code>null</code> if every write is sent to the
+	 * stream owner.
+	 */
+	private final byte[] buffer;
+
+	/**
+	 * whether the stream owner supports flush.
+	 */
+	private final boolean remoteFlush;
+
+	/**
+	 * number of buffered bytes.
+	 */
+	private int count;
+
+	/**
+	 * whether the proxy has been closed.
+	 */
+	private boolean closed;
+
 	/**
 	 * create a new output stream proxy.
 	 * 
@@ -60,8 +90,30 @@ public class OutputStreamProxy extends OutputStream {
 	 */
 	public OutputStreamProxy(final short streamID,
 			final ChannelEndpointImpl endpoint) {
+		this(streamID, endpoint, 0, false);
+	}
+
+	/**
+	 * create a new output stream proxy.
+	 * 
+	 * @param streamID
+	 *            the stream ID.
+	 * @param endpoint
+	 *            the endpoint.
+	 * @param bufferSize
+	 *            the size of the write buffer, or <code>0</code> to send
+	 *            every write to the stream owner.
+	 * @param remoteFlush
+	 *            <code>true</code> if the stream owner supports flush.
+	 * @since 1.1
+	 */
+	public OutputStreamProxy(final short streamID,
+			final ChannelEndpointImpl endpoint, final int bufferSize,
+			final boolean remoteFlush) {
 		this.streamID = streamID;
 		this.endpoint = endpoint;
+		this.buffer = bufferSize > 0 ? new byte[bufferSize] : null;
+		this.remoteFlush = remoteFlush;
 	}
 
 	/**
@@ -72,8 +124,16 @@ public class OutputStreamProxy extends OutputStream {
 	 * @throws IOException
 	 *             in case of IO failures.
 	 */
-	public void write(final int b) throws IOException {
-		endpoint.writeStream(streamID, b);
+	public synchronized void write(final int b) throws IOException {
+		if (buffer == null) {
+			endpoint.writeStream(streamID, b);
+			return;
+		}
+		ensureOpen();
+		if (count == buffer.length) {
+			flushBuffer();
+		}
+		buffer[count++] = (byte) b;
 	}
 
 	/**
@@ -86,9 +146,94 @@ public class OutputStreamProxy extends OutputStream {
 	 *            the length.
 	 * @throws IOException 
 	 */
-	public void write(final byte[] b, final int off, final int len)
-			throws IOException {
-		endpoint.writeStream(streamID, b, off, len);
+	public synchronized void write(final byte[] b, final int off,
+			final int len) throws IOException {
+		if (buffer == null) {
+			endpoint.writeStream(streamID, b, off, len);
+			return;
+		}
+		if (b == null) {
+			throw new NullPointerException();
+		}
+		if ((off < 0) || (len < 0) || (len + off > b.length)) {
+			throw new IndexOutOfBoundsException();
+		}
+		ensureOpen();
+		if (len > buffer.length - count) {
+			flushBuffer();
+		}
+		if (len >= buffer.length) {
+			// too large to buffer, send directly
+			endpoint.writeStream(streamID, b, off, len);
+		} else {
+			System.arraycopy(b, off, buffer, count, len);
+			count += len;
+		}
+	}
+
+	/**
+	 * send the buffered data to the stream owner, and flush the remote stream
+	 * if supported.
+	 * 
+	 * @throws IOException
+	 *             in case of IO failures.
+	 */
+	public synchronized void flush() throws IOException {
+		if (buffer == null) {
+			return;
+		}
+		ensureOpen();
+		flushBuffer();
+		if (remoteFlush) {
+			endpoint.flushStream(streamID);
+		}
+	}
+
+	/**
+	 * send the buffered data to the stream owner without flushing the remote
+	 * stream. Does nothing if the proxy has been closed.
+	 * 
+	 * @throws IOException
+	 *             in case of IO failures.
+	 * @since 1.1
+	 */
+	public synchronized void sendBuffer() throws IOException {
+		if (buffer == null || closed) {
+			return;
+		}
+		flushBuffer();
+	}
+
+	/**
+	 * flush and close the proxy. The stream on the remote peer is not closed.
+	 * 
+	 * @throws IOException
+	 *             in case of IO failures.
+	 */
+	public synchronized void close() throws IOException {
+		if (buffer == null || closed) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			closed = true;
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed"); //$NON-NLS-1$
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			final int len = count;
+			// discard the data even if sending fails, like a failed write
+			count = 0;
+			endpoint.writeStream(streamID, buffer, 0, len);
+		}
 	}
 
 }
@@ -12,17 +12,18 @@
  *****************************************************************************/
 package org.eclipse.ecf.protocol.bittorrent.internal.net;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.Socket;
 import java.nio.channels.SocketChannel;
 import java.security.SecureRandom;
-import java.util.LinkedList;
 import java.util.Random;
 import java.util.Vector;
 
 /**
- * A pool of threads to be allocated when a connection needs to be made with a
- * peer.
+ * The connections of a torrent with its peers. The connections do not have
+ * threads of their own, the I/O of the connections of all torrents is driven
+ * by the {@link PeerSelector} threads.
  */
 class ConnectionPool {
 
@@ -45,8 +46,6 @@ class ConnectionPool {
 
 	private final Vector connections;
 
-	private final LinkedList targets;
-
 	/**
 	 * The manager associated with this pool.
 	 */
@@ -61,25 +60,18 @@ class ConnectionPool {
 	 */
 	private int maxConnections = 50;
 
-	/**
-	 * The number of active connections.
-	 */
-	private int size = 0;
-
 	/**
 	 * The number of unchoked peers.
 	 */
 	private int unchokedPeers = 0;
 
-	private boolean connected = false;
-
 	ConnectionPool(TorrentManager manager) {
 		this.manager = manager;
 		connections = new Vector(maxConnections);
-		targets = new LinkedList();
 	}
 
 	private synchronized void unchoke() {
+		int size = connections.size();
 		if (size <= MAX_UNCHOKED_PEERS || unchokedPeers < MAX_UNCHOKED_PEERS) {
 			return;
 		}
@@ -103,8 +95,8 @@ class ConnectionPool {
 
 	/**
 	 * Creates a connection to the specified ip at the given port. If the
-	 * current number of active threads is equal to the maximum number of
-	 * allowed connections, <code>false</code> will be returned.
+	 * current number of connections is equal to the maximum number of allowed
+	 * connections, no connection will be made.
 	 * 
 	 * @param ip
 	 *            the IP of the peer
@@ -114,90 +106,52 @@ class ConnectionPool {
 	 *             If the <code>ISO-8859-1</code> encoding is not supported
 	 */
 	void connectTo(String ip, int port) throws UnsupportedEncodingException {
-		if (unchokingThread == null) {
-			unchokingThread = new OptimisticUnchokingThread();
-			unchokingThread.start();
-		} else if (size == maxConnections) {
-			return;
-		}
-		connected = true;
-
-		synchronized (this) {
-			for (int i = 0; i < connections.size(); i++) {
-				PeerConnection connection = (PeerConnection) connections.get(i);
-				if (connection.isInitialized()
-						&& connection.isConnectedTo(ip, port)) {
-					return;
-				}
-			}
+		PeerConnection connection = new PeerConnection(this, manager);
+		connection.setAddress(ip, port);
+		add(connection, ip, port);
+	}
 
-			targets.add(new ConnectionInfo(ip, port));
-			for (int i = 0; i < connections.size(); i++) {
-				if (!((PeerConnection) connections.get(i)).isInitialized()) {
-					notify();
-					return;
-				}
+	void connectTo(SocketChannel channel) throws UnsupportedEncodingException {
+		Socket socket = channel.socket();
+		String ip = socket.getInetAddress().getHostAddress();
+		int port = socket.getPort();
+		PeerConnection connection = new PeerConnection(this, manager);
+		connection.setChannel(channel);
+		if (!add(connection, ip, port)) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// ignored
 			}
-			PeerConnection connection = new PeerConnection(this, manager);
-			connections.add(connection);
-			connection.start();
 		}
 	}
 
-	void connectTo(SocketChannel channel) throws UnsupportedEncodingException {
+	private synchronized boolean add(PeerConnection connection, String ip,
+			int port) {
+		if (connections.size() >= maxConnections) {
+			return false;
+		}
+		for (int i = 0; i < connections.size(); i++) {
+			if (((PeerConnection) connections.get(i)).isConnectedTo(ip, port)) {
+				return false;
+			}
+		}
 		if (unchokingThread == null) {
 			unchokingThread = new OptimisticUnchokingThread();
 			unchokingThread.start();
-		} else if (size == maxConnections) {
-			return;
-		}
-		connected = true;
-
-		Socket socket = channel.socket();
-		String ip = socket.getLocalAddress().getHostAddress();
-		int port = socket.getLocalPort();
-		synchronized (this) {
-			for (int i = 0; i < connections.size(); i++) {
-				PeerConnection connection = (PeerConnection) connections.get(i);
-				if (connection.isConnectedTo(ip, port)) {
-					return;
-				}
-			}
-
-			targets.add(new ConnectionInfo(channel));
-			for (int i = 0; i < connections.size(); i++) {
-				if (!((PeerConnection) connections.get(i)).isInitialized()) {
-					notify();
-					return;
-				}
-			}
-			PeerConnection connection = new PeerConnection(this, manager);
-			connections.add(connection);
-			connection.start();
 		}
+		connections.add(connection);
+		PeerSelector.register(connection);
+		return true;
 	}
 
 	/**
 	 * Closes all of the channels that are currently active.
 	 */
 	synchronized void close() {
-		connected = false;
 		for (int i = 0; i < connections.size(); i++) {
 			((PeerConnection) connections.get(i)).close();
 		}
-		targets.clear();
-		notifyAll();
-	}
-
-	synchronized boolean isConnected() {
-		return connected;
-	}
-
-	ConnectionInfo dequeue() {
-		synchronized (targets) {
-			return targets.isEmpty() ? null : (ConnectionInfo) targets
-					.removeFirst();
-		}
 	}
 
 	/**
@@ -205,10 +159,10 @@ class ConnectionPool {
 	 * the downloading has completed successfully since it is no longer
 	 * necessary to be connected to seeds since no pieces will be requested.
 	 */
-	void disconnectSeeds() {
+	synchronized void disconnectSeeds() {
 		for (int i = 0; i < connections.size(); i++) {
 			PeerConnection connection = (PeerConnection) connections.get(i);
-			if (connection.isInitialized() && connection.isSeed()) {
+			if (connection.isSeed()) {
 				connection.close();
 			}
 		}
@@ -219,7 +173,7 @@ class ConnectionPool {
 	 * now been choked. This allows for another peer to be unchoked permanently
 	 * during the next rotation.
 	 */
-	void unchokedPeerCleared() {
+	synchronized void unchokedPeerCleared() {
 		unchokedPeers--;
 	}
 
@@ -232,22 +186,9 @@ class ConnectionPool {
 	synchronized void setMaxConnections(int maxConnections) {
 		if (this.maxConnections < maxConnections) {
 			connections.ensureCapacity(maxConnections);
-		} else if (this.maxConnections > maxConnections) {
-			// push back all active connections
-			for (int i = 0; i < maxConnections; i++) {
-				if (!((PeerConnection) connections.get(i)).isInitialized()) {
-					for (int j = connections.size(); j > i; j--) {
-						PeerConnection conn = (PeerConnection) connections
-								.get(j);
-						if (conn.isInitialized()) {
-							connections.remove(i);
-							connections.add(i, connections.remove(j - 1));
-						}
-					}
-				}
-			}
+		} else {
 			// close all extraneous connections
-			for (int i = maxConnections; i < this.maxConnections; i++) {
+			for (int i = maxConnections; i < connections.size(); i++) {
 				((PeerConnection) connections.get(i)).close();
 			}
 		}
@@ -262,33 +203,28 @@ class ConnectionPool {
 		return true;
 	}
 
-	void connectionCreated() {
-		size++;
-	}
-
 	/**
 	 * Indicates to the pool that a connection has ended. This means that one of
-	 * the {@link PeerConnection}s are no longer running.
+	 * the {@link PeerConnection}s is no longer connected to its peer.
+	 * 
+	 * @param connection
+	 *            the connection that has been closed
 	 */
-	void connectionClosed() {
-		size--;
-		if (size == 0 && unchokingThread != null) {
+	synchronized void connectionClosed(PeerConnection connection) {
+		connections.remove(connection);
+		if (connections.isEmpty() && unchokingThread != null) {
 			unchokingThread.interrupt();
 			unchokingThread = null;
 		}
 	}
 
-	void connectionDestroyed(PeerConnection connection) {
-		connections.remove(connection);
-	}
-
 	/**
 	 * Retrieves the current number of active connections.
 	 * 
 	 * @return the number of active connections of this pool
 	 */
 	int getConnected() {
-		return size;
+		return connections.size();
 	}
 
 	/**
@@ -299,12 +235,9 @@ class ConnectionPool {
 	 *            the number of the piece that the have message should
 	 *            correspond to
 	 */
-	void queueHaveMessage(int piece) {
+	synchronized void queueHaveMessage(int piece) {
 		for (int i = 0; i < connections.size(); i++) {
-			PeerConnection connection = (PeerConnection) connections.get(i);
-			if (connection.isInitialized()) {
-				connection.queueHaveMessage(piece);
-			}
+			((PeerConnection) connections.get(i)).queueHaveMessage(piece);
 		}
 	}
 
@@ -327,12 +260,9 @@ class ConnectionPool {
 					} catch (InterruptedException e) {
 						return;
 					}
-					for (int j = 0; j < connections.size(); j++) {
-						PeerConnection conn = (PeerConnection) connections
-								.get(j);
-						if (conn.isInitialized()) {
-							conn.queueSpeeds();
-						}
+					Object[] conns = connections.toArray();
+					for (int j = 0; j < conns.length; j++) {
+						((PeerConnection) conns[j]).queueSpeeds();
 					}
 				}
 				unchoke();
@@ -16,10 +16,13 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.net.SocketException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
 
 import org.eclipse.ecf.protocol.bittorrent.TorrentConfiguration;
 import org.eclipse.ecf.protocol.bittorrent.TorrentFile;
@@ -28,10 +31,16 @@ import org.eclipse.ecf.protocol.bittorrent.internal.encode.Encode;
 import org.eclipse.ecf.protocol.bittorrent.internal.torrent.Piece;
 
 /**
- * An extension of the <code>Thread</code> class to manage a connection with a
- * peer.
+ * Manages a connection with a peer. The connection does not have a thread of
+ * its own, its channel is non-blocking and driven by a {@link PeerSelector}.
+ * Incoming data is split into messages as it arrives, and outgoing messages
+ * are queued up until the channel can take them.
+ * <p>
+ * Several block requests are kept outstanding with the peer at any time so
+ * that the connection does not sit idle for a round trip after every block.
+ * </p>
  */
-class PeerConnection extends Thread {
+class PeerConnection {
 
 	private static final byte[] CHOKE = { 0x00, 0x00, 0x00, 0x01, 0x00 };
 
@@ -45,6 +54,8 @@ class PeerConnection extends Thread {
 	 */
 	private static final byte[] NOT_INTERESTED = { 0x00, 0x00, 0x00, 0x01, 0x03 };
 
+	private static final byte[] KEEPALIVE = { 0x00, 0x00, 0x00, 0x00 };
+
 	/**
 	 * This is a specially formed string created by a byte array to represent
 	 * the string literal "BitTorrent protocol" led by a value of '19' along
@@ -56,20 +67,56 @@ class PeerConnection extends Thread {
 			116, 111, 99, 111, 108, 0, 0, 0, 0, 0, 0, 0, 0 });
 
 	/**
-	 * The amount of space allocated for the <code>ByteBuffer</code>s. The
-	 * value is 1024.
+	 * The length of a handshake message. The value is 68.
 	 */
-	private static final int BUFFER_MAXIMUM = 1024;
+	private static final int HANDSHAKE_LENGTH = 68;
 
 	/**
-	 * The <code>ByteBuffer</code> that is used to read data from the peer.
+	 * The largest block that a peer may request. The value is 131072.
+	 */
+	private static final int MAX_BLOCK_LENGTH = 131072;
+
+	/**
+	 * The number of block requests that are kept outstanding with the peer.
+	 * The value is 8.
+	 */
+	private static final int PIPELINE_LENGTH = 8;
+
+	/**
+	 * The number of block requests of the peer that are queued up before
+	 * further requests are ignored. The value is 64.
+	 */
+	private static final int MAX_QUEUED_REQUESTS = 64;
+
+	/**
+	 * The most bytes that are written to the peer in one selection round, one
+	 * block with its header, so that writes to all peers are interleaved.
+	 */
+	private static final int WRITE_QUANTUM = 16384 + 13;
+
+	/**
+	 * The initial size of the <code>ByteBuffer</code> that is used to read
+	 * data from the peer. It grows if a longer message is received.
+	 */
+	private static final int BUFFER_SIZE = 32768;
+
+	/**
+	 * The number of milliseconds to wait for an outgoing connection to be
+	 * established. The value is 30000.
+	 */
+	private static final long CONNECT_TIMEOUT = 30000;
+
+	/**
+	 * The number of milliseconds without sending anything after which a
+	 * keep-alive message is sent. The value is 120000.
 	 */
-	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_MAXIMUM);
+	private static final long KEEPALIVE_INTERVAL = 120000;
 
 	/**
-	 * The <code>ByteBuffer</code> that is for sending data to the peer.
+	 * The number of milliseconds between looking for something to request
+	 * from a peer that nothing is being requested from. The value is 1000.
 	 */
-	private final ByteBuffer sendBuffer = ByteBuffer.allocate(BUFFER_MAXIMUM);
+	private static final long REQUEST_INTERVAL = 1000;
 
 	private final ConnectionPool pool;
 
@@ -81,16 +128,31 @@ class PeerConnection extends Thread {
 
 	private final byte[] handshake;
 
-	private final byte[] have = { 0x00, 0x00, 0x00, 0x05, 0x04, 0x00, 0x00,
-			0x00, 0x00 };
+	/**
+	 * The block requests that have been sent to the peer and have not been
+	 * answered yet.
+	 */
+	private final LinkedList outstanding = new LinkedList();
+
+	/**
+	 * The messages that are waiting to be written to the peer, as
+	 * <code>ByteBuffer</code>s.
+	 */
+	private final LinkedList outbound = new LinkedList();
 
-	private final byte[] request = { 0x00, 0x00, 0x00, 0x0d, 0x06, 0x00, 0x00,
-			0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x20, 0x00 };
+	/**
+	 * The numbers of the pieces that a HAVE message should be sent for.
+	 */
+	private final ArrayList haveMessages = new ArrayList();
+
+	/**
+	 * The <code>ByteBuffer</code> that is used to read data from the peer.
+	 */
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
 
-	private final byte[] blockInfo = { 0x00, 0x00, 0x00, 0x09, 0x07, 0x00,
-			0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 };
+	private PeerSelector selector;
 
-	private final boolean[] haveMessages;
+	private SelectionKey key;
 
 	private SocketChannel channel;
 
@@ -106,7 +168,7 @@ class PeerConnection extends Thread {
 	 * The name and version of the BitTorrent client that this peer is currently
 	 * using or <code>"Unknown"</code> if it is not known.
 	 */
-	private String clientName;
+	private String clientName = "Unknown"; //$NON-NLS-1$
 
 	/**
 	 * The peer's IP address.
@@ -127,6 +189,22 @@ class PeerConnection extends Thread {
 
 	private long lastUploaded = 0;
 
+	/**
+	 * The time at which the last outgoing connection attempt was started.
+	 */
+	private long connectTime;
+
+	/**
+	 * The time at which data was last written to the peer.
+	 */
+	private long lastSent;
+
+	/**
+	 * The time at which this connection last looked for something to request
+	 * while nothing was outstanding.
+	 */
+	private long lastRequest;
+
 	/**
 	 * The port that this peer is listening on.
 	 */
@@ -138,11 +216,16 @@ class PeerConnection extends Thread {
 	 */
 	private int queuePosition = 0;
 
+	/**
+	 * The number of BT_PIECE messages in {@link #outbound}.
+	 */
+	private int queuedPieces = 0;
+
 	/**
 	 * Whether the client is currently choking this peer. This value is
 	 * <code>true</code> in the beginning.
 	 */
-	private boolean isChoking = true;
+	private volatile boolean isChoking = true;
 
 	/**
 	 * Whether this client is interested in a piece that this peer currently
@@ -165,9 +248,42 @@ class PeerConnection extends Thread {
 	/**
 	 * Identifies whether this peer is a seed or not.
 	 */
-	private boolean peerIsSeed = false;
+	private volatile boolean peerIsSeed = false;
+
+	/**
+	 * Whether an outgoing connection is still being established.
+	 */
+	private boolean connecting = false;
+
+	/**
+	 * Whether the peer's handshake has been received.
+	 */
+	private boolean handshakeReceived = false;
+
+	/**
+	 * Whether reading has been suspended until the next tick because the
+	 * download rate has been used up.
+	 */
+	private boolean readThrottled = false;
+
+	/**
+	 * Whether writing has been suspended until the next tick because the upload
+	 * rate has been used up.
+	 */
+	private boolean writeThrottled = false;
 
-	private boolean initialized = true;
+	private boolean closed = false;
+
+	/**
+	 * Whether this connection has been handed to its selector thread because
+	 * there are queued messages to send or it should be closed.
+	 */
+	private boolean scheduled = false;
+
+	/**
+	 * Indicates whether the connection should be closed.
+	 */
+	private boolean closeRequested = false;
 
 	/**
 	 * Indicates whether a choke message should be sent to the peer.
@@ -191,9 +307,6 @@ class PeerConnection extends Thread {
 		}
 		handshake = buffer.toString().getBytes("ISO-8859-1"); //$NON-NLS-1$
 		peerPieces = new boolean[torrent.getNumPieces()];
-		haveMessages = new boolean[peerPieces.length];
-		Arrays.fill(peerPieces, false);
-		Arrays.fill(haveMessages, false);
 	}
 
 	void setAddress(String ip, int port) {
@@ -205,396 +318,334 @@ class PeerConnection extends Thread {
 	void setChannel(SocketChannel channel) {
 		this.channel = channel;
 		Socket socket = channel.socket();
-		this.ip = socket.getLocalAddress().getHostAddress();
-		this.port = socket.getLocalPort();
+		this.ip = socket.getInetAddress().getHostAddress();
+		this.port = socket.getPort();
+	}
+
+	void setSelector(PeerSelector selector) {
+		this.selector = selector;
 	}
 
 	/**
-	 * Connect to the peer and exchange handshakes as necessary. A new
-	 * connection may be created depending on whether an incoming or outgoing
-	 * connection is being established.
+	 * Registers this connection's channel with the selector and starts to
+	 * connect to the peer, or answers the peer if this is an incoming
+	 * connection whose handshake has already been read. Only called by the
+	 * selector thread.
+	 * 
+	 * @param selector
+	 *            the selector to register with
+	 * @throws IOException
+	 *             If an I/O error occurs while connecting to the peer
 	 */
-	private void connect() {
-		try {
-			if (channel == null) {
-				call();
-			} else {
-				answer();
+	void register(Selector selector) throws IOException {
+		if (isCloseRequested()) {
+			teardown(null);
+			return;
+		}
+		lastSent = System.currentTimeMillis();
+		if (channel == null) {
+			channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			key = channel.register(selector, 0, this);
+			connecting = true;
+			connectTime = lastSent;
+			if (channel.connect(address)) {
+				finishConnect();
 			}
-		} catch (IOException e) {
-			String message = e.getMessage();
-			TorrentConfiguration.debug("The connection with " + ip + ":" + port //$NON-NLS-1$ //$NON-NLS-2$
-					+ " has been closed" //$NON-NLS-1$
-					+ (message == null ? "." : ": " + message)); //$NON-NLS-1$ //$NON-NLS-2$
-		} catch (RuntimeException e) {
-			close();
-			throw e;
+			address = null;
+		} else {
+			channel.configureBlocking(false);
+			key = channel.register(selector, 0, this);
+			TorrentConfiguration.debug("Established incoming connection from " + ip //$NON-NLS-1$
+					+ ":" + port); //$NON-NLS-1$
+			// the peer's handshake has been read by the TorrentServer
+			handshakeReceived = true;
+			sendHandshake();
+			sendBitfield();
 		}
-		close();
+		flush();
+		updateInterestOps();
 	}
 
-	private void call() throws IOException {
-		try {
-			channel = SocketChannel.open(address);
-			address = null;
-		} catch (SocketException e) {
-			TorrentConfiguration.debug("Unable to connect to " + ip + ":" //$NON-NLS-1$ //$NON-NLS-2$
-					+ port + " - " + e.getMessage()); //$NON-NLS-1$
-			return;
+	/**
+	 * Completes an outgoing connection and sends the handshake.
+	 * 
+	 * @throws IOException
+	 *             If the connection could not be established
+	 */
+	void finishConnect() throws IOException {
+		if (channel.finishConnect()) {
+			connecting = false;
+			TorrentConfiguration.debug("Established outgoing connection with " + ip //$NON-NLS-1$
+					+ ":" + port); //$NON-NLS-1$
+			sendHandshake();
 		}
-		TorrentConfiguration.debug("Established outgoing connection with " + ip //$NON-NLS-1$
-				+ ":" + port); //$NON-NLS-1$
+	}
 
-		sendHandshake();
-		int read = 0;
-		int ret = 0;
-		// a return handshake is 68 bytes long, read until at least that many
-		// bytes has been retrieved
-		while (read < 68) {
-			if (channel == null) {
-				return;
-			}
-			ret = channel.read(buffer);
-			if (ret == -1) {
-				TorrentConfiguration.debug("End of stream has been reached with " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
-				return;
-			}
-			read += ret;
+	/**
+	 * Sets the operations that the selector should watch for, depending on
+	 * whether there is something to write and whether the transfer rates have
+	 * been used up.
+	 */
+	void updateInterestOps() {
+		if (key == null || !key.isValid()) {
+			return;
 		}
-		TorrentConfiguration.debug("Received [BT_HANDSHAKE] message from " + ip //$NON-NLS-1$
-				+ ":" + port); //$NON-NLS-1$
-		byte[] client = new byte[20];
-		System.arraycopy(buffer.array(), 48, client, 0, 20);
-		processClientName(new String(client));
-
-		// check to see if data besides the return handshake was sent
-		if (read != 68) {
-			// keep reading until four additional bytes are read
-			while (read < 72) {
-				if (channel == null) {
-					return;
-				}
-				ret = channel.read(buffer);
-				if (ret == -1) {
-					TorrentConfiguration.debug("End of stream has been reached with " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
-					return;
-				}
-				read += ret;
-			}
-			if (buffer.get(71) != 0) {
-				while (read < 73) {
-					if (channel == null) {
-						return;
-					}
-					ret = channel.read(buffer);
-					if (ret == -1) {
-						TorrentConfiguration.debug("End of stream has been reached with " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
-						return;
-					}
-					read += ret;
-				}
-				// check to see if part of what was read is a bitfield
-				if (buffer.get(72) == 5) {
-					int length = 68 + 4 + buffer.get(71);
-					// keep reading until the entire bitfield has been read in
-					while (read < length) {
-						if (channel == null) {
-							return;
-						}
-						ret = channel.read(buffer);
-						if (ret == -1) {
-							TorrentConfiguration.debug("End of stream has been reached with " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
-							return;
-						}
-						read += ret;
-					}
-					buffer.flip();
-					byte[] array = new byte[read];
-					buffer.get(array, 0, read);
-					processBitfield(array, 73, 72 + array[71]);
-					if (read == length) {
-						sendBitfield();
-					}
-				} else if (buffer.get(71) == 1) {
-					byte[] bytes = null;
-					buffer.get(bytes, 0, read);
-					byte[] array = new byte[5];
-					System.arraycopy(bytes, 68, array, 0, 5);
-					if (!processMessage(array)) {
-						return;
-					}
-				}
-			} else if (buffer.get(78) == 0 && buffer.get(79) == 0
-					&& buffer.get(80) == 0) {
-				TorrentConfiguration
-						.debug("Received [BT_KEEPALIVE] message from " + ip //$NON-NLS-1$
-								+ ":" + port); //$NON-NLS-1$
-			} else {
-				TorrentConfiguration
-						.debug("Received an unidentifiable message from " + ip //$NON-NLS-1$
-								+ ":" + port); //$NON-NLS-1$
-				return;
-			}
+		int ops;
+		if (connecting) {
+			ops = SelectionKey.OP_CONNECT;
 		} else {
-			sendBitfield();
+			ops = readThrottled ? 0 : SelectionKey.OP_READ;
+			if (!writeThrottled && !outbound.isEmpty()) {
+				ops |= SelectionKey.OP_WRITE;
+			}
+		}
+		if (key.interestOps() != ops) {
+			key.interestOps(ops);
 		}
-		buffer.clear();
-		// enter the main loop
-		query();
 	}
 
-	private void answer() throws IOException {
-		TorrentConfiguration.debug("Established incoming connection from " + ip //$NON-NLS-1$
-				+ ":" + port); //$NON-NLS-1$
-		sendHandshake();
-		sendBitfield();
-		query();
-	}
+	/**
+	 * Reads what the peer has sent and processes all complete messages.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs while reading from the peer or
+	 *             writing the received data
+	 */
+	void read() throws IOException {
+		long maximum = manager.getDownloadRequestSpeed();
+		if (maximum == 0) {
+			readThrottled = true;
+			return;
+		}
 
-	private void query() throws IOException {
-		TorrentConfiguration.debug("Entering the main loop with " + ip + ":" //$NON-NLS-1$ //$NON-NLS-2$
-				+ port);
-		byte[] array = null;
-		int read = 0;
-		int ret = 0;
-		while (channel != null && channel.isConnected()) {
-			buffer.clear();
-			sendQueuedMessages();
-			if (read != 0) {
-				byte[] bufferArray = buffer.array();
-				byte[] bytes = new byte[bufferArray.length];
-				System.arraycopy(bufferArray, read, bytes, 0,
-						bufferArray.length - read);
-				buffer.put(bytes);
-				buffer.position(read);
-			}
-			int request = sendRequest(manager.request(peerPieces));
-			int length = request == -1 ? 4 : request;
-			resetBuffer();
-			while (read < 4) {
-				if (channel == null) {
-					return;
+		int limit = buffer.limit();
+		if (maximum != -1 && maximum < buffer.remaining()) {
+			buffer.limit(buffer.position() + (int) maximum);
+		}
+		int read = channel.read(buffer);
+		buffer.limit(limit);
+		if (read == -1) {
+			teardown("End of stream has been reached"); //$NON-NLS-1$
+			return;
+		}
+		manager.updateDownloadRequestSpeed(read);
+
+		buffer.flip();
+		byte[] array = buffer.array();
+		int needed = 0;
+		while (!closed) {
+			int position = buffer.position();
+			int available = buffer.remaining();
+			if (!handshakeReceived) {
+				if (available < HANDSHAKE_LENGTH) {
+					needed = HANDSHAKE_LENGTH;
+					break;
 				}
-				ret = channel.read(buffer);
-				if (ret == -1) {
-					TorrentConfiguration.debug("End of stream has been reached with " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
+				if (!processHandshake(array, position)) {
+					teardown("The peer's handshake does not match this torrent"); //$NON-NLS-1$
 					return;
 				}
-				manager.updateDownloadRequestSpeed(ret);
-				limitBuffer(manager.getDownloadRequestSpeed());
-				read += ret;
+				buffer.position(position + HANDSHAKE_LENGTH);
+				continue;
 			}
-			buffer.limit(BUFFER_MAXIMUM);
-			buffer.rewind();
 
-			if (array == null) {
-				array = new byte[read];
-				buffer.get(array, 0, read);
-			} else {
-				byte[] bytes = new byte[array.length + read];
-				System.arraycopy(array, 0, bytes, 0, array.length);
-				buffer.get(bytes, array.length, read);
-				array = bytes;
+			if (available < 4) {
+				break;
 			}
-
-			if (array[0] == 0 && array[1] == 0 && array[2] == 0
-					&& array[3] == 0) {
+			int length = Decode.decodeFourByteNumber(array, position);
+			if (length < 0 || length > MAX_BLOCK_LENGTH + 9
+					&& length > (peerPieces.length + 7) / 8 + 1) {
+				teardown("A message of " + length + " bytes is too long"); //$NON-NLS-1$ //$NON-NLS-2$
+				return;
+			} else if (available < length + 4) {
+				needed = length + 4;
+				break;
+			}
+			buffer.position(position + 4 + length);
+			if (length == 0) {
 				TorrentConfiguration.debug("Received [BT_KEEPALIVE] from " + ip //$NON-NLS-1$
 						+ ":" + port); //$NON-NLS-1$
-				array = truncate(array, 4);
-				read -= 4;
+			} else if (!processMessage(array, position + 4, length)) {
+				teardown(null);
+				return;
 			}
+		}
+		if (closed) {
+			return;
+		}
+		buffer.compact();
+		if (needed > buffer.capacity()) {
+			ByteBuffer larger = ByteBuffer.allocate(needed);
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+		requestBlocks();
+	}
 
-			while (array != null && array.length > 4) {
-				if (0 <= array[4] && array[4] <= 3) {
-					if (!processMessage(array)) {
-						return;
-					}
-					array = truncate(array, 5);
-					read -= 5;
-				} else if (array[3] == 5 && array[4] == 4) {
-					if (array.length < 9) {
-						buffer.clear();
-						while (read < 9) {
-							if (channel == null) {
-								return;
-							}
-							ret = channel.read(buffer);
-							if (ret == -1) {
-								TorrentConfiguration.debug("End of stream has been reached with " + ip + ":" //$NON-NLS-1$ //$NON-NLS-2$
-										+ port);
-								return;
-							}
-							read += ret;
-						}
-						byte[] bytes = new byte[read];
-						System.arraycopy(array, 0, bytes, 0, array.length);
-						buffer.flip();
-						buffer.get(bytes, array.length, read - array.length);
-						array = bytes;
-					}
-					processHaveMessage(array);
-					array = truncate(array, 9);
-					read -= 9;
-				} else if (array[4] == 5) {
-					length = 4 + array[3];
-					while (read < length) {
-						if (channel == null) {
-							return;
-						}
-						ret = channel.read(buffer);
-						if (ret == -1) {
-							TorrentConfiguration.debug("End of stream has been reached with " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
-							return;
-						}
-						read += ret;
-					}
-
-					if (array.length < read) {
-						byte[] bytes = new byte[read];
-						System.arraycopy(array, 0, bytes, 0, array.length);
-						buffer.flip();
-						buffer.get(bytes, array.length, read - array.length);
-						array = bytes;
-					}
-
-					processBitfield(array, 5, length);
-					array = truncate(array, length);
-					read -= length;
-				} else if (array[3] == 13 && array[4] == 6) {
-					if (array.length < 17) {
-						buffer.clear();
-						while (read < 17) {
-							if (channel == null) {
-								return;
-							}
-							ret = channel.read(buffer);
-							if (ret == -1) {
-								TorrentConfiguration.debug("End of stream has been reached with " + ip + ":" //$NON-NLS-1$ //$NON-NLS-2$
-										+ port);
-								return;
-							}
-							read += ret;
-						}
-						byte[] bytes = new byte[read];
-						System.arraycopy(array, 0, bytes, 0, array.length);
-						buffer.flip();
-						buffer.get(bytes, array.length, read - array.length);
-						array = bytes;
-					}
-					if (!processRequest(array)) {
-						// an improper request was sent
-						close();
-						return;
-					}
-					array = truncate(array, 17);
-					read -= 17;
-				} else if (array[4] == 7) {
-					byte[] bufferArray = buffer.array();
-					length = Decode.decodeFourByteNumber(array, 0) + 4;
-					int offset = array.length;
-					if (offset < length) {
-						byte[] bytes = new byte[length];
-						System.arraycopy(array, 0, bytes, 0, offset);
-						array = bytes;
-					}
-
-					resetBuffer();
-					buffer.clear();
-					int start = read;
-					while (read < length) {
-						if (channel == null) {
-							return;
-						}
-						ret = channel.read(buffer);
-						if (ret == -1) {
-							TorrentConfiguration.debug("End of stream has been reached with " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
-							return;
-						}
-
-						// expand the array's length if necessary
-						if (offset + ret > array.length) {
-							byte[] bytes = new byte[offset + ret];
-							System.arraycopy(array, 0, bytes, 0, array.length);
-							array = bytes;
-						}
-
-						System.arraycopy(bufferArray, 0, array, offset, ret);
-						manager.updateDownloadRequestSpeed(ret);
-						buffer.rewind();
-						limitBuffer(manager.getDownloadRequestSpeed());
-						offset += ret;
-						read += ret;
-					}
-					buffer.limit(BUFFER_MAXIMUM);
-
-					if (array.length < read) {
-						byte[] bytes = new byte[read];
-						System.arraycopy(array, 0, bytes, 0, array.length);
-						buffer.position(start);
-						buffer.get(bytes, array.length, read - array.length);
-						array = bytes;
-					}
-
-					processPiece(array);
-					array = truncate(array, length);
-					read -= length;
-				} else if (array[4] == 8) {
-					// TODO: implement the processing of BT_CANCEL messages
-					array = truncate(array, 17);
-					read -= 17;
-				} else if (array[4] == 9) {
-					// TODO: implement the processing of BT_PORT messages
-					array = truncate(array, 9);
-					read -= 9;
-				} else {
-					TorrentConfiguration.debug("An ID of " + array[4] //$NON-NLS-1$
-							+ " has been encountered. Closing connection with " //$NON-NLS-1$
-							+ ip + ":" + port); //$NON-NLS-1$
-					return;
-				}
+	/**
+	 * Writes queued up messages to the peer. At most {@link #WRITE_QUANTUM}
+	 * bytes are written, and no more than the upload rate of the torrent
+	 * allows.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs while writing to the peer
+	 */
+	void write() throws IOException {
+		long maximum = manager.getUploadRequestSpeed();
+		if (maximum == 0) {
+			writeThrottled = true;
+			return;
+		}
+		int quantum = maximum == -1 || maximum > WRITE_QUANTUM ? WRITE_QUANTUM
+				: (int) maximum;
+		while (quantum > 0 && !outbound.isEmpty()) {
+			ByteBuffer message = (ByteBuffer) outbound.getFirst();
+			int limit = message.limit();
+			if (message.remaining() > quantum) {
+				message.limit(message.position() + quantum);
+			}
+			int written = channel.write(message);
+			message.limit(limit);
+			if (written == 0) {
+				return;
+			}
+			lastSent = System.currentTimeMillis();
+			manager.updateUploadRequestSpeed(written);
+			quantum -= written;
+			if (message.hasRemaining()) {
+				return;
+			}
+			outbound.removeFirst();
+			if (isPieceMessage(message)) {
+				queuedPieces--;
+				int length = limit - 13;
+				uploaded += length;
+				manager.addToUploaded(length);
+				int piece = message.getInt(5);
+				int index = message.getInt(9);
+				TorrentConfiguration.debug("Sent [BT_PIECE data for #" + piece + ": " //$NON-NLS-1$ //$NON-NLS-2$
+						+ index + "->" + (length + index - 1) + "] message to " + ip //$NON-NLS-1$ //$NON-NLS-2$
+						+ ":" + port); //$NON-NLS-1$
 			}
 		}
 	}
 
-	private byte[] truncate(byte[] array, int length) {
-		if (array.length == length) {
-			return null;
-		} else {
-			byte[] bytes = new byte[array.length - length];
-			System.arraycopy(array, length, bytes, 0, bytes.length);
-			return bytes;
+	/**
+	 * Sends the messages that other threads have queued up for the peer, or
+	 * closes the connection if that has been requested.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs while sending the messages to the peer
+	 */
+	void flush() throws IOException {
+		Object[] haves;
+		boolean choke;
+		boolean unchoke;
+		synchronized (this) {
+			scheduled = false;
+			if (closeRequested || key == null) {
+				// messages are sent once the connection has been registered
+				haves = null;
+				choke = false;
+				unchoke = false;
+			} else {
+				haves = haveMessages.toArray();
+				haveMessages.clear();
+				choke = sendChoke;
+				unchoke = sendUnchoke;
+				sendChoke = false;
+				sendUnchoke = false;
+			}
 		}
+		// the lock is not held here, the pool is locked while closing
+		if (isCloseRequested()) {
+			teardown(null);
+			return;
+		} else if (haves == null || connecting || !handshakeReceived) {
+			// the bitfield that is sent after the handshake covers these
+			return;
+		}
+		sendQueuedMessages(haves, choke, unchoke);
 	}
 
-	private void resetBuffer() {
-		long maximum = manager.getDownloadRequestSpeed();
-		if (maximum == -1) {
+	/**
+	 * Called by the selector thread every {@link PeerSelector#TICK_INTERVAL}
+	 * milliseconds to lift the throttling, time out connection attempts and
+	 * keep the connection alive.
+	 * 
+	 * @param now
+	 *            the current time
+	 */
+	void tick(long now) {
+		if (connecting) {
+			if (now - connectTime >= CONNECT_TIMEOUT) {
+				teardown("Unable to connect"); //$NON-NLS-1$
+			}
 			return;
 		}
-		buffer.limit(0);
-		limitBuffer(maximum);
+		readThrottled = false;
+		writeThrottled = false;
+		if (outbound.isEmpty() && now - lastSent >= KEEPALIVE_INTERVAL) {
+			enqueue(KEEPALIVE);
+			TorrentConfiguration.debug("Sent [BT_KEEPALIVE] message to " + ip //$NON-NLS-1$
+					+ ":" + port); //$NON-NLS-1$
+		}
+		if (handshakeReceived && outstanding.isEmpty()
+				&& now - lastRequest >= REQUEST_INTERVAL) {
+			lastRequest = now;
+			requestBlocks();
+		}
 	}
 
-	private void limitBuffer(long maximum) {
-		if (maximum != 0) {
-			int currentLimit = buffer.limit();
-			if (maximum + currentLimit > BUFFER_MAXIMUM) {
-				buffer.limit(BUFFER_MAXIMUM);
-			} else {
-				buffer.limit(currentLimit + (int) maximum);
+	private void enqueue(byte[] message) {
+		outbound.add(ByteBuffer.wrap(message));
+	}
+
+	private static boolean isPieceMessage(ByteBuffer message) {
+		return message.limit() >= 13 && message.get(4) == 7;
+	}
+
+	/**
+	 * Removes BT_PIECE messages that have not started to be written yet from
+	 * {@link #outbound}.
+	 * 
+	 * @param piece
+	 *            the number of the piece
+	 * @param index
+	 *            the index within the piece
+	 * @param length
+	 *            the length of the block, or <code>-1</code> to remove all
+	 *            queued BT_PIECE messages
+	 */
+	private void dropQueuedPieces(int piece, int index, int length) {
+		for (Iterator it = outbound.iterator(); it.hasNext();) {
+			ByteBuffer message = (ByteBuffer) it.next();
+			if (message.position() == 0
+					&& isPieceMessage(message)
+					&& (length == -1 || (message.getInt(5) == piece
+							&& message.getInt(9) == index && message.limit() - 13 == length))) {
+				it.remove();
+				queuedPieces--;
 			}
-		} else {
-			try {
-				buffer.limit(0);
-				// sleep for a short while here since if it's zero, chances are
-				// that the next rotation will return a zero also, causing an
-				// unnecessarily long loop
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				// ignored
+		}
+	}
+
+	private boolean processHandshake(byte[] array, int offset) {
+		// compare the protocol string and the info hash, but not the reserved
+		// bytes in between
+		for (int i = 0; i < 48; i++) {
+			if ((i < 20 || i >= 28) && array[offset + i] != handshake[i]) {
+				return false;
 			}
 		}
+		TorrentConfiguration.debug("Received [BT_HANDSHAKE] message from " + ip //$NON-NLS-1$
+				+ ":" + port); //$NON-NLS-1$
+		processClientName(new String(array, offset + 48, 20));
+		handshakeReceived = true;
+		sendBitfield();
+		return true;
 	}
 
 	private void processClientName(String peerID) {
@@ -691,12 +742,30 @@ class PeerConnection extends Thread {
 		}
 	}
 
-	private boolean processMessage(byte[] array) throws IOException {
-		switch (array[4]) {
+
+	/**
+	 * Processes a message that has been received from the peer.
+	 * 
+	 * @param array
+	 *            the array that holds the message
+	 * @param offset
+	 *            the position of the message's ID within the array
+	 * @param length
+	 *            the length of the message, including its ID
+	 * @return <code>true</code> if the message has been processed,
+	 *         <code>false</code> if the connection should be closed
+	 * @throws IOException
+	 *             If an I/O error occurs while processing the message
+	 */
+	private boolean processMessage(byte[] array, int offset, int length)
+			throws IOException {
+		switch (array[offset]) {
 		case 0:
 			TorrentConfiguration.debug("Received [BT_CHOKE] message from " + ip //$NON-NLS-1$
 					+ ":" + port); //$NON-NLS-1$
 			peerIsChoking = true;
+			// a peer discards all pending requests when it chokes
+			cancelRequests();
 			break;
 		case 1:
 			TorrentConfiguration.debug("Received [BT_UNCHOKE] message from " //$NON-NLS-1$
@@ -727,13 +796,39 @@ class PeerConnection extends Thread {
 			}
 			sendChoke();
 			break;
+		case 4:
+			return length == 5 && processHaveMessage(array, offset);
+		case 5:
+			return processBitfield(array, offset + 1, offset + length);
+		case 6:
+			return length == 13 && processRequest(array, offset);
+		case 7:
+			return length >= 9 && processPiece(array, offset, length);
+		case 8:
+			if (length == 13) {
+				processCancel(array, offset);
+			}
+			break;
+		case 9:
+			// TODO: implement the processing of BT_PORT messages
+			break;
 		default:
-			return false;
+			// the length of the message is known, so it can simply be skipped
+			TorrentConfiguration.debug("Ignoring a message with an ID of " //$NON-NLS-1$
+					+ array[offset] + " from " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
+			break;
 		}
 		return true;
 	}
 
-	private void processBitfield(byte[] array, int offset, int end) {
+	private boolean processBitfield(byte[] array, int offset, int end) {
+		if (end - offset != (peerPieces.length + 7) / 8) {
+			TorrentConfiguration.debug("Received a [BT_BITFIELD] message of the wrong length from " //$NON-NLS-1$
+					+ ip + ":" + port); //$NON-NLS-1$
+			return false;
+		}
+		// the availability of pieces that were announced before is replaced
+		manager.removePieceAvailability(peerPieces);
 		boolean[] hasPiece = new boolean[(end - offset) * 8];
 		int count = 0;
 		// iterate over the retrieved bytes and keep track of the pieces that
@@ -753,24 +848,26 @@ class PeerConnection extends Thread {
 		TorrentConfiguration.debug("Received [BT_BITFIELD] message from " + ip //$NON-NLS-1$
 				+ ":" + port); //$NON-NLS-1$
 		manager.addPieceAvailability(peerPieces);
-
-		for (int i = 0; i < peerPieces.length; i++) {
-			if (!peerPieces[i]) {
-				return;
-			}
-		}
-		peerIsSeed = true;
+		checkSeed();
+		return true;
 	}
 
-	private void processHaveMessage(byte[] array) {
-		int piece = Decode.decodeFourByteNumber(array, 5);
+	private boolean processHaveMessage(byte[] array, int offset) {
+		int piece = Decode.decodeFourByteNumber(array, offset + 1);
+		if (piece < 0 || piece >= peerPieces.length) {
+			return false;
+		}
 		if (!peerPieces[piece]) {
 			peerPieces[piece] = true;
 			manager.updatePieceAvailability(piece);
 		}
 		TorrentConfiguration.debug("Received [BT_HAVE piece #" + piece //$NON-NLS-1$
 				+ "] message from " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
+		checkSeed();
+		return true;
+	}
 
+	private void checkSeed() {
 		for (int i = 0; i < peerPieces.length; i++) {
 			if (!peerPieces[i]) {
 				return;
@@ -779,38 +876,56 @@ class PeerConnection extends Thread {
 		peerIsSeed = true;
 	}
 
-	private void processPiece(byte[] array) throws IOException {
-		int piece = Decode.decodeFourByteNumber(array, 5);
-		int index = Decode.decodeFourByteNumber(array, 9);
-		int length = Decode.decodeFourByteNumber(array, 0) - 9;
+	private boolean processPiece(byte[] array, int offset, int length)
+			throws IOException {
+		int piece = Decode.decodeFourByteNumber(array, offset + 1);
+		int index = Decode.decodeFourByteNumber(array, offset + 5);
+		length -= 9;
 
-		manager.write(piece, index, array, 13, length);
+		for (Iterator it = outstanding.iterator(); it.hasNext();) {
+			int[] information = (int[]) ((Object[]) it.next())[1];
+			if (information[0] == piece && information[1] == index) {
+				it.remove();
+				break;
+			}
+		}
+		manager.write(piece, index, array, offset + 9, length);
 		downloaded += length;
 		TorrentConfiguration.debug("Received [BT_PIECE data for #" + piece //$NON-NLS-1$
 				+ ": " + index + "->" + (length + index - 1) //$NON-NLS-1$ //$NON-NLS-2$
 				+ "] message from " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
+		return true;
 	}
 
-	private boolean processRequest(byte[] array) throws IOException {
-		int piece = Decode.decodeFourByteNumber(array, 5);
-		int index = Decode.decodeFourByteNumber(array, 9);
-		int length = Decode.decodeFourByteNumber(array, 13);
+	private boolean processRequest(byte[] array, int offset) throws IOException {
+		int piece = Decode.decodeFourByteNumber(array, offset + 1);
+		int index = Decode.decodeFourByteNumber(array, offset + 5);
+		int length = Decode.decodeFourByteNumber(array, offset + 9);
 		if (isChoking) {
 			TorrentConfiguration.debug("Ignoring [BT_REQUEST piece #" + piece //$NON-NLS-1$
 					+ ": " + index + "->" + (index + length - 1) //$NON-NLS-1$ //$NON-NLS-2$
 					+ "] message from " + ip + ":" + port //$NON-NLS-1$ //$NON-NLS-2$
 					+ " as this peer is currently choked"); //$NON-NLS-1$
 			return true;
+		} else if (queuedPieces >= MAX_QUEUED_REQUESTS) {
+			TorrentConfiguration.debug("Ignoring [BT_REQUEST piece #" + piece //$NON-NLS-1$
+					+ ": " + index + "->" + (index + length - 1) //$NON-NLS-1$ //$NON-NLS-2$
+					+ "] message from " + ip + ":" + port //$NON-NLS-1$ //$NON-NLS-2$
+					+ " as too many requests are queued"); //$NON-NLS-1$
+			return true;
 		}
 		TorrentConfiguration.debug("Received [BT_REQUEST piece #" + piece //$NON-NLS-1$
 				+ ": " + index + "->" + (index + length - 1) //$NON-NLS-1$ //$NON-NLS-2$
 				+ "] message from " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
 
-		if (length > 131072) {
+		if (length > MAX_BLOCK_LENGTH) {
 			TorrentConfiguration.debug("The requesting of " + length //$NON-NLS-1$
 					+ " bytes violates the standard maximum amount of 131072, the connection to " + ip + ":" + port //$NON-NLS-1$ //$NON-NLS-2$
 					+ " will be closed."); //$NON-NLS-1$
 			return false;
+		} else if (piece < 0 || piece >= peerPieces.length || index < 0
+				|| length < 0) {
+			return false;
 		}
 
 		byte[] block = manager.getPieceData(piece, index, length);
@@ -818,71 +933,36 @@ class PeerConnection extends Thread {
 			return false;
 		}
 
-		Encode.putIntegerAsFourBytes(blockInfo, length + 9, 0);
-		Encode.putIntegerAsFourBytes(blockInfo, piece, 5);
-		Encode.putIntegerAsFourBytes(blockInfo, index, 9);
-		sendBuffer.put(blockInfo);
-
-		int blockLength = block.length;
-		int offset = 0;
-		int remaining = sendBuffer.remaining();
-		long write = manager.getUploadRequestSpeed();
-		if (write != 0) {
-			if (write == -1) {
-				// since no limit has been set, simply set the amount to write
-				// as the length of the block
-				write = blockLength;
-			} else {
-				write = write < blockLength ? write : blockLength;
-			}
-			write = remaining < write ? remaining : write;
-		}
-		while (offset < blockLength) {
-			if (write == 0) {
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					// ignored
-				}
-			} else {
-				sendBuffer.put(block, offset, (int) write);
-				sendBuffer.flip();
-				channel.write(sendBuffer);
-				sendBuffer.clear();
-				offset += write;
-				manager.updateUploadRequestSpeed((int) write);
-				uploaded += write;
-				manager.addToUploaded(write);
-			}
-			write = manager.getUploadRequestSpeed();
-			if (write != 0) {
-				remaining = blockLength - offset;
-				if (write == -1) {
-					write = remaining;
-				} else {
-					write = write < remaining ? write : remaining;
-				}
-				remaining = sendBuffer.remaining();
-				write = remaining < write ? remaining : write;
-			}
-		}
-
-		TorrentConfiguration.debug("Sent [BT_PIECE data for #" + piece + ": " //$NON-NLS-1$ //$NON-NLS-2$
-				+ index + "->" + (length + index - 1) + "] message to " + ip //$NON-NLS-1$ //$NON-NLS-2$
-				+ ":" + port); //$NON-NLS-1$
+		// the block is written out by the selector thread as the upload rate
+		// allows, see write()
+		byte[] message = new byte[13 + block.length];
+		message[4] = 7;
+		Encode.putIntegerAsFourBytes(message, length + 9, 0);
+		Encode.putIntegerAsFourBytes(message, piece, 5);
+		Encode.putIntegerAsFourBytes(message, index, 9);
+		System.arraycopy(block, 0, message, 13, block.length);
+		enqueue(message);
+		queuedPieces++;
 		return true;
 	}
 
-	private void sendHandshake() throws IOException {
-		sendBuffer.put(handshake);
-		sendBuffer.flip();
-		channel.write(sendBuffer);
-		sendBuffer.clear();
+	private void processCancel(byte[] array, int offset) {
+		int piece = Decode.decodeFourByteNumber(array, offset + 1);
+		int index = Decode.decodeFourByteNumber(array, offset + 5);
+		int length = Decode.decodeFourByteNumber(array, offset + 9);
+		TorrentConfiguration.debug("Received [BT_CANCEL piece #" + piece //$NON-NLS-1$
+				+ ": " + index + "->" + (index + length - 1) //$NON-NLS-1$ //$NON-NLS-2$
+				+ "] message from " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
+		dropQueuedPieces(piece, index, length);
+	}
+
+	private void sendHandshake() {
+		enqueue(handshake.clone());
 		TorrentConfiguration.debug("Sent [BT_HANDSHAKE] message to " + ip + ":" //$NON-NLS-1$ //$NON-NLS-2$
 				+ port);
 	}
 
-	private void sendBitfield() throws IOException {
+	private void sendBitfield() {
 		byte[] bitfield = manager.getBitfield();
 		boolean hasPiece = false;
 		for (int i = 0; i < bitfield.length; i++) {
@@ -897,91 +977,130 @@ class PeerConnection extends Thread {
 			return;
 		}
 
-		byte[] header = { 0x00, 0x00, 0x00, 0x00, 0x05 };
-		Encode.putIntegerAsFourBytes(header, bitfield.length + 1, 0);
-		sendBuffer.put(header);
-		sendBuffer.put(manager.getBitfield());
-		sendBuffer.flip();
-		channel.write(sendBuffer);
-		sendBuffer.clear();
+		byte[] message = new byte[5 + bitfield.length];
+		Encode.putIntegerAsFourBytes(message, bitfield.length + 1, 0);
+		message[4] = 5;
+		System.arraycopy(bitfield, 0, message, 5, bitfield.length);
+		enqueue(message);
 		TorrentConfiguration.debug("Sent [BT_BITFIELD] message to " + ip + ":" //$NON-NLS-1$ //$NON-NLS-2$
 				+ port);
 	}
 
-	private int sendRequest(Piece piece) throws IOException {
-		if (piece == null) {
-			sendNotInterested();
-			return -1;
+	/**
+	 * Requests blocks from the peer until {@link #PIPELINE_LENGTH} requests
+	 * are outstanding, and tells the peer whether this client is interested
+	 * in what it has.
+	 */
+	private void requestBlocks() {
+		if (!handshakeReceived) {
+			return;
 		} else if (peerIsChoking) {
-			sendInterested();
-			return -1;
+			if (manager.isInterestedIn(peerPieces)) {
+				sendInterested();
+			} else {
+				sendNotInterested();
+			}
+			return;
 		}
 
-		int[] information = piece.getRequestInformation();
-		while (information == null) {
-			piece = manager.request(peerPieces);
+		// a piece that cannot hand out a block is skipped, but only so often
+		for (int attempts = 0; outstanding.size() < PIPELINE_LENGTH
+				&& attempts < PIPELINE_LENGTH * 2; attempts++) {
+			Piece piece = manager.request(peerPieces);
 			if (piece == null) {
-				sendNotInterested();
-				return -1;
+				break;
+			}
+			int[] information = piece.getRequestInformation();
+			if (information == null) {
+				continue;
+			} else if (isOutstanding(information)) {
+				// in endgame, the picker hands out blocks that are already
+				// being downloaded, possibly from this very peer
+				break;
+			}
+			sendInterested();
+			sendRequest(piece, information);
+		}
+
+		if (outstanding.isEmpty()) {
+			sendNotInterested();
+		}
+	}
+
+	private boolean isOutstanding(int[] information) {
+		for (Iterator it = outstanding.iterator(); it.hasNext();) {
+			int[] request = (int[]) ((Object[]) it.next())[1];
+			if (request[0] == information[0] && request[1] == information[1]) {
+				return true;
 			}
-			information = piece.getRequestInformation();
 		}
+		return false;
+	}
 
+	private void sendRequest(Piece piece, int[] information) {
+		byte[] request = { 0x00, 0x00, 0x00, 0x0d, 0x06, 0x00, 0x00, 0x00,
+				0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 };
 		Encode.placeRequestInformation(request, information);
-		sendBuffer.put(request);
-		sendBuffer.flip();
-		channel.write(sendBuffer);
-		sendBuffer.clear();
+		enqueue(request);
+		outstanding.add(new Object[] { piece, information });
 		TorrentConfiguration.debug("Sent [BT_REQUEST piece #" + information[0] //$NON-NLS-1$
 				+ ": " + information[1] + "->" //$NON-NLS-1$ //$NON-NLS-2$
 				+ (information[1] + information[2] - 1) + "] message to " + ip //$NON-NLS-1$
 				+ ":" + port); //$NON-NLS-1$
+	}
 
-		return information[2] + 13;
+	/**
+	 * Marks all outstanding requests as no longer requested so that they can
+	 * be requested from other peers.
+	 */
+	private void cancelRequests() {
+		for (Iterator it = outstanding.iterator(); it.hasNext();) {
+			Object[] request = (Object[]) it.next();
+			((Piece) request[0]).cancelRequest(((int[]) request[1])[1]);
+		}
+		outstanding.clear();
 	}
 
 	/**
 	 * Sends the queued up messages to the connected peer to inform.
 	 * 
-	 * @throws IOException
-	 *             If an I/O error occurs while sending the messages to the peer
+	 * @param haves
+	 *            the numbers of the pieces to send a HAVE message for
+	 * @param choke
+	 *            whether the peer should be choked
+	 * @param unchoke
+	 *            whether the peer should be unchoked
 	 */
-	private synchronized void sendQueuedMessages() throws IOException {
-		for (int i = 0; i < haveMessages.length; i++) {
-			if (haveMessages[i]) {
-				Encode.putIntegerAsFourBytes(have, i, 5);
-				sendBuffer.put(have);
-				sendBuffer.flip();
-				channel.write(sendBuffer);
-				sendBuffer.clear();
-				TorrentConfiguration.debug("Sent [BT_HAVE PIECE #" + i //$NON-NLS-1$
-						+ "] message to " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
-				haveMessages[i] = false;
-			}
+	private void sendQueuedMessages(Object[] haves, boolean choke,
+			boolean unchoke) {
+		for (int i = 0; i < haves.length; i++) {
+			int number = ((Integer) haves[i]).intValue();
+			byte[] have = { 0x00, 0x00, 0x00, 0x05, 0x04, 0x00, 0x00, 0x00,
+					0x00 };
+			Encode.putIntegerAsFourBytes(have, number, 5);
+			enqueue(have);
+			TorrentConfiguration.debug("Sent [BT_HAVE PIECE #" + number //$NON-NLS-1$
+					+ "] message to " + ip + ":" + port); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (haves.length != 0) {
+			// this client might no longer be interested in the peer
+			requestBlocks();
 		}
 
-		if (sendChoke) {
+		if (choke) {
 			sendChoke();
-			sendChoke = false;
-		} else if (sendUnchoke) {
+		} else if (unchoke) {
 			sendUnchoke();
-			sendUnchoke = false;
 		}
 	}
 
 	/**
 	 * Sends a message to the peer that this client is interested in something
 	 * that the peer has to offer.
-	 * 
-	 * @throws IOException
-	 *             If an I/O error occurs while sending the message
 	 */
-	private void sendInterested() throws IOException {
+	private void sendInterested() {
 		if (!isInterested) {
-			sendBuffer.put(INTERESTED);
-			sendBuffer.flip();
-			channel.write(sendBuffer);
-			sendBuffer.clear();
+			enqueue(INTERESTED);
 			isInterested = true;
 			TorrentConfiguration.debug("Sent [BT_INTERESTED] message to " + ip //$NON-NLS-1$
 					+ ":" + port); //$NON-NLS-1$
@@ -991,16 +1110,10 @@ class PeerConnection extends Thread {
 	/**
 	 * Sends a message to the peer that this client is not interested in
 	 * anything that the peer currently has to offer.
-	 * 
-	 * @throws IOException
-	 *             If an I/O error occurs while sending the message
 	 */
-	private void sendNotInterested() throws IOException {
+	private void sendNotInterested() {
 		if (isInterested) {
-			sendBuffer.put(NOT_INTERESTED);
-			sendBuffer.flip();
-			channel.write(sendBuffer);
-			sendBuffer.clear();
+			enqueue(NOT_INTERESTED);
 			isInterested = false;
 			TorrentConfiguration.debug("Sent [BT_NOT_INTERESTED] message to " //$NON-NLS-1$
 					+ ip + ":" + port); //$NON-NLS-1$
@@ -1010,17 +1123,13 @@ class PeerConnection extends Thread {
 	/**
 	 * Sends a choke message to the peer which indicates to them that any piece
 	 * requests will be ignored and discarded.
-	 * 
-	 * @throws IOException
-	 *             If an I/O error occurs while writing the message to the peer
 	 */
-	private void sendChoke() throws IOException {
+	private void sendChoke() {
 		if (!isChoking) {
-			sendBuffer.put(CHOKE);
-			sendBuffer.flip();
-			channel.write(sendBuffer);
-			sendBuffer.clear();
+			enqueue(CHOKE);
 			isChoking = true;
+			// requests are discarded when a peer is choked
+			dropQueuedPieces(0, 0, -1);
 			TorrentConfiguration.debug("Sent [BT_CHOKE] message to " + ip + ":" //$NON-NLS-1$ //$NON-NLS-2$
 					+ port);
 		}
@@ -1029,16 +1138,10 @@ class PeerConnection extends Thread {
 	/**
 	 * Sends an unchoke message to the peer to inform them that piece requests
 	 * will now be honoured.
-	 * 
-	 * @throws IOException
-	 *             If an I/O error occurs whilst writing the message to the peer
 	 */
-	private void sendUnchoke() throws IOException {
+	private void sendUnchoke() {
 		if (isChoking) {
-			sendBuffer.put(UNCHOKE);
-			sendBuffer.flip();
-			channel.write(sendBuffer);
-			sendBuffer.clear();
+			enqueue(UNCHOKE);
 			isChoking = false;
 			TorrentConfiguration.debug("Sent [BT_UNCHOKE] message to " + ip //$NON-NLS-1$
 					+ ":" + port); //$NON-NLS-1$
@@ -1046,53 +1149,58 @@ class PeerConnection extends Thread {
 	}
 
 	/**
-	 * Resets instance values so that a new connection that is bridged by this
-	 * thread will not have remnants of information from the last connection.
+	 * Closes the channel and releases everything that this connection holds.
+	 * Only called by the selector thread.
+	 * 
+	 * @param message
+	 *            the reason for closing the connection, or <code>null</code>
 	 */
-	private void reset() {
-		queuePosition = 0;
-		downloaded = 0;
-		uploaded = 0;
-		Arrays.fill(downloads, 0);
-		Arrays.fill(uploads, 0);
-
-		isInterested = false;
-		isChoking = true;
-		peerIsInterested = false;
-		peerIsChoking = true;
-		peerIsSeed = false;
-		Arrays.fill(peerPieces, false);
-
-		sendChoke = false;
-		sendUnchoke = false;
-		Arrays.fill(haveMessages, false);
-
-		clientName = "Unknown"; //$NON-NLS-1$
-	}
-
-	private void cleanup() {
-		pool.connectionClosed();
-		if (!isChoking) {
-			pool.unchokedPeerCleared();
+	void teardown(String message) {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (key != null) {
+			key.cancel();
 		}
-		initialized = false;
-	}
-
-	/**
-	 * Closes this connection. Any <code>IOException</code>s that may be
-	 * thrown will closing the connection with the peer will be ignored.
-	 */
-	void close() {
 		if (channel != null) {
-			reset();
 			try {
 				channel.close();
 			} catch (IOException e) {
 				// ignored
 			}
-			channel = null;
-			manager.removePieceAvailability(peerPieces);
 		}
+		cancelRequests();
+		outbound.clear();
+		manager.removePieceAvailability(peerPieces);
+		pool.connectionClosed(this);
+		if (!isChoking) {
+			pool.unchokedPeerCleared();
+		}
+		TorrentConfiguration.debug("The connection with " + ip + ":" + port //$NON-NLS-1$ //$NON-NLS-2$
+				+ " has been closed" //$NON-NLS-1$
+				+ (message == null ? "." : ": " + message)); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private synchronized void schedule() {
+		if (!scheduled && selector != null) {
+			scheduled = true;
+			selector.schedule(this);
+		}
+	}
+
+	/**
+	 * Closes this connection. The channel is closed by the selector thread
+	 * shortly after, any <code>IOException</code>s that may be thrown while
+	 * closing the connection with the peer will be ignored.
+	 */
+	synchronized void close() {
+		closeRequested = true;
+		schedule();
+	}
+
+	private synchronized boolean isCloseRequested() {
+		return closeRequested;
 	}
 
 	boolean isChoking() {
@@ -1126,21 +1234,25 @@ class PeerConnection extends Thread {
 	 *             If a negative piece number or a piece number that is over the
 	 *             number of available pieces has been set
 	 */
-	void queueHaveMessage(int number) throws IllegalArgumentException {
+	synchronized void queueHaveMessage(int number)
+			throws IllegalArgumentException {
 		if (number < 0) {
 			throw new IllegalArgumentException("The piece number cannot be negative"); //$NON-NLS-1$
 		} else if (number >= peerPieces.length) {
 			throw new IllegalArgumentException("The piece number is greater than the number of pieces"); //$NON-NLS-1$
 		}
-		haveMessages[number] = true;
+		haveMessages.add(Integer.valueOf(number));
+		schedule();
 	}
 
-	void queueChokeMessage() {
+	synchronized void queueChokeMessage() {
 		sendUnchoke = true;
+		schedule();
 	}
 
-	void queueUnchokeMessage() {
+	synchronized void queueUnchokeMessage() {
 		sendChoke = true;
+		schedule();
 	}
 
 	long getDownloaded() {
@@ -1182,56 +1294,4 @@ class PeerConnection extends Thread {
 		return clientName;
 	}
 
-	boolean isInitialized() {
-		return initialized;
-	}
-
-	protected void finalize() {
-		close();
-	}
-
-	public void run() {
-		ConnectionInfo info = pool.dequeue();
-		if (info == null) {
-			pool.connectionDestroyed(this);
-			return;
-		}
-
-		while (true) {
-			try {
-				initialized = true;
-				if (info.isChannel()) {
-					setChannel(info.getChannel());
-				} else {
-					setAddress(info.getIP(), info.getPort());
-				}
-				pool.connectionCreated();
-				connect();
-				cleanup();
-
-				if (!pool.isConnected()) {
-					return;
-				}
-
-				try {
-					synchronized (pool) {
-						pool.wait();
-					}
-				} catch (InterruptedException e) {
-					pool.connectionDestroyed(this);
-					return;
-				}
-				info = pool.dequeue();
-				if (info == null) {
-					pool.connectionDestroyed(this);
-					return;
-				}
-			} catch (RuntimeException e) {
-				cleanup();
-				pool.connectionDestroyed(this);
-				throw e;
-			}
-		}
-	}
-
 }
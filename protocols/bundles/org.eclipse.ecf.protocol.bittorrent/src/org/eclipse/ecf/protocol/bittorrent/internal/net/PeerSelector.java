@@ -0,0 +1,188 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.protocol.bittorrent.internal.net;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.eclipse.ecf.protocol.bittorrent.TorrentConfiguration;
+
+/**
+ * A thread that drives the non-blocking I/O of {@link PeerConnection}s with a
+ * <code>Selector</code>. A small, fixed number of these threads is shared by
+ * the connections of all torrents, and new connections are spread over them
+ * in turn.
+ * <p>
+ * Every selection round lets each readable connection read once and each
+ * writable connection write at most one block, so that a peer with a lot of
+ * queued data cannot hold up the others. Connections that have used up the
+ * download or upload rate of their torrent stop reading or writing until the
+ * next tick, which happens every {@link #TICK_INTERVAL} milliseconds.
+ * </p>
+ * <p>
+ * All the state of a connection is only touched by its selector thread. Other
+ * threads queue work for a connection with {@link #schedule(PeerConnection)}.
+ * </p>
+ */
+final class PeerSelector extends Thread {
+
+	/**
+	 * The number of milliseconds between two ticks.
+	 */
+	static final long TICK_INTERVAL = 100;
+
+	private static final PeerSelector[] selectors = new PeerSelector[Math
+			.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()))];
+
+	private static int next = 0;
+
+	private final Selector selector;
+
+	/**
+	 * The connections that have to be registered with the selector.
+	 */
+	private final ConcurrentLinkedQueue registrations = new ConcurrentLinkedQueue();
+
+	/**
+	 * The connections that have messages queued up or should be closed.
+	 */
+	private final ConcurrentLinkedQueue scheduled = new ConcurrentLinkedQueue();
+
+	private PeerSelector(int number) {
+		super("BitTorrent Selector Thread " + number); //$NON-NLS-1$
+		setDaemon(true);
+		try {
+			selector = Selector.open();
+		} catch (IOException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Hands a new connection to one of the selector threads, which will then
+	 * establish or answer the connection with the peer.
+	 *
+	 * @param connection
+	 *            the connection to register
+	 */
+	static void register(PeerConnection connection) {
+		PeerSelector thread;
+		synchronized (selectors) {
+			thread = selectors[next];
+			if (thread == null) {
+				thread = new PeerSelector(next);
+				selectors[next] = thread;
+				thread.start();
+			}
+			next = (next + 1) % selectors.length;
+		}
+		connection.setSelector(thread);
+		thread.registrations.add(connection);
+		thread.selector.wakeup();
+	}
+
+	/**
+	 * Asks this thread to send the queued up messages of the given connection
+	 * or to close it.
+	 *
+	 * @param connection
+	 *            the connection that has work to do
+	 */
+	void schedule(PeerConnection connection) {
+		scheduled.add(connection);
+		selector.wakeup();
+	}
+
+	public void run() {
+		long lastTick = System.currentTimeMillis();
+		while (true) {
+			try {
+				selector.select(TICK_INTERVAL);
+			} catch (IOException e) {
+				TorrentConfiguration.debug("Selecting peer connections failed: " //$NON-NLS-1$
+						+ e.getMessage());
+				continue;
+			}
+
+			PeerConnection connection;
+			while ((connection = (PeerConnection) registrations.poll()) != null) {
+				try {
+					connection.register(selector);
+				} catch (IOException e) {
+					connection.teardown(e.getMessage());
+				} catch (RuntimeException e) {
+					connection.teardown(e.toString());
+				}
+			}
+
+			while ((connection = (PeerConnection) scheduled.poll()) != null) {
+				try {
+					connection.flush();
+					connection.updateInterestOps();
+				} catch (IOException e) {
+					connection.teardown(e.getMessage());
+				} catch (RuntimeException e) {
+					connection.teardown(e.toString());
+				}
+			}
+
+			for (Iterator it = selector.selectedKeys().iterator(); it
+					.hasNext();) {
+				SelectionKey key = (SelectionKey) it.next();
+				it.remove();
+				connection = (PeerConnection) key.attachment();
+				try {
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isConnectable()) {
+						connection.finishConnect();
+					} else {
+						if (key.isReadable()) {
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.write();
+						}
+					}
+					connection.updateInterestOps();
+				} catch (IOException e) {
+					connection.teardown(e.getMessage());
+				} catch (RuntimeException e) {
+					connection.teardown(e.toString());
+				}
+			}
+
+			long now = System.currentTimeMillis();
+			if (now - lastTick >= TICK_INTERVAL) {
+				lastTick = now;
+				for (Iterator it = selector.keys().iterator(); it.hasNext();) {
+					SelectionKey key = (SelectionKey) it.next();
+					connection = (PeerConnection) key.attachment();
+					try {
+						if (key.isValid()) {
+							connection.tick(now);
+							connection.updateInterestOps();
+						}
+					} catch (RuntimeException e) {
+						connection.teardown(e.toString());
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,337 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.protocol.bittorrent.internal.net;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import org.eclipse.ecf.protocol.bittorrent.internal.torrent.Piece;
+
+/**
+ * The <code>PiecePicker</code> decides which piece should be requested from a
+ * peer next. It keeps track of how many connected peers have each piece and
+ * orders the pieces that are still wanted by their priority and then by their
+ * availability, so that the rarest piece that a peer has is found without
+ * scanning all pieces.
+ * <p>
+ * Pieces that have already been started are completed first. Until a few
+ * pieces have been completed, pieces are picked at random so that there is
+ * something to trade with as soon as possible. Once every wanted piece has
+ * been started, the picker switches to endgame mode and hands out pieces with
+ * outstanding requests again, so that the last blocks can be requested from
+ * several peers.
+ * </p>
+ * <p>
+ * All methods synchronize on the picker itself and never call back into the
+ * {@link TorrentManager}.
+ * </p>
+ */
+final class PiecePicker {
+
+	/**
+	 * The level of a piece that should not be downloaded, either because it
+	 * has already been completed or because the user does not want it.
+	 */
+	static final int SKIP = -1;
+
+	/**
+	 * The level of a piece that belongs to a file with a high priority.
+	 */
+	static final int HIGH = 0;
+
+	/**
+	 * The level of a piece that belongs to a file with a normal priority.
+	 */
+	static final int NORMAL = 1;
+
+	/**
+	 * The number of pieces that are picked at random before switching to
+	 * rarest first.
+	 */
+	private static final int RANDOM_FIRST_PIECES = 4;
+
+	private final Piece[] pieces;
+
+	/**
+	 * The piece numbers, so that updating the ordered set does not allocate.
+	 */
+	private final Integer[] numbers;
+
+	/**
+	 * The number of connected peers that have a specific piece.
+	 */
+	private final int[] availability;
+
+	/**
+	 * A random rank for every piece to break ties between pieces with the same
+	 * availability, so that peers do not all pick the same piece.
+	 */
+	private final int[] rank;
+
+	private final int[] levels;
+
+	/**
+	 * Whether a block of a specific piece has already been requested.
+	 */
+	private final boolean[] started;
+
+	/**
+	 * The numbers of the wanted pieces that have been started.
+	 */
+	private final ArrayList startedPieces = new ArrayList();
+
+	/**
+	 * The wanted pieces, ordered by level, availability, and rank.
+	 */
+	private final TreeSet wanted;
+
+	/**
+	 * The number of pieces that have been completed.
+	 */
+	private int completed;
+
+	/**
+	 * Creates a new picker for the given pieces. No piece is wanted until
+	 * {@link #setLevels(int[], int)} is called.
+	 *
+	 * @param pieces
+	 *            the pieces of the torrent, ordered by their number
+	 */
+	PiecePicker(Piece[] pieces) {
+		this.pieces = pieces;
+		numbers = new Integer[pieces.length];
+		availability = new int[pieces.length];
+		rank = new int[pieces.length];
+		levels = new int[pieces.length];
+		started = new boolean[pieces.length];
+		for (int i = 0; i < pieces.length; i++) {
+			numbers[i] = Integer.valueOf(i);
+			rank[i] = i;
+			levels[i] = SKIP;
+		}
+		// shuffle the ranks
+		for (int i = rank.length - 1; i > 0; i--) {
+			int j = ConnectionPool.RANDOM.nextInt(i + 1);
+			int tmp = rank[i];
+			rank[i] = rank[j];
+			rank[j] = tmp;
+		}
+		wanted = new TreeSet(new Comparator() {
+			public int compare(Object o1, Object o2) {
+				int p1 = ((Integer) o1).intValue();
+				int p2 = ((Integer) o2).intValue();
+				if (levels[p1] != levels[p2]) {
+					return levels[p1] < levels[p2] ? -1 : 1;
+				} else if (availability[p1] != availability[p2]) {
+					return availability[p1] < availability[p2] ? -1 : 1;
+				}
+				return rank[p1] < rank[p2] ? -1 : (rank[p1] == rank[p2] ? 0
+						: 1);
+			}
+		});
+	}
+
+	/**
+	 * Sets which pieces are wanted and with which priority.
+	 *
+	 * @param newLevels
+	 *            the level of every piece, either {@link #HIGH},
+	 *            {@link #NORMAL}, or {@link #SKIP}
+	 * @param completedPieces
+	 *            the number of pieces that have been completed
+	 */
+	synchronized void setLevels(int[] newLevels, int completedPieces) {
+		if (newLevels.length != levels.length) {
+			throw new IllegalArgumentException("The length of the array is not " + levels.length); //$NON-NLS-1$
+		}
+		wanted.clear();
+		startedPieces.clear();
+		completed = completedPieces;
+		for (int i = 0; i < levels.length; i++) {
+			levels[i] = newLevels[i];
+			if (levels[i] == SKIP) {
+				started[i] = false;
+				continue;
+			}
+			wanted.add(numbers[i]);
+			// pieces that were partially written before are resumed first
+			if (started[i] || pieces[i].getWritten() != 0) {
+				started[i] = true;
+				startedPieces.add(numbers[i]);
+			}
+		}
+	}
+
+	/**
+	 * Picks the piece that should be requested from a peer.
+	 *
+	 * @param peerPieces
+	 *            the pieces that the peer has
+	 * @return the piece to request from the peer, or <code>null</code> if
+	 *         the peer has nothing of interest
+	 */
+	synchronized Piece pick(boolean[] peerPieces) {
+		if (wanted.isEmpty()) {
+			return null;
+		}
+
+		// finish the pieces that have been started first
+		int best = -1;
+		for (int i = 0; i < startedPieces.size(); i++) {
+			int number = ((Integer) startedPieces.get(i)).intValue();
+			if (peerPieces[number] && !pieces[number].isFullyRequested()
+					&& (best == -1 || wanted.comparator().compare(
+							numbers[number], numbers[best]) < 0)) {
+				best = number;
+			}
+		}
+		if (best != -1) {
+			return pieces[best];
+		}
+
+		if (completed < RANDOM_FIRST_PIECES) {
+			int start = ConnectionPool.RANDOM.nextInt(pieces.length);
+			for (int i = 0; i < pieces.length; i++) {
+				int number = (start + i) % pieces.length;
+				if (levels[number] != SKIP && peerPieces[number]
+						&& !started[number]) {
+					return start(number);
+				}
+			}
+		}
+
+		// rarest first
+		for (Iterator it = wanted.iterator(); it.hasNext();) {
+			int number = ((Integer) it.next()).intValue();
+			if (peerPieces[number] && !started[number]) {
+				return start(number);
+			}
+		}
+
+		if (startedPieces.size() == wanted.size()) {
+			// endgame, request outstanding blocks from more peers
+			int size = startedPieces.size();
+			int offset = ConnectionPool.RANDOM.nextInt(size);
+			for (int i = 0; i < size; i++) {
+				int number = ((Integer) startedPieces.get((offset + i) % size))
+						.intValue();
+				if (peerPieces[number] && !pieces[number].isComplete()) {
+					return pieces[number];
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether a peer has any piece that is still wanted. Unlike
+	 * {@link #pick(boolean[])}, this does not start a piece.
+	 *
+	 * @param peerPieces
+	 *            the pieces that the peer has
+	 * @return <code>true</code> if the peer has a wanted piece,
+	 *         <code>false</code> otherwise
+	 */
+	synchronized boolean isWanted(boolean[] peerPieces) {
+		for (Iterator it = wanted.iterator(); it.hasNext();) {
+			if (peerPieces[((Integer) it.next()).intValue()]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Piece start(int number) {
+		started[number] = true;
+		startedPieces.add(numbers[number]);
+		return pieces[number];
+	}
+
+	/**
+	 * Removes a piece that has passed its hash check.
+	 *
+	 * @param number
+	 *            the number of the piece
+	 */
+	synchronized void pieceCompleted(int number) {
+		if (levels[number] != SKIP) {
+			wanted.remove(numbers[number]);
+			levels[number] = SKIP;
+		}
+		if (started[number]) {
+			started[number] = false;
+			startedPieces.remove(numbers[number]);
+		}
+		completed++;
+	}
+
+	/**
+	 * Notes that a peer has announced to have another piece.
+	 *
+	 * @param number
+	 *            the number of the piece
+	 */
+	synchronized void pieceAvailable(int number) {
+		changeAvailability(number, 1);
+	}
+
+	/**
+	 * Notes that a peer with the given pieces has connected.
+	 *
+	 * @param peerPieces
+	 *            the pieces that the peer has
+	 */
+	synchronized void addPeer(boolean[] peerPieces) {
+		checkLength(peerPieces);
+		for (int i = 0; i < peerPieces.length; i++) {
+			if (peerPieces[i]) {
+				changeAvailability(i, 1);
+			}
+		}
+	}
+
+	/**
+	 * Notes that a peer with the given pieces has disconnected.
+	 *
+	 * @param peerPieces
+	 *            the pieces that the peer had
+	 */
+	synchronized void removePeer(boolean[] peerPieces) {
+		checkLength(peerPieces);
+		for (int i = 0; i < peerPieces.length; i++) {
+			if (peerPieces[i] && availability[i] > 0) {
+				changeAvailability(i, -1);
+			}
+		}
+	}
+
+	private void checkLength(boolean[] peerPieces) {
+		if (peerPieces.length != availability.length) {
+			throw new IllegalArgumentException("The length of the array is not " + availability.length); //$NON-NLS-1$
+		}
+	}
+
+	private void changeAvailability(int number, int delta) {
+		if (levels[number] == SKIP) {
+			availability[number] += delta;
+		} else {
+			// the ordering changes, so the piece has to be re-inserted
+			wanted.remove(numbers[number]);
+			availability[number] += delta;
+			wanted.add(numbers[number]);
+		}
+	}
+
+}
@@ -23,16 +23,15 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLEncoder;
-import java.nio.ByteBuffer;
-import java.nio.channels.ClosedByInterruptException;
-import java.nio.channels.FileChannel;
 import java.nio.channels.SocketChannel;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.ecf.protocol.bittorrent.IHashCheckListener;
 import org.eclipse.ecf.protocol.bittorrent.IPieceProgressListener;
@@ -49,6 +48,7 @@ import org.eclipse.ecf.protocol.bittorrent.internal.encode.Encode;
 import org.eclipse.ecf.protocol.bittorrent.internal.torrent.DataFile;
 import org.eclipse.ecf.protocol.bittorrent.internal.torrent.Piece;
 import org.eclipse.ecf.protocol.bittorrent.internal.torrent.PieceState;
+import org.eclipse.ecf.protocol.bittorrent.internal.torrent.TorrentStorage;
 
 /**
  * The <code>TorrentManager</code> class is used to handle all of the
@@ -60,8 +60,6 @@ public class TorrentManager {
 
 	private static final String UP_SPEED_KEY = "up.speed"; //$NON-NLS-1$
 
-	private static MessageDigest shaDigest;
-
 	private static File statePath;
 
 	private final ConnectionPool connectionPool;
@@ -72,6 +70,12 @@ public class TorrentManager {
 	 */
 	private final DataFile[] files;
 
+	/**
+	 * The storage that reads, writes, and verifies the pieces within
+	 * {@link #files}.
+	 */
+	private final TorrentStorage storage;
+
 	private final Vector stateListeners;
 
 	private final Vector progressListeners;
@@ -100,16 +104,18 @@ public class TorrentManager {
 	private final Vector pieces;
 
 	/**
-	 * A collection of {@link Piece}s that has had a portion of its bytes
-	 * completed.
+	 * Decides which piece to request from a peer next. It keeps track of how
+	 * many peers have each piece, so that rare pieces are requested first.
 	 */
-	private final Vector incompletePieces;
+	private final PiecePicker picker;
 
 	/**
-	 * An integer array that stores the number of peers that possesses a
-	 * specific piece. This is used to determine which piece is a rare piece.
+	 * Verifies completed pieces, saves the state, and informs the listeners
+	 * and the tracker, so that the selector thread that calls
+	 * {@link #write(int, int, byte[], int, int)} does not wait for it. A single
+	 * thread handles the pieces in the order they were completed.
 	 */
-	private final int[] pieceAvailability;
+	private final ThreadPoolExecutor completionExecutor;
 
 	private final byte[] bitfield;
 
@@ -238,8 +244,8 @@ public class TorrentManager {
 	private int timeout = 1800000;
 
 	/**
-	 * The number of completed pieces thus far. This is updated within
-	 * {@link #write(int, int, byte[], int, int)} and is used to inform attached
+	 * The number of completed pieces thus far. This is updated by
+	 * {@link PieceCompletion} and is used to inform attached
 	 * {@link ITorrentProgressListener}s via the
 	 * {@link #firePieceCompletedEvent(int)} method.
 	 */
@@ -256,7 +262,7 @@ public class TorrentManager {
 	 * Indicates that all the pieces have passed the SHA-1 hash check
 	 * successfully.
 	 */
-	private boolean isCompleted = false;
+	private volatile boolean isCompleted = false;
 
 	/**
 	 * Indicates whether the user is deciding to not download some files.
@@ -269,14 +275,6 @@ public class TorrentManager {
 
 	private boolean isHashChecking = false;
 
-	static {
-		try {
-			shaDigest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
-		}
-	}
-
 	public static void setStatePath(File path) {
 		statePath = path;
 	}
@@ -334,11 +332,21 @@ public class TorrentManager {
 		bitfield = new byte[numPieces % 8 != 0 ? (numPieces / 8) + 1
 				: (numPieces / 8)];
 		hasPiece = new boolean[numPieces];
-		pieceAvailability = new int[numPieces];
+		picker = new PiecePicker((Piece[]) pieces.toArray(new Piece[numPieces]));
+		completionExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue(), new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"Piece Completion Thread - " //$NON-NLS-1$
+										+ TorrentManager.this.torrent.getName());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		completionExecutor.allowCoreThreadTimeOut(true);
 		priorityPieces = new boolean[numPieces];
 		interestedPieces = new boolean[numPieces];
 		uninterestedPieces = new boolean[numPieces];
-		incompletePieces = new Vector();
 		stateListeners = new Vector();
 		errorListeners = new Vector();
 		pieceListeners = new Vector();
@@ -366,15 +374,15 @@ public class TorrentManager {
 		files = new DataFile[filenames.length];
 
 		fileInitialization(filenames, targetFile);
+		storage = new TorrentStorage(files, torrent.getPieces(), pieceLength);
 		for (int i = 0; i < numPieces; i++) {
 			Piece piece = (Piece) pieces.get(i);
-			piece.setLength(pieceLength);
+			piece.setLength(storage.getLength(i));
 		}
-		((Piece) pieces.get(numPieces - 1))
-				.setLength((int) (total % pieceLength));
 
 		checkFile();
 		setPieces();
+		updatePicker();
 	}
 
 	private void checkFile() {
@@ -620,6 +628,11 @@ public class TorrentManager {
 		speedMonitoringThread = null;
 		running = false;
 		connectionPool.close();
+		synchronized (this) {
+			// the saved state counts the blocks that are still buffered
+			storage.flush();
+		}
+		saveState();
 		queryTracker("stopped"); //$NON-NLS-1$
 		fireStateChangedEvent(ITorrentStateListener.STOPPED);
 		store();
@@ -653,6 +666,8 @@ public class TorrentManager {
 		for (int i = 0; i < pieces.size(); i++) {
 			((Piece) pieces.get(i)).reset();
 		}
+		storage.close();
+		updatePicker();
 	}
 
 	public boolean delete() {
@@ -720,76 +735,39 @@ public class TorrentManager {
 	}
 
 	/**
-	 * Retrieves the block of data that corresponds to the specified piece.
+	 * Reads a block of data of a piece that has been completed so that it can
+	 * be sent to a peer.
 	 * 
-	 * @param piece
-	 *            the interested piece's number
-	 * @return an array of bytes corresponding to the data that is encompassed
-	 *         by the specified piece, or <code>null</code> if no data is
-	 *         available
+	 * @param number
+	 *            the number of the piece
+	 * @param offset
+	 *            the position within the piece that the block starts at
+	 * @param length
+	 *            the length of the block
+	 * @return the block of data, or <code>null</code> if the piece has not
+	 *         been completed
 	 * @throws IllegalArgumentException
-	 *             If <code>piece</code> is negative or if it is not one of
-	 *             the piece numbers
+	 *             If the piece does not exist or if the block goes beyond the
+	 *             range of the piece
 	 * @throws IOException
 	 *             If an I/O/ error occurs while reading the data from the local
 	 *             files
 	 */
-	private byte[] getPiece(int piece) throws IOException {
-		if (piece < 0) {
-			throw new IllegalArgumentException("The piece number cannot be negative"); //$NON-NLS-1$
-		} else if (piece >= hasPiece.length) {
-			throw new IllegalArgumentException("The piece number " + piece //$NON-NLS-1$
-					+ " does not exist"); //$NON-NLS-1$
-		}
-
-		byte[][] data = new byte[files.length][0];
-		Arrays.fill(data, null);
-		for (int i = 0; i < files.length; i++) {
-			if (files[i].containsPiece(piece)) {
-				data[i] = files[i].getData(piece);
-			}
-		}
-
-		boolean empty = true;
-		for (int i = 0; i < data.length; i++) {
-			if (data[i] != null && data[i].length != 0) {
-				empty = false;
-				break;
-			}
-		}
-
-		if (empty) {
-			return null;
-		}
-
-		byte[] bytes = new byte[((Piece) pieces.get(piece)).getLength()];
-		int offset = 0;
-		for (int i = 0; i < data.length; i++) {
-			if (data[i] != null) {
-				System.arraycopy(data[i], 0, bytes, offset, data[i].length);
-				offset += data[i].length;
-			}
-		}
-		return bytes;
-	}
-
 	byte[] getPieceData(int number, int offset, int length)
 			throws IllegalArgumentException, IOException {
-		byte[] piece = getPiece(number);
-		if (piece == null) {
+		if (number < 0 || number >= hasPiece.length) {
+			throw new IllegalArgumentException("The piece number " + number //$NON-NLS-1$
+					+ " does not exist"); //$NON-NLS-1$
+		} else if (!hasPiece[number]) {
 			return null;
 		}
-		if (offset + length > piece.length) {
-			throw new IllegalArgumentException("The block of data that is being requested goes beyond the range of the requested piece"); //$NON-NLS-1$
-		}
-		byte[] block = new byte[length];
-		System.arraycopy(piece, offset, block, 0, length);
-		return block;
+		return storage.read(number, offset, length);
 	}
 
 	/**
 	 * Performs a hash check on the specified piece number to see whether the
-	 * data is corrupt or not.
+	 * data is corrupt or not. The piece's data is only written to the files
+	 * if it passes the check.
 	 * 
 	 * @param piece
 	 *            the number of the piece to check
@@ -804,25 +782,31 @@ public class TorrentManager {
 	 */
 	private boolean hashCheck(int piece) throws IllegalArgumentException,
 			IOException {
-		byte[] data = getPiece(piece);
-		return data == null ? false : torrent.getPieces()[piece]
-				.equals(new String(shaDigest.digest(data), "ISO-8859-1")); //$NON-NLS-1$
+		return storage.complete(piece);
 	}
 
 	private void saveState() throws IOException {
-		BufferedWriter writer = new BufferedWriter(new FileWriter(torrentState,
-				false));
-		writer.write(Long.toString(targetFile.lastModified()));
-		writer.newLine();
-		for (int i = 0; i < states.length; i++) {
-			writer.write(states[i].toString());
-			writer.newLine();
+		// called by the completion thread and by the thread that stops
+		synchronized (torrentState) {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(
+					torrentState, false));
+			try {
+				writer.write(Long.toString(targetFile.lastModified()));
+				writer.newLine();
+				for (int i = 0; i < states.length; i++) {
+					writer.write(states[i].toString());
+					writer.newLine();
+				}
+			} finally {
+				writer.close();
+			}
 		}
-		writer.flush();
 	}
 
 	/**
 	 * Writes the data that has been received from a peer onto the local files.
+	 * A piece that is complete with this block is verified by another thread,
+	 * see {@link #completionExecutor}.
 	 * 
 	 * @param number
 	 *            the piece's number that this data corresponds to
@@ -837,173 +821,146 @@ public class TorrentManager {
 	 * @param length
 	 *            the amount of bytes of data that has been received
 	 * @throws IOException
-	 *             If an I/O error occurs while writing to a file, saving the
-	 *             state information, performing a hash check, or querying the
-	 *             tracker
+	 *             If an I/O error occurs while writing to a file
 	 */
 	synchronized void write(int number, int index, byte[] data, int offset,
 			int length) throws IOException {
 		Piece piece = (Piece) pieces.get(number);
-		if (!hasPiece[number] && piece.write(index, data, offset, length)) {
+		if (!hasPiece[number] && piece.addBlock(index, length)) {
+			storage.write(number, index, data, offset, length);
 			remaining -= length;
 			downloaded += length;
-			saveState();
 			fireBlockDownloadedEvent(number, index, length);
-			if (!incompletePieces.contains(piece)) {
-				incompletePieces.add(piece);
-			}
 
 			if (piece.isComplete()) {
-				incompletePieces.remove(piece);
-				checkCompletedPiece(piece, number);
+				completionExecutor.execute(new PieceCompletion(piece, number));
 			}
 		}
 	}
 
-	private void checkCompletedPiece(Piece piece, int number)
-			throws IOException {
-		if (hashCheck(number)) {
-			TorrentConfiguration
-					.debug("Piece " + number + " passed hash check"); //$NON-NLS-1$ //$NON-NLS-2$
-			hasPiece[number] = true;
-			updateBitfield(number);
-			firePieceCompletedEvent(++completedPieces);
-			connectionPool.queueHaveMessage(number);
-			for (int i = 0; i < hasPiece.length; i++) {
-				if (!hasPiece[i]) {
-					return;
-				}
-			}
+	/**
+	 * Verifies a piece that all blocks have been written for, and writes it to
+	 * the files if it is valid. The state is saved once per piece. If the
+	 * piece completes the torrent, the tracker is informed.
+	 */
+	private class PieceCompletion implements Runnable {
 
-			isCompleted = true;
-			fireStateChangedEvent(ITorrentStateListener.FINISHED);
-			connectionPool.disconnectSeeds();
-			// let the tracker know that the download has completed
-			queryTracker("completed"); //$NON-NLS-1$
-		} else {
-			TorrentConfiguration.debug("Piece " + number //$NON-NLS-1$
-					+ " has failed the hash check"); //$NON-NLS-1$
-			piece.reset();
-			int pieceLength = piece.getLength();
-			discarded += pieceLength;
-			remaining += (remaining == total) ? 0 : pieceLength;
-			firePieceDiscardEvent(number, pieceLength);
-		}
-	}
+		private final Piece piece;
 
-	synchronized Piece request(boolean[] peerPieces) {
-		if (isCompleted) {
-			return null;
-		}
+		private final int number;
 
-		Piece request = null;
-		if (!isSelective) {
-			request = request(hasPiece, peerPieces);
-		} else if (isPrioritizing) {
-			request = request(priorityPieces, peerPieces);
-			if (request == null) {
-				request = request(interestedPieces, peerPieces);
-			}
-		} else {
-			request = request(interestedPieces, peerPieces);
+		private PieceCompletion(Piece piece, int number) {
+			this.piece = piece;
+			this.number = number;
 		}
-		return request;
-	}
 
-	private Piece request(boolean[] compare, boolean[] peerPieces) {
-		boolean isInterested = false;
-		if (compare == hasPiece) {
-			for (int i = 0; i < peerPieces.length; i++) {
-				if (!hasPiece[i] && peerPieces[i]) {
-					isInterested = true;
-					break;
-				}
+		public void run() {
+			boolean valid;
+			try {
+				valid = hashCheck(number);
+			} catch (IOException e) {
+				TorrentConfiguration.debug("Piece " + number //$NON-NLS-1$
+						+ " could not be verified: " + e.getMessage()); //$NON-NLS-1$
+				valid = false;
 			}
-		} else {
-			for (int i = 0; i < peerPieces.length; i++) {
-				if (compare[i] && peerPieces[i]) {
-					isInterested = true;
-					break;
+			int completed;
+			boolean finished = false;
+			int pieceLength = piece.getLength();
+			synchronized (TorrentManager.this) {
+				if (valid) {
+					hasPiece[number] = true;
+					picker.pieceCompleted(number);
+					updateBitfield(number);
+					completed = ++completedPieces;
+					finished = true;
+					for (int i = 0; i < hasPiece.length && finished; i++) {
+						finished = hasPiece[i];
+					}
+					isCompleted = finished;
+				} else {
+					piece.reset();
+					discarded += pieceLength;
+					remaining += (remaining == total) ? 0 : pieceLength;
+					completed = completedPieces;
 				}
 			}
-		}
-
-		if (!isInterested) {
-			return null;
-		}
-
-		boolean hasIncompletePiece = false;
-		for (int i = 0; i < incompletePieces.size(); i++) {
-			Piece piece = (Piece) incompletePieces.get(i);
-			if (peerPieces[piece.getNumber()]) {
-				hasIncompletePiece = true;
-				break;
+			try {
+				// a completed piece has to be on disk before it is saved as
+				// such
+				saveState();
+			} catch (IOException e) {
+				TorrentConfiguration.debug("The state could not be saved: " //$NON-NLS-1$
+						+ e.getMessage());
 			}
-		}
 
-		if (hasIncompletePiece) {
-			if (incompletePieces.size() == 0) {
-				return hasPiece == compare ? getRarePiece(peerPieces)
-						: getRarePiece(compare, peerPieces);
+			if (!valid) {
+				TorrentConfiguration.debug("Piece " + number //$NON-NLS-1$
+						+ " has failed the hash check"); //$NON-NLS-1$
+				firePieceDiscardEvent(number, pieceLength);
+				return;
 			}
-			Piece piece = (Piece) incompletePieces.get(ConnectionPool.RANDOM
-					.nextInt(incompletePieces.size()));
-			while (!peerPieces[piece.getNumber()]) {
-				if (isCompleted) {
-					return null;
-				} else if (incompletePieces.size() == 0) {
-					return hasPiece == compare ? getRarePiece(peerPieces)
-							: getRarePiece(compare, peerPieces);
+			TorrentConfiguration
+					.debug("Piece " + number + " passed hash check"); //$NON-NLS-1$ //$NON-NLS-2$
+			firePieceCompletedEvent(completed);
+			connectionPool.queueHaveMessage(number);
+			if (finished) {
+				fireStateChangedEvent(ITorrentStateListener.FINISHED);
+				connectionPool.disconnectSeeds();
+				// let the tracker know that the download has completed
+				try {
+					queryTracker("completed"); //$NON-NLS-1$
+				} catch (IOException e) {
+					fireTrackerErrorEvent(e.getMessage());
 				}
-				piece = (Piece) incompletePieces.get(ConnectionPool.RANDOM
-						.nextInt(incompletePieces.size()));
 			}
-			return piece;
-		} else {
-			return hasPiece == compare ? getRarePiece(peerPieces)
-					: getRarePiece(compare, peerPieces);
 		}
 	}
 
-	private Piece getRarePiece(boolean[] peerPieces) {
-		int min = pieceAvailability[0];
-		for (int i = 1; i < peerPieces.length; i++) {
-			if (!hasPiece[i] && peerPieces[i] && min > pieceAvailability[i]) {
-				min = pieceAvailability[i];
-			}
-		}
-
-		int size = pieces.size();
-		int pieceNumber = ConnectionPool.RANDOM.nextInt(size);
-		while (hasPiece[pieceNumber] || pieceAvailability[pieceNumber] != min
-				|| !peerPieces[pieceNumber]) {
-			if (isCompleted) {
-				return null;
-			}
-			pieceNumber = ConnectionPool.RANDOM.nextInt(size);
-		}
-		return (Piece) pieces.get(pieceNumber);
+	/**
+	 * Picks the piece that should be requested from a peer next. This does
+	 * not lock this manager, see {@link PiecePicker}.
+	 * 
+	 * @param peerPieces
+	 *            the pieces that the peer has
+	 * @return the piece to request, or <code>null</code> if the peer has
+	 *         nothing of interest
+	 */
+	Piece request(boolean[] peerPieces) {
+		return isCompleted ? null : picker.pick(peerPieces);
 	}
 
-	private Piece getRarePiece(boolean[] compare, boolean[] peerPieces) {
-		int min = pieceAvailability[0];
-		for (int i = 1; i < peerPieces.length; i++) {
-			if (!hasPiece[i] && compare[i] && peerPieces[i]
-					&& min > pieceAvailability[i]) {
-				min = pieceAvailability[i];
-			}
-		}
+	/**
+	 * Returns whether a peer has a piece that should still be downloaded.
+	 *
+	 * @param peerPieces
+	 *            the pieces that the peer has
+	 * @return <code>true</code> if this client is interested in the peer,
+	 *         <code>false</code> otherwise
+	 */
+	boolean isInterestedIn(boolean[] peerPieces) {
+		return !isCompleted && picker.isWanted(peerPieces);
+	}
 
-		int size = pieces.size();
-		int pieceNumber = ConnectionPool.RANDOM.nextInt(size);
-		while (hasPiece[pieceNumber] || pieceAvailability[pieceNumber] != min
-				|| !compare[pieceNumber] || !peerPieces[pieceNumber]) {
-			if (isCompleted) {
-				return null;
+	/**
+	 * Tells the picker which pieces are still wanted, and with which priority,
+	 * after pieces or file selections have changed.
+	 */
+	private void updatePicker() {
+		int[] levels = new int[hasPiece.length];
+		for (int i = 0; i < levels.length; i++) {
+			if (hasPiece[i]) {
+				levels[i] = PiecePicker.SKIP;
+			} else if (!isSelective) {
+				levels[i] = PiecePicker.NORMAL;
+			} else if (isPrioritizing && priorityPieces[i]) {
+				levels[i] = PiecePicker.HIGH;
+			} else if (interestedPieces[i]) {
+				levels[i] = PiecePicker.NORMAL;
+			} else {
+				levels[i] = PiecePicker.SKIP;
 			}
-			pieceNumber = ConnectionPool.RANDOM.nextInt(size);
 		}
-		return (Piece) pieces.get(pieceNumber);
+		picker.setLevels(levels, completedPieces);
 	}
 
 	String getPeerID() {
@@ -1023,29 +980,15 @@ public class TorrentManager {
 	 *            the number of the piece
 	 */
 	void updatePieceAvailability(int piece) {
-		pieceAvailability[piece]++;
+		picker.pieceAvailable(piece);
 	}
 
 	void addPieceAvailability(boolean[] peerPieces) {
-		if (peerPieces.length != pieceAvailability.length) {
-			throw new IllegalArgumentException("The length of the array is not " + pieceAvailability.length); //$NON-NLS-1$
-		}
-		for (int i = 0; i < pieceAvailability.length; i++) {
-			if (peerPieces[i]) {
-				pieceAvailability[i]++;
-			}
-		}
+		picker.addPeer(peerPieces);
 	}
 
 	void removePieceAvailability(boolean[] peerPieces) {
-		if (peerPieces.length != pieceAvailability.length) {
-			throw new IllegalArgumentException("The length of the array is not " + pieceAvailability.length); //$NON-NLS-1$
-		}
-		for (int i = 0; i < pieceAvailability.length; i++) {
-			if (peerPieces[i]) {
-				pieceAvailability[i]--;
-			}
-		}
+		picker.removePeer(peerPieces);
 	}
 
 	void addToUploaded(long length) {
@@ -1081,16 +1024,20 @@ public class TorrentManager {
 		if (files.length != downloadChoices.length) {
 			throw new IllegalArgumentException("The provided array should be of length " + files.length); //$NON-NLS-1$
 		}
+		setPiecePriorities(downloadChoices);
+		updatePicker();
+	}
 
+	private void setPiecePriorities(int[] downloadChoices) {
 		for (int i = 0; i < downloadChoices.length; i++) {
 			int[] pieces = files[i].getPieces();
 			for (int j = 0; j < pieces.length; j++) {
 				if (downloadChoices[i] > 0) {
-					priorityPieces[j] = true;
+					priorityPieces[pieces[j]] = true;
 				} else if (downloadChoices[i] == 0) {
-					interestedPieces[j] = true;
+					interestedPieces[pieces[j]] = true;
 				} else {
-					uninterestedPieces[j] = uninterestedPieces[j] || false;
+					uninterestedPieces[pieces[j]] = true;
 				}
 			}
 		}
@@ -1489,12 +1436,10 @@ public class TorrentManager {
 			if (written == piece.getLength()) {
 				completedPieces++;
 				hasPiece[i] = true;
-				incompletePieces.remove(piece);
-			} else if (written != 0 && !incompletePieces.contains(piece)) {
-				incompletePieces.add(piece);
 			}
 		}
 		updateBitfield();
+		updatePicker();
 
 		for (int i = 0; i < hasPiece.length; i++) {
 			if (!hasPiece[i]) {
@@ -1517,67 +1462,31 @@ public class TorrentManager {
 
 		public void run() {
 			try {
-				int read = 0;
-				int count = 0;
-				ByteBuffer buffer = ByteBuffer.allocate(pieceLength);
-				for (int i = 0; i < files.length; i++) {
-					FileChannel channel = files[i].getChannel();
-					while ((read += channel.read(buffer)) == pieceLength) {
-						if (isInterrupted()) {
-							cleanup();
-							return;
-						}
-						Piece piece = (Piece) pieces.get(count);
+				boolean[] valid = new boolean[pieces.size()];
+				// the pieces are hashed in parallel, see TorrentStorage, and
+				// reported on this thread
+				storage.verify(valid, new TorrentStorage.VerificationListener() {
+					public void pieceVerified(int number, boolean isValid) {
+						Piece piece = (Piece) pieces.get(number);
 						if (piece.isComplete()) {
 							completedPieces--;
-							hasPiece[i] = false;
+							hasPiece[number] = false;
 						}
 						remaining += piece.getWritten();
-						buffer.rewind();
-						if (torrent.getPieces()[count]
-								.equals(new String(shaDigest.digest(buffer
-										.array()), "ISO-8859-1"))) { //$NON-NLS-1$
+						if (isValid) {
 							piece.setAsCompleted();
-							hasPiece[count] = true;
+							hasPiece[number] = true;
 							completedPieces++;
 							remaining -= piece.getLength();
 						} else {
 							piece.reset();
 						}
-						incompletePieces.remove(piece);
-						fireHashCheckedEvent(count);
-						count++;
-						read = 0;
-					}
-				}
-
-				if (read > 0) {
-					if (isInterrupted()) {
-						cleanup();
-						return;
-					}
-					Piece piece = (Piece) pieces.get(count);
-					if (piece.isComplete()) {
-						completedPieces--;
-						hasPiece[count] = false;
-					}
-					remaining += piece.getWritten();
-					buffer.rewind();
-					shaDigest.update(buffer.array(), 0, read);
-					if (torrent.getPieces()[count].equals(new String(shaDigest
-							.digest(), "ISO-8859-1"))) { //$NON-NLS-1$
-						hasPiece[count] = true;
-						piece.setAsCompleted();
-						completedPieces++;
-						remaining -= piece.getLength();
-					} else {
-						piece.reset();
+						fireHashCheckedEvent(number);
 					}
-					incompletePieces.remove(piece);
-					fireHashCheckedEvent(count);
-				}
+				});
 
 				updateBitfield();
+				updatePicker();
 				saveState();
 				if (isInterrupted()) {
 					cleanup();
@@ -1591,13 +1500,8 @@ public class TorrentManager {
 						throw new RuntimeException(e);
 					}
 				}
-			} catch (ClosedByInterruptException e) {
+			} catch (InterruptedException e) {
 				cleanup();
-				try {
-					saveState();
-				} catch (IOException ex) {
-					throw new RuntimeException(ex);
-				}
 			} catch (IOException e) {
 				cleanup();
 				throw new RuntimeException(e);
@@ -12,7 +12,6 @@
  *****************************************************************************/
 package org.eclipse.ecf.protocol.bittorrent.internal.torrent;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Vector;
@@ -152,104 +151,32 @@ public class Piece {
 	}
 
 	/**
-	 * Retrieves the index offset position within a file at position
-	 * <code>pos</code> within {@link #files} requires writing to.
-	 * 
-	 * @param pos
-	 *            the position of the {@link DataFile} within <code>files</code>
-	 * @param index
-	 *            the index within this piece that data is available for writing
-	 *            to
-	 * @return the additional offset index that this piece corresponds to within
-	 *         the <code>DataFile</code> or <code>-1</code> if the offset
-	 *         does not pertain to that file
-	 */
-	private int getFileOffset(int pos, int index) {
-		if (files.size() == 1) {
-			return index;
-		}
-		int count = 0;
-		int offset = 0;
-		do {
-			offset += ((Integer) fileLengths.get(count++)).intValue();
-		} while (count <= pos);
-
-		if (index > offset) {
-			return -1;
-		} else {
-			pos = offset - ((Integer) fileLengths.get(count - 1)).intValue();
-			if (pos <= index && index < offset) {
-				return index - pos;
-			} else {
-				return -1;
-			}
-		}
-	}
-
-	/**
-	 * Writes the bytes received from peers onto the corresponding files on the
-	 * local file system.
+	 * Notes that a block of data has been received for this piece without
+	 * writing it to the files. The data itself is expected to be stored by the
+	 * caller, such as through a {@link TorrentStorage}.
 	 * 
 	 * @param pieceIndex
 	 *            the index within this piece that the block of data received
 	 *            starts at
-	 * @param block
-	 *            an array with a subsection that holds data received from the
-	 *            peer
-	 * @param offset
-	 *            the starting offset index within <code>block</code> that the
-	 *            data for the files begins at
 	 * @param length
 	 *            the length of bytes that has been received from the peer
-	 * @return <code>true</code> if the writing has been performed,
-	 *         <code>false</code> otherwise
-	 * @throws IOException
-	 *             If an I/O error occurs while attempting to write the data to
-	 *             the files
+	 * @return <code>true</code> if the block has been noted,
+	 *         <code>false</code> if it had already been completed
 	 */
-	public boolean write(int pieceIndex, byte[] block, int offset, int length)
-			throws IOException {
+	public boolean addBlock(int pieceIndex, int length) {
 		int blockIndex = pieceIndex / BLOCK_REQUEST_SIZE;
 		if (completed[blockIndex]) {
 			return false;
 		}
 
 		state.addDownloadedBlock(pieceIndex, length);
-		int[] ret = null;
+		writtenBlocks[blockIndex] += length;
 		// check to see if we're writing to this piece's last block
-		if (blockIndex == blocks - 1) {
-			int limit = isLastPiece ? this.length % BLOCK_REQUEST_SIZE
-					: BLOCK_REQUEST_SIZE;
-			ret = new int[] { offset, length, 0 };
-			for (int i = 0; i < files.size(); i++) {
-				ret = ((DataFile) files.get(i)).write(number, getFileOffset(i,
-						pieceIndex), block, ret);
-				if (ret == null) {
-					break;
-				}
-				pieceIndex += ret[2];
-			}
-
-			writtenBlocks[blockIndex] += length;
-			if (writtenBlocks[blockIndex] == limit) {
-				completed[blockIndex] = true;
-			}
-		} else {
-			ret = new int[] { offset, length, 0 };
-			for (int i = 0; i < files.size(); i++) {
-				ret = ((DataFile) files.get(i)).write(number, getFileOffset(i,
-						pieceIndex), block, ret);
-				if (ret == null) {
-					break;
-				}
-				pieceIndex += ret[2];
-			}
-
-			writtenBlocks[blockIndex] += length;
-			// if the entire block has been written, note this fact
-			if (writtenBlocks[blockIndex] == BLOCK_REQUEST_SIZE) {
-				completed[blockIndex] = true;
-			}
+		int limit = blockIndex == blocks - 1 && isLastPiece ? this.length
+				% BLOCK_REQUEST_SIZE : BLOCK_REQUEST_SIZE;
+		// if the entire block has been written, note this fact
+		if (writtenBlocks[blockIndex] == limit) {
+			completed[blockIndex] = true;
 		}
 		return true;
 	}
@@ -369,6 +296,37 @@ public class Piece {
 		}
 	}
 
+	/**
+	 * Returns whether every block of this piece that has not been completed
+	 * has already been requested from a peer.
+	 * 
+	 * @return <code>true</code> if there are no blocks left to request,
+	 *         <code>false</code> otherwise
+	 */
+	public synchronized boolean isFullyRequested() {
+		for (int i = 0; i < blocks; i++) {
+			if (!completed[i] && !requested[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Marks the block that starts at the given index as no longer being
+	 * requested so that it can be requested again, for example after the peer
+	 * that it was requested from has choked this client or disconnected.
+	 *
+	 * @param index
+	 *            the index within this piece that was requested
+	 */
+	public synchronized void cancelRequest(int index) {
+		int block = index / BLOCK_REQUEST_SIZE;
+		if (index >= 0 && block < blocks && !completed[block]) {
+			requested[block] = false;
+		}
+	}
+
 	/**
 	 * Retrieves this piece's number as specified by the torrent metadata file.
 	 * 
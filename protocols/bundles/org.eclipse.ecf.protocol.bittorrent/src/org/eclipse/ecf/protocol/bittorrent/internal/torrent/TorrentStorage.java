@@ -0,0 +1,622 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.protocol.bittorrent.internal.torrent;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The <code>TorrentStorage</code> reads, writes, and verifies the pieces of a
+ * torrent. The files of the torrent are treated as one continuous sequence of
+ * bytes which is accessed through memory mapped regions of the files, so a
+ * piece may span several files and files may be larger than 2 GB.
+ * <p>
+ * The blocks of a piece that is being downloaded are collected in memory and
+ * only written to the files once the piece has passed its hash check, so that
+ * the piece is hashed without reading it back and corrupt data is never
+ * written. At most {@link #MAX_BUFFERED} bytes are held per torrent, blocks of
+ * further pieces are written to the files directly.
+ * </p>
+ * <p>
+ * Pieces are verified in parallel on a fork-join pool that is shared by all
+ * torrents, every thread hashing with its own <code>MessageDigest</code>.
+ * </p>
+ * <p>
+ * Buffered blocks of unfinished pieces have to be written out with
+ * {@link #flush()} before the torrent's state is saved for a later session.
+ * </p>
+ */
+public class TorrentStorage {
+
+	/**
+	 * The maximum size of a mapped region of a file. The value is 256 MB.
+	 */
+	private static final long REGION_SIZE = 1 << 28;
+
+	/**
+	 * The maximum number of bytes of unfinished pieces that are held in memory.
+	 * The value is 32 MB.
+	 */
+	private static final int MAX_BUFFERED = 1 << 25;
+
+	/**
+	 * The number of bytes that one thread verifies in a row before the
+	 * remaining pieces are split up with other threads. The value is 16 MB.
+	 */
+	private static final int VERIFY_CHUNK = 1 << 24;
+
+	private static final ThreadLocal digests = new ThreadLocal() {
+		protected Object initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e.getMessage());
+			}
+		}
+	};
+
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime
+			.getRuntime().availableProcessors(),
+			new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+				private int count = 0;
+
+				public synchronized ForkJoinWorkerThread newThread(
+						ForkJoinPool pool) {
+					ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+							.newThread(pool);
+					thread.setName("BitTorrent Hash Check Worker " + count++); //$NON-NLS-1$
+					return thread;
+				}
+			}, null, false);
+
+	private final FileChannel[] channels;
+
+	/**
+	 * The position of the first byte of every file within the torrent.
+	 */
+	private final long[] starts;
+
+	private final long[] lengths;
+
+	/**
+	 * The mapped regions of every file, created as they are needed.
+	 */
+	private final MappedByteBuffer[][] regions;
+
+	private final byte[][] hashes;
+
+	private final int pieceLength;
+
+	private final long total;
+
+	/**
+	 * The blocks of unfinished pieces, mapping the piece's number to its
+	 * {@link PieceBuffer}.
+	 */
+	private final HashMap buffers = new HashMap();
+
+	private int buffered = 0;
+
+	/**
+	 * A callback for the progress of {@link TorrentStorage#verify(boolean[],
+	 * VerificationListener)}.
+	 */
+	public interface VerificationListener {
+
+		/**
+		 * Called after a piece has been verified. This is called by the thread
+		 * that called <code>verify</code>, in the order in which the pieces
+		 * have been verified.
+		 *
+		 * @param piece
+		 *            the number of the piece
+		 * @param valid
+		 *            whether the piece passed its hash check
+		 */
+		public void pieceVerified(int piece, boolean valid);
+
+	}
+
+	/**
+	 * Creates a new storage for the given files.
+	 *
+	 * @param files
+	 *            the files of the torrent, in the order of the torrent
+	 * @param pieces
+	 *            the SHA-1 hashes of the pieces, as ISO-8859-1 strings
+	 * @param pieceLength
+	 *            the length of a piece
+	 * @throws UnsupportedEncodingException
+	 *             If the <code>ISO-8859-1</code> encoding is not supported
+	 */
+	public TorrentStorage(DataFile[] files, String[] pieces, int pieceLength)
+			throws UnsupportedEncodingException {
+		channels = new FileChannel[files.length];
+		starts = new long[files.length];
+		lengths = new long[files.length];
+		regions = new MappedByteBuffer[files.length][];
+		long start = 0;
+		for (int i = 0; i < files.length; i++) {
+			channels[i] = files[i].getChannel();
+			starts[i] = start;
+			lengths[i] = files[i].length();
+			regions[i] = new MappedByteBuffer[(int) ((lengths[i]
+					+ REGION_SIZE - 1) / REGION_SIZE)];
+			start += lengths[i];
+		}
+		total = start;
+		this.pieceLength = pieceLength;
+		hashes = new byte[pieces.length][];
+		for (int i = 0; i < pieces.length; i++) {
+			hashes[i] = pieces[i].getBytes("ISO-8859-1"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Retrieves the length of a piece.
+	 *
+	 * @param piece
+	 *            the number of the piece
+	 * @return the number of bytes of the piece
+	 */
+	public int getLength(int piece) {
+		return (int) Math.min(pieceLength, total - (long) piece * pieceLength);
+	}
+
+	/**
+	 * Writes a block of a piece that has not been completed yet.
+	 *
+	 * @param piece
+	 *            the number of the piece
+	 * @param index
+	 *            the position of the block within the piece
+	 * @param data
+	 *            the array holding the block
+	 * @param offset
+	 *            the position of the block within <code>data</code>
+	 * @param length
+	 *            the length of the block
+	 * @throws IOException
+	 *             If an I/O error occurs while writing the block to the files
+	 */
+	public void write(int piece, int index, byte[] data, int offset, int length)
+			throws IOException {
+		checkRange(piece, index, length);
+		PieceBuffer buffer;
+		synchronized (buffers) {
+			Integer key = Integer.valueOf(piece);
+			buffer = (PieceBuffer) buffers.get(key);
+			if (buffer == null && buffered + getLength(piece) <= MAX_BUFFERED) {
+				buffer = new PieceBuffer(getLength(piece));
+				buffers.put(key, buffer);
+				buffered += buffer.data.length;
+			}
+		}
+		if (buffer != null) {
+			buffer.put(index, data, offset, length);
+		} else {
+			transfer((long) piece * pieceLength + index, data, offset, length,
+					true);
+		}
+	}
+
+	/**
+	 * Verifies a piece that all blocks have been written for. The piece is
+	 * hashed from memory if all its blocks have been buffered, and the buffered
+	 * blocks are written to the files if the piece is valid.
+	 *
+	 * @param piece
+	 *            the number of the piece
+	 * @return <code>true</code> if the piece matches its hash,
+	 *         <code>false</code> otherwise
+	 * @throws IOException
+	 *             If an I/O error occurs while reading or writing the piece
+	 */
+	public boolean complete(int piece) throws IOException {
+		PieceBuffer buffer;
+		synchronized (buffers) {
+			buffer = (PieceBuffer) buffers.remove(Integer.valueOf(piece));
+			if (buffer != null) {
+				buffered -= buffer.data.length;
+			}
+		}
+		long position = (long) piece * pieceLength;
+		if (buffer != null && buffer.isFull()) {
+			MessageDigest digest = (MessageDigest) digests.get();
+			if (!MessageDigest.isEqual(digest.digest(buffer.data),
+					hashes[piece])) {
+				return false;
+			}
+			transfer(position, buffer.data, 0, buffer.data.length, true);
+			return true;
+		}
+		if (buffer != null) {
+			// some blocks went to the files directly
+			buffer.flush(position);
+		}
+		return verify(piece);
+	}
+
+	/**
+	 * Verifies a piece against the data in the files.
+	 *
+	 * @param piece
+	 *            the number of the piece
+	 * @return <code>true</code> if the piece matches its hash,
+	 *         <code>false</code> otherwise
+	 * @throws IOException
+	 *             If an I/O error occurs while reading the piece
+	 */
+	public boolean verify(int piece) throws IOException {
+		MessageDigest digest = (MessageDigest) digests.get();
+		long position = (long) piece * pieceLength;
+		long end = position + getLength(piece);
+		while (position < end) {
+			ByteBuffer region = region(position, end);
+			position += region.remaining();
+			digest.update(region);
+		}
+		return MessageDigest.isEqual(digest.digest(), hashes[piece]);
+	}
+
+	/**
+	 * Verifies all pieces in parallel. Blocks of unfinished pieces that have
+	 * not been written to the files yet are discarded.
+	 *
+	 * @param valid
+	 *            an array that is set to whether each piece matches its hash
+	 * @param listener
+	 *            the listener to notify after each piece, may be
+	 *            <code>null</code>
+	 * @throws InterruptedException
+	 *             If the calling thread is interrupted, the remaining pieces
+	 *             will not be verified
+	 * @throws IOException
+	 *             If an I/O error occurs while reading a piece
+	 */
+	public void verify(boolean[] valid, VerificationListener listener)
+			throws InterruptedException, IOException {
+		discard();
+		int chunk = Math.max(1, VERIFY_CHUNK / pieceLength);
+		LinkedBlockingQueue verified = new LinkedBlockingQueue();
+		VerifyAction action = new VerifyAction(valid, verified, 0,
+				hashes.length, chunk);
+		ForkJoinTask task = pool.submit(action);
+		try {
+			// report the pieces on this thread while the workers hash
+			int reported = 0;
+			while (reported < hashes.length) {
+				Integer piece = (Integer) verified.poll(100,
+						TimeUnit.MILLISECONDS);
+				if (piece != null) {
+					reported++;
+					if (listener != null) {
+						listener.pieceVerified(piece.intValue(),
+								valid[piece.intValue()]);
+					}
+				} else if (task.isDone() && verified.isEmpty()) {
+					// failed, get() throws the cause
+					break;
+				}
+			}
+			task.get();
+		} catch (InterruptedException e) {
+			action.cancelled.set(true);
+			throw e;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(String.valueOf(cause));
+		}
+	}
+
+	/**
+	 * Reads a block of a piece from the files.
+	 *
+	 * @param piece
+	 *            the number of the piece
+	 * @param index
+	 *            the position of the block within the piece
+	 * @param length
+	 *            the length of the block
+	 * @return the block
+	 * @throws IllegalArgumentException
+	 *             If the block goes beyond the range of the piece
+	 * @throws IOException
+	 *             If an I/O error occurs while reading the block
+	 */
+	public byte[] read(int piece, int index, int length)
+			throws IllegalArgumentException, IOException {
+		checkRange(piece, index, length);
+		byte[] block = new byte[length];
+		transfer((long) piece * pieceLength + index, block, 0, length, false);
+		return block;
+	}
+
+	/**
+	 * Writes the blocks of all unfinished pieces that are held in memory to the
+	 * files, and forces the modified regions to the disk. Afterwards, every
+	 * block that has been given to {@link #write(int, int, byte[], int, int)}
+	 * is on disk.
+	 *
+	 * @throws IOException
+	 *             If an I/O error occurs while writing the blocks
+	 */
+	public void flush() throws IOException {
+		Object[] entries;
+		synchronized (buffers) {
+			entries = buffers.entrySet().toArray();
+			buffers.clear();
+			buffered = 0;
+		}
+		for (int i = 0; i < entries.length; i++) {
+			Map.Entry entry = (Map.Entry) entries[i];
+			int piece = ((Integer) entry.getKey()).intValue();
+			((PieceBuffer) entry.getValue()).flush((long) piece * pieceLength);
+		}
+		synchronized (regions) {
+			for (int i = 0; i < regions.length; i++) {
+				for (int j = 0; j < regions[i].length; j++) {
+					if (regions[i][j] != null) {
+						regions[i][j].force();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Discards the blocks of all unfinished pieces that are held in memory.
+	 */
+	public void discard() {
+		synchronized (buffers) {
+			buffers.clear();
+			buffered = 0;
+		}
+	}
+
+	/**
+	 * Discards the blocks of all unfinished pieces and releases the mapped
+	 * regions of the files, which are mapped again when they are next needed.
+	 * Modified regions are written to the disk first.
+	 */
+	public void close() {
+		discard();
+		synchronized (regions) {
+			for (int i = 0; i < regions.length; i++) {
+				for (int j = 0; j < regions[i].length; j++) {
+					if (regions[i][j] != null) {
+						regions[i][j].force();
+						regions[i][j] = null;
+					}
+				}
+			}
+		}
+	}
+
+	private void checkRange(int piece, int index, int length) {
+		if (piece < 0 || piece >= hashes.length) {
+			throw new IllegalArgumentException("The piece number " + piece //$NON-NLS-1$
+					+ " does not exist"); //$NON-NLS-1$
+		} else if (index < 0 || length < 0
+				|| (long) index + length > getLength(piece)) {
+			throw new IllegalArgumentException("The block of data goes beyond the range of the piece"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Copies bytes between an array and the files.
+	 */
+	private void transfer(long position, byte[] data, int offset, int length,
+			boolean write) throws IOException {
+		long end = position + length;
+		while (position < end) {
+			ByteBuffer region = region(position, end);
+			int count = region.remaining();
+			if (write) {
+				region.put(data, offset, count);
+			} else {
+				region.get(data, offset, count);
+			}
+			position += count;
+			offset += count;
+		}
+	}
+
+	/**
+	 * Returns a buffer over the mapped bytes starting at the given position
+	 * within the torrent, up to the end position, the end of the file, or the
+	 * end of the region, whichever comes first.
+	 */
+	private ByteBuffer region(long position, long end) throws IOException {
+		int file = findFile(position);
+		long filePosition = position - starts[file];
+		int number = (int) (filePosition / REGION_SIZE);
+		MappedByteBuffer mapped;
+		synchronized (regions) {
+			mapped = regions[file][number];
+			if (mapped == null) {
+				long start = number * REGION_SIZE;
+				mapped = channels[file].map(FileChannel.MapMode.READ_WRITE,
+						start, Math.min(REGION_SIZE, lengths[file] - start));
+				regions[file][number] = mapped;
+			}
+		}
+		// a duplicate has its own position, so threads do not interfere
+		ByteBuffer region = mapped.duplicate();
+		int start = (int) (filePosition - number * REGION_SIZE);
+		region.position(start);
+		region.limit((int) Math.min(region.capacity(), start + end - position));
+		return region;
+	}
+
+	private int findFile(long position) {
+		int low = 0;
+		int high = starts.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (starts[middle] <= position) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		// skip empty files that start at the same position
+		while (lengths[low] == 0 || position - starts[low] >= lengths[low]) {
+			low++;
+		}
+		return low;
+	}
+
+	/**
+	 * The blocks of an unfinished piece.
+	 */
+	private class PieceBuffer {
+
+		private final byte[] data;
+
+		/**
+		 * The ranges that have been written, as sorted and disjoint
+		 * <code>int[] { start, end }</code> arrays.
+		 */
+		private final ArrayList ranges = new ArrayList();
+
+		private PieceBuffer(int length) {
+			data = new byte[length];
+		}
+
+		private synchronized void put(int index, byte[] block, int offset,
+				int length) {
+			System.arraycopy(block, offset, data, index, length);
+			int start = index;
+			int end = index + length;
+			for (Iterator it = ranges.iterator(); it.hasNext();) {
+				int[] range = (int[]) it.next();
+				if (range[1] >= start && range[0] <= end) {
+					start = Math.min(start, range[0]);
+					end = Math.max(end, range[1]);
+					it.remove();
+				}
+			}
+			int position = 0;
+			while (position < ranges.size()
+					&& ((int[]) ranges.get(position))[0] < start) {
+				position++;
+			}
+			ranges.add(position, new int[] { start, end });
+		}
+
+		private synchronized boolean isFull() {
+			if (ranges.size() != 1) {
+				return false;
+			}
+			int[] range = (int[]) ranges.get(0);
+			return range[0] == 0 && range[1] == data.length;
+		}
+
+		/**
+		 * Writes the buffered ranges to the files.
+		 */
+		private synchronized void flush(long position) throws IOException {
+			for (int i = 0; i < ranges.size(); i++) {
+				int[] range = (int[]) ranges.get(i);
+				transfer(position + range[0], data, range[0], range[1]
+						- range[0], true);
+			}
+		}
+	}
+
+	/**
+	 * Verifies a range of pieces, splitting it with other threads when it
+	 * holds more than <code>chunk</code> pieces.
+	 */
+	private class VerifyAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final boolean[] valid;
+
+		/**
+		 * Receives the number of every verified piece.
+		 */
+		private final LinkedBlockingQueue verified;
+
+		private final int from;
+
+		private final int to;
+
+		private final int chunk;
+
+		/**
+		 * Shared by all the actions of one verification.
+		 */
+		private final AtomicBoolean cancelled;
+
+		private VerifyAction(boolean[] valid, LinkedBlockingQueue verified,
+				int from, int to, int chunk) {
+			this(valid, verified, from, to, chunk, new AtomicBoolean());
+		}
+
+		private VerifyAction(boolean[] valid, LinkedBlockingQueue verified,
+				int from, int to, int chunk, AtomicBoolean cancelled) {
+			this.valid = valid;
+			this.verified = verified;
+			this.from = from;
+			this.to = to;
+			this.chunk = chunk;
+			this.cancelled = cancelled;
+		}
+
+		protected void compute() {
+			if (to - from > chunk) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new VerifyAction(valid, verified, from, middle,
+						chunk, cancelled), new VerifyAction(valid, verified,
+						middle, to, chunk, cancelled));
+				return;
+			}
+			for (int i = from; i < to && !cancelled.get(); i++) {
+				try {
+					valid[i] = verify(i);
+				} catch (IOException e) {
+					cancelled.set(true);
+					completeExceptionally(e);
+					return;
+				}
+				verified.add(Integer.valueOf(i));
+			}
+		}
+	}
+
+}
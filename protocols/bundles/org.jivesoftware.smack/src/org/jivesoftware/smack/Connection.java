@@ -140,7 +140,22 @@ public abstract class Connection {
      * A collection of PacketCollectors which collects packets for a specified filter
      * and perform blocking and polling operations on the result queue.
      */
-    protected final Collection<PacketCollector> collectors = new ConcurrentLinkedQueue<PacketCollector>();
+    protected final Collection<PacketCollector> collectors =
+            Collections.newSetFromMap(new ConcurrentHashMap<PacketCollector, Boolean>());
+
+    /**
+     * The PacketCollectors that only accept packets with a specific packet ID, mapped by
+     * that ID. Most collectors wait for the response to an IQ request, so they are looked
+     * up by the ID of a packet instead of examining every packet.
+     */
+    private final Map<String, Collection<PacketCollector>> idCollectors =
+            new ConcurrentHashMap<String, Collection<PacketCollector>>();
+
+    /**
+     * The PacketCollectors that are not in {@link #idCollectors} and examine every packet.
+     */
+    private final Collection<PacketCollector> otherCollectors =
+            new ConcurrentLinkedQueue<PacketCollector>();
 
     /**
      * List of PacketListeners that will be notified when a new packet was received.
@@ -575,6 +590,20 @@ public abstract class Connection {
         PacketCollector collector = new PacketCollector(this, packetFilter);
         // Add the collector to the list of active collectors.
         collectors.add(collector);
+        String packetID = collector.getPacketID();
+        if (packetID == null) {
+            otherCollectors.add(collector);
+        }
+        else {
+            synchronized (idCollectors) {
+                Collection<PacketCollector> sameID = idCollectors.get(packetID);
+                if (sameID == null) {
+                    sameID = new CopyOnWriteArrayList<PacketCollector>();
+                    idCollectors.put(packetID, sameID);
+                }
+                sameID.add(collector);
+            }
+        }
         return collector;
     }
 
@@ -585,6 +614,29 @@ public abstract class Connection {
      */
     protected void removePacketCollector(PacketCollector collector) {
         collectors.remove(collector);
+        String packetID = collector.getPacketID();
+        if (packetID == null) {
+            otherCollectors.remove(collector);
+        }
+        else {
+            synchronized (idCollectors) {
+                Collection<PacketCollector> sameID = idCollectors.get(packetID);
+                if (sameID != null && sameID.remove(collector) && sameID.isEmpty()) {
+                    idCollectors.remove(packetID);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all packet collectors of this connection.
+     */
+    protected void removePacketCollectors() {
+        synchronized (idCollectors) {
+            collectors.clear();
+            otherCollectors.clear();
+            idCollectors.clear();
+        }
     }
 
     /**
@@ -596,6 +648,33 @@ public abstract class Connection {
         return collectors;
     }
 
+    /**
+     * Get the packet collectors of this connection that may accept the given packet.
+     * Collectors that only accept a specific packet ID are only returned if the packet
+     * has that ID, all other collectors are always returned. The collectors still apply
+     * their filters to the packet.
+     *
+     * @param packet the packet to find the packet collectors for.
+     * @return a collection of packet collectors for the packet.
+     */
+    protected Collection<PacketCollector> getPacketCollectors(Packet packet) {
+        // avoid assigning an ID to the packet if no collector waits for one
+        if (idCollectors.isEmpty()) {
+            return otherCollectors;
+        }
+        String packetID = packet.getPacketID();
+        Collection<PacketCollector> sameID = packetID == null ? null : idCollectors.get(packetID);
+        if (sameID == null) {
+            return otherCollectors;
+        }
+        if (otherCollectors.isEmpty()) {
+            return sameID;
+        }
+        List<PacketCollector> result = new ArrayList<PacketCollector>(sameID);
+        result.addAll(otherCollectors);
+        return result;
+    }
+
     /**
      * Registers a packet listener with this connection. A packet filter determines
      * which packets will be delivered to the listener. If the same packet listener
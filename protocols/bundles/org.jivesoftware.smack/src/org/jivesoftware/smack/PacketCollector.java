@@ -23,7 +23,9 @@ package org.jivesoftware.smack;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import org.jivesoftware.smack.filter.AndFilter;
 import org.jivesoftware.smack.filter.PacketFilter;
+import org.jivesoftware.smack.filter.PacketIDFilter;
 import org.jivesoftware.smack.packet.Packet;
 
 /**
@@ -43,6 +45,7 @@ import org.jivesoftware.smack.packet.Packet;
 public class PacketCollector {
 
     private PacketFilter packetFilter;
+    private String packetID;
     private ArrayBlockingQueue<Packet> resultQueue;
     private Connection connection;
     private boolean cancelled = false;
@@ -69,9 +72,34 @@ public class PacketCollector {
     protected PacketCollector(Connection conection, PacketFilter packetFilter, int maxSize) {
         this.connection = conection;
         this.packetFilter = packetFilter;
+        this.packetID = getPacketID(packetFilter);
         this.resultQueue = new ArrayBlockingQueue<Packet>(maxSize);
     }
 
+    /**
+     * Returns the packet ID that a packet must have to pass the filter, which is the
+     * case when the filter is a {@link PacketIDFilter} or an {@link AndFilter} that
+     * contains one.
+     *
+     * @param packetFilter the filter to examine.
+     * @return the required packet ID, or <tt>null</tt> if the filter may accept packets
+     *      with any ID.
+     */
+    private static String getPacketID(PacketFilter packetFilter) {
+        if (packetFilter instanceof PacketIDFilter) {
+            return ((PacketIDFilter) packetFilter).getPacketID();
+        }
+        if (packetFilter instanceof AndFilter) {
+            for (PacketFilter filter : ((AndFilter) packetFilter).getFilters()) {
+                String packetID = getPacketID(filter);
+                if (packetID != null) {
+                    return packetID;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Explicitly cancels the packet collector so that no more results are
      * queued up. Once a packet collector has been cancelled, it cannot be
@@ -95,6 +123,17 @@ public class PacketCollector {
         return packetFilter;
     }
 
+    /**
+     * Returns the packet ID that packets must have to be queued as results. Collectors
+     * with such an ID are only handed the packets with that ID by the connection.
+     *
+     * @return the required packet ID, or <tt>null</tt> if the packet filter may accept
+     *      packets with any ID.
+     */
+    String getPacketID() {
+        return packetID;
+    }
+
     /**
      * Polls to see if a packet is currently available and returns it, or
      * immediately returns <tt>null</tt> if no packets are currently in the
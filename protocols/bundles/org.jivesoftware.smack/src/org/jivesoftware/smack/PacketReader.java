@@ -147,7 +147,7 @@ class PacketReader {
      */
     void cleanup() {
         connection.recvListeners.clear();
-        connection.collectors.clear();
+        connection.removePacketCollectors();
     }
 
     /**
@@ -315,8 +315,8 @@ class PacketReader {
             return;
         }
 
-        // Loop through all collectors and notify the appropriate ones.
-        for (PacketCollector collector: connection.getPacketCollectors()) {
+        // Loop through the collectors that may want the packet and notify the appropriate ones.
+        for (PacketCollector collector: connection.getPacketCollectors(packet)) {
             collector.processPacket(packet);
         }
 
@@ -22,6 +22,7 @@ package org.jivesoftware.smack.filter;
 
 import org.jivesoftware.smack.packet.Packet;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -76,6 +77,15 @@ public class AndFilter implements PacketFilter {
         filters.add(filter);
     }
 
+    /**
+     * Returns the filters of the AND operation.
+     *
+     * @return an unmodifiable list of the filters.
+     */
+    public List<PacketFilter> getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+
     public boolean accept(Packet packet) {
         for (PacketFilter filter : filters) {
             if (!filter.accept(packet)) {
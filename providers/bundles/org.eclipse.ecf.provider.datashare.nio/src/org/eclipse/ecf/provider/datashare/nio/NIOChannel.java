@@ -13,19 +13,18 @@
 package org.eclipse.ecf.provider.datashare.nio;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -51,9 +50,11 @@ import org.eclipse.ecf.datashare.events.IChannelMessageEvent;
  * <p>
  * This channel will inherently spawn multiple socket connections as messages
  * are sent to different remote clients via {@link #sendMessage(ID, byte[])}.
- * Please note that the current implementation does not handle repeated
- * invocations to that method well. Please refer to its javadoc for further
- * information.
+ * All sockets of a channel are serviced by a single thread that waits on a
+ * {@link Selector} for sockets to become readable or writable. Messages are
+ * framed on the wire by a four byte length prefix, and messages to a peer are
+ * queued until the socket accepts them, so a slow peer does not hold up the
+ * others.
  * </p>
  * <p>
  * Subclasses must implement the following:
@@ -101,27 +102,39 @@ public abstract class NIOChannel implements IChannel {
 
 	/**
 	 * The port that the server socket is listening on for incoming connections.
-	 * 
+	 *
 	 * @see #serverSocketChannel
 	 * @see #getLocalPort()
 	 */
 	private final int localPort;
 
 	/**
-	 * A map of <code>ID</code>s to their corresponding
-	 * <code>SocketChannel</code>s.
+	 * The selector that the server socket and all peer sockets are registered
+	 * with.
+	 */
+	private final Selector selector;
+
+	/**
+	 * A map of <code>ID</code>s to their corresponding {@link Peer}s.
 	 */
 	private Map connectedSockets;
 
 	/**
-	 * A list of sockets that is waiting to handshake with remote peers.
+	 * A map of <code>ID</code>s to lists of framed messages that have been sent
+	 * to them before a socket connection was established.
+	 */
+	private Map pendingMessages;
+
+	/**
+	 * Work handed to the processing thread by other threads, such as sockets
+	 * to register and peers with newly queued messages.
 	 */
-	private List pendingSockets;
+	private LinkedList tasks;
 
 	/**
-	 * A queue of messages that needs to be sent to remote clients.
+	 * The buffer that the processing thread reads all sockets into.
 	 */
-	private LinkedList messages;
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
 
 	/**
 	 * This channel's listener. May be <code>null</code>.
@@ -137,7 +150,7 @@ public abstract class NIOChannel implements IChannel {
 	/**
 	 * Instantiates a new channel for sending and receiving messages in a
 	 * non-blocking manner via sockets.
-	 * 
+	 *
 	 * @param datashareContainer
 	 *            the source NIODatashareContainer that created this channel,
 	 *            cannot be <code>null</code>
@@ -180,15 +193,25 @@ public abstract class NIOChannel implements IChannel {
 			ServerSocket socket = serverSocketChannel.socket();
 			socket.bind(getBindAddress(), getBackLog());
 		} catch (IOException e) {
+			Util.closeChannel(serverSocketChannel);
 			throw new ECFException(new Status(IStatus.ERROR, Util.PLUGIN_ID,
 					"Could not bind server socket", e)); //$NON-NLS-1$
 		}
 
 		localPort = serverSocketChannel.socket().getLocalPort();
 
+		try {
+			selector = Selector.open();
+			serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			Util.closeChannel(serverSocketChannel);
+			throw new ECFException(new Status(IStatus.ERROR, Util.PLUGIN_ID,
+					"Could not create selector", e)); //$NON-NLS-1$
+		}
+
 		connectedSockets = new HashMap();
-		pendingSockets = new ArrayList();
-		messages = new LinkedList();
+		pendingMessages = new HashMap();
+		tasks = new LinkedList();
 
 		processingThread = new Thread(new ProcessingRunnable(), getClass()
 				.getName()
@@ -199,7 +222,7 @@ public abstract class NIOChannel implements IChannel {
 	/**
 	 * Fires a channel connected event to this channel's listener if there is
 	 * one attached.
-	 * 
+	 *
 	 * @param containerId
 	 *            the target ID of the container has connected to
 	 */
@@ -229,7 +252,7 @@ public abstract class NIOChannel implements IChannel {
 	/**
 	 * Fires a channel disconnected event to this channel's listener if there is
 	 * one attached.
-	 * 
+	 *
 	 * @param containerId
 	 *            the target ID of the container has disconnected from
 	 */
@@ -261,7 +284,7 @@ public abstract class NIOChannel implements IChannel {
 	/**
 	 * Returns the address that this channel's server socket should bind to. If
 	 * <code>null</code>, a default port and valid local address will be used.
-	 * 
+	 *
 	 * @return this channel's server socket's bind address, may be
 	 *         <code>null</code> if a default should be used
 	 */
@@ -272,7 +295,7 @@ public abstract class NIOChannel implements IChannel {
 	/**
 	 * Retrieves the listen backlog length of this channel's server socket. If
 	 * the value is less than or equal to zero, the default length is used.
-	 * 
+	 *
 	 * @return this channel's server socket's listen backlog length
 	 */
 	protected int getBackLog() {
@@ -280,207 +303,219 @@ public abstract class NIOChannel implements IChannel {
 	}
 
 	/**
-	 * Sends any pending messages we may have queued up.
+	 * Hands the specified task to the processing thread and wakes it up. The
+	 * task will be run before the thread waits for socket events again.
+	 *
+	 * @param task
+	 *            the task to run on the processing thread
 	 */
-	private void sendPendingMessages() {
-		Collection deadSockets = null;
-		Collection processedMessages = null;
-
-		for (Iterator it = messages.iterator(); it.hasNext();) {
-			ChannelMessage message = (ChannelMessage) it.next();
-			ID id = message.getId();
-			SocketChannel channel = (SocketChannel) connectedSockets.get(id);
-			// check if we have a socket for the target of this message
-			if (channel != null) {
-				byte[] data = message.getData();
-
-				try {
-					// flush the data directly with regular IO, this method
-					// saves us the extra work of having to constantly flip and
-					// clear a ByteBuffer and in a way ensures the message is
-					// sent in one piece instead of chunks
-					channel.configureBlocking(true);
-					channel.socket().getOutputStream().write(data);
-					channel.socket().getOutputStream().flush();
-					// turn off blocking
-					channel.configureBlocking(false);
-				} catch (IOException e) {
-					log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
-							"Error occurred while sending message", e)); //$NON-NLS-1$
-					if (deadSockets == null) {
-						deadSockets = new HashSet();
-					}
-					deadSockets.add(id);
-				}
+	private void invokeLater(Runnable task) {
+		synchronized (tasks) {
+			tasks.add(task);
+		}
+		selector.wakeup();
+	}
 
-				if (processedMessages == null) {
-					processedMessages = new LinkedList();
+	/**
+	 * Runs all tasks that have been handed to the processing thread.
+	 */
+	private void runTasks() {
+		while (true) {
+			Runnable task;
+			synchronized (tasks) {
+				if (tasks.isEmpty()) {
+					return;
 				}
-				// store the processed message
-				processedMessages.add(message);
+				task = (Runnable) tasks.removeFirst();
 			}
+			task.run();
 		}
+	}
 
-		// remove all messages that have been processed
-		if (processedMessages != null) {
-			messages.removeAll(processedMessages);
+	/**
+	 * Accepts a pending incoming connection, if any, and registers it for
+	 * reading. The remote peer is expected to identify itself in its first
+	 * message.
+	 *
+	 * @throws IOException
+	 *             if an error occurred while accepting the connection
+	 */
+	private void accept() throws IOException {
+		SocketChannel socketChannel = serverSocketChannel.accept();
+		if (socketChannel != null) {
+			register(socketChannel, null);
 		}
+	}
 
-		if (deadSockets != null) {
-			for (Iterator it = deadSockets.iterator(); it.hasNext();) {
-				ID id = (ID) it.next();
-				SocketChannel channel = (SocketChannel) connectedSockets
-						.remove(id);
-				Util.closeChannel(channel);
+	/**
+	 * Registers the specified socket with this channel's selector. Must be
+	 * called from the processing thread.
+	 *
+	 * @param socketChannel
+	 *            the socket to register
+	 * @param peerId
+	 *            the id of the remote peer, or <code>null</code> if the peer
+	 *            has yet to identify itself
+	 */
+	private void register(SocketChannel socketChannel, ID peerId) {
+		try {
+			socketChannel.configureBlocking(false);
+			socketChannel.socket().setTcpNoDelay(true);
+			Peer peer = new Peer(socketChannel);
+			peer.key = socketChannel.register(selector, SelectionKey.OP_READ,
+					peer);
+			if (peerId != null) {
+				connected(peer, peerId);
 			}
+		} catch (IOException e) {
+			log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
+					"Could not register socket", e)); //$NON-NLS-1$
+			Util.closeChannel(socketChannel);
 		}
 	}
 
 	/**
-	 * Reads in any incoming messages from remote clients.
-	 * 
-	 * @param buffer
-	 *            the buffer to use for reading the socket
-	 * @throws IOException
-	 *             if an error occurs while reading from the socket
+	 * Stores the specified peer under the given ID and moves any messages that
+	 * were sent to that ID before the connection was established into the
+	 * peer's write queue.
+	 *
+	 * @param peer
+	 *            the newly connected peer
+	 * @param peerId
+	 *            the id of the remote peer
 	 */
-	private void processIncomingMessages(ByteBuffer buffer) throws IOException {
-		Collection deadSockets = null;
-
-		for (Iterator it = connectedSockets.entrySet().iterator(); it.hasNext();) {
-			Map.Entry entry = (Map.Entry) it.next();
-			SocketChannel socketChannel = (SocketChannel) entry.getValue();
-
-			try {
-				if (!processIncomingMessages(socketChannel, buffer)) {
-					if (deadSockets == null) {
-						deadSockets = new HashSet();
-					}
-					deadSockets.add(entry.getKey());
-				}
-			} catch (IOException e) {
-				log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
-						"Error occurred while sending message", e)); //$NON-NLS-1$
-				if (deadSockets == null) {
-					deadSockets = new HashSet();
+	private void connected(Peer peer, ID peerId) {
+		synchronized (connectedSockets) {
+			peer.id = peerId;
+			connectedSockets.put(peerId, peer);
+			List messages = (List) pendingMessages.remove(peerId);
+			if (messages != null) {
+				// queue these before anything sent once the peer is visible
+				synchronized (peer) {
+					peer.writeQueue.addAll(messages);
 				}
-				deadSockets.add(entry.getKey());
-			}
-		}
-
-		if (deadSockets != null) {
-			for (Iterator it = deadSockets.iterator(); it.hasNext();) {
-				ID id = (ID) it.next();
-				SocketChannel channel = (SocketChannel) connectedSockets
-						.remove(id);
-				Util.closeChannel(channel);
 			}
 		}
+		flush(peer);
 	}
 
 	/**
-	 * Processes any incoming messages from the specified channel by reading it
-	 * into the specified buffer and returns whether the channel has reached
-	 * end-of-stream.
-	 * 
-	 * @param socketChannel
-	 *            the channel to read messages from
-	 * @param buffer
-	 *            the buffer to use to read the messages into
-	 * @return <code>true</code> if the channel is still active,
-	 *         <code>false</code> has reached end-of-stream
-	 * @throws IOException
-	 *             if an error occurred while trying to read from the channel
+	 * Closes the specified peer's socket and forgets about the peer.
+	 *
+	 * @param peer
+	 *            the peer to close
 	 */
-	private boolean processIncomingMessages(SocketChannel socketChannel,
-			ByteBuffer buffer) throws IOException {
-		ChannelData channelData = Util.read(socketChannel, buffer);
-		byte[] message = channelData.getData();
-
-		if (message != null) {
-			processIncomingMessage(socketChannel, message);
+	private void close(Peer peer) {
+		if (peer.key != null) {
+			peer.key.cancel();
+		}
+		Util.closeChannel(peer.socketChannel);
+		synchronized (connectedSockets) {
+			if (peer.id != null && connectedSockets.get(peer.id) == peer) {
+				connectedSockets.remove(peer.id);
+			}
 		}
-		return channelData.isOpen();
 	}
 
 	/**
-	 * Processes the message that has been received from the specified channel.
-	 * 
-	 * @param socketChannel
-	 *            the channel that the message was from
-	 * @param message
-	 *            the message that was received
+	 * Writes as many of the peer's queued messages as the socket will accept
+	 * without blocking. If messages remain, the processing thread will be
+	 * notified when the socket becomes writable again. Must be called from the
+	 * processing thread.
+	 *
+	 * @param peer
+	 *            the peer to write to
 	 */
-	void processIncomingMessage(SocketChannel socketChannel, byte[] message) {
-		// we read something, need to notify
-		IChannelListener listener = getListener();
-		if (listener != null) {
-			// we have a listener, convert our data and then notify
-			byte[][] messages = convert(message);
-			if (messages != null) {
-				fireMessageEvents(listener, socketChannel, messages);
+	private void flush(Peer peer) {
+		if (!peer.key.isValid()) {
+			return;
+		}
+		try {
+			synchronized (peer) {
+				while (!peer.writeQueue.isEmpty()) {
+					ByteBuffer buffer = (ByteBuffer) peer.writeQueue.getFirst();
+					peer.socketChannel.write(buffer);
+					if (buffer.hasRemaining()) {
+						// socket is full, wait until it becomes writable
+						peer.key.interestOps(SelectionKey.OP_READ
+								| SelectionKey.OP_WRITE);
+						return;
+					}
+					peer.writeQueue.removeFirst();
+				}
+				peer.flushScheduled = false;
+				peer.key.interestOps(SelectionKey.OP_READ);
 			}
+		} catch (IOException e) {
+			log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
+					"Error occurred while sending message", e)); //$NON-NLS-1$
+			close(peer);
 		}
 	}
 
 	/**
-	 * Converts the data that has been read from the socket into separate byte[]
-	 * instances.
-	 * 
-	 * @param message
-	 *            the data read from the socket
-	 * @return a byte[][] containing the individual messages
+	 * Reads whatever data is available from the specified peer and processes
+	 * all messages that have been completely received. Must be called from the
+	 * processing thread.
+	 *
+	 * @param peer
+	 *            the peer to read from
+	 * @return <code>true</code> if the peer's socket is still open,
+	 *         <code>false</code> if it has reached end-of-stream
+	 * @throws ClassNotFoundException
+	 *             if the handshake message of the peer could not be
+	 *             deserialized
+	 * @throws IOException
+	 *             if an error occurred while trying to read from the socket
 	 */
-	private byte[][] convert(byte[] message) {
-		try {
-			// back the read in data with a ByteArrayInputStream
-			ByteArrayInputStream bais = new ByteArrayInputStream(message);
-			// instantiate an ObjectInputStream and read the individual
-			// byte[]
-			byte[] bytes = (byte[]) new ObjectInputStream(bais).readObject();
-
-			if (bais.available() == 0) {
-				return new byte[][] { bytes };
+	private boolean read(Peer peer) throws ClassNotFoundException,
+			IOException {
+		readBuffer.clear();
+		if (peer.socketChannel.read(readBuffer) == -1) {
+			return false;
+		}
+		readBuffer.flip();
+
+		while (readBuffer.hasRemaining() && peer.key.isValid()) {
+			if (peer.body == null) {
+				Util.transfer(readBuffer, peer.header);
+				if (peer.header.hasRemaining()) {
+					// length prefix is incomplete
+					break;
+				}
+				peer.header.flip();
+				int length = Util.checkLength(peer.header.getInt());
+				peer.header.clear();
+				peer.body = ByteBuffer.allocate(length);
 			}
 
-			Collection c = new ArrayList();
-			c.add(bytes);
-
-			while (bais.available() != 0) {
-				// instantiate an ObjectInputStream and read the individual
-				// byte[]
-				bytes = (byte[]) new ObjectInputStream(bais).readObject();
-				// store it
-				c.add(bytes);
+			Util.transfer(readBuffer, peer.body);
+			if (!peer.body.hasRemaining()) {
+				byte[] message = peer.body.array();
+				peer.body = null;
+				if (peer.id == null) {
+					handshake(peer, message);
+				} else {
+					processIncomingMessage(peer.id, message);
+				}
 			}
-
-			// return all the individual byte[]s
-			return (byte[][]) c.toArray(new byte[c.size()][]);
-		} catch (IOException e) {
-			return null;
-		} catch (ClassNotFoundException e) {
-			return null;
 		}
+		return true;
 	}
 
 	/**
-	 * Fires message events to the specified listener for each of the message
-	 * that was received.
-	 * 
-	 * @param listener
-	 *            the listener to notify
-	 * @param socketChannel
-	 *            the socket that the message was read from
-	 * @param messages
-	 *            the messages that have been received
-	 */
-	private void fireMessageEvents(IChannelListener listener,
-			SocketChannel socketChannel, byte[][] messages) {
-		for (int i = 0; i < messages.length; i++) {
-			IChannelEvent event = createMessageEvent(socketChannel, messages[i]);
-			if (event != null) {
-				fireChannelEvent(listener, event);
-			}
+	 * Processes the message that has been received from the specified peer.
+	 *
+	 * @param fromId
+	 *            the id of the peer that the message was from
+	 * @param message
+	 *            the message that was received
+	 */
+	private void processIncomingMessage(ID fromId, byte[] message) {
+		// we read something, need to notify
+		IChannelListener listener = getListener();
+		if (listener != null) {
+			fireChannelEvent(listener, createMessageEvent(fromId, message));
 		}
 	}
 
@@ -488,7 +523,7 @@ public abstract class NIOChannel implements IChannel {
 	 * Notifies the specified listener of the given channel event. The code is
 	 * run within a SafeRunner to ensure that the program flow is not affected
 	 * in the event of errors during notification.
-	 * 
+	 *
 	 * @param listener
 	 *            the listener to notify
 	 * @param event
@@ -512,162 +547,99 @@ public abstract class NIOChannel implements IChannel {
 
 	/**
 	 * Creates and returns a message event corresponding to the specified
-	 * channel and the data that was read.
-	 * 
-	 * @param channel
-	 *            the socket channel that the message was from
+	 * sender and the data that was read.
+	 *
+	 * @param fromId
+	 *            the id of the peer that the message was from
 	 * @param data
 	 *            the message from the remote peer
-	 * @return a message event describing the received message, may be
-	 *         <code>null</code> if the channel could not be identified
+	 * @return a message event describing the received message
 	 */
-	private IChannelEvent createMessageEvent(SocketChannel channel,
+	private IChannelEvent createMessageEvent(final ID fromId,
 			final byte[] data) {
-		// search for the id of the corresponding channel
-		for (Iterator it = connectedSockets.entrySet().iterator(); it.hasNext();) {
-			Map.Entry entry = (Map.Entry) it.next();
-			if (channel == entry.getValue()) {
-				final ID fromId = (ID) entry.getKey();
-
-				return new IChannelMessageEvent() {
-					public byte[] getData() {
-						return data;
-					}
+		return new IChannelMessageEvent() {
+			public byte[] getData() {
+				return data;
+			}
 
-					public ID getFromContainerID() {
-						return fromId;
-					}
+			public ID getFromContainerID() {
+				return fromId;
+			}
 
-					public ID getChannelID() {
-						return id;
-					}
+			public ID getChannelID() {
+				return id;
+			}
 
-					public String toString() {
-						StringBuffer buffer = new StringBuffer();
-						buffer.append("IChannelMessageEvent["); //$NON-NLS-1$
-						buffer.append("container=").append(fromId); //$NON-NLS-1$
-						buffer.append(",channel=").append(id); //$NON-NLS-1$
-						buffer.append(",data=").append(data).append(']'); //$NON-NLS-1$
-						return buffer.toString();
-					}
-				};
+			public String toString() {
+				StringBuffer buffer = new StringBuffer();
+				buffer.append("IChannelMessageEvent["); //$NON-NLS-1$
+				buffer.append("container=").append(fromId); //$NON-NLS-1$
+				buffer.append(",channel=").append(id); //$NON-NLS-1$
+				buffer.append(",data=").append(data).append(']'); //$NON-NLS-1$
+				return buffer.toString();
 			}
-		}
-		return null;
+		};
 	}
 
 	/**
 	 * Stores the specified ID with its corresponding socket into this channel.
 	 * The socket will now be actively used for reading and sending messages.
-	 * 
+	 * This method may be called from any thread.
+	 *
 	 * @param id
 	 *            the target that the socket is connected with
 	 * @param socketChannel
 	 *            the socket channel to be stored
 	 */
-	void put(ID id, SocketChannel socketChannel) {
-		connectedSockets.put(id, socketChannel);
+	void put(final ID id, final SocketChannel socketChannel) {
+		invokeLater(new Runnable() {
+			public void run() {
+				register(socketChannel, id);
+			}
+		});
 	}
 
 	/**
-	 * Accept the socket as a potential client and attempt to handshake with it.
-	 * 
-	 * @param socketChannel
-	 *            the socket to establish a connection with
-	 * @throws ClassNotFoundException
-	 *             if the class of an object being deserialized could not be
-	 *             found
-	 * @throws IOException
-	 *             if a networking error occurs with the socket while
-	 *             reading/sending messages
-	 */
-	// private boolean accept2(SocketChannel socketChannel, ByteBuffer buffer)
-	// throws ClassNotFoundException, IOException {
-	// int read = socketChannel.read(buffer);
-	// buffer.flip();
-	// byte[] bytes = new byte[read];
-	// buffer.get(bytes);
-	// buffer.clear();
-	//
-	// ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(
-	// bytes));
-	// Object object = ois.readObject();
-	//
-	// if (object instanceof ID) {
-	// bytes = serialize(id);
-	// socketChannel.socket().getOutputStream().write(bytes);
-	//
-	// bytes = serialize(containerId);
-	// socketChannel.socket().getOutputStream().write(bytes);
-	// socketChannel.socket().getOutputStream().flush();
-	//
-	// socketChannel.configureBlocking(false);
-	// put((ID) object, socketChannel);
-	// }
-	// return true;
-	// }
-
-	/**
-	 * Performs a handshake with a remote peer via the provided socket channel
-	 * and returns whether <code>true</code> if no further attempts are
-	 * required. Note that <code>true</code> does not indicate that the
-	 * handshake has been successful.
-	 * <p>
-	 * For example, if the remote peer has closed this channel then
-	 * <code>true</code> would be returned as no further attempts should be
-	 * attempted.
-	 * </p>
-	 * 
-	 * @param socketChannel
-	 *            the channel to use to handshake with the remote peer
-	 * @param buffer
-	 *            the buffer to use for reading and writing data from the
-	 *            channel
-	 * @return <code>true</code> if no further handshake attempts are required,
-	 *         <code>false</code> otherwise
+	 * Completes the handshake with a remote peer that has connected to this
+	 * channel's server socket. The first message of the peer contains its
+	 * serialized id. This channel answers with its own id and the id of the
+	 * originating owner container.
+	 *
+	 * @param peer
+	 *            the peer that sent the message
+	 * @param message
+	 *            the first message that was received from the peer
 	 * @throws ClassNotFoundException
 	 *             if deserialization failed during the handshake
 	 * @throws IOException
 	 *             if an IO error occurred while performing the handshake
 	 */
-	private boolean handshake(SocketChannel socketChannel, ByteBuffer buffer)
+	private void handshake(Peer peer, byte[] message)
 			throws ClassNotFoundException, IOException {
-		ChannelData data = Util.read(socketChannel, buffer);
-		if (!data.isOpen()) {
-			// this channel is dead, close it
-			Util.closeChannel(socketChannel);
-			return true;
-		}
-
-		byte[] bytes = data.getData();
-		if (bytes == null) {
-			return false;
-		}
-
 		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(
-				bytes));
+				message));
 		Object object = ois.readObject();
 
 		if (object instanceof ID) {
-			socketChannel.configureBlocking(true);
 			byte[] one = Util.serialize(id);
 			byte[] two = Util.serialize(containerId);
-			bytes = new byte[one.length + two.length];
+			byte[] bytes = new byte[one.length + two.length];
 			System.arraycopy(one, 0, bytes, 0, one.length);
 			System.arraycopy(two, 0, bytes, one.length, two.length);
 
-			socketChannel.socket().getOutputStream().write(bytes);
-			socketChannel.socket().getOutputStream().flush();
-
-			socketChannel.configureBlocking(false);
-			put((ID) object, socketChannel);
+			synchronized (peer) {
+				// the reply must precede any messages queued for this peer
+				peer.writeQueue.addFirst(Util.frame(bytes));
+			}
+			connected(peer, (ID) object);
+		} else {
+			close(peer);
 		}
-		return true;
 	}
 
 	/**
 	 * Returns the port that is currently open for incoming socket connections.
-	 * 
+	 *
 	 * @return the open port for socket connections
 	 * @see #sendRequest(ID)
 	 * @see NIODatashareContainer#enqueue(SocketAddress)
@@ -686,7 +658,7 @@ public abstract class NIOChannel implements IChannel {
 	 * This method will be invoked when a socket corresponding to the receiver's
 	 * ID cannot be found.
 	 * </p>
-	 * 
+	 *
 	 * @param receiver
 	 *            the receiver to contact, will not be <code>null</code>
 	 * @throws ECFException
@@ -703,17 +675,13 @@ public abstract class NIOChannel implements IChannel {
 	/**
 	 * Sends a message to a remote instance of this channel of the target peer.
 	 * <p>
-	 * <b>Note:</b> The current implementation does not handle repeated
-	 * invocations of this method in succession prior to a socket connection
-	 * established. For optimal performance and some assurance of success, there
-	 * needs to be a time lag between the first message that is sent and the
-	 * ones that follow it. This lag should hopefully allow the provider
-	 * sufficient time for establishing a socket connection with the remote
-	 * peer. Otherwise, there may be multiple invocations of
-	 * {@link #sendRequest(ID)} and clients are responsible for handling this
-	 * individually.
+	 * If no socket connection has been established with the receiver yet,
+	 * {@link #sendRequest(ID)} is invoked once and this and all following
+	 * messages to the receiver are held back until the receiver has connected.
+	 * If the request fails, the held back messages are discarded and the next
+	 * message to the receiver sends a new request.
 	 * </p>
-	 * 
+	 *
 	 * @param receiver
 	 *            the receiver to send the message to, must not be
 	 *            <code>null</code>
@@ -723,17 +691,74 @@ public abstract class NIOChannel implements IChannel {
 	public void sendMessage(ID receiver, byte[] message) throws ECFException {
 		Assert.isNotNull(receiver, "A receiver must be specified"); //$NON-NLS-1$
 		Assert.isNotNull(message, "Message cannot be null"); //$NON-NLS-1$
+		if (message.length > Util.MAX_MESSAGE_SIZE) {
+			throw new ECFException(new Status(IStatus.ERROR, Util.PLUGIN_ID,
+					"Message is larger than " + Util.MAX_MESSAGE_SIZE + " bytes")); //$NON-NLS-1$ //$NON-NLS-2$
+		}
 
-		// check if we already have a socket for this receiver
-		if (!connectedSockets.containsKey(receiver)) {
+		ByteBuffer frame = Util.frame(message);
+		Peer peer;
+		List pending = null;
+		boolean request = false;
+		synchronized (connectedSockets) {
+			// check if we already have a socket for this receiver
+			peer = (Peer) connectedSockets.get(receiver);
+			if (peer == null) {
+				pending = (List) pendingMessages.get(receiver);
+				if (pending == null) {
+					pending = new ArrayList();
+					pendingMessages.put(receiver, pending);
+					request = true;
+				}
+				pending.add(frame);
+			}
+		}
+
+		if (peer != null) {
+			enqueue(peer, frame);
+		} else if (request) {
 			// send a request to the receiver for establishing a socket
 			// connection
-			sendRequest(receiver);
+			boolean requested = false;
+			try {
+				sendRequest(receiver);
+				requested = true;
+			} finally {
+				if (!requested) {
+					// drop the held back messages, the next message to the
+					// receiver sends a new request
+					synchronized (connectedSockets) {
+						if (pendingMessages.get(receiver) == pending) {
+							pendingMessages.remove(receiver);
+						}
+					}
+				}
+			}
 		}
+	}
 
-		synchronized (messages) {
-			// enqueue the message for processing
-			messages.add(new ChannelMessage(receiver, message));
+	/**
+	 * Appends the framed message to the peer's write queue and asks the
+	 * processing thread to write it out, unless it has already been asked to.
+	 *
+	 * @param peer
+	 *            the peer to send the message to
+	 * @param frame
+	 *            the framed message
+	 */
+	private void enqueue(final Peer peer, ByteBuffer frame) {
+		boolean schedule;
+		synchronized (peer) {
+			peer.writeQueue.add(frame);
+			schedule = !peer.flushScheduled;
+			peer.flushScheduled = true;
+		}
+		if (schedule) {
+			invokeLater(new Runnable() {
+				public void run() {
+					flush(peer);
+				}
+			});
 		}
 	}
 
@@ -744,15 +769,11 @@ public abstract class NIOChannel implements IChannel {
 	 */
 	public void dispose() {
 		processingThread.interrupt();
+		selector.wakeup();
 
-		try {
-			// turn off the server to prevent and deny incoming connections
-			if (serverSocketChannel != null) {
-				serverSocketChannel.close();
-				serverSocketChannel = null;
-			}
-		} catch (IOException e) {
-			// ignored
+		// turn off the server to prevent and deny incoming connections
+		if (serverSocketChannel != null) {
+			Util.closeChannel(serverSocketChannel);
 			serverSocketChannel = null;
 		}
 
@@ -760,11 +781,12 @@ public abstract class NIOChannel implements IChannel {
 			// close all connections
 			for (Iterator it = connectedSockets.values().iterator(); it
 					.hasNext();) {
-				SocketChannel socket = (SocketChannel) it.next();
-				Util.closeChannel(socket);
+				Peer peer = (Peer) it.next();
+				Util.closeChannel(peer.socketChannel);
 			}
 
 			connectedSockets.clear();
+			pendingMessages.clear();
 		}
 
 		datashareContainer.fireChannelContainerDeactivatedEvent(id);
@@ -794,86 +816,117 @@ public abstract class NIOChannel implements IChannel {
 	private final class ProcessingRunnable implements Runnable {
 
 		public void run() {
-			ByteBuffer buffer = ByteBuffer.allocate(1024);
-			while (true) {
-				try {
-					Thread.sleep(50);
-
-					if (Thread.currentThread().isInterrupted()) {
-						return;
-					}
-
-					// perform handshaking for any pending sockets
-					for (int i = 0; i < pendingSockets.size(); i++) {
-						SocketChannel channel = (SocketChannel) pendingSockets
-								.get(i);
-						if (handshake(channel, buffer)) {
-							// remove if handled
-							pendingSockets.remove(i);
-							i--;
-						}
-					}
-
-					processIncomingMessages(buffer);
-
-					// check if we have pending messages to send
-					synchronized (messages) {
-						if (!messages.isEmpty()) {
-							sendPendingMessages();
-						}
-					}
-
-					SocketChannel socketChannel = serverSocketChannel.accept();
-					if (socketChannel != null) {
-						socketChannel.configureBlocking(false);
-						pendingSockets.add(socketChannel);
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					runTasks();
+					selector.select();
+
+					for (Iterator it = selector.selectedKeys().iterator(); it
+							.hasNext();) {
+						SelectionKey key = (SelectionKey) it.next();
+						it.remove();
+						process(key);
 					}
-				} catch (InterruptedException e) {
-					Thread.interrupted();
-					return;
-				} catch (ClassNotFoundException e) {
-					log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
-							"Could not deserialize", e)); //$NON-NLS-1$
+				}
+			} catch (ClosedSelectorException e) {
+				// disposed
+			} catch (IOException e) {
+				log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
+						"An IO error occurred", e)); //$NON-NLS-1$
+			} finally {
+				for (Iterator it = selector.keys().iterator(); it.hasNext();) {
+					SelectionKey key = (SelectionKey) it.next();
+					Util.closeChannel(key.channel());
+				}
+				try {
+					selector.close();
 				} catch (IOException e) {
-					log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
-							"An IO error occurred", e)); //$NON-NLS-1$
-				} catch (RuntimeException e) {
-					log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
-							"A runtime error occurred", e)); //$NON-NLS-1$
+					// ignored
 				}
 			}
 		}
-	}
-
-	private final class ChannelMessage {
 
-		private ID fromId;
-		private byte[] data;
+		private void process(SelectionKey key) {
+			if (!key.isValid()) {
+				return;
+			}
 
-		ChannelMessage(ID fromId, byte[] data) throws ECFException {
-			this.fromId = fromId;
-			this.data = convert(data);
-		}
+			if (key.isAcceptable()) {
+				try {
+					accept();
+				} catch (IOException e) {
+					log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
+							"Could not accept connection", e)); //$NON-NLS-1$
+				}
+				return;
+			}
 
-		private byte[] convert(byte[] data) throws ECFException {
+			Peer peer = (Peer) key.attachment();
 			try {
-				ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				ObjectOutputStream oos = new ObjectOutputStream(baos);
-				oos.writeObject(data);
-				return baos.toByteArray();
+				if (key.isReadable() && !read(peer)) {
+					// end-of-stream, the remote peer has gone away
+					close(peer);
+					return;
+				}
+				if (key.isValid() && key.isWritable()) {
+					flush(peer);
+				}
+			} catch (ClassNotFoundException e) {
+				log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
+						"Could not deserialize", e)); //$NON-NLS-1$
+				close(peer);
 			} catch (IOException e) {
-				throw new ECFException(e);
+				log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
+						"Error occurred while reading message", e)); //$NON-NLS-1$
+				close(peer);
+			} catch (RuntimeException e) {
+				log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
+						"A runtime error occurred", e)); //$NON-NLS-1$
+				close(peer);
 			}
 		}
+	}
 
-		public ID getId() {
-			return fromId;
-		}
-
-		public byte[] getData() {
-			return data;
+	/**
+	 * The state of one socket connection to a remote peer.
+	 */
+	private static final class Peer {
+
+		final SocketChannel socketChannel;
+
+		SelectionKey key;
+
+		/**
+		 * The id of the remote peer, <code>null</code> until the handshake has
+		 * completed.
+		 */
+		ID id;
+
+		/**
+		 * Holds the length prefix of the message currently being read.
+		 */
+		final ByteBuffer header = ByteBuffer.allocate(4);
+
+		/**
+		 * Holds the message currently being read, <code>null</code> while the
+		 * length prefix is being read.
+		 */
+		ByteBuffer body;
+
+		/**
+		 * Framed messages waiting to be written to the socket.
+		 */
+		final LinkedList writeQueue = new LinkedList();
+
+		/**
+		 * Whether the processing thread will write out the write queue without
+		 * being asked again.
+		 */
+		boolean flushScheduled;
+
+		Peer(SocketChannel socketChannel) {
+			this.socketChannel = socketChannel;
 		}
-
 	}
 
 }
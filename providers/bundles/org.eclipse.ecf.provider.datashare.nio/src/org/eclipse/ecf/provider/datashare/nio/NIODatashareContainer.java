@@ -13,10 +13,10 @@
 package org.eclipse.ecf.provider.datashare.nio;
 
 import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.net.SocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -44,6 +44,8 @@ import org.eclipse.ecf.datashare.IChannelConfig;
 import org.eclipse.ecf.datashare.IChannelContainerAdapter;
 import org.eclipse.ecf.datashare.IChannelContainerListener;
 import org.eclipse.ecf.datashare.IChannelListener;
+import org.eclipse.ecf.datashare.IStreamContainerAdapter;
+import org.eclipse.ecf.datashare.StreamShare;
 import org.eclipse.ecf.datashare.events.IChannelContainerChannelActivatedEvent;
 import org.eclipse.ecf.datashare.events.IChannelContainerChannelDeactivatedEvent;
 import org.eclipse.ecf.datashare.events.IChannelContainerEvent;
@@ -86,6 +88,12 @@ import org.eclipse.ecf.datashare.events.IChannelContainerEvent;
  */
 public abstract class NIODatashareContainer implements IChannelContainerAdapter {
 
+	/**
+	 * How long to wait for the remote channel to answer the handshake, in
+	 * milliseconds.
+	 */
+	private static final int HANDSHAKE_TIMEOUT = 30000;
+
 	/**
 	 * A thread for establishing a connection to remote clients.
 	 */
@@ -97,8 +105,8 @@ public abstract class NIODatashareContainer implements IChannelContainerAdapter
 	private LinkedList pendingConnections;
 
 	/**
-	 * A list of socket channels that needs to be processed for handshaking with
-	 * the remote peer.
+	 * A list of socket channels that are currently handshaking with the remote
+	 * peer.
 	 */
 	private List pendingSockets;
 
@@ -107,6 +115,11 @@ public abstract class NIODatashareContainer implements IChannelContainerAdapter
 	 */
 	private Map channels;
 
+	/**
+	 * The stream adapter of this container, created on first access.
+	 */
+	private StreamShare streamShare;
+
 	/**
 	 * The parent container of this datashare container.
 	 */
@@ -281,6 +294,16 @@ public abstract class NIODatashareContainer implements IChannelContainerAdapter
 	}
 
 	private void disconnect() {
+		StreamShare share;
+		synchronized (this) {
+			share = streamShare;
+			streamShare = null;
+		}
+		if (share != null) {
+			// aborts open streams and removes the stream channel
+			share.dispose();
+		}
+
 		if (connectionThread != null) {
 			connectionThread.interrupt();
 			connectionThread = null;
@@ -321,36 +344,45 @@ public abstract class NIODatashareContainer implements IChannelContainerAdapter
 	}
 
 	/**
-	 * Attempts to connect to a remote address that has been enqueued to this
-	 * channel container for processing via the {@link #enqueue(SocketAddress)}
-	 * method.
+	 * Connects to a remote address that has been enqueued to this channel
+	 * container for processing via the {@link #enqueue(SocketAddress)} method
+	 * and performs the handshake with the remote channel.
 	 * 
-	 * @param buffer
-	 *            the buffer to use for reading and writing data
+	 * @param remote
+	 *            the address to connect to
+	 * @throws ClassNotFoundException
+	 *             if a deserialization error occurs
 	 * @throws IOException
 	 *             if an IO error occurs while attempting to contact the peer
 	 */
-	private void connect(ByteBuffer buffer) throws IOException {
-		while (!pendingConnections.isEmpty()) {
-			// retrieve an IP address to connect to
-			SocketAddress remote = (SocketAddress) pendingConnections
-					.removeFirst();
-
-			// open a socket channel to the remote address
-			SocketChannel socketChannel = SocketChannel.open(remote);
-
-			byte[] bytes = Util.serialize(container.getConnectedID());
-			if (bytes == null) {
-				// serialization failed, close the socket
-				Util.closeChannel(socketChannel);
-				return;
-			}
-
-			socketChannel.configureBlocking(false);
-			Util.write(socketChannel, buffer, bytes);
+	private void connect(SocketAddress remote) throws ClassNotFoundException,
+			IOException {
+		byte[] bytes = Util.serialize(container.getConnectedID());
 
+		// open a socket channel to the remote address
+		SocketChannel socketChannel = SocketChannel.open(remote);
+		synchronized (pendingSockets) {
 			pendingSockets.add(socketChannel);
 		}
+
+		boolean handedOver = false;
+		try {
+			Util.writeFrame(socketChannel, bytes);
+
+			// read the reply with plain blocking IO, the frame is read exactly
+			// so that any messages following it are left for the channel
+			socketChannel.socket().setSoTimeout(HANDSHAKE_TIMEOUT);
+			DataInputStream in = new DataInputStream(socketChannel.socket()
+					.getInputStream());
+			handedOver = handshake(socketChannel, Util.readFrame(in));
+		} finally {
+			synchronized (pendingSockets) {
+				pendingSockets.remove(socketChannel);
+			}
+			if (!handedOver) {
+				Util.closeChannel(socketChannel);
+			}
+		}
 	}
 
 	/**
@@ -371,7 +403,10 @@ public abstract class NIODatashareContainer implements IChannelContainerAdapter
 			connectionThread.start();
 		}
 
-		pendingConnections.add(address);
+		synchronized (pendingConnections) {
+			pendingConnections.add(address);
+			pendingConnections.notify();
+		}
 	}
 
 	/**
@@ -379,18 +414,17 @@ public abstract class NIODatashareContainer implements IChannelContainerAdapter
 	 * 
 	 * @param socketChannel
 	 *            the socket channel to handshake with
-	 * @param data
-	 *            the data sent from the channel thus far
+	 * @param message
+	 *            the reply of the remote channel
+	 * @return <code>true</code> if the socket has been handed over to a
+	 *         channel, <code>false</code> if it should be closed
 	 * @throws ClassNotFoundException
 	 *             if a deserialization error occurs
 	 * @throws IOException
 	 *             if an IO error occurs while reading or writing data
 	 */
-	private void handshake(SocketChannel socketChannel, ChannelData data)
+	private boolean handshake(SocketChannel socketChannel, byte[] message)
 			throws ClassNotFoundException, IOException {
-		// retrieve the data that was sent
-		byte[] message = data.getData();
-
 		// read in the response
 		ByteArrayInputStream bais = new ByteArrayInputStream(message);
 		ObjectInputStream ois = new ObjectInputStream(bais);
@@ -402,74 +436,22 @@ public abstract class NIODatashareContainer implements IChannelContainerAdapter
 			// retrieve the channel that corresponds to that id
 			IChannel channel = getChannel(channelId);
 			if (channel == null) {
-				// can't find a channel that corresponds to the id, close the
-				// socket
-				Util.closeChannel(socketChannel);
-			} else {
-				// open another ObjectInputStream because each object is
-				// serialized separately
-				ois = new ObjectInputStream(bais);
-
-				// next id is the id of the remote user
-				ID peerId = (ID) ois.readObject();
-
-				// store the peer id and the corresponding socket in the
-				// retrieved NIO channel
-				NIOChannel datashare = (NIOChannel) channel;
-				datashare.put(peerId, socketChannel);
-
-				// check if we have any bytes left to read
-				int available = bais.available();
-				if (available != 0) {
-					// if there are extra bytes that means this is data that
-					// the sender has sent to us, we must process these messages
-					byte[] received = new byte[available];
-					// copy the remaining information
-					System.arraycopy(message, message.length - available,
-							received, 0, available);
-					// process the received data
-					datashare.processIncomingMessage(socketChannel, received);
-				}
+				// can't find a channel that corresponds to the id
+				return false;
 			}
-		}
-	}
 
-	/**
-	 * Processes any pending sockets that are currently queued up in this
-	 * channel container and is waiting to initiate the handshake process with
-	 * the remote peer.
-	 * 
-	 * @param buffer
-	 *            the buffer to use for reading and writing data
-	 * @throws ClassNotFoundException
-	 *             if a serialization or deserialization operation encountered
-	 *             errors
-	 * @throws IOException
-	 *             if an IO error occurs while reading or writing data
-	 */
-	private void processPendingSockets(ByteBuffer buffer)
-			throws ClassNotFoundException, IOException {
-		for (int i = 0; i < pendingSockets.size(); i++) {
-			SocketChannel socketChannel = (SocketChannel) pendingSockets.get(i);
-
-			buffer.clear();
-			// read in the response
-			ChannelData data = Util.read(socketChannel, buffer);
-			if (!data.isOpen()) {
-				// the channel isn't open, we should close it on our end also
-				Util.closeChannel(socketChannel);
-				// remove this channel
-				pendingSockets.remove(i);
-				i--;
-			} else if (data.getData() != null) {
-				try {
-					handshake(socketChannel, data);
-				} finally {
-					// this socket has been processed, remove it
-					pendingSockets.remove(i);
-					i--;
-				}
-			}
+			// open another ObjectInputStream because each object is
+			// serialized separately
+			ois = new ObjectInputStream(bais);
+
+			// next id is the id of the remote user
+			ID peerId = (ID) ois.readObject();
+
+			// store the peer id and the corresponding socket in the
+			// retrieved NIO channel, messages the remote channel has already
+			// sent will be read by the channel
+			((NIOChannel) channel).put(peerId, socketChannel);
+			return true;
 		}
 	}
 
@@ -564,11 +546,34 @@ public abstract class NIODatashareContainer implements IChannelContainerAdapter
 			return this;
 		} else if (adapter == IContainer.class) {
 			return container;
+		} else if (adapter == IStreamContainerAdapter.class) {
+			return getStreamContainerAdapter();
 		} else {
 			return null;
 		}
 	}
 	
+	/**
+	 * Returns the stream adapter of this container. Streams are carried over a
+	 * channel of this container, so only streams to a single receiver are
+	 * supported, see {@link StreamShare#getOutputStream(ID)}.
+	 * 
+	 * @return the stream adapter, or <code>null</code> if its channel could
+	 *         not be created
+	 */
+	private synchronized IStreamContainerAdapter getStreamContainerAdapter() {
+		if (streamShare == null || streamShare.isDisposed()) {
+			try {
+				streamShare = new StreamShare(this);
+			} catch (ECFException e) {
+				log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
+						"Could not create stream channel", e)); //$NON-NLS-1$
+				return null;
+			}
+		}
+		return streamShare;
+	}
+
 	public String toString() {
 		StringBuffer buffer = new StringBuffer(getClass().getName());
 		buffer.append("[parentContainer=").append(container).append(']'); //$NON-NLS-1$
@@ -578,24 +583,19 @@ public abstract class NIODatashareContainer implements IChannelContainerAdapter
 	private class ConnectionRunnable implements Runnable {
 
 		public void run() {
-			ByteBuffer buffer = ByteBuffer.allocate(1024);
 			while (true) {
 				try {
-					buffer.clear();
-
-					if (Thread.currentThread().isInterrupted()) {
-						return;
-					}
-
+					SocketAddress remote;
 					synchronized (pendingConnections) {
-						if (!pendingConnections.isEmpty()) {
-							connect(buffer);
-						}	
+						while (pendingConnections.isEmpty()) {
+							pendingConnections.wait();
+						}
+						// retrieve an IP address to connect to
+						remote = (SocketAddress) pendingConnections
+								.removeFirst();
 					}
 
-					processPendingSockets(buffer);
-
-					Thread.sleep(50);
+					connect(remote);
 				} catch (InterruptedException e) {
 					Thread.interrupted();
 					return;
@@ -603,6 +603,9 @@ public abstract class NIODatashareContainer implements IChannelContainerAdapter
 					log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
 							"Could not deserialize", e)); //$NON-NLS-1$
 				} catch (IOException e) {
+					if (Thread.currentThread().isInterrupted()) {
+						return;
+					}
 					log(new Status(IStatus.ERROR, Util.PLUGIN_ID,
 							"An IO error occurred", e)); //$NON-NLS-1$
 				} catch (RuntimeException e) {
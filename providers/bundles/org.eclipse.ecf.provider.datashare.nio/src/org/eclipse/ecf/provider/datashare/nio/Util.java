@@ -13,11 +13,11 @@
 package org.eclipse.ecf.provider.datashare.nio;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 import org.eclipse.ecf.core.identity.ID;
@@ -26,6 +26,13 @@ final class Util {
 
 	static final String PLUGIN_ID = "org.eclipse.ecf.provider.datashare.nio"; //$NON-NLS-1$
 
+	/**
+	 * The largest message that is sent or accepted. The length prefix comes
+	 * from the remote peer, so it must be checked before a buffer of that size
+	 * is allocated.
+	 */
+	static final int MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+
 	static void closeChannel(Channel channel) {
 		try {
 			channel.close();
@@ -43,86 +50,84 @@ final class Util {
 	}
 
 	/**
-	 * Reads messages from the channel and returns the data, if any.
+	 * Prefixes the specified data with its length.
 	 * 
-	 * @param channel
-	 *            the channel to read the messages from
-	 * @param buffer
-	 *            the buffer to use for reading the data into
-	 * @return the data from the channel and information about the channel, will
-	 *         not be <code>null</code>
-	 * @throws IOException
+	 * @param data
+	 *            the data to frame
+	 * @return a buffer ready to be written to a channel, will not be
+	 *         <code>null</code>
 	 */
-	static ChannelData read(ReadableByteChannel channel, ByteBuffer buffer)
-			throws IOException {
-		// check how much data has been read
-		int read = channel.read(buffer);
-		if (read == -1) {
-			return new ChannelData(null, false);
-		} else if (read == 0) {
-			return new ChannelData(null, true);
-		}
-
-		// the read data
-		byte[] message = new byte[read];
-
-		// retrieve the contents from the buffer
+	static ByteBuffer frame(byte[] data) {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + data.length);
+		buffer.putInt(data.length);
+		buffer.put(data);
 		buffer.flip();
-		buffer.get(message, 0, read);
-		buffer.clear();
-
-		// try reading more data
-		read = channel.read(buffer);
-
-		while (read > 0) {
-			// create a temporary array, copy what's been read so far
-			byte[] temp = new byte[read + message.length];
-			System.arraycopy(message, 0, temp, 0, message.length);
-
-			// retrieve the contents from the buffer
-			buffer.flip();
-			buffer.get(temp, message.length, read);
-			buffer.clear();
-
-			// assign the temporary array back to the primary
-			message = temp;
-
-			// try reading more data
-			read = channel.read(buffer);
-		}
-		// if we didn't read zero bytes that'd imply we've reached end-of-stream
-		return new ChannelData(message, read == 0);
+		return buffer;
 	}
 
-	static void write(WritableByteChannel channel, ByteBuffer buffer,
-			byte[] data) throws IOException {
-		buffer.clear();
-
-		int remaining = data.length;
-		int limit = buffer.limit();
-		if (remaining < limit) {
-			buffer.put(data);
-			buffer.flip();
+	/**
+	 * Writes the framed data to a blocking channel.
+	 * 
+	 * @param channel
+	 *            the channel to write to
+	 * @param data
+	 *            the data to frame and write
+	 * @throws IOException
+	 */
+	static void writeFrame(WritableByteChannel channel, byte[] data)
+			throws IOException {
+		ByteBuffer buffer = frame(data);
+		while (buffer.hasRemaining()) {
 			channel.write(buffer);
-			buffer.clear();
-			return;
 		}
+	}
 
-		int offset = 0;
-		while (remaining > limit) {
-			buffer.put(data, offset, limit);
-			buffer.flip();
-			channel.write(buffer);
-			buffer.clear();
+	/**
+	 * Reads one length prefixed frame from a blocking stream.
+	 * 
+	 * @param in
+	 *            the stream to read from
+	 * @return the data of the frame, will not be <code>null</code>
+	 * @throws IOException
+	 *             if end-of-stream was reached or the length is invalid
+	 */
+	static byte[] readFrame(DataInputStream in) throws IOException {
+		byte[] data = new byte[checkLength(in.readInt())];
+		in.readFully(data);
+		return data;
+	}
 
-			offset += limit;
-			remaining -= limit;
+	/**
+	 * Checks the length prefix of a received frame.
+	 * 
+	 * @param length
+	 *            the length of the frame's data
+	 * @return the length
+	 * @throws IOException
+	 *             if the length is negative or larger than
+	 *             {@link #MAX_MESSAGE_SIZE}
+	 */
+	static int checkLength(int length) throws IOException {
+		if (length < 0 || length > MAX_MESSAGE_SIZE) {
+			throw new IOException("Invalid message length: " + length); //$NON-NLS-1$
 		}
+		return length;
+	}
 
-		buffer.put(data, offset, remaining);
-		buffer.flip();
-		channel.write(buffer);
-		buffer.clear();
+	/**
+	 * Copies as many bytes as fit from one buffer into another.
+	 * 
+	 * @param src
+	 *            the buffer to copy from
+	 * @param dst
+	 *            the buffer to copy to
+	 */
+	static void transfer(ByteBuffer src, ByteBuffer dst) {
+		int count = Math.min(src.remaining(), dst.remaining());
+		int limit = src.limit();
+		src.limit(src.position() + count);
+		dst.put(src);
+		src.limit(limit);
 	}
 
 }
@@ -103,6 +103,8 @@ public class DatashareContainerAdapter implements IChannelContainerAdapter {
 	public Object getAdapter(Class adapter) {
 		if (adapter != null && adapter.equals(IContainer.class))
 			return container;
+		if (adapter != null && adapter.equals(IStreamContainerAdapter.class))
+			return delegate.getAdapter(adapter);
 		final IAdapterManager adapterManager = Activator.getDefault().getAdapterManager();
 		return (adapterManager == null) ? null : adapterManager.loadAdapter(this, adapter.getName());
 	}
@@ -12,9 +12,12 @@
  *****************************************************************************/
 package org.eclipse.ecf.provider.datashare;
 
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.ecf.core.IContainer;
 import org.eclipse.ecf.core.identity.ID;
 import org.eclipse.ecf.core.sharedobject.*;
 import org.eclipse.ecf.datashare.IChannelContainerAdapter;
+import org.eclipse.ecf.datashare.IStreamContainerAdapter;
 
 public class DatashareContainerAdapterFactory extends AbstractSharedObjectContainerAdapterFactory {
 
@@ -28,8 +31,20 @@ public class DatashareContainerAdapterFactory extends AbstractSharedObjectContai
 		return null;
 	}
 
+	/* (non-Javadoc)
+	 * @see org.eclipse.ecf.core.sharedobject.AbstractSharedObjectContainerAdapterFactory#getContainerAdapter(org.eclipse.ecf.core.IContainer, java.lang.Class)
+	 */
+	protected Object getContainerAdapter(IContainer container, Class adapterType) {
+		if (adapterType.equals(IStreamContainerAdapter.class)) {
+			// streams are carried over a channel of the channel container adapter
+			Object channelContainerAdapter = super.getContainerAdapter(container, IChannelContainerAdapter.class);
+			return (channelContainerAdapter instanceof IAdaptable) ? ((IAdaptable) channelContainerAdapter).getAdapter(IStreamContainerAdapter.class) : null;
+		}
+		return super.getContainerAdapter(container, adapterType);
+	}
+
 	public Class[] getAdapterList() {
-		return new Class[] {IChannelContainerAdapter.class};
+		return new Class[] {IChannelContainerAdapter.class, IStreamContainerAdapter.class};
 	}
 
 }
@@ -15,6 +15,8 @@ package org.eclipse.ecf.provider.datashare;
 
 import java.lang.reflect.Constructor;
 import java.util.*;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.ecf.core.IContainer;
 import org.eclipse.ecf.core.IContainerManager;
 import org.eclipse.ecf.core.identity.*;
@@ -32,6 +34,8 @@ public class SharedObjectDatashareContainerAdapter extends BaseSharedObject impl
 
 	protected List channelContainerListeners = Collections.synchronizedList(new ArrayList());
 
+	private StreamShare streamShare;
+
 	protected void initialize() throws SharedObjectInitException {
 		super.initialize();
 		addEventProcessor(new IEventProcessor() {
@@ -212,6 +216,28 @@ public class SharedObjectDatashareContainerAdapter extends BaseSharedObject impl
 			IContainerManager containerManager = Activator.getDefault().getContainerManager();
 			return containerManager.getContainer(getContext().getLocalContainerID());
 		}
+		if (adapter != null && adapter.equals(IStreamContainerAdapter.class))
+			return getStreamContainerAdapter();
 		return super.getAdapter(adapter);
 	}
+
+	/**
+	 * Get the stream adapter of this container, creating its channel on first
+	 * access.
+	 * 
+	 * @return the stream adapter, or <code>null</code> if its channel could
+	 *         not be created
+	 * @since 1.8
+	 */
+	protected synchronized IStreamContainerAdapter getStreamContainerAdapter() {
+		if (streamShare == null || streamShare.isDisposed()) {
+			try {
+				streamShare = new StreamShare(this);
+			} catch (ECFException e) {
+				Activator.getDefault().log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, IStatus.ERROR, "Could not create stream channel", e)); //$NON-NLS-1$
+				return null;
+			}
+		}
+		return streamShare;
+	}
 }
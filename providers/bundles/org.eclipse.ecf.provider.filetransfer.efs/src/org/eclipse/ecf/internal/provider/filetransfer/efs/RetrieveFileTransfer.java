@@ -22,6 +22,7 @@ import org.eclipse.ecf.filetransfer.*;
 import org.eclipse.ecf.filetransfer.events.IIncomingFileTransferReceiveStartEvent;
 import org.eclipse.ecf.filetransfer.identity.IFileID;
 import org.eclipse.ecf.provider.filetransfer.retrieve.AbstractRetrieveFileTransfer;
+import org.eclipse.ecf.provider.filetransfer.util.FileTransferTimings;
 import org.eclipse.ecf.provider.filetransfer.util.JREProxyHelper;
 
 /**
@@ -72,11 +73,14 @@ public class RetrieveFileTransfer extends AbstractRetrieveFileTransfer {
 	 */
 	protected void openStreams() throws IncomingFileTransferException {
 		try {
+			// resolving the store and opening the stream is the connect phase
+			final long connectStart = System.nanoTime();
 			final IFileStore fileStore = EFS.getStore(new URI(
 					getRemoteFileURL().getPath()));
 			final IFileInfo info = fileStore.fetchInfo();
 			setFileLength(info.getLength());
 			setInputStream(fileStore.openInputStream(0, null));
+			timings.addConnectTime(FileTransferTimings.millisSince(connectStart));
 			setLastModifiedTime(info.getLastModified());
 			fileName = info.getName();
 			listener.handleTransferEvent(new IIncomingFileTransferReceiveStartEvent() {
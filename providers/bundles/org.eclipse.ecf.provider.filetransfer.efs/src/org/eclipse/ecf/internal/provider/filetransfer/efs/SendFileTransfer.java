@@ -22,6 +22,7 @@ import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.ecf.core.util.Proxy;
 import org.eclipse.ecf.filetransfer.SendFileTransferException;
 import org.eclipse.ecf.provider.filetransfer.outgoing.AbstractOutgoingFileTransfer;
+import org.eclipse.ecf.provider.filetransfer.util.FileTransferTimings;
 import org.eclipse.ecf.provider.filetransfer.util.JREProxyHelper;
 
 /**
@@ -55,8 +56,10 @@ public class SendFileTransfer extends AbstractOutgoingFileTransfer {
 			// Get/open input file
 			setInputStream(new BufferedInputStream(new FileInputStream(getFileTransferInfo().getFile())));
 			// Open target
+			final long connectStart = System.nanoTime();
 			final IFileStore fileStore = EFS.getStore(new URI(getRemoteFileURL().getPath()));
 			setOutputStream(fileStore.openOutputStream(0, null));
+			timings.addConnectTime(FileTransferTimings.millisSince(connectStart));
 		} catch (final Exception e) {
 			throw new SendFileTransferException(e);
 		}
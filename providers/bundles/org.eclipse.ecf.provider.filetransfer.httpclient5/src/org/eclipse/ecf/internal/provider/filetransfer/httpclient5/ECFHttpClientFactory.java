@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
@@ -23,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 
 import org.apache.hc.client5.http.auth.AuthSchemeFactory;
@@ -34,6 +36,7 @@ import org.apache.hc.core5.http.config.Registry;
 import org.apache.hc.core5.http.config.RegistryBuilder;
 import org.apache.hc.core5.http.io.SocketConfig;
 import org.apache.hc.client5.http.ssl.DefaultHostnameVerifier;
+import org.apache.hc.client5.http.ssl.HttpsSupport;
 import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
 import org.apache.hc.client5.http.psl.PublicSuffixMatcher;
 import org.apache.hc.client5.http.psl.PublicSuffixMatcherLoader;
@@ -97,6 +100,7 @@ public class ECFHttpClientFactory implements IHttpClientFactory {
 		        .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
 		        .setConnPoolPolicy(PoolReusePolicy.LIFO);
 		configureSSLSocketFactory(cmBuilder);
+		HttpClientTimings.install(builder, cmBuilder);
 		builder.setConnectionManager(cmBuilder.build());
 		builder.setDefaultAuthSchemeRegistry(DEFAULT_AUTH_SCHEME_REGISTRY);
 		builder = Activator.getDefault().runModifiers(builder, new ModifierRunner<HttpClientBuilder>() {
@@ -199,6 +203,14 @@ public class ECFHttpClientFactory implements IHttpClientFactory {
 		}
 		if (sslSocketFactory == SSLSocketFactory.getDefault()) {
 			sslSocketFactory = null;
+			// same as the HttpClient default, but timing the TLS handshake
+			try {
+				SSLContext sslContext = SSLContext.getInstance("TLS"); //$NON-NLS-1$
+				sslContext.init(null, null, null);
+				cm.setSSLSocketFactory(new HttpClientTimings.TimingSSLConnectionSocketFactory(sslContext, HttpsSupport.getDefaultHostnameVerifier()));
+			} catch (GeneralSecurityException e) {
+				Trace.catching(Activator.PLUGIN_ID, DebugOptions.EXCEPTIONS_CATCHING, ECFHttpClientFactory.class, "configureSSLSocketFactory", e); //$NON-NLS-1$
+			}
 		}
 		if (sslSocketFactory != null) {
 			PublicSuffixMatcher publicSuffixMatcherCopy = PublicSuffixMatcherLoader.getDefault();
@@ -207,7 +219,7 @@ public class ECFHttpClientFactory implements IHttpClientFactory {
 			String[] supportedProtocols = split(systemHttpsProtocols);
 			String[] supportedCipherSuites = split(systemCipherSuites);
 			HostnameVerifier hostnameVerifierCopy = new DefaultHostnameVerifier(publicSuffixMatcherCopy);
-			SSLConnectionSocketFactory sslConnectionSocketFactory = new SSLConnectionSocketFactory(sslSocketFactory, supportedProtocols, supportedCipherSuites, hostnameVerifierCopy);
+			SSLConnectionSocketFactory sslConnectionSocketFactory = new HttpClientTimings.TimingSSLConnectionSocketFactory(sslSocketFactory, supportedProtocols, supportedCipherSuites, hostnameVerifierCopy);
 			cm.setSSLSocketFactory(sslConnectionSocketFactory);
 		}
 	}
@@ -0,0 +1,181 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.internal.provider.filetransfer.httpclient5;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.classic.ExecChainHandler;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.eclipse.ecf.provider.filetransfer.util.FileTransferTimings;
+
+/**
+ * Records connect, DNS and TLS handshake times of HttpClient requests into
+ * the {@link FileTransferTimings} attached to the request's context with
+ * {@link #attach(HttpContext, FileTransferTimings)}.
+ * <p>
+ * An exec interceptor in front of the CONNECT chain element starts the clock
+ * for every attempt, and one behind it stops the clock once the route is
+ * established. Every attempt after the first (retries, redirects and
+ * authentication challenges) counts as a retry. DNS lookups are timed by a
+ * wrapping {@link DnsResolver}. The TLS handshake is timed from the point
+ * where {@link SSLConnectionSocketFactory} prepares the socket for the
+ * handshake until the route is established. Both are subtracted from the
+ * connect time. A reused pooled connection reports a connect time of about 0.
+ * </p>
+ */
+public class HttpClientTimings {
+
+	private static final String TIMINGS_ATTR = FileTransferTimings.class.getName();
+
+	private static final String CONNECT_START_ATTR = TIMINGS_ATTR + ".connectStart"; //$NON-NLS-1$
+
+	private static final String DNS_ATTR = TIMINGS_ATTR + ".dns"; //$NON-NLS-1$
+
+	private static final String TLS_START_ATTR = TIMINGS_ATTR + ".tlsStart"; //$NON-NLS-1$
+
+	// classic HttpClient connects on the executing thread, so DNS lookups and TLS
+	// handshakes can be attributed to the request context of the current thread
+	private static final ThreadLocal<HttpContext> currentContext = new ThreadLocal<>();
+
+	private static final ExecChainHandler beforeConnect = (request, scope, chain) -> {
+		final HttpContext context = scope.clientContext;
+		if (getTimings(context) == null)
+			return chain.proceed(request, scope);
+		if (context.getAttribute(CONNECT_START_ATTR) != null)
+			getTimings(context).incrementRetryCount();
+		context.setAttribute(CONNECT_START_ATTR, Long.valueOf(System.nanoTime()));
+		context.removeAttribute(DNS_ATTR);
+		context.removeAttribute(TLS_START_ATTR);
+		final HttpContext previous = currentContext.get();
+		currentContext.set(context);
+		try {
+			return chain.proceed(request, scope);
+		} finally {
+			currentContext.set(previous);
+		}
+	};
+
+	private static final ExecChainHandler afterConnect = (request, scope, chain) -> {
+		final HttpContext context = scope.clientContext;
+		final FileTransferTimings timings = getTimings(context);
+		final Object start = context.getAttribute(CONNECT_START_ATTR);
+		if (timings != null && start instanceof Long) {
+			long connect = FileTransferTimings.millisSince(((Long) start).longValue());
+			final Object tlsStart = context.getAttribute(TLS_START_ATTR);
+			if (tlsStart instanceof Long) {
+				final long tls = FileTransferTimings.millisSince(((Long) tlsStart).longValue());
+				timings.addTLSHandshakeTime(tls);
+				connect -= tls;
+			}
+			timings.addConnectTime(connect - getLong(context, DNS_ATTR));
+		}
+		final ClassicHttpResponse response = chain.proceed(request, scope);
+		if (timings != null)
+			timings.firstByte();
+		return response;
+	};
+
+	private HttpClientTimings() {
+		// no instances
+	}
+
+	/**
+	 * Attach the timings of a transfer to the context used for its requests.
+	 *
+	 * @param context the http client context
+	 * @param timings the timings to record into
+	 */
+	public static void attach(HttpContext context, FileTransferTimings timings) {
+		context.setAttribute(TIMINGS_ATTR, timings);
+		context.removeAttribute(CONNECT_START_ATTR);
+	}
+
+	static FileTransferTimings getTimings(HttpContext context) {
+		final Object o = (context == null) ? null : context.getAttribute(TIMINGS_ATTR);
+		return (o instanceof FileTransferTimings) ? (FileTransferTimings) o : null;
+	}
+
+	private static long getLong(HttpContext context, String attr) {
+		final Object o = context.getAttribute(attr);
+		return (o instanceof Long) ? ((Long) o).longValue() : 0;
+	}
+
+	private static void recordDnsLookup(HttpContext context, long startNanos) {
+		final FileTransferTimings timings = getTimings(context);
+		if (timings == null)
+			return;
+		final long millis = FileTransferTimings.millisSince(startNanos);
+		timings.addDnsLookupTime(millis);
+		context.setAttribute(DNS_ATTR, Long.valueOf(getLong(context, DNS_ATTR) + millis));
+	}
+
+	static void install(HttpClientBuilder builder, PoolingHttpClientConnectionManagerBuilder cmBuilder) {
+		builder.addExecInterceptorBefore(ChainElement.CONNECT.name(), "ecf-timings-before-connect", beforeConnect); //$NON-NLS-1$
+		builder.addExecInterceptorAfter(ChainElement.CONNECT.name(), "ecf-timings-after-connect", afterConnect); //$NON-NLS-1$
+		cmBuilder.setDnsResolver(new TimingDnsResolver());
+	}
+
+	static class TimingDnsResolver implements DnsResolver {
+
+		@Override
+		public InetAddress[] resolve(String host) throws UnknownHostException {
+			final long start = System.nanoTime();
+			try {
+				return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+			} finally {
+				final HttpContext context = currentContext.get();
+				if (context != null)
+					recordDnsLookup(context, start);
+			}
+		}
+
+		@Override
+		public String resolveCanonicalHostname(String host) throws UnknownHostException {
+			return SystemDefaultDnsResolver.INSTANCE.resolveCanonicalHostname(host);
+		}
+	}
+
+	static class TimingSSLConnectionSocketFactory extends SSLConnectionSocketFactory {
+
+		TimingSSLConnectionSocketFactory(SSLContext sslContext, HostnameVerifier hostnameVerifier) {
+			super(sslContext, hostnameVerifier);
+		}
+
+		TimingSSLConnectionSocketFactory(SSLSocketFactory socketFactory, String[] supportedProtocols, String[] supportedCipherSuites, HostnameVerifier hostnameVerifier) {
+			super(socketFactory, supportedProtocols, supportedCipherSuites, hostnameVerifier);
+		}
+
+		@Override
+		protected void prepareSocket(SSLSocket socket) throws IOException {
+			super.prepareSocket(socket);
+			// called right before the handshake
+			final HttpContext context = currentContext.get();
+			if (context != null)
+				context.setAttribute(TLS_START_ATTR, Long.valueOf(System.nanoTime()));
+		}
+	}
+}
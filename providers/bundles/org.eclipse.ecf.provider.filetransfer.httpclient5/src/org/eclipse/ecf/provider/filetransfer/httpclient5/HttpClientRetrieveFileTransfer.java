@@ -73,6 +73,7 @@ import org.eclipse.ecf.internal.provider.filetransfer.DebugOptions;
 import org.eclipse.ecf.internal.provider.filetransfer.httpclient5.Activator;
 import org.eclipse.ecf.internal.provider.filetransfer.httpclient5.ECFHttpClientFactory;
 import org.eclipse.ecf.internal.provider.filetransfer.httpclient5.HttpClientProxyCredentialProvider;
+import org.eclipse.ecf.internal.provider.filetransfer.httpclient5.HttpClientTimings;
 import org.eclipse.ecf.internal.provider.filetransfer.httpclient5.IHttpClientFactory;
 import org.eclipse.ecf.internal.provider.filetransfer.httpclient5.Messages;
 import org.eclipse.ecf.internal.provider.filetransfer.httpclient5.NTLMProxyDetector;
@@ -1006,6 +1007,7 @@ public class HttpClientRetrieveFileTransfer extends AbstractRetrieveFileTransfer
 		try {
 			if (monitor.isCanceled())
 				throw newUserCancelledException();
+			HttpClientTimings.attach(httpContext, timings);
 			httpResponse = httpClient.execute(getMethod, httpContext);
 			responseCode = httpResponse.getCode();
 			Trace.trace(Activator.PLUGIN_ID, "retrieve resp=" + responseCode); //$NON-NLS-1$
@@ -36,6 +36,7 @@ import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -1013,7 +1014,13 @@ public class HttpClientRetrieveFileTransfer extends AbstractRetrieveFileTransfer
 				return Status.CANCEL_STATUS;
 			}
 			httpResponse = httpClient.sendAsync(httpRequest, BodyHandlers.ofInputStream());
-			responseCode = httpResponse.get(getConnectTimeout(),TimeUnit.MILLISECONDS).statusCode();
+			HttpResponse<InputStream> response = httpResponse.get(getConnectTimeout(), TimeUnit.MILLISECONDS);
+			responseCode = response.statusCode();
+			// java.net.http does not expose connect or handshake phases, the response headers are the first bytes seen
+			timings.firstByte();
+			// redirects and authentication challenges answered by the client
+			for (Optional<HttpResponse<InputStream>> previous = response.previousResponse(); previous.isPresent(); previous = previous.get().previousResponse())
+				timings.incrementRetryCount();
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 			setDoneCanceled();
@@ -17,6 +17,8 @@ public class Activator implements BundleActivator {
 
 	private ServiceTracker logServiceTracker = null;
 
+	private ScpSessionPool sessionPool = null;
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.osgi.framework.BundleActivator#start(org.osgi.framework.BundleContext)
@@ -31,6 +33,12 @@ public class Activator implements BundleActivator {
 	 * @see org.osgi.framework.BundleActivator#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext ctxt) throws Exception {
+		synchronized (this) {
+			if (sessionPool != null) {
+				sessionPool.dispose();
+				sessionPool = null;
+			}
+		}
 		if (logServiceTracker != null) {
 			logServiceTracker.close();
 			logServiceTracker = null;
@@ -43,6 +51,12 @@ public class Activator implements BundleActivator {
 		return instance;
 	}
 
+	public synchronized ScpSessionPool getSessionPool() {
+		if (sessionPool == null)
+			sessionPool = new ScpSessionPool();
+		return sessionPool;
+	}
+
 	protected LogService getLogService() {
 		if (logServiceTracker == null) {
 			logServiceTracker = new ServiceTracker(this.context, LogService.class.getName(), null);
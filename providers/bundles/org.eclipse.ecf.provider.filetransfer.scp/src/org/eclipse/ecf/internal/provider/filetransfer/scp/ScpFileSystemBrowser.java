@@ -84,13 +84,12 @@ public class ScpFileSystemBrowser extends AbstractFileSystemBrowser implements
 	protected void runRequest() throws Exception {
 		scpUtil = new ScpUtil(this);
 		final Session s = scpUtil.getSession();
-		s.connect();
 		if (s.isConnected()) {
 			final String targetFileName = scpUtil
 					.trimTargetFile(directoryOrFile.getPath());
 			final String command = LS_START_COMMAND + targetFileName
 					+ LS_END_COMMAND;
-			channel = (ChannelExec) s.openChannel(SCP_EXEC);
+			channel = (ChannelExec) scpUtil.openChannel(SCP_EXEC);
 			channel.setCommand(command);
 			final OutputStream outs = channel.getOutputStream();
 			inputStream = channel.getInputStream();
@@ -180,10 +179,7 @@ public class ScpFileSystemBrowser extends AbstractFileSystemBrowser implements
 
 	protected void cleanUp() {
 		super.cleanUp();
-		if (channel != null) {
-			channel.disconnect();
-			channel = null;
-		}
+		channel = null;
 		if (scpUtil != null) {
 			scpUtil.dispose();
 			scpUtil = null;
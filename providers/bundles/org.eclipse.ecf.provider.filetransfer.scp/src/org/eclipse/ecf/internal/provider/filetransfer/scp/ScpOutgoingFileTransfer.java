@@ -15,7 +15,6 @@
 package org.eclipse.ecf.internal.provider.filetransfer.scp;
 
 import com.jcraft.jsch.ChannelExec;
-import com.jcraft.jsch.Session;
 import java.io.*;
 import java.net.URL;
 import java.util.Map;
@@ -24,6 +23,7 @@ import org.eclipse.ecf.core.util.Proxy;
 import org.eclipse.ecf.core.util.StringUtils;
 import org.eclipse.ecf.filetransfer.SendFileTransferException;
 import org.eclipse.ecf.provider.filetransfer.outgoing.AbstractOutgoingFileTransfer;
+import org.eclipse.ecf.provider.filetransfer.util.FileTransferTimings;
 import org.eclipse.osgi.util.NLS;
 
 /**
@@ -61,19 +61,25 @@ public class ScpOutgoingFileTransfer extends AbstractOutgoingFileTransfer
 			final URL url = getRemoteFileURL();
 			this.username = url.getUserInfo();
 			scpUtil = new ScpUtil(this);
-			final Session s = scpUtil.getSession();
-			s.connect();
 			final String targetFileName = scpUtil.trimTargetFile(url.getPath());
 			final String command = SCP_COMMAND + targetFileName;
-			channel = (ChannelExec) s.openChannel(SCP_EXEC);
+			// session (possibly pooled) and channel setup is the connect phase
+			final long connectStart = System.nanoTime();
+			channel = (ChannelExec) scpUtil.openChannel(SCP_EXEC);
 			channel.setCommand(command);
 			final OutputStream outs = channel.getOutputStream();
 			responseStream = channel.getInputStream();
 			channel.connect();
+			timings.addConnectTime(FileTransferTimings.millisSince(connectStart));
 			scpUtil.checkAck(responseStream);
 			sendFileNameAndSize(localFile, targetFileName, outs, responseStream);
 			setOutputStream(outs);
 		} catch (final Exception e) {
+			if (scpUtil != null) {
+				scpUtil.dispose(e);
+				scpUtil = null;
+			}
+			channel = null;
 			throw new SendFileTransferException(NLS.bind(
 					Messages.ScpOutgoingFileTransfer_EXCEPTION_CONNECTING,
 					getRemoteFileURL().toString()), e);
@@ -119,16 +125,14 @@ public class ScpOutgoingFileTransfer extends AbstractOutgoingFileTransfer
 				scpUtil.sendZeroToStream(remoteFileContents);
 				scpUtil.checkAck(responseStream);
 			}
-			if (channel != null) {
-				channel.disconnect();
-				channel = null;
-			}
+		} catch (final IOException e) {
+			exception = e;
+		} finally {
+			channel = null;
 			if (scpUtil != null) {
 				scpUtil.dispose();
 				scpUtil = null;
 			}
-		} catch (final IOException e) {
-			exception = e;
 		}
 		username = null;
 		super.hardClose();
@@ -23,6 +23,7 @@ import org.eclipse.ecf.core.util.Proxy;
 import org.eclipse.ecf.filetransfer.IFileTransferPausable;
 import org.eclipse.ecf.filetransfer.IncomingFileTransferException;
 import org.eclipse.ecf.provider.filetransfer.retrieve.AbstractRetrieveFileTransfer;
+import org.eclipse.ecf.provider.filetransfer.util.FileTransferTimings;
 import org.eclipse.osgi.util.NLS;
 
 /**
@@ -88,14 +89,14 @@ public class ScpRetrieveFileTransfer extends AbstractRetrieveFileTransfer
 			this.username = url.getUserInfo();
 
 			scpUtil = new ScpUtil(this);
-			final Session s = scpUtil.getSession();
-			s.connect();
-
 			final String command = SCP_COMMAND
 					+ scpUtil.trimTargetFile(url.getPath());
-			channel = s.openChannel(SCP_EXEC);
+			// session (possibly pooled) and channel setup is the connect phase
+			final long connectStart = System.nanoTime();
+			channel = scpUtil.openChannel(SCP_EXEC);
 			((ChannelExec) channel).setCommand(command);
 			channel.connect();
+			timings.addConnectTime(FileTransferTimings.millisSince(connectStart));
 
 			final InputStream ins = channel.getInputStream();
 			responseStream = channel.getOutputStream();
@@ -118,6 +119,10 @@ public class ScpRetrieveFileTransfer extends AbstractRetrieveFileTransfer
 
 			fireReceiveStartEvent();
 		} catch (final Exception e) {
+			if (scpUtil != null) {
+				scpUtil.dispose(e);
+				scpUtil = null;
+			}
 			channel = null;
 			username = null;
 			throw new IncomingFileTransferException(NLS.bind(
@@ -219,14 +224,16 @@ public class ScpRetrieveFileTransfer extends AbstractRetrieveFileTransfer
 		try {
 			if (remoteFileContents != null && scpUtil != null) {
 				scpUtil.sendZeroToStream(responseStream);
-				scpUtil.dispose();
-				scpUtil = null;
 				remoteFileContents = null;
 				responseStream = null;
 			}
 		} catch (final IOException e) {
 			exception = e;
 		} finally {
+			if (scpUtil != null) {
+				scpUtil.dispose();
+				scpUtil = null;
+			}
 			super.hardClose();
 			channel = null;
 			username = null;
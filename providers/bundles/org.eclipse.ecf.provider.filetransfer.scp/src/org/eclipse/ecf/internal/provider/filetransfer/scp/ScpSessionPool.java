@@ -0,0 +1,266 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.internal.provider.filetransfer.scp;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Pool of connected JSch sessions shared by the scp retrieve, send and browse
+ * implementations. Sessions are keyed by user@host:port plus a digest of the
+ * credentials, identity and proxy used to authenticate them, so a session is
+ * only ever reused for requests that would have authenticated identically.
+ * <p>
+ * Each session carries at most {@link #MAX_CHANNELS_PER_SESSION} concurrent
+ * exec channels. When all sessions for a key are busy, a new session is
+ * opened. Sessions without open channels are disconnected after
+ * {@link #IDLE_TIMEOUT} milliseconds. An idle timeout of 0 disables pooling:
+ * sessions are disconnected as soon as their last channel is released.
+ * </p>
+ */
+public class ScpSessionPool {
+
+	public static final long IDLE_TIMEOUT = Long.parseLong(System.getProperty(
+			"org.eclipse.ecf.filetransfer.scp.pool.idleTimeout", "60000")); //$NON-NLS-1$ //$NON-NLS-2$
+
+	public static final int MAX_CHANNELS_PER_SESSION = Integer.parseInt(System
+			.getProperty(
+					"org.eclipse.ecf.filetransfer.scp.pool.maxChannelsPerSession", "8")); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * Factory for new, not yet connected, sessions.
+	 */
+	public interface ISessionFactory {
+		Session createSession() throws JSchException;
+	}
+
+	/**
+	 * A lease on one channel slot of a pooled session. Must be released
+	 * exactly once via {@link ScpSessionPool#release(Lease, boolean)}.
+	 */
+	public static class Lease {
+		final PooledSession pooledSession;
+
+		Lease(PooledSession pooledSession) {
+			this.pooledSession = pooledSession;
+		}
+
+		public Session getSession() {
+			return pooledSession.session;
+		}
+	}
+
+	static class PooledSession {
+		final String key;
+		final Session session;
+		int channels;
+		long lastUsed;
+		boolean retired;
+
+		PooledSession(String key, Session session) {
+			this.key = key;
+			this.session = session;
+			this.lastUsed = System.currentTimeMillis();
+		}
+	}
+
+	private final Map<String, List<PooledSession>> sessions = new HashMap<String, List<PooledSession>>();
+
+	private final long idleTimeout;
+
+	private final int maxChannels;
+
+	private ScheduledExecutorService evictor;
+
+	public ScpSessionPool() {
+		this(IDLE_TIMEOUT, MAX_CHANNELS_PER_SESSION);
+	}
+
+	public ScpSessionPool(long idleTimeout, int maxChannels) {
+		this.idleTimeout = idleTimeout;
+		this.maxChannels = Math.max(1, maxChannels);
+	}
+
+	/**
+	 * Acquire a channel slot on a connected session for the given key,
+	 * connecting a new session from the factory if no pooled session has a
+	 * free slot.
+	 *
+	 * @param key
+	 *            the session key. Must not be <code>null</code>.
+	 * @param factory
+	 *            creates a new session if needed. Must not be
+	 *            <code>null</code>.
+	 * @return lease on a connected session. Will not be <code>null</code>.
+	 * @throws JSchException
+	 *             if a new session cannot be created or connected
+	 */
+	public Lease acquire(String key, ISessionFactory factory)
+			throws JSchException {
+		synchronized (sessions) {
+			final List<PooledSession> list = sessions.get(key);
+			if (list != null) {
+				for (final Iterator<PooledSession> i = list.iterator(); i
+						.hasNext();) {
+					final PooledSession ps = i.next();
+					if (!ps.session.isConnected()) {
+						ps.retired = true;
+						i.remove();
+						continue;
+					}
+					if (ps.channels < maxChannels) {
+						ps.channels++;
+						return new Lease(ps);
+					}
+				}
+			}
+		}
+		// Connect outside of the lock so that a slow handshake does not block
+		// requests for other hosts
+		final Session session = factory.createSession();
+		session.connect();
+		// the user info prompts for the request that connected the session,
+		// it must not be kept alive by the pool once authentication is done
+		session.setUserInfo(null);
+		final PooledSession ps = new PooledSession(key, session);
+		ps.channels = 1;
+		synchronized (sessions) {
+			List<PooledSession> list = sessions.get(key);
+			if (list == null) {
+				list = new ArrayList<PooledSession>();
+				sessions.put(key, list);
+			}
+			list.add(ps);
+			startEvictor();
+		}
+		return new Lease(ps);
+	}
+
+	/**
+	 * Release a lease.
+	 *
+	 * @param lease
+	 *            the lease to release. May be <code>null</code>.
+	 * @param reusable
+	 *            <code>false</code> if the session should not be handed out
+	 *            again, e.g. because it failed.
+	 */
+	public void release(Lease lease, boolean reusable) {
+		if (lease == null)
+			return;
+		final PooledSession ps = lease.pooledSession;
+		boolean disconnect = false;
+		synchronized (sessions) {
+			ps.channels--;
+			ps.lastUsed = System.currentTimeMillis();
+			if (!reusable || idleTimeout <= 0 || !ps.session.isConnected()) {
+				// no new leases, disconnect once the last channel is released
+				ps.retired = true;
+				remove(ps);
+			}
+			disconnect = ps.retired && ps.channels <= 0;
+		}
+		if (disconnect)
+			ps.session.disconnect();
+	}
+
+	private void remove(PooledSession ps) {
+		final List<PooledSession> list = sessions.get(ps.key);
+		if (list != null) {
+			list.remove(ps);
+			if (list.isEmpty())
+				sessions.remove(ps.key);
+		}
+	}
+
+	void evictIdle() {
+		final long now = System.currentTimeMillis();
+		final List<PooledSession> evicted = new ArrayList<PooledSession>();
+		synchronized (sessions) {
+			for (final Iterator<List<PooledSession>> i = sessions.values()
+					.iterator(); i.hasNext();) {
+				final List<PooledSession> list = i.next();
+				for (final Iterator<PooledSession> j = list.iterator(); j
+						.hasNext();) {
+					final PooledSession ps = j.next();
+					if (ps.channels <= 0
+							&& (now - ps.lastUsed >= idleTimeout || !ps.session
+									.isConnected())) {
+						j.remove();
+						evicted.add(ps);
+					}
+				}
+				if (list.isEmpty())
+					i.remove();
+			}
+			if (sessions.isEmpty())
+				stopEvictor();
+		}
+		for (final PooledSession ps : evicted)
+			ps.session.disconnect();
+	}
+
+	private void startEvictor() {
+		if (evictor != null || idleTimeout <= 0)
+			return;
+		evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread t = new Thread(r, "ECF scp session pool evictor"); //$NON-NLS-1$
+			t.setDaemon(true);
+			return t;
+		});
+		final long period = Math.max(1000, idleTimeout / 2);
+		evictor.scheduleWithFixedDelay(this::evictIdle, period, period,
+				TimeUnit.MILLISECONDS);
+	}
+
+	private void stopEvictor() {
+		if (evictor != null) {
+			evictor.shutdown();
+			evictor = null;
+		}
+	}
+
+	/**
+	 * Get the number of pooled sessions, including sessions with open
+	 * channels.
+	 *
+	 * @return the number of pooled sessions
+	 */
+	public int getSessionCount() {
+		int count = 0;
+		synchronized (sessions) {
+			for (final List<PooledSession> list : sessions.values())
+				count += list.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Disconnect all pooled sessions. Sessions with open channels are
+	 * disconnected as well.
+	 */
+	public void dispose() {
+		final List<PooledSession> all = new ArrayList<PooledSession>();
+		synchronized (sessions) {
+			for (final List<PooledSession> list : sessions.values())
+				all.addAll(list);
+			sessions.clear();
+			stopEvictor();
+		}
+		for (final PooledSession ps : all)
+			ps.session.disconnect();
+	}
+}
@@ -16,6 +16,7 @@ package org.eclipse.ecf.internal.provider.filetransfer.scp;
 import com.jcraft.jsch.*;
 import java.io.*;
 import java.net.URL;
+import java.security.MessageDigest;
 import java.util.Map;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -41,10 +42,18 @@ public class ScpUtil implements UserInfo, UIKeyboardInteractive {
 			.parseInt(System.getProperty(
 					"org.eclipse.ecf.filetransfer.scp.util.scpPort", "22"));
 
+	// used when running outside of a started bundle
+	private static final ScpSessionPool UNPOOLED = new ScpSessionPool(0, 1);
+
 	private IScpFileTransfer handler;
 	private String password;
 	private String passphrase;
-	private Session session;
+	private final JSch jsch;
+	private final String host;
+	private final int port;
+	private final String sessionKey;
+	private ScpSessionPool.Lease lease;
+	private Channel channel;
 
 	private String sshHome = null;
 	private String keyFile = null;
@@ -53,25 +62,91 @@ public class ScpUtil implements UserInfo, UIKeyboardInteractive {
 	public ScpUtil(IScpFileTransfer handler) throws JSchException, IOException,
 			UnsupportedCallbackException {
 		this.handler = handler;
-		final JSch jsch = new JSch();
+		jsch = new JSch();
 		final URL url = handler.getTargetURL();
-		int port = url.getPort();
-		if (port == -1)
-			port = DEFAULT_SCP_PORT;
+		host = url.getHost();
+		int p = url.getPort();
+		if (p == -1)
+			p = DEFAULT_SCP_PORT;
+		port = p;
 		setupOptions(jsch);
 		promptUsername();
 		String username = handler.getUsername();
 		if (username == null)
 			throw new IOException(Messages.ScpUtil_EXCEPTION_USERNAME_NOT_NULL);
-		session = jsch.getSession(handler.getUsername(), url.getHost(), port);
-		setupProxy();
-		session.setUserInfo(this);
+		sessionKey = createSessionKey(username);
+	}
+
+	/**
+	 * Key for the session pool. Two requests only share a session if they
+	 * would authenticate to the same account in the same way.
+	 */
+	private String createSessionKey(String username) {
+		final StringBuffer sb = new StringBuffer(username);
+		sb.append('@').append(host).append(':').append(port);
+		final StringBuffer secret = new StringBuffer();
+		secret.append(password).append('\0').append(keyFile).append('\0')
+				.append(knownHostsFile).append('\0')
+				.append(handler.getProxy());
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-256").digest( //$NON-NLS-1$
+					secret.toString().getBytes("UTF-8")); //$NON-NLS-1$
+			sb.append('#');
+			for (int i = 0; i < digest.length; i++)
+				sb.append(Integer.toHexString((digest[i] & 0xff) | 0x100)
+						.substring(1));
+		} catch (final Exception e) {
+			// never share sessions if the credentials cannot be compared
+			sb.append('#').append(System.identityHashCode(this));
+		}
+		return sb.toString();
 	}
 
-	Session getSession() {
+	private Session createSession() throws JSchException {
+		final Session session = jsch.getSession(handler.getUsername(), host,
+				port);
+		setupProxy(session);
+		session.setUserInfo(this);
 		return session;
 	}
 
+	/**
+	 * Get a connected session for this transfer, reusing a pooled session if
+	 * one is available.
+	 */
+	Session getSession() throws JSchException {
+		if (lease == null) {
+			lease = getSessionPool().acquire(sessionKey,
+					new ScpSessionPool.ISessionFactory() {
+						public Session createSession() throws JSchException {
+							return ScpUtil.this.createSession();
+						}
+					});
+		}
+		return lease.getSession();
+	}
+
+	/**
+	 * Open a new channel on the session for this transfer. The channel is
+	 * disconnected by {@link #dispose()}.
+	 */
+	Channel openChannel(String type) throws JSchException {
+		Session session = getSession();
+		if (!session.isConnected()) {
+			// session went away while idle in the pool
+			getSessionPool().release(lease, false);
+			lease = null;
+			session = getSession();
+		}
+		channel = session.openChannel(type);
+		return channel;
+	}
+
+	private ScpSessionPool getSessionPool() {
+		final Activator a = Activator.getDefault();
+		return (a == null) ? UNPOOLED : a.getSessionPool();
+	}
+
 	void promptUsername() throws IOException, UnsupportedCallbackException {
 		final IConnectContext connectContext = handler.getConnectContext();
 		if (connectContext != null) {
@@ -89,6 +164,7 @@ public class ScpUtil implements UserInfo, UIKeyboardInteractive {
 						Messages.ScpOutgoingFileTransfer_PASSWORD_PROMPT);
 				callbackHandler.handle(callbacks);
 				handler.setUsername(nc.getName());
+				password = ((PasswordCallback) callbacks[1]).getPassword();
 			}
 		}
 	}
@@ -199,7 +275,7 @@ public class ScpUtil implements UserInfo, UIKeyboardInteractive {
 
 	/**
 	 */
-	void setupProxy() {
+	void setupProxy(Session session) {
 		com.jcraft.jsch.Proxy jProxy = null;
 		final Proxy proxy = handler.getProxy();
 		if (proxy != null) {
@@ -348,9 +424,38 @@ public class ScpUtil implements UserInfo, UIKeyboardInteractive {
 	}
 
 	void dispose() {
-		if (session != null) {
-			session.disconnect();
-			session = null;
+		dispose(true);
+	}
+
+	/**
+	 * Disconnect the channel of this transfer after it failed, and release its
+	 * session back to the pool. The session is only discarded if the failure
+	 * came from SSH, scp errors such as a missing remote file leave it
+	 * reusable. Sessions that lost their connection are discarded by the pool.
+	 * 
+	 * @param cause
+	 *            the failure
+	 */
+	void dispose(Exception cause) {
+		dispose(!(cause instanceof JSchException));
+	}
+
+	/**
+	 * Disconnect the channel of this transfer and release its session back to
+	 * the pool.
+	 * 
+	 * @param reusable
+	 *            <code>false</code> if the session failed and must not be
+	 *            handed out again
+	 */
+	void dispose(boolean reusable) {
+		if (channel != null) {
+			channel.disconnect();
+			channel = null;
+		}
+		if (lease != null) {
+			getSessionPool().release(lease, reusable);
+			lease = null;
 		}
 		handler = null;
 		password = null;
@@ -37,6 +37,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.ecf.core.util.LogHelper;
 import org.eclipse.ecf.core.util.PlatformHelper;
+import org.eclipse.ecf.filetransfer.service.IFileTransferMetrics;
 import org.eclipse.ecf.filetransfer.service.IRemoteFileSystemBrowser;
 import org.eclipse.ecf.filetransfer.service.IRemoteFileSystemBrowserFactory;
 import org.eclipse.ecf.filetransfer.service.IRetrieveFileTransfer;
@@ -123,6 +124,10 @@ public class Activator implements BundleActivator, IFileTransferProtocolToFactor
 
 	private ServiceRegistration protocolMapperRegistration;
 
+	private final FileTransferMetrics fileTransferMetrics = new FileTransferMetrics();
+
+	private ServiceRegistration fileTransferMetricsRegistration;
+
 	private IRegistryChangeListener registryChangeListener = new IRegistryChangeListener() {
 
 		public void registryChanged(IRegistryChangeEvent event) {
@@ -276,6 +281,11 @@ public class Activator implements BundleActivator, IFileTransferProtocolToFactor
 		loadProtocolHandlers();
 		// Finally, register this object as a IFileTransferProtocolToFactoryMapper service
 		protocolMapperRegistration = context.registerService(IFileTransferProtocolToFactoryMapper.class.getName(), this, null);
+		fileTransferMetricsRegistration = context.registerService(IFileTransferMetrics.class.getName(), fileTransferMetrics, null);
+	}
+
+	public FileTransferMetrics getFileTransferMetrics() {
+		return fileTransferMetrics;
 	}
 
 	public boolean reinitialize() {
@@ -334,6 +344,10 @@ public class Activator implements BundleActivator, IFileTransferProtocolToFactor
 			this.protocolMapperRegistration.unregister();
 			this.protocolMapperRegistration = null;
 		}
+		if (this.fileTransferMetricsRegistration != null) {
+			this.fileTransferMetricsRegistration.unregister();
+			this.fileTransferMetricsRegistration = null;
+		}
 
 		synchronized (this) {
 			this.context = null;
@@ -0,0 +1,215 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.internal.provider.filetransfer;
+
+import java.net.URL;
+import java.util.*;
+import org.eclipse.ecf.filetransfer.IFileTransferTimings;
+import org.eclipse.ecf.filetransfer.service.IFileTransferMetrics;
+import org.eclipse.ecf.filetransfer.service.IFileTransferStatistics;
+
+/**
+ * {@link IFileTransferMetrics} service implementation. Transfers record their
+ * timings via {@link #recordRetrieve(URL, IFileTransferTimings, Exception)}
+ * and {@link #recordSend(URL, IFileTransferTimings, Exception)}.
+ */
+public class FileTransferMetrics implements IFileTransferMetrics {
+
+	static class Statistics implements IFileTransferStatistics {
+		private long transferCount;
+		private long failureCount;
+		private long bytesTransferred;
+		private long totalTime;
+		private long stallTime;
+		private long retryCount;
+		private final long[] sums = new long[4];
+		private final long[] counts = new long[4];
+		private long maxTimeToFirstByte = IFileTransferTimings.UNKNOWN;
+
+		private static final int DNS = 0, CONNECT = 1, TLS = 2, TTFB = 3;
+
+		synchronized void record(IFileTransferTimings timings, boolean failed) {
+			transferCount++;
+			if (failed)
+				failureCount++;
+			bytesTransferred += timings.getBytesTransferred();
+			totalTime += Math.max(0, timings.getTotalTime());
+			stallTime += timings.getStallTime();
+			retryCount += timings.getRetryCount();
+			add(DNS, timings.getDnsLookupTime());
+			add(CONNECT, timings.getConnectTime());
+			add(TLS, timings.getTLSHandshakeTime());
+			add(TTFB, timings.getTimeToFirstByte());
+			maxTimeToFirstByte = Math.max(maxTimeToFirstByte, timings.getTimeToFirstByte());
+		}
+
+		synchronized void addAll(Statistics other) {
+			synchronized (other) {
+				transferCount += other.transferCount;
+				failureCount += other.failureCount;
+				bytesTransferred += other.bytesTransferred;
+				totalTime += other.totalTime;
+				stallTime += other.stallTime;
+				retryCount += other.retryCount;
+				for (int i = 0; i < sums.length; i++) {
+					sums[i] += other.sums[i];
+					counts[i] += other.counts[i];
+				}
+				maxTimeToFirstByte = Math.max(maxTimeToFirstByte, other.maxTimeToFirstByte);
+			}
+		}
+
+		private void add(int phase, long value) {
+			if (value != IFileTransferTimings.UNKNOWN) {
+				sums[phase] += value;
+				counts[phase]++;
+			}
+		}
+
+		private synchronized long average(int phase) {
+			return (counts[phase] == 0) ? IFileTransferTimings.UNKNOWN : sums[phase] / counts[phase];
+		}
+
+		public synchronized long getTransferCount() {
+			return transferCount;
+		}
+
+		public synchronized long getFailureCount() {
+			return failureCount;
+		}
+
+		public synchronized long getBytesTransferred() {
+			return bytesTransferred;
+		}
+
+		public synchronized long getTotalTime() {
+			return totalTime;
+		}
+
+		public synchronized long getStallTime() {
+			return stallTime;
+		}
+
+		public synchronized long getRetryCount() {
+			return retryCount;
+		}
+
+		public long getAverageDnsLookupTime() {
+			return average(DNS);
+		}
+
+		public long getAverageConnectTime() {
+			return average(CONNECT);
+		}
+
+		public long getAverageTLSHandshakeTime() {
+			return average(TLS);
+		}
+
+		public long getAverageTimeToFirstByte() {
+			return average(TTFB);
+		}
+
+		public synchronized long getMaxTimeToFirstByte() {
+			return maxTimeToFirstByte;
+		}
+
+		public synchronized double getThroughput() {
+			if (bytesTransferred == 0)
+				return 0;
+			return bytesTransferred * 1000.0 / Math.max(1, totalTime);
+		}
+
+		public synchronized String toString() {
+			final StringBuffer sb = new StringBuffer("IFileTransferStatistics["); //$NON-NLS-1$
+			sb.append("transfers=").append(transferCount); //$NON-NLS-1$
+			sb.append(";failures=").append(failureCount); //$NON-NLS-1$
+			sb.append(";bytes=").append(bytesTransferred); //$NON-NLS-1$
+			sb.append(";avgConnect=").append(average(CONNECT)); //$NON-NLS-1$
+			sb.append(";avgTLS=").append(average(TLS)); //$NON-NLS-1$
+			sb.append(";avgTTFB=").append(average(TTFB)); //$NON-NLS-1$
+			sb.append(";stall=").append(stallTime); //$NON-NLS-1$
+			sb.append(";retries=").append(retryCount).append("]"); //$NON-NLS-1$ //$NON-NLS-2$
+			return sb.toString();
+		}
+	}
+
+	private final Map<String, Statistics> retrieveStatistics = new TreeMap<String, Statistics>();
+
+	private final Map<String, Statistics> sendStatistics = new TreeMap<String, Statistics>();
+
+	private static String getProtocol(URL url) {
+		return (url == null) ? "unknown" : url.getProtocol().toLowerCase(Locale.ENGLISH); //$NON-NLS-1$
+	}
+
+	private static void record(Map<String, Statistics> map, URL url, IFileTransferTimings timings, Exception exception) {
+		if (timings == null)
+			return;
+		Statistics stats;
+		synchronized (map) {
+			final String protocol = getProtocol(url);
+			stats = map.get(protocol);
+			if (stats == null) {
+				stats = new Statistics();
+				map.put(protocol, stats);
+			}
+		}
+		stats.record(timings, exception != null);
+	}
+
+	private static IFileTransferStatistics getStatistics(Map<String, Statistics> map, String protocol) {
+		final Statistics result = new Statistics();
+		synchronized (map) {
+			for (final Map.Entry<String, Statistics> entry : map.entrySet())
+				if (protocol == null || entry.getKey().equalsIgnoreCase(protocol))
+					result.addAll(entry.getValue());
+		}
+		return result;
+	}
+
+	public void recordRetrieve(URL url, IFileTransferTimings timings, Exception exception) {
+		record(retrieveStatistics, url, timings, exception);
+	}
+
+	public void recordSend(URL url, IFileTransferTimings timings, Exception exception) {
+		record(sendStatistics, url, timings, exception);
+	}
+
+	public String[] getProtocols() {
+		final Set<String> protocols = new TreeSet<String>();
+		synchronized (retrieveStatistics) {
+			protocols.addAll(retrieveStatistics.keySet());
+		}
+		synchronized (sendStatistics) {
+			protocols.addAll(sendStatistics.keySet());
+		}
+		return protocols.toArray(new String[protocols.size()]);
+	}
+
+	public IFileTransferStatistics getRetrieveStatistics(String protocol) {
+		return getStatistics(retrieveStatistics, protocol);
+	}
+
+	public IFileTransferStatistics getSendStatistics(String protocol) {
+		return getStatistics(sendStatistics, protocol);
+	}
+
+	public void reset() {
+		synchronized (retrieveStatistics) {
+			retrieveStatistics.clear();
+		}
+		synchronized (sendStatistics) {
+			sendStatistics.clear();
+		}
+	}
+}
@@ -22,10 +22,15 @@ public class Messages extends NLS {
 	private static final String BUNDLE_NAME = "org.eclipse.ecf.internal.provider.filetransfer.messages"; //$NON-NLS-1$
 	public static String AbstractOutgoingFileTransfer_EXCEPTION_FILE_TRANSFER_INFO_NOT_NULL;
 	public static String AbstractOutgoingFileTransfer_EXCEPTION_IN_FINALLY;
+	public static String AbstractOutgoingFileTransfer_EXCEPTION_INVALID_OPTION;
+	public static String AbstractOutgoingFileTransfer_EXCEPTION_OPENING_LOCAL_FILE;
+	public static String AbstractOutgoingFileTransfer_EXCEPTION_CHUNKED_NOT_SUPPORTED;
 	public static String AbstractRetrieveFileTransfer_TransferRateFormat;
 	public static String AbstractRetrieveFileTransfer_MalformedURLException;
 	public static String AbstractRetrieveFileTransfer_Progress_Data;
 	public static String AbstractRetrieveFileTransfer_EXCEPTION_IN_FINALLY;
+	public static String AbstractRetrieveFileTransfer_EXCEPTION_CHECKSUM_MISMATCH;
+	public static String AbstractRetrieveFileTransfer_EXCEPTION_INVALID_CHECKSUM_OPTIONS;
 	public static String AbstractRetrieveFileTransfer_Exception_User_Cancelled;
 	public static String AbstractRetrieveFileTransfer_InfoTransferRate;
 	public static String AbstractRetrieveFileTransfer_RemoteFileID_Not_Null;
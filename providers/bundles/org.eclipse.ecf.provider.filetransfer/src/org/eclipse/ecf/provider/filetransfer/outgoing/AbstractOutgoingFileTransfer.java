@@ -19,12 +19,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 import org.eclipse.core.net.proxy.IProxyData;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IAdapterManager;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.ecf.core.identity.ID;
@@ -36,19 +40,26 @@ import org.eclipse.ecf.filetransfer.FileTransferInfo;
 import org.eclipse.ecf.filetransfer.FileTransferJob;
 import org.eclipse.ecf.filetransfer.IFileTransferInfo;
 import org.eclipse.ecf.filetransfer.IFileTransferListener;
+import org.eclipse.ecf.filetransfer.IFileTransferPausable;
 import org.eclipse.ecf.filetransfer.IFileTransferRunnable;
+import org.eclipse.ecf.filetransfer.IFileTransferTimings;
 import org.eclipse.ecf.filetransfer.IIncomingFileTransferRequestListener;
 import org.eclipse.ecf.filetransfer.IOutgoingFileTransfer;
+import org.eclipse.ecf.filetransfer.ISendFileTransferOptions;
 import org.eclipse.ecf.filetransfer.SendFileTransferException;
 import org.eclipse.ecf.filetransfer.UserCancelledException;
 import org.eclipse.ecf.filetransfer.events.IOutgoingFileTransferResponseEvent;
 import org.eclipse.ecf.filetransfer.events.IOutgoingFileTransferSendDataEvent;
 import org.eclipse.ecf.filetransfer.events.IOutgoingFileTransferSendDoneEvent;
+import org.eclipse.ecf.filetransfer.events.IOutgoingFileTransferSendPausedEvent;
+import org.eclipse.ecf.filetransfer.events.IOutgoingFileTransferSendResumedEvent;
 import org.eclipse.ecf.filetransfer.identity.IFileID;
 import org.eclipse.ecf.filetransfer.service.ISendFileTransfer;
 import org.eclipse.ecf.internal.provider.filetransfer.Activator;
 import org.eclipse.ecf.internal.provider.filetransfer.Messages;
 import org.eclipse.ecf.provider.filetransfer.identity.FileTransferNamespace;
+import org.eclipse.ecf.provider.filetransfer.util.BandwidthScheduler;
+import org.eclipse.ecf.provider.filetransfer.util.FileTransferTimings;
 import org.eclipse.ecf.provider.filetransfer.util.ProxySetupHelper;
 import org.eclipse.osgi.util.NLS;
 
@@ -87,6 +98,12 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 
 	protected Proxy proxy;
 
+	/**
+	 * Timings of the current request.
+	 * @since 3.4
+	 */
+	protected FileTransferTimings timings = new FileTransferTimings();
+
 	private final IFileTransferRunnable fileTransferRunnable = new IFileTransferRunnable() {
 		public IStatus performFileTransfer(IProgressMonitor monitor) {
 			final byte[] buf = new byte[buff_length];
@@ -94,14 +111,25 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 			double factor = (totalWork > Integer.MAX_VALUE) ? (((double) Integer.MAX_VALUE) / ((double) totalWork)) : 1.0;
 			int work = (totalWork > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) totalWork;
 			monitor.beginTask(getRemoteFileURL().toString() + Messages.AbstractOutgoingFileTransfer_Progress_Data, work);
+			final BandwidthScheduler scheduler = BandwidthScheduler.getDefault();
+			final int priority = scheduler.getPriority(getRemoteFileURL(), getOptions());
 			try {
 				while (!isDone()) {
 					if (monitor.isCanceled())
 						throw new UserCancelledException(Messages.AbstractOutgoingFileTransfer_Exception_User_Cancelled);
 					final int bytes = localFileContents.read(buf);
 					if (bytes != -1) {
+						try {
+							scheduler.acquire(getRemoteFileURL(), priority, bytes, monitor);
+						} catch (OperationCanceledException e) {
+							throw new UserCancelledException(Messages.AbstractOutgoingFileTransfer_Exception_User_Cancelled);
+						}
 						bytesSent += bytes;
+						final long writeStart = System.nanoTime();
 						remoteFileContents.write(buf, 0, bytes);
+						timings.ioCompleted(writeStart);
+						timings.firstByte();
+						timings.addBytes(bytes);
 						fireTransferSendDataEvent();
 						monitor.worked((int) Math.round(factor * bytes));
 					} else {
@@ -124,6 +152,142 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 		}
 	};
 
+	/**
+	 * Chunk size for chunked sends. 0 if the file is sent as one stream.
+	 * @since 3.4
+	 */
+	protected long chunkSize = 0;
+
+	/**
+	 * Number of bytes of the local file acknowledged by the receiver in
+	 * chunked mode.
+	 * @since 3.4
+	 */
+	protected volatile long acknowledgedBytes = 0;
+
+	/**
+	 * Local file source for chunked sends.
+	 * @since 3.4
+	 */
+	protected FileChannel localFileChannel;
+
+	/**
+	 * Whether a chunked send has been paused.
+	 * @since 3.4
+	 */
+	protected volatile boolean paused = false;
+
+	// largest region of the local file mapped at once
+	private static final long MAX_MAPPED_REGION = 64 * 1024 * 1024;
+
+	// true while the chunked runnable is running, guarded by this
+	private boolean sendingChunks = false;
+
+	private final IFileTransferRunnable chunkedFileTransferRunnable = new IFileTransferRunnable() {
+		public IStatus performFileTransfer(IProgressMonitor monitor) {
+			final byte[] buf = new byte[buff_length];
+			final long fileSize = getLocalFileSize();
+			final long remaining = fileSize - acknowledgedBytes;
+			final long totalWork = (remaining <= 0) ? 1 : remaining;
+			double factor = (totalWork > Integer.MAX_VALUE) ? (((double) Integer.MAX_VALUE) / ((double) totalWork)) : 1.0;
+			int work = (totalWork > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) totalWork;
+			monitor.beginTask(getRemoteFileURL().toString() + Messages.AbstractOutgoingFileTransfer_Progress_Data, work);
+			final BandwidthScheduler scheduler = BandwidthScheduler.getDefault();
+			final int priority = scheduler.getPriority(getRemoteFileURL(), getOptions());
+			boolean stoppedForPause = false;
+			try {
+				long offset = acknowledgedBytes;
+				bytesSent = offset;
+				while (true) {
+					while (offset < fileSize && !paused) {
+						if (monitor.isCanceled())
+							throw new UserCancelledException(Messages.AbstractOutgoingFileTransfer_Exception_User_Cancelled);
+						final long length = Math.min(chunkSize, fileSize - offset);
+						final OutputStream outs = openChunk(offset, length);
+						// a single mapping cannot exceed Integer.MAX_VALUE bytes, so map large chunks region by region
+						for (long regionOffset = offset; regionOffset < offset + length; regionOffset += MAX_MAPPED_REGION) {
+							final long regionLength = Math.min(MAX_MAPPED_REGION, offset + length - regionOffset);
+							final MappedByteBuffer region = localFileChannel.map(FileChannel.MapMode.READ_ONLY, regionOffset, regionLength);
+							while (region.hasRemaining()) {
+								final int bytes = Math.min(buf.length, region.remaining());
+								try {
+									scheduler.acquire(getRemoteFileURL(), priority, bytes, monitor);
+								} catch (OperationCanceledException e) {
+									throw new UserCancelledException(Messages.AbstractOutgoingFileTransfer_Exception_User_Cancelled);
+								}
+								region.get(buf, 0, bytes);
+								final long writeStart = System.nanoTime();
+								outs.write(buf, 0, bytes);
+								timings.ioCompleted(writeStart);
+								timings.firstByte();
+								timings.addBytes(bytes);
+								bytesSent += bytes;
+								fireTransferSendDataEvent();
+								monitor.worked((int) Math.round(factor * bytes));
+							}
+						}
+						commitChunk(offset, length);
+						offset += length;
+						acknowledgedBytes = offset;
+						bytesSent = offset;
+					}
+					synchronized (AbstractOutgoingFileTransfer.this) {
+						// re-check under lock, resume() may have cleared paused after the loop ended
+						if (offset >= fileSize) {
+							done = true;
+							sendingChunks = false;
+							break;
+						} else if (paused) {
+							stoppedForPause = true;
+							sendingChunks = false;
+							break;
+						}
+					}
+				}
+			} catch (final Exception e) {
+				synchronized (AbstractOutgoingFileTransfer.this) {
+					exception = e;
+					// a later resume starts again with the first unacknowledged chunk
+					bytesSent = acknowledgedBytes;
+					done = true;
+					sendingChunks = false;
+				}
+			} finally {
+				monitor.done();
+				if (stoppedForPause) {
+					fireTransferSendPausedEvent();
+				} else {
+					hardClose();
+					try {
+						fireTransferSendDoneEvent();
+					} catch (Exception e) {
+						Activator.getDefault().log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, IStatus.ERROR, Messages.AbstractOutgoingFileTransfer_EXCEPTION_IN_FINALLY, e));
+					}
+				}
+			}
+			return getFinalStatus(exception);
+		}
+	};
+
+	private final IFileTransferPausable chunkedPausable = new IFileTransferPausable() {
+		public boolean pause() {
+			synchronized (AbstractOutgoingFileTransfer.this) {
+				if (done || paused)
+					return false;
+				paused = true;
+				return true;
+			}
+		}
+
+		public boolean isPaused() {
+			return paused;
+		}
+
+		public boolean resume() {
+			return resumeChunkedSend();
+		}
+	};
+
 	FileTransferJob fileTransferJob;
 
 	protected URL getRemoteFileURL() {
@@ -155,6 +319,15 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 	}
 
 	protected void hardClose() {
+		if (chunkSize > 0)
+			closeChunkedSend();
+		try {
+			if (localFileChannel != null)
+				localFileChannel.close();
+		} catch (final IOException e) {
+			Activator.getDefault().log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, IStatus.ERROR, String.format("hardClose url=%s", remoteFileURL), e)); //$NON-NLS-1$
+		}
+		localFileChannel = null;
 		try {
 			if (remoteFileContents != null)
 				remoteFileContents.close();
@@ -180,6 +353,12 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 	}
 
 	protected void fireTransferSendDoneEvent() {
+		final FileTransferTimings doneTimings = timings;
+		if (doneTimings.finish()) {
+			Activator a = Activator.getDefault();
+			if (a != null)
+				a.getFileTransferMetrics().recordSend(getRemoteFileURL(), doneTimings, getException());
+		}
 		listener.handleTransferEvent(new IOutgoingFileTransferSendDoneEvent() {
 
 			public IOutgoingFileTransfer getSource() {
@@ -190,10 +369,15 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 				return AbstractOutgoingFileTransfer.this.getException();
 			}
 
+			public IFileTransferTimings getTimings() {
+				return doneTimings;
+			}
+
 			public String toString() {
 				final StringBuffer sb = new StringBuffer("IOutgoingFileTransferSendDoneEvent["); //$NON-NLS-1$
 				sb.append("bytesSent=").append(bytesSent) //$NON-NLS-1$
 						.append(";fileLength=").append(fileTransferInfo.getFileSize()).append(";exception=").append(getException()) //$NON-NLS-1$ //$NON-NLS-2$
+						.append(";timings=").append(doneTimings) //$NON-NLS-1$
 						.append("]"); //$NON-NLS-1$
 				return sb.toString();
 			}
@@ -274,6 +458,8 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 		if (adapter.isInstance(this)) {
 			return this;
 		}
+		if (adapter.equals(IFileTransferPausable.class) && chunkSize > 0)
+			return chunkedPausable;
 		final IAdapterManager adapterManager = Activator.getDefault().getAdapterManager();
 		return (adapterManager == null) ? null : adapterManager.loadAdapter(this, adapter.getName());
 	}
@@ -289,6 +475,176 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 	 */
 	protected abstract void openStreams() throws SendFileTransferException;
 
+	/**
+	 * Whether this transfer can send the local file in independently
+	 * acknowledged chunks via {@link #openChunk(long, long)} and
+	 * {@link #commitChunk(long, long)}. Subclasses that support chunked sends
+	 * must override this method, {@link #openChunkedSend(long)},
+	 * {@link #openChunk(long, long)} and {@link #commitChunk(long, long)}.
+	 * 
+	 * @return <code>true</code> if chunked sends are supported. This
+	 *         implementation returns <code>false</code>.
+	 * @since 3.4
+	 */
+	protected boolean supportsChunkedSend() {
+		return false;
+	}
+
+	/**
+	 * Prepare the receiver for a chunked send starting at the given offset.
+	 * Called instead of {@link #openStreams()} when sending in chunks.
+	 * 
+	 * @param offset the offset in the local file of the first chunk to send
+	 * @throws SendFileTransferException if the receiver cannot be prepared
+	 * @since 3.4
+	 */
+	protected void openChunkedSend(long offset) throws SendFileTransferException {
+		// nothing by default
+	}
+
+	/**
+	 * Open the stream for sending one chunk of the local file.
+	 * 
+	 * @param offset the offset of the chunk in the local file
+	 * @param length the length of the chunk
+	 * @return output stream to write the chunk content to. Must not be <code>null</code>.
+	 * @throws IOException if the chunk cannot be started
+	 * @since 3.4
+	 */
+	protected OutputStream openChunk(long offset, long length) throws IOException {
+		throw new IOException("chunked send not supported"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Complete sending one chunk, and wait for the receiver to acknowledge it.
+	 * Must only return normally if the receiver has durably accepted the chunk.
+	 * 
+	 * @param offset the offset of the chunk in the local file
+	 * @param length the length of the chunk
+	 * @throws IOException if the chunk has not been acknowledged
+	 * @since 3.4
+	 */
+	protected void commitChunk(long offset, long length) throws IOException {
+		throw new IOException("chunked send not supported"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Release resources held for a chunked send.
+	 * @since 3.4
+	 */
+	protected void closeChunkedSend() {
+		// nothing by default
+	}
+
+	/**
+	 * @return the number of bytes of the local file acknowledged by the
+	 *         receiver. Only meaningful for chunked sends, and may be given as
+	 *         {@link ISendFileTransferOptions#RESUME_OFFSET} to continue an
+	 *         interrupted send.
+	 * @since 3.4
+	 */
+	public long getAcknowledgedBytes() {
+		return acknowledgedBytes;
+	}
+
+	/**
+	 * @return the size of the local file being sent
+	 * @since 3.4
+	 */
+	protected long getLocalFileSize() {
+		final long size = fileTransferInfo.getFileSize();
+		return (size < 0) ? fileTransferInfo.getFile().length() : size;
+	}
+
+	private long getLongOption(String key, long defaultValue) throws SendFileTransferException {
+		final Object o = (options == null) ? null : options.get(key);
+		if (o == null)
+			return defaultValue;
+		try {
+			return (o instanceof Number) ? ((Number) o).longValue() : Long.parseLong(o.toString().trim());
+		} catch (final NumberFormatException e) {
+			throw new SendFileTransferException(NLS.bind(Messages.AbstractOutgoingFileTransfer_EXCEPTION_INVALID_OPTION, key, o), e);
+		}
+	}
+
+	private void openChunkedStreams(long offset) throws SendFileTransferException {
+		try {
+			localFileChannel = FileChannel.open(fileTransferInfo.getFile().toPath(), StandardOpenOption.READ);
+		} catch (final IOException e) {
+			throw new SendFileTransferException(NLS.bind(Messages.AbstractOutgoingFileTransfer_EXCEPTION_OPENING_LOCAL_FILE, fileTransferInfo.getFile()), e);
+		}
+		openChunkedSend(offset);
+	}
+
+	/**
+	 * Resume a paused or failed chunked send from the first unacknowledged
+	 * chunk.
+	 */
+	boolean resumeChunkedSend() {
+		synchronized (this) {
+			if (chunkSize <= 0)
+				return false;
+			if (paused) {
+				paused = false;
+				if (sendingChunks)
+					// the current chunk is still being sent, just keep going
+					return true;
+			} else if (done && exception != null && !(exception instanceof UserCancelledException)) {
+				// retry after failure, starting with the first unacknowledged chunk
+				timings = timings.retry();
+				try {
+					setupProxies();
+					openChunkedStreams(acknowledgedBytes);
+				} catch (final SendFileTransferException e) {
+					exception = e;
+					hardClose();
+					return false;
+				}
+				done = false;
+				exception = null;
+			} else
+				return false;
+			sendingChunks = true;
+		}
+		fireTransferSendResumedEvent();
+		setupAndScheduleJob();
+		return true;
+	}
+
+	protected void fireTransferSendPausedEvent() {
+		listener.handleTransferEvent(new IOutgoingFileTransferSendPausedEvent() {
+
+			public IOutgoingFileTransfer getSource() {
+				return AbstractOutgoingFileTransfer.this;
+			}
+
+			public String toString() {
+				final StringBuffer sb = new StringBuffer("IOutgoingFileTransferSendPausedEvent["); //$NON-NLS-1$
+				sb.append("bytesSent=").append(bytesSent) //$NON-NLS-1$
+						.append(";acknowledged=").append(acknowledgedBytes) //$NON-NLS-1$
+						.append("]"); //$NON-NLS-1$
+				return sb.toString();
+			}
+		});
+	}
+
+	protected void fireTransferSendResumedEvent() {
+		listener.handleTransferEvent(new IOutgoingFileTransferSendResumedEvent() {
+
+			public IOutgoingFileTransfer getSource() {
+				return AbstractOutgoingFileTransfer.this;
+			}
+
+			public String toString() {
+				final StringBuffer sb = new StringBuffer("IOutgoingFileTransferSendResumedEvent["); //$NON-NLS-1$
+				sb.append("bytesSent=").append(bytesSent) //$NON-NLS-1$
+						.append(";acknowledged=").append(acknowledgedBytes) //$NON-NLS-1$
+						.append("]"); //$NON-NLS-1$
+				return sb.toString();
+			}
+		});
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.ecf.filetransfer.ISendFileTransferContainerAdapter#getOutgoingNamespace()
 	 */
@@ -305,9 +661,14 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 	}
 
 	protected void setupAndScheduleJob() {
+		if (chunkSize > 0) {
+			synchronized (this) {
+				sendingChunks = true;
+			}
+		}
 		if (fileTransferJob == null)
 			fileTransferJob = new FileTransferJob(createJobName());
-		fileTransferJob.setFileTransferRunnable(fileTransferRunnable);
+		fileTransferJob.setFileTransferRunnable((chunkSize > 0) ? chunkedFileTransferRunnable : fileTransferRunnable);
 		fileTransferJob.setFileTransfer(this);
 		job = fileTransferJob;
 		job.schedule();
@@ -413,10 +774,22 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 		Assert.isNotNull(localFileToSend, Messages.AbstractOutgoingFileTransfer_EXCEPTION_FILE_TRANSFER_INFO_NOT_NULL);
 		this.done = false;
 		this.bytesSent = 0;
+		this.timings = new FileTransferTimings();
+		this.acknowledgedBytes = 0;
+		this.paused = false;
 		this.exception = null;
 		this.fileTransferInfo = localFileToSend;
 		this.remoteFileID = targetReceiver;
 		this.options = ops;
+		final long resumeOffset = getLongOption(ISendFileTransferOptions.RESUME_OFFSET, 0);
+		this.chunkSize = getLongOption(ISendFileTransferOptions.CHUNK_SIZE, (resumeOffset > 0) ? Long.MAX_VALUE : 0);
+		if (chunkSize > 0 && (!supportsChunkedSend() || localFileToSend.getFile() == null)) {
+			if (resumeOffset > 0)
+				throw new SendFileTransferException(NLS.bind(Messages.AbstractOutgoingFileTransfer_EXCEPTION_CHUNKED_NOT_SUPPORTED, targetReceiver));
+			// fall back to sending a single stream
+			chunkSize = 0;
+		}
+		this.acknowledgedBytes = resumeOffset;
 
 		try {
 			this.remoteFileURL = targetReceiver.getURL();
@@ -425,7 +798,10 @@ public abstract class AbstractOutgoingFileTransfer implements IOutgoingFileTrans
 		}
 		this.listener = transferListener;
 		setupProxies();
-		openStreams();
+		if (chunkSize > 0)
+			openChunkedStreams(resumeOffset);
+		else
+			openStreams();
 		fireSendStartEvent();
 		setupAndScheduleJob();
 	}
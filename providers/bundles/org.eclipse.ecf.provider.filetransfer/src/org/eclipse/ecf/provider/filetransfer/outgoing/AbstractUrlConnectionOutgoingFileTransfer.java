@@ -16,12 +16,15 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.ProtocolException;
 import java.net.URLConnection;
 import org.eclipse.ecf.core.util.Proxy;
 import org.eclipse.ecf.filetransfer.SendFileTransferException;
 import org.eclipse.ecf.filetransfer.service.ISendFileTransfer;
 import org.eclipse.ecf.internal.provider.filetransfer.Messages;
+import org.eclipse.ecf.provider.filetransfer.util.FileTransferTimings;
 import org.eclipse.ecf.provider.filetransfer.util.JREProxyHelper;
 import org.eclipse.osgi.util.NLS;
 
@@ -29,6 +32,8 @@ public abstract class AbstractUrlConnectionOutgoingFileTransfer extends Abstract
 
 	private static final int OK_RESPONSE_CODE = 200;
 
+	private static final int RESUME_INCOMPLETE_RESPONSE_CODE = 308;
+
 	protected URLConnection urlConnection;
 
 	protected long lastModifiedTime = 0L;
@@ -41,6 +46,8 @@ public abstract class AbstractUrlConnectionOutgoingFileTransfer extends Abstract
 
 	private JREProxyHelper proxyHelper = null;
 
+	private OutputStream chunkOutputStream;
+
 	public AbstractUrlConnectionOutgoingFileTransfer() {
 		super();
 		proxyHelper = new JREProxyHelper();
@@ -117,14 +124,80 @@ public abstract class AbstractUrlConnectionOutgoingFileTransfer extends Abstract
 			// Set input stream from local file
 			setInputStream(new BufferedInputStream(new FileInputStream(localFile)));
 			// Then connect
+			final long connectStart = System.nanoTime();
 			connect();
 			// Make PUT request
 			setOutputStream(urlConnection.getOutputStream());
+			timings.addConnectTime(FileTransferTimings.millisSince(connectStart));
 		} catch (final Exception e) {
 			throw new SendFileTransferException(NLS.bind(Messages.UrlConnectionOutgoingFileTransfer_EXCEPTION_COULD_NOT_CONNECT, getRemoteFileURL().toString()), e);
 		}
 	}
 
+	/**
+	 * Chunked sends are supported for http and https urls. Each chunk is sent
+	 * as a separate request with a <code>Content-Range</code> header, and is
+	 * acknowledged by a 2xx or 308 (resume incomplete) response.
+	 */
+	protected boolean supportsChunkedSend() {
+		return isHTTP();
+	}
+
+	/**
+	 * Setup and connect for sending one chunk. This implementation calls
+	 * {@link #connect()}, which must leave <code>urlConnection</code> not yet
+	 * connected so that the chunk request headers can be added. Subclasses
+	 * may override as appropriate.
+	 * 
+	 * @param offset offset of the chunk in the local file
+	 * @param length length of the chunk
+	 * @param total size of the local file
+	 * @throws IOException if the connection cannot be opened
+	 * @since 3.4
+	 */
+	protected void connectChunk(long offset, long length, long total) throws IOException {
+		connect();
+		try {
+			urlConnection.setDoOutput(true);
+			if (urlConnection instanceof HttpURLConnection)
+				((HttpURLConnection) urlConnection).setFixedLengthStreamingMode(length);
+			urlConnection.setRequestProperty("Content-Range", "bytes " + offset + "-" + (offset + length - 1) + "/" + total); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		} catch (final IllegalStateException e) {
+			throw new IOException("connect() must not connect urlConnection for chunked sends", e); //$NON-NLS-1$
+		}
+	}
+
+	protected OutputStream openChunk(long offset, long length) throws IOException {
+		responseCode = -1;
+		responseMessage = null;
+		final long connectStart = System.nanoTime();
+		connectChunk(offset, length, getLocalFileSize());
+		chunkOutputStream = urlConnection.getOutputStream();
+		timings.addConnectTime(FileTransferTimings.millisSince(connectStart));
+		return chunkOutputStream;
+	}
+
+	protected void commitChunk(long offset, long length) throws IOException {
+		chunkOutputStream.close();
+		chunkOutputStream = null;
+		final int rCode = getResponseCode();
+		if (urlConnection instanceof HttpURLConnection)
+			((HttpURLConnection) urlConnection).disconnect();
+		urlConnection = null;
+		if ((rCode < 200 || rCode >= 300) && rCode != RESUME_INCOMPLETE_RESPONSE_CODE)
+			throw new ProtocolException(NLS.bind("{0} {1}", Integer.valueOf(rCode), responseMessage)); //$NON-NLS-1$
+	}
+
+	protected void closeChunkedSend() {
+		try {
+			if (chunkOutputStream != null)
+				chunkOutputStream.close();
+		} catch (final IOException e) {
+			// ignore
+		}
+		chunkOutputStream = null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -132,7 +205,8 @@ public abstract class AbstractUrlConnectionOutgoingFileTransfer extends Abstract
 	 */
 	protected void hardClose() {
 		super.hardClose();
-		int rCode = getResponseCode();
+		// chunked sends check the response for every chunk
+		int rCode = (chunkSize > 0) ? OK_RESPONSE_CODE : getResponseCode();
 		if (rCode != OK_RESPONSE_CODE) {
 			exception = new ProtocolException(NLS.bind("{0} {1}", Integer.valueOf(rCode), responseMessage)); //$NON-NLS-1$
 		}
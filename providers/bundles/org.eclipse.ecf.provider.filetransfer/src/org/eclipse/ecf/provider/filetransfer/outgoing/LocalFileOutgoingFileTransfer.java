@@ -19,7 +19,12 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.ecf.core.util.Proxy;
 import org.eclipse.ecf.filetransfer.IFileTransferInfo;
@@ -32,6 +37,8 @@ import org.eclipse.osgi.util.NLS;
  */
 public class LocalFileOutgoingFileTransfer extends AbstractOutgoingFileTransfer {
 
+	private FileChannel targetChannel;
+
 	public LocalFileOutgoingFileTransfer() {
 		// not needed
 	}
@@ -61,6 +68,60 @@ public class LocalFileOutgoingFileTransfer extends AbstractOutgoingFileTransfer
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see org.eclipse.ecf.provider.filetransfer.outgoing.AbstractOutgoingFileTransfer#supportsChunkedSend()
+	 */
+	protected boolean supportsChunkedSend() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ecf.provider.filetransfer.outgoing.AbstractOutgoingFileTransfer#openChunkedSend(long)
+	 */
+	protected void openChunkedSend(long offset) throws SendFileTransferException {
+		URL url = getRemoteFileURL();
+		Assert.isNotNull(url);
+		try {
+			targetChannel = FileChannel.open(new File(url.getPath()).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			if (targetChannel.size() < offset)
+				throw new IOException(NLS.bind("{0} has only {1} bytes", url, Long.valueOf(targetChannel.size()))); //$NON-NLS-1$
+			// drop anything written after the last acknowledged chunk
+			targetChannel.truncate(offset);
+		} catch (Exception e) {
+			hardClose();
+			throw new SendFileTransferException(NLS.bind(Messages.LocalFileOutgoingFileTransfer_EXCEPTION_OPENING_FOR_OUTPUT, url), e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ecf.provider.filetransfer.outgoing.AbstractOutgoingFileTransfer#openChunk(long, long)
+	 */
+	protected OutputStream openChunk(long offset, long length) throws IOException {
+		targetChannel.position(offset);
+		// not closed per chunk, the channel is closed in closeChunkedSend
+		return Channels.newOutputStream(targetChannel);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ecf.provider.filetransfer.outgoing.AbstractOutgoingFileTransfer#commitChunk(long, long)
+	 */
+	protected void commitChunk(long offset, long length) throws IOException {
+		targetChannel.force(false);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ecf.provider.filetransfer.outgoing.AbstractOutgoingFileTransfer#closeChunkedSend()
+	 */
+	protected void closeChunkedSend() {
+		try {
+			if (targetChannel != null)
+				targetChannel.close();
+		} catch (IOException e) {
+			// ignore
+		}
+		targetChannel = null;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.ecf.provider.filetransfer.outgoing.AbstractOutgoingFileTransfer#setupProxy(org.eclipse.ecf.core.util.Proxy)
 	 */
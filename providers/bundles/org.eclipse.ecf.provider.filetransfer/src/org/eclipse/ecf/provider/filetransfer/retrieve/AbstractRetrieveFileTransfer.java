@@ -19,9 +19,13 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.util.Date;
 import java.util.Map;
@@ -45,9 +49,11 @@ import org.eclipse.ecf.filetransfer.IFileRangeSpecification;
 import org.eclipse.ecf.filetransfer.IFileTransferListener;
 import org.eclipse.ecf.filetransfer.IFileTransferPausable;
 import org.eclipse.ecf.filetransfer.IFileTransferRunnable;
+import org.eclipse.ecf.filetransfer.IFileTransferTimings;
 import org.eclipse.ecf.filetransfer.IIncomingFileTransfer;
 import org.eclipse.ecf.filetransfer.IRetrieveFileTransferOptions;
 import org.eclipse.ecf.filetransfer.IncomingFileTransferException;
+import org.eclipse.ecf.filetransfer.InvalidChecksumException;
 import org.eclipse.ecf.filetransfer.UserCancelledException;
 import org.eclipse.ecf.filetransfer.events.IIncomingFileTransferReceiveDataEvent;
 import org.eclipse.ecf.filetransfer.events.IIncomingFileTransferReceiveDoneEvent;
@@ -59,6 +65,8 @@ import org.eclipse.ecf.filetransfer.service.IRetrieveFileTransfer;
 import org.eclipse.ecf.internal.provider.filetransfer.Activator;
 import org.eclipse.ecf.internal.provider.filetransfer.Messages;
 import org.eclipse.ecf.provider.filetransfer.identity.FileTransferNamespace;
+import org.eclipse.ecf.provider.filetransfer.util.BandwidthScheduler;
+import org.eclipse.ecf.provider.filetransfer.util.FileTransferTimings;
 import org.eclipse.ecf.provider.filetransfer.util.PollingInputStream;
 import org.eclipse.ecf.provider.filetransfer.util.ProxySetupHelper;
 import org.eclipse.ecf.provider.filetransfer.util.TimeoutInputStream;
@@ -68,6 +76,11 @@ public abstract class AbstractRetrieveFileTransfer implements IIncomingFileTrans
 
 	public static final int DEFAULT_BUF_LENGTH = 4096;
 
+	/**
+	 * @since 3.4
+	 */
+	public static final String DEFAULT_DIGEST_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
 	protected static final int POLLING_RETRY_ATTEMPTS = Integer.parseInt(System.getProperty("org.eclipse.ecf.provider.filetransfer.retrieve.retryAttempts", "30")); //$NON-NLS-1$ //$NON-NLS-2$;;
 
 	protected static final int TIMEOUT_INPUTSTREAM_BUFFER_SIZE = 8192;
@@ -134,12 +147,32 @@ public abstract class AbstractRetrieveFileTransfer implements IIncomingFileTrans
 	 */
 	protected Map responseHeaders;
 
+	/**
+	 * Digest of the received content, or <code>null</code> if no
+	 * {@link IRetrieveFileTransferOptions#EXPECTED_DIGEST} was given.
+	 * @since 3.4
+	 */
+	protected MessageDigest checksumDigest;
+
+	private byte[] expectedDigest;
+
+	/**
+	 * Timings of the current request. Subclasses record the phases they can
+	 * observe, e.g. connect and TLS handshake time.
+	 * @since 3.4
+	 */
+	protected FileTransferTimings timings = new FileTransferTimings();
+
 	public AbstractRetrieveFileTransfer() {
 		//
 	}
 
 	protected InputStream wrapTransferReadInputStream(InputStream inputStream, IProgressMonitor monitor) {
-		return new PollingInputStream(inputStream, getRetryAttempts(), monitor, readTimeoutMessage, closeTimeoutMessage);
+		return new PollingInputStream(inputStream, getRetryAttempts(), monitor, readTimeoutMessage, closeTimeoutMessage) {
+			protected void retryingRead(InterruptedIOException e) {
+				timings.incrementRetryCount();
+			}
+		};
 	}
 
 	private int getRetryAttempts() {
@@ -168,6 +201,8 @@ public abstract class AbstractRetrieveFileTransfer implements IIncomingFileTrans
 			int work = (totalWork > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) totalWork;
 			monitor.beginTask(getRemoteFileURL().toString() + Messages.AbstractRetrieveFileTransfer_Progress_Data, work);
 			InputStream readInputStream = null;
+			final BandwidthScheduler scheduler = BandwidthScheduler.getDefault();
+			final int priority = scheduler.getPriority(getRemoteFileURL(), getOptions());
 			try {
 				// We will test for remoteFileContents is null...if it is null then we can't continue.
 				// See bug https://bugs.eclipse.org/bugs/show_bug.cgi?id=425868
@@ -177,12 +212,21 @@ public abstract class AbstractRetrieveFileTransfer implements IIncomingFileTrans
 				readInputStream = wrapTransferReadInputStream(remoteFileContents, monitor);
 				while (!isDone() && !isPaused()) {
 					try {
+						final long readStart = System.nanoTime();
 						final int bytes = readInputStream.read(buf);
+						timings.ioCompleted(readStart);
+						if (bytes > 0) {
+							timings.firstByte();
+							timings.addBytes(bytes);
+						}
+						scheduler.acquire(getRemoteFileURL(), priority, bytes, monitor);
 						handleReceivedData(buf, bytes, factor, monitor);
 					} catch (OperationCanceledException e) {
 						throw new UserCancelledException(Messages.AbstractRetrieveFileTransfer_Exception_User_Cancelled);
 					}
 				}
+				if (!isPaused())
+					verifyChecksum();
 			} catch (final Exception e) {
 				if (!isDone()) {
 					setDoneException(e);
@@ -267,7 +311,84 @@ public abstract class AbstractRetrieveFileTransfer implements IIncomingFileTrans
 	}
 
 	protected void setOutputStream(OutputStream outs) {
-		localFileContents = outs;
+		// digest everything written to the local stream, so that the content does not have to be read a second time
+		localFileContents = (checksumDigest == null || outs == null) ? outs : new DigestOutputStream(outs, checksumDigest);
+	}
+
+	/**
+	 * Create the digest for verifying the received content from the
+	 * {@link IRetrieveFileTransferOptions#EXPECTED_DIGEST} and
+	 * {@link IRetrieveFileTransferOptions#DIGEST_ALGORITHM} options.
+	 * 
+	 * @throws IncomingFileTransferException if the algorithm is not available or the expected digest is malformed
+	 * @since 3.4
+	 */
+	protected void setupChecksum() throws IncomingFileTransferException {
+		checksumDigest = null;
+		expectedDigest = null;
+		final Map localOptions = getOptions();
+		if (localOptions == null)
+			return;
+		final Object expected = localOptions.get(IRetrieveFileTransferOptions.EXPECTED_DIGEST);
+		if (expected == null)
+			return;
+		final Object algorithm = localOptions.get(IRetrieveFileTransferOptions.DIGEST_ALGORITHM);
+		final String algorithmName = (algorithm instanceof String) ? (String) algorithm : DEFAULT_DIGEST_ALGORITHM;
+		try {
+			if (expected instanceof byte[])
+				expectedDigest = (byte[]) expected;
+			else
+				expectedDigest = fromHex(expected.toString());
+			checksumDigest = MessageDigest.getInstance(algorithmName);
+		} catch (final NoSuchAlgorithmException | IllegalArgumentException e) {
+			expectedDigest = null;
+			throw new IncomingFileTransferException(NLS.bind(Messages.AbstractRetrieveFileTransfer_EXCEPTION_INVALID_CHECKSUM_OPTIONS, algorithmName, expected), e);
+		}
+	}
+
+	/**
+	 * Compare the digest of the content received so far with the expected
+	 * digest. On mismatch, the transfer is completed with an
+	 * {@link InvalidChecksumException}.
+	 * @since 3.4
+	 */
+	protected void verifyChecksum() {
+		if (checksumDigest == null || expectedDigest == null)
+			return;
+		synchronized (this) {
+			if (exception != null)
+				return;
+		}
+		final byte[] actual = checksumDigest.digest();
+		if (!MessageDigest.isEqual(actual, expectedDigest)) {
+			final String algorithm = checksumDigest.getAlgorithm();
+			final String expectedHex = toHex(expectedDigest);
+			final String actualHex = toHex(actual);
+			setDoneException(new InvalidChecksumException(NLS.bind(Messages.AbstractRetrieveFileTransfer_EXCEPTION_CHECKSUM_MISMATCH, new Object[] {algorithm, expectedHex, actualHex}), algorithm, expectedHex, actualHex));
+		}
+	}
+
+	private static byte[] fromHex(String hex) {
+		final String h = hex.trim();
+		if (h.length() % 2 != 0)
+			throw new IllegalArgumentException(h);
+		final byte[] result = new byte[h.length() / 2];
+		for (int i = 0; i < result.length; i++) {
+			final int hi = Character.digit(h.charAt(2 * i), 16);
+			final int lo = Character.digit(h.charAt(2 * i + 1), 16);
+			if (hi < 0 || lo < 0)
+				throw new IllegalArgumentException(h);
+			result[i] = (byte) ((hi << 4) + lo);
+		}
+		return result;
+	}
+
+	private static String toHex(byte[] bytes) {
+		final StringBuffer sb = new StringBuffer(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
 	}
 
 	protected void setCloseOutputStream(boolean close) {
@@ -368,6 +489,12 @@ public abstract class AbstractRetrieveFileTransfer implements IIncomingFileTrans
 	}
 
 	protected void fireTransferReceiveDoneEvent() {
+		final FileTransferTimings doneTimings = timings;
+		if (doneTimings.finish()) {
+			Activator a = Activator.getDefault();
+			if (a != null)
+				a.getFileTransferMetrics().recordRetrieve(getRemoteFileURL(), doneTimings, getException());
+		}
 		listener.handleTransferEvent(new IIncomingFileTransferReceiveDoneEvent() {
 
 			public IIncomingFileTransfer getSource() {
@@ -378,10 +505,15 @@ public abstract class AbstractRetrieveFileTransfer implements IIncomingFileTrans
 				return AbstractRetrieveFileTransfer.this.getException();
 			}
 
+			public IFileTransferTimings getTimings() {
+				return doneTimings;
+			}
+
 			public String toString() {
 				final StringBuffer sb = new StringBuffer("IIncomingFileTransferReceiveDoneEvent["); //$NON-NLS-1$
 				sb.append("bytesReceived=").append(bytesReceived) //$NON-NLS-1$
 						.append(";fileLength=").append(fileLength).append(";exception=").append(getException()) //$NON-NLS-1$ //$NON-NLS-2$
+						.append(";timings=").append(doneTimings) //$NON-NLS-1$
 						.append("]"); //$NON-NLS-1$
 				return sb.toString();
 			}
@@ -864,6 +996,7 @@ public abstract class AbstractRetrieveFileTransfer implements IIncomingFileTrans
 		}
 		this.remoteFileURL = null;
 		this.remoteFileID = rFileID;
+		this.timings = new FileTransferTimings();
 		this.listener = transferListener;
 		this.remoteFileContents = null;
 		this.localFileContents = null;
@@ -883,6 +1016,7 @@ public abstract class AbstractRetrieveFileTransfer implements IIncomingFileTrans
 			return;
 		}
 		try {
+			setupChecksum();
 			setupProxies();
 			openStreams();
 		} catch (final IncomingFileTransferException e) {
@@ -332,6 +332,8 @@ public class UrlConnectionRetrieveFileTransfer extends AbstractRetrieveFileTrans
 			setCompressionRequestHeader();
 			setInputStream(getDecompressedStream());
 			code = getResponseCode();
+			// URLConnection does not expose connect and handshake phases, the response headers are the first bytes seen
+			timings.firstByte();
 			responseHeaders = getResponseHeaders();
 			if (isHTTP()) {
 				if (code == HttpURLConnection.HTTP_PARTIAL || code == HttpURLConnection.HTTP_OK) {
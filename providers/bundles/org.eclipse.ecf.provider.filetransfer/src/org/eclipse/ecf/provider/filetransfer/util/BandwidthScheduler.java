@@ -0,0 +1,329 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.provider.filetransfer.util;
+
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Process-wide bandwidth scheduler shared by all retrieve and send file
+ * transfer implementations that extend
+ * {@link org.eclipse.ecf.provider.filetransfer.retrieve.AbstractRetrieveFileTransfer}
+ * or
+ * {@link org.eclipse.ecf.provider.filetransfer.outgoing.AbstractOutgoingFileTransfer}.
+ * <p>
+ * The scheduler maintains one global token bucket and optionally one token
+ * bucket per remote host. Every block of data read or written by a transfer
+ * draws tokens from its host bucket (if any) and then from the global bucket.
+ * When tokens are short, transfers with higher priority are served before
+ * waiting transfers of lower priority, so that background mirroring does not
+ * starve interactive fetches.
+ * </p>
+ * <p>
+ * All rates are in bytes/second. A rate of 0 (the default) means unlimited.
+ * Rates and priorities may be changed at any time, and take effect for
+ * transfers already in progress. Initial values may be given with the system
+ * properties {@link #GLOBAL_RATE_PROP} and {@link #HOST_RATES_PROP}.
+ * </p>
+ * <p>
+ * Individual transfers may select their priority via the
+ * {@link #PRIORITY_OPTION} key in the options map given to
+ * <code>sendRetrieveRequest</code> or <code>sendOutgoingRequest</code>.
+ * </p>
+ *
+ * @since 3.4
+ */
+public class BandwidthScheduler {
+
+	/**
+	 * System property for the initial global rate cap in bytes/second.
+	 */
+	public static final String GLOBAL_RATE_PROP = "org.eclipse.ecf.provider.filetransfer.bandwidth.globalRate"; //$NON-NLS-1$
+
+	/**
+	 * System property for initial per host rate caps. The value is a comma
+	 * separated list of <code>host=bytesPerSecond</code> entries.
+	 */
+	public static final String HOST_RATES_PROP = "org.eclipse.ecf.provider.filetransfer.bandwidth.hostRates"; //$NON-NLS-1$
+
+	/**
+	 * Transfer option key for the scheduling priority of a single transfer.
+	 * The value may be an {@link Integer} or a {@link String}, and must be
+	 * between {@link #MIN_PRIORITY} and {@link #MAX_PRIORITY}.
+	 */
+	public static final String PRIORITY_OPTION = "org.eclipse.ecf.provider.filetransfer.bandwidth.priority"; //$NON-NLS-1$
+
+	public static final int MIN_PRIORITY = 0;
+
+	public static final int BACKGROUND_PRIORITY = 2;
+
+	public static final int DEFAULT_PRIORITY = 5;
+
+	public static final int INTERACTIVE_PRIORITY = 8;
+
+	public static final int MAX_PRIORITY = 10;
+
+	/**
+	 * Longest single wait before re-checking cancellation and rate changes.
+	 */
+	private static final long MAX_WAIT_MILLIS = 100;
+
+	private static BandwidthScheduler defaultScheduler;
+
+	private final TokenBucket globalBucket = new TokenBucket();
+
+	private final Map<String, HostEntry> hosts = new ConcurrentHashMap<String, HostEntry>();
+
+	// true when any bucket is rate limited; lets unlimited transfers skip all locking
+	private volatile boolean limited = false;
+
+	public static synchronized BandwidthScheduler getDefault() {
+		if (defaultScheduler == null) {
+			defaultScheduler = new BandwidthScheduler();
+			defaultScheduler.configureFromSystemProperties();
+		}
+		return defaultScheduler;
+	}
+
+	public BandwidthScheduler() {
+		//
+	}
+
+	private void configureFromSystemProperties() {
+		try {
+			String global = System.getProperty(GLOBAL_RATE_PROP);
+			if (global != null)
+				setGlobalRate(Long.parseLong(global.trim()));
+			String hostRates = System.getProperty(HOST_RATES_PROP);
+			if (hostRates != null) {
+				for (String entry : hostRates.split(",")) { //$NON-NLS-1$
+					int eq = entry.indexOf('=');
+					if (eq > 0)
+						setHostRate(entry.substring(0, eq).trim(), Long.parseLong(entry.substring(eq + 1).trim()));
+				}
+			}
+		} catch (NumberFormatException e) {
+			// ignore malformed values and stay unlimited
+		}
+	}
+
+	/**
+	 * Set the rate cap shared by all transfers in this process.
+	 *
+	 * @param bytesPerSecond the rate cap. 0 removes the cap.
+	 */
+	public void setGlobalRate(long bytesPerSecond) {
+		globalBucket.setRate(bytesPerSecond);
+		updateLimited();
+	}
+
+	public long getGlobalRate() {
+		return globalBucket.getRate();
+	}
+
+	/**
+	 * Set the rate cap for all transfers to or from the given host.
+	 *
+	 * @param host the host name. Must not be <code>null</code>.
+	 * @param bytesPerSecond the rate cap. 0 removes the cap.
+	 */
+	public void setHostRate(String host, long bytesPerSecond) {
+		getHostEntry(host).bucket.setRate(bytesPerSecond);
+		updateLimited();
+	}
+
+	public long getHostRate(String host) {
+		HostEntry entry = hosts.get(normalize(host));
+		return (entry == null) ? 0 : entry.bucket.getRate();
+	}
+
+	/**
+	 * Set the default priority for transfers to or from the given host. The
+	 * {@link #PRIORITY_OPTION} of an individual transfer overrides this value.
+	 *
+	 * @param host the host name. Must not be <code>null</code>.
+	 * @param priority priority between {@link #MIN_PRIORITY} and {@link #MAX_PRIORITY}
+	 */
+	public void setHostPriority(String host, int priority) {
+		getHostEntry(host).priority = clampPriority(priority);
+	}
+
+	public int getHostPriority(String host) {
+		HostEntry entry = hosts.get(normalize(host));
+		return (entry == null) ? DEFAULT_PRIORITY : entry.priority;
+	}
+
+	/**
+	 * Remove rate cap and priority settings for the given host.
+	 *
+	 * @param host the host name. Must not be <code>null</code>.
+	 */
+	public void clearHost(String host) {
+		HostEntry entry = hosts.remove(normalize(host));
+		if (entry != null)
+			entry.bucket.setRate(0);
+		updateLimited();
+	}
+
+	/**
+	 * Resolve the effective priority for a transfer.
+	 *
+	 * @param url the remote url of the transfer. May be <code>null</code>.
+	 * @param options the transfer options. May be <code>null</code>.
+	 * @return the priority given in options, or else the host priority, or else
+	 * {@link #DEFAULT_PRIORITY}
+	 */
+	public int getPriority(URL url, Map options) {
+		if (options != null) {
+			Object o = options.get(PRIORITY_OPTION);
+			try {
+				if (o instanceof Integer)
+					return clampPriority(((Integer) o).intValue());
+				else if (o instanceof String)
+					return clampPriority(Integer.parseInt((String) o));
+			} catch (NumberFormatException e) {
+				// fall through to host priority
+			}
+		}
+		String host = getHost(url);
+		return (host == null) ? DEFAULT_PRIORITY : getHostPriority(host);
+	}
+
+	/**
+	 * Acquire permission to transfer the given number of bytes. Blocks until
+	 * both the host bucket and the global bucket allow the transfer.
+	 *
+	 * @param url the remote url of the transfer. May be <code>null</code>.
+	 * @param priority the transfer priority
+	 * @param bytes the number of bytes about to be transferred
+	 * @param monitor progress monitor polled for cancellation. May be <code>null</code>.
+	 * @throws InterruptedIOException if the calling thread is interrupted while waiting
+	 * @throws OperationCanceledException if the monitor is canceled while waiting
+	 */
+	public void acquire(URL url, int priority, int bytes, IProgressMonitor monitor) throws InterruptedIOException {
+		if (!limited || bytes <= 0)
+			return;
+		int p = clampPriority(priority);
+		String host = getHost(url);
+		if (host != null) {
+			HostEntry entry = hosts.get(host);
+			if (entry != null)
+				entry.bucket.acquire(bytes, p, monitor);
+		}
+		globalBucket.acquire(bytes, p, monitor);
+	}
+
+	private HostEntry getHostEntry(String host) {
+		return hosts.computeIfAbsent(normalize(host), h -> new HostEntry());
+	}
+
+	private void updateLimited() {
+		boolean l = globalBucket.getRate() > 0;
+		for (HostEntry entry : hosts.values())
+			l |= entry.bucket.getRate() > 0;
+		limited = l;
+	}
+
+	private static String getHost(URL url) {
+		if (url == null)
+			return null;
+		String host = url.getHost();
+		return (host == null || host.length() == 0) ? null : normalize(host);
+	}
+
+	private static String normalize(String host) {
+		return host.toLowerCase(Locale.ENGLISH);
+	}
+
+	private static int clampPriority(int priority) {
+		return Math.max(MIN_PRIORITY, Math.min(MAX_PRIORITY, priority));
+	}
+
+	static class HostEntry {
+		final TokenBucket bucket = new TokenBucket();
+		volatile int priority = DEFAULT_PRIORITY;
+	}
+
+	/**
+	 * Token bucket with a burst capacity of one second worth of tokens. Callers
+	 * may take tokens whenever the bucket is not empty, and may drive it into
+	 * debt, so that blocks larger than the capacity never starve. Waiters of
+	 * higher priority are served first.
+	 */
+	static class TokenBucket {
+		private long rate;
+		private double tokens;
+		private long lastRefill = System.nanoTime();
+		private final int[] waiting = new int[MAX_PRIORITY + 1];
+
+		synchronized long getRate() {
+			return rate;
+		}
+
+		synchronized void setRate(long bytesPerSecond) {
+			refill(System.nanoTime());
+			rate = Math.max(0, bytesPerSecond);
+			if (tokens > rate)
+				tokens = rate;
+			notifyAll();
+		}
+
+		private void refill(long now) {
+			if (rate > 0)
+				tokens = Math.min(rate, tokens + ((now - lastRefill) / 1e9) * rate);
+			lastRefill = now;
+		}
+
+		private boolean higherPriorityWaiting(int priority) {
+			for (int i = priority + 1; i < waiting.length; i++)
+				if (waiting[i] > 0)
+					return true;
+			return false;
+		}
+
+		synchronized void acquire(int bytes, int priority, IProgressMonitor monitor) throws InterruptedIOException {
+			waiting[priority]++;
+			try {
+				while (true) {
+					if (monitor != null && monitor.isCanceled())
+						throw new OperationCanceledException();
+					refill(System.nanoTime());
+					if (rate <= 0)
+						return;
+					if (tokens > 0 && !higherPriorityWaiting(priority)) {
+						tokens -= bytes;
+						return;
+					}
+					long waitMillis = 1;
+					if (tokens > 0)
+						// tokens available but reserved for a higher priority waiter
+						notifyAll();
+					else
+						waitMillis = (long) Math.ceil((-tokens + 1) * 1000.0 / rate);
+					wait(Math.max(1, Math.min(MAX_WAIT_MILLIS, waitMillis)));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for bandwidth"); //$NON-NLS-1$
+			} finally {
+				waiting[priority]--;
+				notifyAll();
+			}
+		}
+	}
+}
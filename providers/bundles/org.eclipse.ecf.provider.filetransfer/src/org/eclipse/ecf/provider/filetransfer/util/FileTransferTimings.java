@@ -0,0 +1,190 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.provider.filetransfer.util;
+
+import org.eclipse.ecf.filetransfer.IFileTransferTimings;
+
+/**
+ * Mutable {@link IFileTransferTimings} filled in by file transfer
+ * implementations while a transfer is in progress. A new instance is created
+ * for every request; the clock starts when the instance is created.
+ * <p>
+ * Phase times are accumulated, so that e.g. the connect times of a request
+ * that is redirected to another host add up. The first call for a phase
+ * replaces {@link IFileTransferTimings#UNKNOWN}.
+ * </p>
+ *
+ * @since 3.4
+ */
+public class FileTransferTimings implements IFileTransferTimings {
+
+	/**
+	 * Single reads or writes that block for longer than this many
+	 * milliseconds are counted as stall time.
+	 */
+	public static final long STALL_THRESHOLD = Long.getLong("org.eclipse.ecf.provider.filetransfer.timings.stallThreshold", 500).longValue(); //$NON-NLS-1$
+
+	private final long startNanos = System.nanoTime();
+
+	private long dnsLookupTime = UNKNOWN;
+
+	private long connectTime = UNKNOWN;
+
+	private long tlsHandshakeTime = UNKNOWN;
+
+	private long timeToFirstByte = UNKNOWN;
+
+	private long totalTime = UNKNOWN;
+
+	private long bytesTransferred;
+
+	private long stallTime;
+
+	private int retryCount;
+
+	/**
+	 * @param startNanos a value of {@link System#nanoTime()}
+	 * @return milliseconds elapsed since startNanos
+	 */
+	public static long millisSince(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1000000L;
+	}
+
+	private static long add(long current, long millis) {
+		return (current == UNKNOWN) ? Math.max(0, millis) : current + Math.max(0, millis);
+	}
+
+	/**
+	 * @return milliseconds elapsed since this record was created
+	 */
+	public long getElapsedTime() {
+		return millisSince(startNanos);
+	}
+
+	public synchronized void addDnsLookupTime(long millis) {
+		dnsLookupTime = add(dnsLookupTime, millis);
+	}
+
+	public synchronized void addConnectTime(long millis) {
+		connectTime = add(connectTime, millis);
+	}
+
+	public synchronized void addTLSHandshakeTime(long millis) {
+		tlsHandshakeTime = add(tlsHandshakeTime, millis);
+	}
+
+	/**
+	 * Record that the first byte has been received, unless already recorded.
+	 */
+	public synchronized void firstByte() {
+		if (timeToFirstByte == UNKNOWN)
+			timeToFirstByte = getElapsedTime();
+	}
+
+	public synchronized void addBytes(long bytes) {
+		if (bytes > 0)
+			bytesTransferred += bytes;
+	}
+
+	public synchronized void addStallTime(long millis) {
+		stallTime = add(stallTime, millis);
+	}
+
+	/**
+	 * Record a blocking read or write, counting it as stall time if it took
+	 * longer than {@link #STALL_THRESHOLD}.
+	 *
+	 * @param ioStartNanos value of {@link System#nanoTime()} before the read or
+	 * write
+	 */
+	public void ioCompleted(long ioStartNanos) {
+		final long millis = millisSince(ioStartNanos);
+		if (millis > STALL_THRESHOLD)
+			addStallTime(millis);
+	}
+
+	public synchronized void incrementRetryCount() {
+		retryCount++;
+	}
+
+	/**
+	 * Start a new record for retrying a transfer that is already done. The
+	 * new record starts a new clock and carries over the retry count, plus
+	 * one for this retry.
+	 *
+	 * @return new timings record. Will not be <code>null</code>.
+	 */
+	public synchronized FileTransferTimings retry() {
+		final FileTransferTimings result = new FileTransferTimings();
+		result.retryCount = retryCount + 1;
+		return result;
+	}
+
+	/**
+	 * Stop the clock.
+	 *
+	 * @return <code>true</code> if this was the first call, <code>false</code>
+	 * if the clock had already been stopped
+	 */
+	public synchronized boolean finish() {
+		if (totalTime != UNKNOWN)
+			return false;
+		totalTime = getElapsedTime();
+		return true;
+	}
+
+	public synchronized long getDnsLookupTime() {
+		return dnsLookupTime;
+	}
+
+	public synchronized long getConnectTime() {
+		return connectTime;
+	}
+
+	public synchronized long getTLSHandshakeTime() {
+		return tlsHandshakeTime;
+	}
+
+	public synchronized long getTimeToFirstByte() {
+		return timeToFirstByte;
+	}
+
+	public synchronized long getTotalTime() {
+		return totalTime;
+	}
+
+	public synchronized long getBytesTransferred() {
+		return bytesTransferred;
+	}
+
+	public synchronized long getStallTime() {
+		return stallTime;
+	}
+
+	public synchronized int getRetryCount() {
+		return retryCount;
+	}
+
+	public synchronized String toString() {
+		final StringBuffer sb = new StringBuffer("FileTransferTimings["); //$NON-NLS-1$
+		sb.append("dns=").append(dnsLookupTime); //$NON-NLS-1$
+		sb.append(";connect=").append(connectTime); //$NON-NLS-1$
+		sb.append(";tls=").append(tlsHandshakeTime); //$NON-NLS-1$
+		sb.append(";ttfb=").append(timeToFirstByte); //$NON-NLS-1$
+		sb.append(";total=").append(totalTime); //$NON-NLS-1$
+		sb.append(";bytes=").append(bytesTransferred); //$NON-NLS-1$
+		sb.append(";stall=").append(stallTime); //$NON-NLS-1$
+		sb.append(";retries=").append(retryCount).append("]"); //$NON-NLS-1$ //$NON-NLS-2$
+		return sb.toString();
+	}
+}
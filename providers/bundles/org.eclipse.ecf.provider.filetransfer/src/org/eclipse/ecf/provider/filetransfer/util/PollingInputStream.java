@@ -157,6 +157,7 @@ public class PollingInputStream extends FilterInputStream {
 			} catch (InterruptedIOException e) {
 				if (++attempts == numAttempts)
 					throw new InterruptedIOException(readTimeoutMessage);
+				retryingRead(e);
 			}
 		}
 	}
@@ -192,6 +193,7 @@ public class PollingInputStream extends FilterInputStream {
 					return e.bytesTransferred; // keep partial transfer
 				if (++attempts == numAttempts)
 					throw new InterruptedIOException(readTimeoutMessage);
+				retryingRead(e);
 			}
 		}
 	}
@@ -226,6 +228,17 @@ public class PollingInputStream extends FilterInputStream {
 		}
 	}
 
+	/**
+	 * Called when a read timed out and is about to be retried. The default
+	 * implementation does nothing.
+	 * 
+	 * @param e the timeout
+	 * @since 3.4
+	 */
+	protected void retryingRead(InterruptedIOException e) {
+		// do nothing
+	}
+
 	/**
 	 * Reads any pending input from the input stream so that the stream can
 	 * savely be closed.
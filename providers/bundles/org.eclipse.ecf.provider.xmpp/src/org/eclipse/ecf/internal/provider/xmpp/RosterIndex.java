@@ -0,0 +1,149 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors: Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.internal.provider.xmpp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.ecf.presence.roster.IRosterItem;
+import org.eclipse.ecf.presence.roster.RosterEntry;
+import org.eclipse.ecf.presence.roster.RosterGroup;
+import org.eclipse.ecf.provider.xmpp.identity.XMPPID;
+
+/**
+ * Indexes the entries of a roster by the bare address (user@host) of their
+ * user and the groups of the roster by their name, so that presences and
+ * roster changes for one contact do not have to walk the whole roster.
+ * <p>
+ * The index does not watch the roster, every change to the roster has to be
+ * made to the index as well.
+ */
+class RosterIndex {
+
+	/**
+	 * The bare address mapped to the {@link List} of all entries for it,
+	 * whether they are in a group or directly in the roster.
+	 */
+	private final Map entries = new HashMap();
+
+	/**
+	 * The name of a group mapped to the {@link RosterGroup} in the roster.
+	 */
+	private final Map groups = new HashMap();
+
+	/**
+	 * The entries that are directly in the roster, not only in a group.
+	 */
+	private final Set topLevelEntries = Collections
+			.newSetFromMap(new IdentityHashMap());
+
+	static String getBareAddress(RosterEntry entry) {
+		return ((XMPPID) entry.getUser().getID()).getUsernameAtHost();
+	}
+
+	/**
+	 * Indexes an item that has been added to the roster, including the entries
+	 * of a group.
+	 */
+	synchronized void addItem(IRosterItem item) {
+		if (item instanceof RosterGroup) {
+			final RosterGroup group = (RosterGroup) item;
+			// like a search of the roster, the first group with a name wins
+			if (!groups.containsKey(group.getName()))
+				groups.put(group.getName(), group);
+			synchronized (group.getEntries()) {
+				for (final Iterator i = group.getEntries().iterator(); i
+						.hasNext();) {
+					final Object o = i.next();
+					if (o instanceof RosterEntry)
+						addEntry((RosterEntry) o);
+				}
+			}
+		} else if (item instanceof RosterEntry) {
+			topLevelEntries.add(item);
+			addEntry((RosterEntry) item);
+		}
+	}
+
+	/**
+	 * Indexes an entry that has been added to a group of the roster.
+	 */
+	synchronized void addEntry(RosterEntry entry) {
+		final String bareAddress = getBareAddress(entry);
+		List sameUser = (List) entries.get(bareAddress);
+		if (sameUser == null) {
+			sameUser = new ArrayList(1);
+			entries.put(bareAddress, sameUser);
+		}
+		for (int i = 0; i < sameUser.size(); i++) {
+			if (sameUser.get(i) == entry)
+				return;
+		}
+		sameUser.add(entry);
+	}
+
+	/**
+	 * Removes an entry that has been removed from the roster and its group.
+	 */
+	synchronized void removeEntry(RosterEntry entry) {
+		topLevelEntries.remove(entry);
+		final String bareAddress = getBareAddress(entry);
+		final List sameUser = (List) entries.get(bareAddress);
+		if (sameUser == null)
+			return;
+		for (int i = 0; i < sameUser.size(); i++) {
+			if (sameUser.get(i) == entry) {
+				sameUser.remove(i);
+				break;
+			}
+		}
+		if (sameUser.isEmpty())
+			entries.remove(bareAddress);
+	}
+
+	/**
+	 * Removes a group that has been removed from the roster. Its entries have
+	 * to be removed separately.
+	 */
+	synchronized void removeGroup(RosterGroup group) {
+		if (groups.get(group.getName()) == group)
+			groups.remove(group.getName());
+	}
+
+	/**
+	 * @return a copy of the entries for the bare address, never
+	 *         <code>null</code>
+	 */
+	synchronized List getEntries(String bareAddress) {
+		final List sameUser = (List) entries.get(bareAddress);
+		return (sameUser == null) ? new ArrayList(0) : new ArrayList(sameUser);
+	}
+
+	synchronized RosterGroup getGroup(String name) {
+		return (RosterGroup) groups.get(name);
+	}
+
+	synchronized boolean isTopLevel(RosterEntry entry) {
+		return topLevelEntries.contains(entry);
+	}
+
+	synchronized void clear() {
+		entries.clear();
+		groups.clear();
+		topLevelEntries.clear();
+	}
+}
@@ -0,0 +1,321 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors: Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.internal.provider.xmpp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.jivesoftware.smack.XMPPConnection;
+import org.jivesoftware.smack.XMPPException;
+import org.jivesoftware.smack.packet.DefaultPacketExtension;
+import org.jivesoftware.smack.packet.PacketExtension;
+import org.jivesoftware.smack.packet.Presence;
+import org.jivesoftware.smack.util.StringUtils;
+import org.jivesoftware.smackx.packet.VCard;
+import org.jivesoftware.smackx.provider.VCardProvider;
+
+/**
+ * Loads the vCards of contacts that announce their avatar with a
+ * <code>vcard-temp:x:update</code> presence extension (XEP-0153), without
+ * blocking the processing of presences.
+ * <p>
+ * vCards are loaded by a few background threads, and a contact's vCard is only
+ * requested once even if several presences arrive while it is loading. Once it
+ * has been loaded, the presences that waited for it are handed to the
+ * {@link Listener}. Loaded vCards are kept for the session, and on disk by the
+ * photo hash of the presence so that a contact's vCard is not loaded again in
+ * later sessions until the avatar changes.
+ */
+class VCardFetcher {
+
+	static final String VCARD_UPDATE_NAMESPACE = "vcard-temp:x:update"; //$NON-NLS-1$
+
+	private static final int MAX_THREADS = 4;
+
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	private static final String CACHE_FILE_SUFFIX = ".xml"; //$NON-NLS-1$
+
+	private static final String CACHE_ENCODING = "UTF-8"; //$NON-NLS-1$
+
+	private static int threadCount = 0;
+
+	/**
+	 * Notified of presences whose vCard has been loaded.
+	 */
+	interface Listener {
+		/**
+		 * @param presences
+		 *            the presences that were received while the vCard was
+		 *            loading, never <code>null</code>
+		 */
+		void vcardLoaded(Presence[] presences);
+	}
+
+	private final XMPPContainerPresenceHelper helper;
+
+	private final Listener listener;
+
+	/**
+	 * The directory for the vCards kept on disk, or <code>null</code> if there
+	 * is none.
+	 */
+	private final File cacheDirectory;
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * The bare address of a contact mapped to its loaded {@link VCard}.
+	 */
+	private final Map vcards = new HashMap();
+
+	/**
+	 * The bare address of a contact mapped to the photo hash that its vCard
+	 * was loaded for, which may be <code>null</code>.
+	 */
+	private final Map photoHashes = new HashMap();
+
+	/**
+	 * The bare address of a contact whose vCard is loading mapped to the
+	 * {@link List} of presences that wait for it.
+	 */
+	private final Map pending = new HashMap();
+
+	VCardFetcher(XMPPContainerPresenceHelper helper, Listener listener,
+			File cacheDirectory) {
+		this.helper = helper;
+		this.listener = listener;
+		this.cacheDirectory = cacheDirectory;
+		executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+				KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						final Thread thread = new Thread(runnable,
+								"XMPP vCard Fetcher " + nextThreadNumber()); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	private static synchronized int nextThreadNumber() {
+		return threadCount++;
+	}
+
+	/**
+	 * Returns the vCard that has been loaded for the sender of a presence.
+	 *
+	 * @param from
+	 *            the address of the sender
+	 * @return the sender's vCard, or <code>null</code> if it has not been
+	 *         loaded
+	 */
+	synchronized VCard getVCard(String from) {
+		return (from == null) ? null : (VCard) vcards.get(StringUtils
+				.parseBareAddress(from));
+	}
+
+	/**
+	 * Starts to load the vCard for a presence unless it announces no vCard or
+	 * the current vCard has already been loaded.
+	 *
+	 * @param presence
+	 *            the received presence
+	 * @return <code>true</code> if the vCard is loading and the presence will
+	 *         be handed to the listener afterwards, <code>false</code> if
+	 *         there is nothing to load
+	 */
+	synchronized boolean fetch(Presence presence) {
+		final PacketExtension update = presence.getExtension("x", //$NON-NLS-1$
+				VCARD_UPDATE_NAMESPACE);
+		final String from = presence.getFrom();
+		if (update == null || from == null)
+			return false;
+		final String photoHash = (update instanceof DefaultPacketExtension) ? ((DefaultPacketExtension) update)
+				.getValue("photo") //$NON-NLS-1$
+				: null;
+		final String bareAddress = StringUtils.parseBareAddress(from);
+		// no photo hash means that the contact does not know it yet
+		if (vcards.containsKey(bareAddress)
+				&& (photoHash == null || photoHash.equals(photoHashes
+						.get(bareAddress))))
+			return false;
+		List waiting = (List) pending.get(bareAddress);
+		if (waiting == null) {
+			waiting = new ArrayList();
+			pending.put(bareAddress, waiting);
+			executor.execute(new Runnable() {
+				public void run() {
+					load(bareAddress, photoHash);
+				}
+			});
+		}
+		waiting.add(presence);
+		return true;
+	}
+
+	/**
+	 * Drops the loaded vCards. vCards that are still loading will not be
+	 * handed to the listener.
+	 */
+	synchronized void clear() {
+		vcards.clear();
+		photoHashes.clear();
+		pending.clear();
+	}
+
+	private void load(String bareAddress, String photoHash) {
+		final File cacheFile = getCacheFile(bareAddress, photoHash);
+		VCard vcard = readCacheFile(cacheFile);
+		if (vcard == null) {
+			vcard = new VCard();
+			final XMPPConnection connection = helper.getXMPPConnection();
+			try {
+				if (connection == null)
+					throw new XMPPException("Not connected"); //$NON-NLS-1$
+				vcard.load(connection, bareAddress);
+				if (cacheFile != null
+						&& photoHash.equalsIgnoreCase(vcard.getAvatarHash()))
+					writeCacheFile(cacheFile, vcard);
+			} catch (final XMPPException e) {
+				// do not ask again during this session
+				helper.traceStack("vcard loading exception", e); //$NON-NLS-1$
+			}
+		}
+		final List waiting;
+		synchronized (this) {
+			waiting = (List) pending.remove(bareAddress);
+			if (waiting == null)
+				// cleared meanwhile
+				return;
+			vcards.put(bareAddress, vcard);
+			photoHashes.put(bareAddress, photoHash);
+		}
+		listener.vcardLoaded((Presence[]) waiting.toArray(new Presence[waiting
+				.size()]));
+	}
+
+	/**
+	 * Returns the cache file for a contact's vCard with the given photo. Every
+	 * contact has its own directory, named after the hash of its address, so
+	 * that contacts with the same avatar do not share a vCard. The file is
+	 * named after the photo hash.
+	 */
+	private File getCacheFile(String bareAddress, String photoHash) {
+		if (cacheDirectory == null || photoHash == null
+				|| !isSHA1(photoHash))
+			return null;
+		return new File(new File(cacheDirectory, getAddressHash(bareAddress)),
+				photoHash.toLowerCase() + CACHE_FILE_SUFFIX);
+	}
+
+	private static boolean isSHA1(String hash) {
+		// the hash comes from the contact, make sure it is a safe file name
+		if (hash.length() != 40)
+			return false;
+		for (int i = 0; i < hash.length(); i++) {
+			if (Character.digit(hash.charAt(i), 16) == -1)
+				return false;
+		}
+		return true;
+	}
+
+	private static String getAddressHash(String bareAddress) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			return StringUtils.encodeHex(digest.digest(bareAddress
+					.toLowerCase().getBytes(CACHE_ENCODING)));
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e.getMessage());
+		} catch (final IOException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	private VCard readCacheFile(File cacheFile) {
+		if (cacheFile == null || !cacheFile.isFile())
+			return null;
+		InputStream in = null;
+		try {
+			in = new FileInputStream(cacheFile);
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				bytes.write(buffer, 0, read);
+			return VCardProvider.createVCardFromXML(bytes
+					.toString(CACHE_ENCODING));
+		} catch (final Exception e) {
+			helper.traceStack("vcard cache read exception", e); //$NON-NLS-1$
+			cacheFile.delete();
+			return null;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (final IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private void writeCacheFile(File cacheFile, VCard vcard) {
+		final File contactDirectory = cacheFile.getParentFile();
+		if (!contactDirectory.isDirectory() && !contactDirectory.mkdirs())
+			return;
+		// remove the vCards that were kept for the contact's previous avatars
+		final File[] files = contactDirectory.listFiles();
+		for (int i = 0; files != null && i < files.length; i++) {
+			if (files[i].getName().endsWith(CACHE_FILE_SUFFIX))
+				files[i].delete();
+		}
+		final File tempFile = new File(contactDirectory, cacheFile.getName()
+				+ ".tmp"); //$NON-NLS-1$
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(tempFile);
+			out.write(vcard.getChildElementXML().getBytes(CACHE_ENCODING));
+			out.close();
+			out = null;
+			if (!tempFile.renameTo(cacheFile))
+				tempFile.delete();
+		} catch (final IOException e) {
+			helper.traceStack("vcard cache write exception", e); //$NON-NLS-1$
+			tempFile.delete();
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (final IOException e) {
+					// ignore
+				}
+				tempFile.delete();
+			}
+		}
+	}
+}
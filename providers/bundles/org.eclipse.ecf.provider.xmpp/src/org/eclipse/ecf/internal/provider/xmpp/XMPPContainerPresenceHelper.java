@@ -14,12 +14,11 @@ package org.eclipse.ecf.internal.provider.xmpp;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
 import org.eclipse.core.runtime.IAdapterManager;
-import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.ecf.core.identity.ID;
 import org.eclipse.ecf.core.identity.IDFactory;
 import org.eclipse.ecf.core.sharedobject.ISharedObject;
@@ -29,6 +28,7 @@ import org.eclipse.ecf.core.sharedobject.SharedObjectInitException;
 import org.eclipse.ecf.core.sharedobject.events.ISharedObjectActivatedEvent;
 import org.eclipse.ecf.core.sharedobject.events.ISharedObjectMessageEvent;
 import org.eclipse.ecf.core.sharedobject.events.ISharedObjectMessageListener;
+import org.eclipse.ecf.core.sharedobject.util.QueueException;
 import org.eclipse.ecf.core.user.IUser;
 import org.eclipse.ecf.core.user.User;
 import org.eclipse.ecf.core.util.ECFException;
@@ -53,12 +53,9 @@ import org.eclipse.ecf.presence.roster.RosterGroup;
 import org.eclipse.ecf.provider.xmpp.XMPPContainer;
 import org.eclipse.ecf.provider.xmpp.identity.XMPPID;
 import org.eclipse.ecf.provider.xmpp.identity.XMPPRoomID;
-import org.eclipse.equinox.concurrent.future.IFuture;
-import org.eclipse.equinox.concurrent.future.IProgressRunnable;
-import org.eclipse.equinox.concurrent.future.ThreadsExecutor;
 import org.jivesoftware.smack.Roster;
 import org.jivesoftware.smack.RosterEntry;
-import org.jivesoftware.smack.XMPPException;
+import org.jivesoftware.smack.XMPPConnection;
 import org.jivesoftware.smack.packet.IQ;
 import org.jivesoftware.smack.packet.Message;
 import org.jivesoftware.smack.packet.Presence;
@@ -90,6 +87,8 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 	public static final String VCARD_PHONE_WORK_CELL = VCARD_PHONE_WORK
 			+ ".cell";
 
+	private static final String VCARD_CACHE_DIRECTORY = "vcards";
+
 	private ISharedObjectConfig config = null;
 
 	private final List sharedObjectMessageListeners = new ArrayList();
@@ -100,11 +99,24 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 
 	private final List presenceListeners = new ArrayList();
 
+	private final VCardFetcher vcardFetcher;
+
+	/**
+	 * The address of a sender mapped to the last presence received from it.
+	 */
+	private final Map latestPresences = new HashMap();
+
 	public XMPPContainerPresenceHelper(XMPPContainer container) {
 		this.container = container;
 		chatManager = new XMPPChatManager(this);
 		roster = new org.eclipse.ecf.presence.roster.Roster(container);
 		rosterManager = new PresenceRosterManager(roster);
+		final XmppPlugin plugin = XmppPlugin.getDefault();
+		vcardFetcher = new VCardFetcher(this, new VCardFetcher.Listener() {
+			public void vcardLoaded(Presence[] presences) {
+				handleVCardLoaded(presences);
+			}
+		}, (plugin == null) ? null : plugin.getDataFile(VCARD_CACHE_DIRECTORY));
 	}
 
 	// ISharedObject implementation
@@ -165,7 +177,10 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 		synchronized (presenceListeners) {
 			presenceListeners.clear();
 		}
-		vcardCache.clear();
+		synchronized (latestPresences) {
+			latestPresences.clear();
+		}
+		vcardFetcher.clear();
 	}
 
 	/*
@@ -176,7 +191,7 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 	 * .ID)
 	 */
 	public void dispose(ID containerID) {
-		vcardCache.clear();
+		vcardFetcher.clear();
 	}
 
 	/*
@@ -201,6 +216,16 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 
 	protected PresenceRosterManager rosterManager;
 
+	private final RosterIndex rosterIndex = new RosterIndex();
+
+	/**
+	 * Set while the items of a roster packet are applied, so that listeners
+	 * get a single roster update for all of them.
+	 */
+	private boolean batchingRosterUpdates = false;
+
+	private boolean rosterChanged = false;
+
 	class PresenceRosterManager extends AbstractRosterManager {
 
 		public PresenceRosterManager(
@@ -224,8 +249,14 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 			fireRosterRemove(entry);
 		}
 
+		public void notifyRosterEntriesChanged(IRosterEntry[] added,
+				IRosterEntry[] removed) {
+			fireRosterEntriesChanged(added, removed);
+		}
+
 		public void disconnect() {
 			getRoster().getItems().clear();
+			rosterIndex.clear();
 			super.disconnect();
 			fireRosterUpdate(roster);
 		}
@@ -415,6 +446,18 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 	}
 
 	private void addUnique(Collection existingItems, IRosterItem newItem) {
+		if (newItem instanceof org.eclipse.ecf.presence.roster.RosterEntry) {
+			addUniqueEntry(existingItems,
+					(org.eclipse.ecf.presence.roster.RosterEntry) newItem);
+			return;
+		} else if (newItem instanceof org.eclipse.ecf.presence.roster.RosterGroup) {
+			// groups are only equal to themselves
+			if (rosterIndex.getGroup(newItem.getName()) != newItem) {
+				existingItems.add(newItem);
+				rosterIndex.addItem(newItem);
+			}
+			return;
+		}
 		List toAdd = new ArrayList();
 		if (existingItems.size() == 0)
 			toAdd.add(newItem);
@@ -436,13 +479,53 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 			existingItems.add(i.next());
 	}
 
+	/**
+	 * Adds an entry to the roster like {@link #addUnique(Collection, IRosterItem)}
+	 * does, but only compares it with the roster's entries for the same user.
+	 */
+	private void addUniqueEntry(Collection existingItems,
+			org.eclipse.ecf.presence.roster.RosterEntry newEntry) {
+		boolean addNewItem = true;
+		final List sameUser = rosterIndex.getEntries(RosterIndex
+				.getBareAddress(newEntry));
+		for (final Iterator i = sameUser.iterator(); i.hasNext();) {
+			final org.eclipse.ecf.presence.roster.RosterEntry existing = (org.eclipse.ecf.presence.roster.RosterEntry) i
+					.next();
+			if (!rosterIndex.isTopLevel(existing))
+				continue;
+			// If the same then we don't add it
+			if (existing.equals(newEntry))
+				addNewItem = false;
+			// else if the new item should replace the existing then remove
+			if (replace(existing, newEntry)) {
+				existingItems.remove(existing);
+				rosterIndex.removeEntry(existing);
+			}
+		}
+		if (addNewItem) {
+			existingItems.add(newEntry);
+			rosterIndex.addItem(newEntry);
+		}
+	}
+
 	private void addUniqueToRoster(IRosterItem[] newItems) {
 		Collection existingItems = roster.getItems();
 		synchronized (existingItems) {
 			for (int i = 0; i < newItems.length; i++)
 				addUnique(existingItems, newItems[i]);
 		}
-		rosterManager.notifyRosterUpdate(roster);
+		notifyRosterChanged();
+	}
+
+	/**
+	 * Notifies the listeners that the roster has changed, or only notes it if
+	 * the items of a roster packet are being applied.
+	 */
+	private void notifyRosterChanged() {
+		if (batchingRosterUpdates)
+			rosterChanged = true;
+		else
+			rosterManager.notifyRosterUpdate(roster);
 	}
 
 	protected ISharedObjectContext getContext() {
@@ -477,24 +560,40 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 			final RosterPacket rosterPacket = (RosterPacket) iq;
 			if (rosterPacket.getType() == IQ.Type.SET
 					|| rosterPacket.getType() == IQ.Type.RESULT) {
-				for (final Iterator i = rosterPacket.getRosterItems()
-						.iterator(); i.hasNext();) {
-					final RosterPacket.Item item = (RosterPacket.Item) i.next();
-					final RosterPacket.ItemType itemType = item.getItemType();
-					XMPPID newID = createIDFromName(item.getUser());
-					boolean remove = false;
-					if (itemType == RosterPacket.ItemType.none
-							|| itemType == RosterPacket.ItemType.remove) {
-						removeItemFromRoster(roster.getItems(),
-								createIDFromName(item.getUser()));
-						remove = true;
-					} else {
-						remove = false;
-						addUniqueToRoster(createRosterEntries(newID, item));
+				// apply all items first and notify about them afterwards
+				final List added = new ArrayList();
+				final List removed = new ArrayList();
+				batchingRosterUpdates = true;
+				try {
+					for (final Iterator i = rosterPacket.getRosterItems()
+							.iterator(); i.hasNext();) {
+						final RosterPacket.Item item = (RosterPacket.Item) i
+								.next();
+						final RosterPacket.ItemType itemType = item
+								.getItemType();
+						XMPPID newID = createIDFromName(item.getUser());
+						if (itemType == RosterPacket.ItemType.none
+								|| itemType == RosterPacket.ItemType.remove) {
+							removeItemFromRoster(roster.getItems(),
+									createIDFromName(item.getUser()));
+							removed.add(createRosterEntry(newID, item));
+						} else {
+							addUniqueToRoster(createRosterEntries(newID, item));
+							added.add(createRosterEntry(newID, item));
+						}
 					}
-					// In both cases fire set roster entry
-					fireSetRosterEntry(remove, createRosterEntry(newID, item));
+				} finally {
+					batchingRosterUpdates = false;
+				}
+				if (rosterChanged) {
+					rosterChanged = false;
+					rosterManager.notifyRosterUpdate(roster);
 				}
+				// batch listeners get all entries of the packet at once
+				rosterManager.notifyRosterEntriesChanged(
+						(IRosterEntry[]) added.toArray(new IRosterEntry[added
+								.size()]), (IRosterEntry[]) removed
+								.toArray(new IRosterEntry[removed.size()]));
 			}
 		} else {
 			trace("Received non rosterpacket IQ message");
@@ -512,45 +611,35 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 			XMPPID itemIDToRemove) {
 		boolean removed = false;
 		synchronized (rosterItems) {
-			for (final Iterator i = rosterItems.iterator(); i.hasNext();) {
-				final IRosterItem item = (IRosterItem) i.next();
-				if (item instanceof org.eclipse.ecf.presence.roster.RosterGroup) {
-					final org.eclipse.ecf.presence.roster.RosterGroup group = (org.eclipse.ecf.presence.roster.RosterGroup) item;
-					removed = removeItemFromRosterGroup(group, itemIDToRemove);
+			final List sameUser = rosterIndex.getEntries(itemIDToRemove
+					.getUsernameAtHost());
+			for (final Iterator i = sameUser.iterator(); i.hasNext();) {
+				final org.eclipse.ecf.presence.roster.RosterEntry entry = (org.eclipse.ecf.presence.roster.RosterEntry) i
+						.next();
+				if (!entry.getUser().getID().equals(itemIDToRemove))
+					continue;
+				final IRosterItem parent = entry.getParent();
+				if (parent instanceof org.eclipse.ecf.presence.roster.RosterGroup) {
+					final org.eclipse.ecf.presence.roster.RosterGroup group = (org.eclipse.ecf.presence.roster.RosterGroup) parent;
+					group.remove(entry);
 					// If group is empty, remove it too
-					if (group.getEntries().size() == 0)
-						i.remove();
-				} else if (item instanceof org.eclipse.ecf.presence.roster.RosterEntry) {
-					if (((org.eclipse.ecf.presence.roster.RosterEntry) item)
-							.getUser().getID().equals(itemIDToRemove)) {
-						i.remove();
-						removed = true;
+					if (group.getEntries().size() == 0
+							&& rosterIndex.getGroup(group.getName()) == group) {
+						rosterItems.remove(group);
+						rosterIndex.removeGroup(group);
 					}
 				}
+				if (rosterIndex.isTopLevel(entry))
+					rosterItems.remove(entry);
+				rosterIndex.removeEntry(entry);
+				removed = true;
 			}
 		}
 		if (removed)
-			rosterManager.notifyRosterUpdate(roster);
+			notifyRosterChanged();
 
 	}
 
-	private boolean removeItemFromRosterGroup(
-			org.eclipse.ecf.presence.roster.RosterGroup group,
-			XMPPID itemIDToRemove) {
-		final Collection groupEntries = group.getEntries();
-		synchronized (groupEntries) {
-			for (final Iterator i = group.getEntries().iterator(); i.hasNext();) {
-				final org.eclipse.ecf.presence.roster.RosterEntry entry = (org.eclipse.ecf.presence.roster.RosterEntry) i
-						.next();
-				if (entry.getUser().getID().equals(itemIDToRemove)) {
-					i.remove();
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-
 	protected void handleMessageEvent(MessageEvent evt) {
 		Message msg = evt.getMessage();
 		final String from = msg.getFrom();
@@ -596,13 +685,48 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 				|| newPresence.getType().equals(IPresence.Type.UNSUBSCRIBE)
 				|| newPresence.getType().equals(IPresence.Type.SUBSCRIBED)
 				|| newPresence.getType().equals(IPresence.Type.UNSUBSCRIBED)) {
+			// subscription requests often come from strangers, and are
+			// delivered only once, so their vCard is not loaded
 			rosterManager.notifySubscriptionListener(fromID, newPresence);
 		} else {
+			if (from != null) {
+				synchronized (latestPresences) {
+					latestPresences.put(from, xmppPresence);
+				}
+			}
+			// the presence is handled again once its vCard has been loaded
+			vcardFetcher.fetch(xmppPresence);
 			updatePresence(fromID, newPresence);
 			firePresenceListeners(fromID, newPresence);
 		}
 	}
 
+	/**
+	 * Hands the presences that waited for their vCard back to the shared
+	 * object's queue, unless newer presences have been received since.
+	 */
+	private void handleVCardLoaded(Presence[] presences) {
+		final ISharedObjectContext context = (config == null) ? null
+				: getContext();
+		if (context == null)
+			return;
+		for (int i = 0; i < presences.length; i++) {
+			synchronized (latestPresences) {
+				if (latestPresences.get(presences[i].getFrom()) != presences[i])
+					continue;
+			}
+			try {
+				context.getQueue().enqueue(new PresenceEvent(presences[i]));
+			} catch (final QueueException e) {
+				traceStack("Exception in handleVCardLoaded", e);
+			}
+		}
+	}
+
+	XMPPConnection getXMPPConnection() {
+		return container.getXMPPConnection();
+	}
+
 	private void firePresenceListeners(ID fromID, IPresence presence) {
 		List toNotify = null;
 		synchronized (presenceListeners) {
@@ -618,21 +742,15 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 		final Collection rosterItems = roster.getItems();
 		List newEntrys = new ArrayList();
 		synchronized (rosterItems) {
-			for (final Iterator i = roster.getItems().iterator(); i.hasNext();) {
-				final IRosterItem item = (IRosterItem) i.next();
-				if (item instanceof IRosterGroup) {
-					AdditionalClientRosterEntry[] es = updatePresenceInGroup(
-							(IRosterGroup) item, fromID, newPresence);
-					for (int j = 0; j < es.length; j++) {
-						newEntrys.add(es[j]);
-					}
-				} else if (item instanceof org.eclipse.ecf.presence.roster.RosterEntry) {
-					AdditionalClientRosterEntry entry = updatePresenceForMatchingEntry(
-							(org.eclipse.ecf.presence.roster.RosterEntry) item,
-							fromID, newPresence);
-					if (entry != null)
-						newEntrys.add(entry);
-				}
+			// only the entries for the same user can match
+			final List sameUser = rosterIndex.getEntries(fromID
+					.getUsernameAtHost());
+			for (final Iterator i = sameUser.iterator(); i.hasNext();) {
+				AdditionalClientRosterEntry entry = updatePresenceForMatchingEntry(
+						(org.eclipse.ecf.presence.roster.RosterEntry) i.next(),
+						fromID, newPresence);
+				if (entry != null)
+					newEntrys.add(entry);
 			}
 		}
 
@@ -674,43 +792,8 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 		}
 	}
 
-	private int countClientsInRosterGroup(
-			org.eclipse.ecf.presence.roster.RosterGroup group, XMPPID oldID) {
-		Collection groupItems = group.getEntries();
-		int count = 0;
-		for (final Iterator i = groupItems.iterator(); i.hasNext();) {
-			final IRosterItem item = (IRosterItem) i.next();
-			if (item instanceof org.eclipse.ecf.presence.roster.RosterEntry) {
-				org.eclipse.ecf.presence.roster.RosterEntry entry = (org.eclipse.ecf.presence.roster.RosterEntry) item;
-				XMPPID entryID = (XMPPID) entry.getUser().getID();
-				if (entryID.getUsernameAtHost().equals(
-						oldID.getUsernameAtHost()))
-					count++;
-			}
-		}
-		return count;
-	}
-
 	private int countClientsInRoster(XMPPID oldID) {
-		Collection rosterItems = roster.getItems();
-		int count = 0;
-		synchronized (rosterItems) {
-			for (final Iterator i = rosterItems.iterator(); i.hasNext();) {
-				final IRosterItem item = (IRosterItem) i.next();
-				if (item instanceof org.eclipse.ecf.presence.roster.RosterGroup) {
-					final org.eclipse.ecf.presence.roster.RosterGroup group = (org.eclipse.ecf.presence.roster.RosterGroup) item;
-					count += countClientsInRosterGroup(group, oldID);
-				} else if (item instanceof org.eclipse.ecf.presence.roster.RosterEntry) {
-					org.eclipse.ecf.presence.roster.RosterEntry entry = (org.eclipse.ecf.presence.roster.RosterEntry) item;
-					XMPPID entryID = (XMPPID) entry.getUser().getID();
-					if (entryID.getUsernameAtHost().equals(
-							oldID.getUsernameAtHost())) {
-						count++;
-					}
-				}
-			}
-		}
-		return count;
+		return rosterIndex.getEntries(oldID.getUsernameAtHost()).size();
 	}
 
 	private AdditionalClientRosterEntry removeEntryFromRoster(XMPPID oldID,
@@ -762,29 +845,13 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 		return null;
 	}
 
-	private AdditionalClientRosterEntry[] updatePresenceInGroup(
-			IRosterGroup group, XMPPID fromID, IPresence newPresence) {
-		List results = new ArrayList();
-		final Collection groupEntries = group.getEntries();
-		synchronized (groupEntries) {
-			for (final Iterator i = group.getEntries().iterator(); i.hasNext();) {
-				AdditionalClientRosterEntry newEntry = updatePresenceForMatchingEntry(
-						(org.eclipse.ecf.presence.roster.RosterEntry) i.next(),
-						fromID, newPresence);
-				if (newEntry != null)
-					results.add(newEntry);
-			}
-		}
-		return (AdditionalClientRosterEntry[]) results
-				.toArray(new AdditionalClientRosterEntry[] {});
-	}
-
 	protected void handleRoster(Roster roster) {
 		for (final Iterator i = roster.getEntries().iterator(); i.hasNext();) {
 			final IRosterItem[] items = createRosterEntries((RosterEntry) i
 					.next());
 			for (int j = 0; j < items.length; j++) {
 				this.roster.addItem(items[j]);
+				rosterIndex.addItem(items[j]);
 			}
 		}
 		rosterManager.notifyRosterUpdate(this.roster);
@@ -815,36 +882,6 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 
 	}
 
-	private final Map vcardCache = new WeakHashMap();
-
-	private VCard getFromCache(String id) {
-		if (id == null)
-			return null;
-		return (VCard) vcardCache.get(id);
-	}
-
-	private void addToCache(String id, VCard card) {
-		vcardCache.put(id, card);
-	}
-
-	private VCard getVCardForPresence(Presence xmppPresence) {
-		VCard result = null;
-		if (xmppPresence.getExtension("x", "vcard-temp:x:update") != null) {
-			final String from = xmppPresence.getFrom();
-			result = getFromCache(from);
-			if (result == null && from != null) {
-				result = new VCard();
-				try {
-					result.load(container.getXMPPConnection(), from);
-					addToCache(from, result);
-				} catch (final XMPPException e) {
-					traceStack("vcard loading exception", e);
-				}
-			}
-		}
-		return result;
-	}
-
 	private Map addVCardProperties(VCard vcard, Map props) {
 		if (vcard == null)
 			return props;
@@ -885,10 +922,9 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 
 		private static final long serialVersionUID = 7843634971520771692L;
 
-		IFuture asyncResult = null;
 		String fromID = null;
 
-		XMPPPresence(String fromID, Presence xmppPresence, IFuture future) {
+		XMPPPresence(String fromID, Presence xmppPresence) {
 			super(createIPresenceType(xmppPresence), xmppPresence.getStatus(),
 					createIPresenceMode(xmppPresence), ECFConnection
 							.getPropertiesFromPacket(xmppPresence), null);
@@ -896,16 +932,8 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 		}
 
 		private void fillFromVCard() {
-			VCard card = getFromCache(fromID);
-			if (card == null && asyncResult != null) {
-				try {
-					card = (VCard) asyncResult.get();
-					asyncResult = null;
-				} catch (final Exception e) {
-				}
-			}
+			final VCard card = vcardFetcher.getVCard(fromID);
 			if (card != null) {
-				addToCache(fromID, card);
 				final byte[] bytes = card.getAvatar();
 				this.pictureData = (bytes == null) ? new byte[0] : bytes;
 				this.properties = addVCardProperties(card, this.properties);
@@ -934,15 +962,7 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 	}
 
 	protected IPresence createIPresence(final Presence xmppPresence) {
-		final IFuture asyncResult = new ThreadsExecutor().execute(
-				new IProgressRunnable() {
-					public Object run(IProgressMonitor monitor)
-							throws Exception {
-						return getVCardForPresence(xmppPresence);
-					}
-				}, null);
-		return new XMPPPresence(xmppPresence.getFrom(), xmppPresence,
-				asyncResult);
+		return new XMPPPresence(xmppPresence.getFrom(), xmppPresence);
 	}
 
 	protected Presence createPresence(IPresence ipresence) {
@@ -1075,12 +1095,15 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 
 				if (findRosterEntry(rosterGroup, user) == null) {
 					// Now create new roster entry
-					new org.eclipse.ecf.presence.roster.RosterEntry(
+					final org.eclipse.ecf.presence.roster.RosterEntry newEntry = new org.eclipse.ecf.presence.roster.RosterEntry(
 							rosterGroup, user,
 							new org.eclipse.ecf.presence.Presence(
 									IPresence.Type.UNAVAILABLE,
 									IPresence.Type.UNAVAILABLE.toString(),
 									IPresence.Mode.AWAY));
+					// the group is in the roster already
+					if (groupFound)
+						rosterIndex.addEntry(newEntry);
 				}
 				// Only add localGrp if not already in list
 				if (!groupFound)
@@ -1139,10 +1162,25 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 
 	private org.eclipse.ecf.presence.roster.RosterEntry findRosterEntry(
 			org.eclipse.ecf.presence.roster.RosterGroup rosterGroup, IUser user) {
-		if (rosterGroup != null)
+		if (rosterGroup != null
+				&& rosterIndex.getGroup(rosterGroup.getName()) != rosterGroup)
+			// a new group that is not in the roster yet
 			return findRosterEntry(rosterGroup.getEntries(), user);
-		else
-			return findRosterEntry(roster.getItems(), user);
+		if (!(user.getID() instanceof XMPPID))
+			return findRosterEntry(rosterGroup == null ? roster.getItems()
+					: rosterGroup.getEntries(), user);
+		final List sameUser = rosterIndex.getEntries(((XMPPID) user.getID())
+				.getUsernameAtHost());
+		for (final Iterator i = sameUser.iterator(); i.hasNext();) {
+			final org.eclipse.ecf.presence.roster.RosterEntry entry = (org.eclipse.ecf.presence.roster.RosterEntry) i
+					.next();
+			if (!entry.getUser().getID().equals(user.getID()))
+				continue;
+			if ((rosterGroup == null) ? rosterIndex.isTopLevel(entry) : entry
+					.getParent() == rosterGroup)
+				return entry;
+		}
+		return null;
 	}
 
 	private org.eclipse.ecf.presence.roster.RosterEntry findRosterEntry(
@@ -1170,13 +1208,7 @@ public class XMPPContainerPresenceHelper implements ISharedObject {
 
 	protected org.eclipse.ecf.presence.roster.RosterGroup findRosterGroup(
 			Object parent, String grp) {
-		final Collection items = roster.getItems();
-		for (final Iterator i = items.iterator(); i.hasNext();) {
-			final IRosterItem item = (IRosterItem) i.next();
-			if (item.getName().equals(grp))
-				return (org.eclipse.ecf.presence.roster.RosterGroup) item;
-		}
-		return null;
+		return rosterIndex.getGroup(grp);
 	}
 
 	// utility methods
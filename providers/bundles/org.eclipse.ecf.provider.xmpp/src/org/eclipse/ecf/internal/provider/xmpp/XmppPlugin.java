@@ -11,6 +11,7 @@
  *****************************************************************************/
 package org.eclipse.ecf.internal.provider.xmpp;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -120,6 +121,17 @@ public class XmppPlugin implements BundleActivator {
 		plugin = null;
 	}
 
+	/**
+	 * Returns a file in this bundle's persistent storage area.
+	 * @param filename the name of the file
+	 * @return the file, or <code>null</code> if the bundle is not active or the
+	 * framework has no file system support
+	 */
+	public File getDataFile(String filename) {
+		final BundleContext c = context;
+		return (c == null) ? null : c.getDataFile(filename);
+	}
+
 	public void registerService(IPresenceService service) {
 		if (context != null) {
 			services.put(service, context.registerService(IPresenceService.class.getName(), service, null));
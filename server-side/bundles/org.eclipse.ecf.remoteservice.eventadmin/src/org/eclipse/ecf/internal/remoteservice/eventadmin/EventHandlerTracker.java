@@ -15,8 +15,10 @@ package org.eclipse.ecf.internal.remoteservice.eventadmin;
 
 import java.security.Permission;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +32,11 @@ import org.osgi.service.log.LogService;
 import org.osgi.util.tracker.ServiceTracker;
 
 public class EventHandlerTracker extends ServiceTracker implements EventDispatcher{
+	/**
+	 * Maximum number of topics for which the matching handlers are cached.
+	 */
+	public static final int MAX_CACHED_TOPICS = 1024;
+
 	private final LogService log;
 	// * List<EventHandlerWrapper> of all handlers with topic of "*"
 	private final List globalWildcard;
@@ -38,6 +45,11 @@ public class EventHandlerTracker extends ServiceTracker implements EventDispatch
 	private final Map partialWildcard;
 	// Map<String,List<EventHandlerWrapper>> key is topic name
 	private final Map topicName;
+	// Map<String,Set<EventHandlerWrapper>> key is topic name. Cleared whenever
+	// the buckets change.
+	private final Map handlerCache = new HashMap();
+	// notified when the set of subscribed topic patterns changes
+	private volatile Runnable topicsChangedListener;
 
 	public EventHandlerTracker(BundleContext context, LogService log) {
 		super(context, EventHandler.class.getName(), null);
@@ -50,33 +62,44 @@ public class EventHandlerTracker extends ServiceTracker implements EventDispatch
 	public Object addingService(ServiceReference reference) {
 		EventHandlerWrapper wrapper = new EventHandlerWrapper(reference,
 				context, log);
+		boolean changed = false;
 		synchronized (this) {
 			if (wrapper.init()) {
-				bucket(wrapper);
+				changed = bucket(wrapper);
 			}
 		}
+		if (changed)
+			fireTopicsChanged();
 		return wrapper;
 	}
 
 	public void modifiedService(ServiceReference reference, Object service) {
 		EventHandlerWrapper wrapper = (EventHandlerWrapper) service;
+		boolean changed;
+		boolean bucketed = false;
 		synchronized (this) {
-			unbucket(wrapper);
+			changed = unbucket(wrapper);
 			if (wrapper.init()) {
-				bucket(wrapper);
-				return;
+				changed |= bucket(wrapper);
+				bucketed = true;
 			}
 		}
 
-		wrapper.flush(); // needs to be called outside sync region
+		if (!bucketed)
+			wrapper.flush(); // needs to be called outside sync region
+		if (changed)
+			fireTopicsChanged();
 	}
 
 	public void removedService(ServiceReference reference, Object service) {
 		EventHandlerWrapper wrapper = (EventHandlerWrapper) service;
+		boolean changed;
 		synchronized (this) {
-			unbucket(wrapper);
+			changed = unbucket(wrapper);
 		}
 		wrapper.flush(); // needs to be called outside sync region
+		if (changed)
+			fireTopicsChanged();
 	}
 
 	/**
@@ -85,15 +108,20 @@ public class EventHandlerTracker extends ServiceTracker implements EventDispatch
 	 * 
 	 * @param wrapper
 	 *            The wrapper to place in buckets.
+	 * @return true if a new bucket was created, i.e. the set of subscribed
+	 *         topic patterns has changed
 	 * @GuardedBy this
 	 */
-	private void bucket(EventHandlerWrapper wrapper) {
+	private boolean bucket(EventHandlerWrapper wrapper) {
+		handlerCache.clear();
+		boolean changed = false;
 		final String[] topics = wrapper.getTopics();
 		final int length = (topics == null) ? 0 : topics.length;
 		for (int i = 0; i < length; i++) {
 			String topic = topics[i];
 			// global wildcard
 			if (topic.equals("*")) { //$NON-NLS-1$
+				changed |= globalWildcard.isEmpty();
 				globalWildcard.add(wrapper);
 			}
 			// partial wildcard
@@ -108,6 +136,7 @@ public class EventHandlerTracker extends ServiceTracker implements EventDispatch
 				if (wrappers == null) {
 					wrappers = new ArrayList();
 					partialWildcard.put(key, wrappers);
+					changed = true;
 				}
 				wrappers.add(wrapper);
 			}
@@ -117,10 +146,12 @@ public class EventHandlerTracker extends ServiceTracker implements EventDispatch
 				if (wrappers == null) {
 					wrappers = new ArrayList();
 					topicName.put(topic, wrappers);
+					changed = true;
 				}
 				wrappers.add(wrapper);
 			}
 		}
+		return changed;
 	}
 
 	/**
@@ -128,16 +159,20 @@ public class EventHandlerTracker extends ServiceTracker implements EventDispatch
 	 * 
 	 * @param wrapper
 	 *            The wrapper to remove from the buckets.
+	 * @return true if a bucket was removed, i.e. the set of subscribed topic
+	 *         patterns has changed
 	 * @GuardedBy this
 	 */
-	private void unbucket(EventHandlerWrapper wrapper) {
+	private boolean unbucket(EventHandlerWrapper wrapper) {
+		handlerCache.clear();
+		boolean changed = false;
 		final String[] topics = wrapper.getTopics();
 		final int length = (topics == null) ? 0 : topics.length;
 		for (int i = 0; i < length; i++) {
 			String topic = topics[i];
 			// global wilcard
 			if (topic.equals("*")) { //$NON-NLS-1$
-				globalWildcard.remove(wrapper);
+				changed |= globalWildcard.remove(wrapper) && globalWildcard.isEmpty();
 			}
 			// partial wildcard
 			else if (topic.endsWith("/*")) { //$NON-NLS-1$
@@ -152,6 +187,7 @@ public class EventHandlerTracker extends ServiceTracker implements EventDispatch
 					wrappers.remove(wrapper);
 					if (wrappers.size() == 0) {
 						partialWildcard.remove(key);
+						changed = true;
 					}
 				}
 			}
@@ -162,20 +198,42 @@ public class EventHandlerTracker extends ServiceTracker implements EventDispatch
 					wrappers.remove(wrapper);
 					if (wrappers.size() == 0) {
 						topicName.remove(topic);
+						changed = true;
 					}
 				}
 			}
 		}
+		return changed;
 	}
 
 	/**
 	 * Return the set of handlers which subscribe to the event topic. A set is
 	 * used to ensure a handler is not called for an event more than once.
+	 * <p>
+	 * The result is cached per topic until the tracked handlers change, so
+	 * callers get the identical set for the same topic as long as the handlers
+	 * have not changed, and may cache anything derived from it.
+	 * </p>
 	 * 
 	 * @param topic
-	 * @return a set of handlers
+	 * @return an unmodifiable set of handlers
 	 */
 	public synchronized Set getHandlers(final String topic) {
+		Set handlers = (Set) handlerCache.get(topic);
+		if (handlers == null) {
+			handlers = Collections.unmodifiableSet(findHandlers(topic));
+			// topics may be generated, so don't let the cache grow unbounded
+			if (handlerCache.size() >= MAX_CACHED_TOPICS)
+				handlerCache.clear();
+			handlerCache.put(topic, handlers);
+		}
+		return handlers;
+	}
+
+	/**
+	 * @GuardedBy this
+	 */
+	private Set findHandlers(final String topic) {
 		// Use a set to remove duplicates
 		Set handlers = new HashSet();
 
@@ -211,6 +269,39 @@ public class EventHandlerTracker extends ServiceTracker implements EventDispatch
 		return handlers;
 	}
 
+	/**
+	 * Return the topic patterns of all tracked handlers.
+	 * 
+	 * @return the topic patterns, without duplicates. Will not be
+	 *         <code>null</code>.
+	 */
+	public synchronized String[] getTopics() {
+		final List topics = new ArrayList();
+		if (globalWildcard.size() > 0)
+			topics.add("*"); //$NON-NLS-1$
+		for (Iterator i = partialWildcard.keySet().iterator(); i.hasNext();)
+			topics.add(i.next() + "/*"); //$NON-NLS-1$
+		topics.addAll(topicName.keySet());
+		return (String[]) topics.toArray(new String[topics.size()]);
+	}
+
+	/**
+	 * Set the listener to run whenever the result of {@link #getTopics()}
+	 * changes.
+	 * 
+	 * @param listener
+	 *            the listener. May be <code>null</code>.
+	 */
+	public void setTopicsChangedListener(Runnable listener) {
+		this.topicsChangedListener = listener;
+	}
+
+	private void fireTopicsChanged() {
+		final Runnable listener = topicsChangedListener;
+		if (listener != null)
+			listener.run();
+	}
+
 	public void dispatchEvent(Object eventListener, Object listenerObject, int eventAction, Object eventObject) {
 		((EventHandlerWrapper) eventListener).handleEvent((Event) eventObject, (Permission) listenerObject);
 	}
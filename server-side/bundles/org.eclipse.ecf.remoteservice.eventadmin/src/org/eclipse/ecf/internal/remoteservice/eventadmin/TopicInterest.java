@@ -0,0 +1,95 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.internal.remoteservice.eventadmin;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The set of event topics a (remote) member has event handlers for, as
+ * advertised by its topic patterns. Topic patterns have the same syntax and
+ * matching rules as the <code>event.topics</code> property of an
+ * {@link org.osgi.service.event.EventHandler}: "*", a partial wildcard such as
+ * "org/osgi/*", or a topic name.
+ */
+public class TopicInterest {
+
+	private final String[] patterns;
+
+	private final boolean global;
+
+	// topic prefixes of partial wildcards, with the "/*" stripped off
+	private final Set partialWildcard = new HashSet();
+
+	private final Set topicName = new HashSet();
+
+	/**
+	 * @param patterns
+	 *            the topic patterns. May be <code>null</code>, meaning no
+	 *            interest in any topic.
+	 */
+	public TopicInterest(String[] patterns) {
+		this.patterns = (patterns == null) ? new String[0] : patterns;
+		boolean g = false;
+		for (int i = 0; i < this.patterns.length; i++) {
+			final String topic = this.patterns[i];
+			if (topic == null)
+				continue;
+			if (topic.equals("*")) //$NON-NLS-1$
+				g = true;
+			else if (topic.endsWith("/*")) //$NON-NLS-1$
+				partialWildcard.add(topic.substring(0, topic.length() - 2));
+			else
+				topicName.add(topic);
+		}
+		this.global = g;
+	}
+
+	public String[] getPatterns() {
+		return patterns;
+	}
+
+	/**
+	 * @return <code>true</code> if there is no interest in any topic
+	 */
+	public boolean isEmpty() {
+		return !global && partialWildcard.isEmpty() && topicName.isEmpty();
+	}
+
+	/**
+	 * @param topic
+	 *            the event topic. Must not be <code>null</code>.
+	 * @return <code>true</code> if any of the patterns matches the topic
+	 */
+	public boolean matches(String topic) {
+		if (global || topicName.contains(topic))
+			return true;
+		if (!partialWildcard.isEmpty()) {
+			// same matching as EventHandlerTracker.getHandlers
+			int index = topic.length();
+			while (index >= 0) {
+				final String subTopic = topic.substring(0, index);
+				if (partialWildcard.contains(subTopic))
+					return true;
+				index = subTopic.lastIndexOf('/');
+			}
+		}
+		return false;
+	}
+
+	public String toString() {
+		return "TopicInterest" + Arrays.asList(patterns); //$NON-NLS-1$
+	}
+}
@@ -17,25 +17,36 @@ package org.eclipse.ecf.remoteservice.eventadmin;
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.security.Permission;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.ecf.core.IContainer;
+import org.eclipse.ecf.core.events.IContainerConnectedEvent;
+import org.eclipse.ecf.core.events.IContainerDisconnectedEvent;
+import org.eclipse.ecf.core.events.IContainerEjectedEvent;
 import org.eclipse.ecf.core.identity.ID;
 import org.eclipse.ecf.core.sharedobject.BaseSharedObject;
+import org.eclipse.ecf.core.sharedobject.SharedObjectInitException;
 import org.eclipse.ecf.core.sharedobject.SharedObjectMsg;
+import org.eclipse.ecf.core.sharedobject.events.ISharedObjectActivatedEvent;
 import org.eclipse.ecf.core.sharedobject.events.ISharedObjectCreateResponseEvent;
 import org.eclipse.ecf.core.sharedobject.events.ISharedObjectMessageEvent;
+import org.eclipse.ecf.core.util.IEventProcessor;
 import org.eclipse.ecf.internal.remoteservice.eventadmin.DefaultSerializationHandler;
 import org.eclipse.ecf.internal.remoteservice.eventadmin.EventHandlerTracker;
 import org.eclipse.ecf.internal.remoteservice.eventadmin.EventHandlerWrapper;
 import org.eclipse.ecf.internal.remoteservice.eventadmin.LogTracker;
+import org.eclipse.ecf.internal.remoteservice.eventadmin.TopicInterest;
 import org.eclipse.ecf.remoteservice.eventadmin.serialization.SerializationHandler;
 import org.eclipse.osgi.framework.eventmgr.CopyOnWriteIdentityMap;
 import org.eclipse.osgi.framework.eventmgr.EventManager;
@@ -73,6 +84,34 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 	private final Map topic2serializationHandler = new HashMap();
 
 	private static final String SHARED_OBJECT_MESSAGE_METHOD = "__handlePostEventSharedObjectMsg";
+	private static final String SHARED_OBJECT_BATCH_MESSAGE_METHOD = "__handlePostEventsSharedObjectMsg";
+	private static final String SHARED_OBJECT_INTEREST_MESSAGE_METHOD = "__handleInterestSharedObjectMsg";
+
+	/**
+	 * Maximum number of events sent in one batch. If more events are posted
+	 * within the batch window, the batch is sent right away.
+	 * 
+	 * @since 1.5
+	 */
+	public static final int MAX_BATCH_SIZE = 256;
+
+	// Map<ID,TopicInterest> topics the remote members have EventHandlers for
+	private final Map remoteInterests = new HashMap();
+	private volatile boolean interestRouting = !Boolean
+			.getBoolean(DistributedEventAdmin.class.getName()
+					+ ".NoInterestRouting"); //$NON-NLS-1$
+
+	private volatile long batchWindow = Long.getLong(
+			DistributedEventAdmin.class.getName() + ".BatchWindow", 0) //$NON-NLS-1$
+			.longValue();
+	// List<QueuedEvent> posted events not yet sent, guarded by itself
+	private final List batch = new ArrayList();
+	// guards the sending of batches, so that they are sent in order
+	private final Object batchSendLock = new Object();
+	private Timer batchTimer;
+	private boolean batchScheduled;
+	// Map<String,DispatchEntry> listener queues for local dispatch per topic
+	private final Map dispatchCache = new HashMap();
 
 	/**
 	 * @since 1.2
@@ -116,6 +155,11 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 		}
 		// Now create eventHandler tracker
 		this.eventHandlerTracker = new EventHandlerTracker(context, log);
+		this.eventHandlerTracker.setTopicsChangedListener(new Runnable() {
+			public void run() {
+				sendInterest(null);
+			}
+		});
 	}
 
 	/**
@@ -197,11 +241,22 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 	 * registration with the OSGi service registry.
 	 */
 	public void stop() {
+		flushEvents();
+		synchronized (batch) {
+			if (batchTimer != null) {
+				batchTimer.cancel();
+				batchTimer = null;
+			}
+			batchScheduled = false;
+		}
 		eventHandlerTracker.close();
 		if (eventManager != null) {
 			eventManager.close();
 			eventManager = null;
 		}
+		synchronized (dispatchCache) {
+			dispatchCache.clear();
+		}
 		if (logTracker != null)
 			logTracker.close();
 		if (etfServiceTracker != null) {
@@ -284,6 +339,16 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 	 * Subclasses may override this method to customize or replace this
 	 * sendMessage behavior.
 	 * <p>
+	 * If {@link #getTarget(Event)} returns <code>null</code> and interest
+	 * routing is enabled, the message is only sent to the members that have
+	 * advertised an {@link EventHandler} for the event's topic, and to the
+	 * members that have not advertised their topics (yet). See
+	 * {@link #setInterestRouting(boolean)}.
+	 * <p>
+	 * If a batch window is set, the message is not sent right away, but with
+	 * the other events posted within the window. See
+	 * {@link #setBatchWindow(long)}.
+	 * <p>
 	 * If an exception occurs on serialization or sending, the
 	 * {@link #handleSendMessageException(String, Event, Object[], IOException)}
 	 * method will be called to handle it.
@@ -298,14 +363,314 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 		try {
 			target = getTarget(eventToSend);
 			messageData = createMessageDataFromEvent(target, eventToSend);
-			sendSharedObjectMsgTo(target, SharedObjectMsg.createMsg(
-					SHARED_OBJECT_MESSAGE_METHOD, messageData));
+			if (batchWindow > 0) {
+				queueEvent(new QueuedEvent(target, eventToSend.getTopic(),
+						messageData));
+				return;
+			}
+			final SharedObjectMsg msg = SharedObjectMsg.createMsg(
+					SHARED_OBJECT_MESSAGE_METHOD, messageData);
+			final ID[] receivers = (target == null) ? getInterestedMembers(eventToSend
+					.getTopic()) : new ID[] { target };
+			if (receivers == null)
+				sendSharedObjectMsgTo(null, msg);
+			else
+				for (int i = 0; i < receivers.length; i++)
+					sendSharedObjectMsgTo(receivers[i], msg);
 		} catch (IOException e) {
 			handleSendMessageException("send exception to target=" + target,
 					eventToSend, messageData, e);
 		}
 	}
 
+	/**
+	 * Get the remote members that should receive an event with the given
+	 * topic.
+	 * 
+	 * @param topic
+	 *            the event topic. Will not be <code>null</code>.
+	 * @return the members that advertised interest in the topic or did not
+	 *         advertise their topics, or <code>null</code> if that are all
+	 *         members of the group (or interest routing is disabled), and the
+	 *         event should be sent to the group.
+	 * @since 1.5
+	 */
+	protected ID[] getInterestedMembers(String topic) {
+		if (!interestRouting)
+			return null;
+		synchronized (remoteInterests) {
+			if (remoteInterests.isEmpty())
+				return null;
+		}
+		final ID[] members = getGroupMemberIDs();
+		final ID localID = getLocalContainerID();
+		final List result = new ArrayList(members.length);
+		boolean all = true;
+		synchronized (remoteInterests) {
+			for (int i = 0; i < members.length; i++) {
+				if (members[i].equals(localID))
+					continue;
+				final TopicInterest interest = (TopicInterest) remoteInterests
+						.get(members[i]);
+				if (interest == null || interest.matches(topic))
+					result.add(members[i]);
+				else
+					all = false;
+			}
+		}
+		return all ? null : (ID[]) result.toArray(new ID[result.size()]);
+	}
+
+	/**
+	 * Enable or disable interest routing. If enabled (the default), this
+	 * instance advertises the topics of its local {@link EventHandler}s to the
+	 * other members of the group, and sends posted events only to the members
+	 * that have advertised interest in their topic. Members that do not
+	 * advertise their topics (e.g. older versions) receive all events. May
+	 * also be disabled by setting the system property
+	 * <code>org.eclipse.ecf.remoteservice.eventadmin.DistributedEventAdmin.NoInterestRouting</code>
+	 * to <code>true</code>.
+	 * 
+	 * @param interestRouting
+	 *            <code>true</code> to route events to interested members only
+	 * @since 1.5
+	 */
+	public void setInterestRouting(boolean interestRouting) {
+		this.interestRouting = interestRouting;
+	}
+
+	/**
+	 * @return <code>true</code> if interest routing is enabled
+	 * @since 1.5
+	 */
+	public boolean isInterestRouting() {
+		return interestRouting;
+	}
+
+	/**
+	 * Set the batch window. If greater than zero, posted events are not sent
+	 * right away, but collected for the given time and then sent in one shared
+	 * object message per receiver. This greatly reduces the number of messages
+	 * for high volume topics, at the cost of the given latency. The default is
+	 * zero, or the value of the system property
+	 * <code>org.eclipse.ecf.remoteservice.eventadmin.DistributedEventAdmin.BatchWindow</code>.
+	 * 
+	 * @param millis
+	 *            the batch window in milliseconds. Zero to disable batching.
+	 * @since 1.5
+	 */
+	public void setBatchWindow(long millis) {
+		this.batchWindow = millis;
+		if (millis <= 0)
+			flushEvents();
+	}
+
+	/**
+	 * @return the batch window in milliseconds. Zero if batching is disabled.
+	 * @since 1.5
+	 */
+	public long getBatchWindow() {
+		return batchWindow;
+	}
+
+	private void queueEvent(QueuedEvent event) {
+		boolean full;
+		synchronized (batch) {
+			batch.add(event);
+			full = batch.size() >= MAX_BATCH_SIZE;
+			if (!full && !batchScheduled) {
+				if (batchTimer == null)
+					batchTimer = new Timer(
+							"Distributed EventAdmin Batch Timer", true); //$NON-NLS-1$
+				batchTimer.schedule(new TimerTask() {
+					public void run() {
+						flushEvents();
+					}
+				}, batchWindow);
+				batchScheduled = true;
+			}
+		}
+		if (full)
+			flushEvents();
+	}
+
+	/**
+	 * Send all events that have been posted but not yet sent because of
+	 * batching. Events are sent in the order they were posted. Called when the
+	 * batch window expires, or the batch is full.
+	 * 
+	 * @since 1.5
+	 */
+	protected void flushEvents() {
+		synchronized (batchSendLock) {
+			final QueuedEvent[] events;
+			synchronized (batch) {
+				batchScheduled = false;
+				if (batch.isEmpty())
+					return;
+				events = (QueuedEvent[]) batch.toArray(new QueuedEvent[batch
+						.size()]);
+				batch.clear();
+			}
+			// Map<ID,List<Object[]>> message data of the events per receiver,
+			// or all of them for the group (null)
+			final Map receivers = new LinkedHashMap();
+			final ID[][] eventReceivers = new ID[events.length][];
+			boolean toGroup = true;
+			for (int i = 0; i < events.length; i++) {
+				eventReceivers[i] = (events[i].target == null) ? getInterestedMembers(events[i].topic)
+						: new ID[] { events[i].target };
+				toGroup &= (eventReceivers[i] == null);
+			}
+			ID[] members = null;
+			for (int i = 0; i < events.length; i++) {
+				ID[] ids = eventReceivers[i];
+				if (toGroup)
+					ids = new ID[] { null };
+				else if (ids == null) {
+					// some events go to selected members only, so send the ones
+					// for the group to each member, to keep them in order
+					if (members == null)
+						members = getRemoteMemberIDs();
+					ids = members;
+				}
+				for (int j = 0; j < ids.length; j++) {
+					List data = (List) receivers.get(ids[j]);
+					if (data == null) {
+						data = new ArrayList();
+						receivers.put(ids[j], data);
+					}
+					data.add(events[i].messageData);
+				}
+			}
+			for (final Iterator i = receivers.entrySet().iterator(); i
+					.hasNext();) {
+				final Map.Entry entry = (Map.Entry) i.next();
+				final ID receiver = (ID) entry.getKey();
+				final List data = (List) entry.getValue();
+				try {
+					sendSharedObjectMsgTo(receiver, SharedObjectMsg.createMsg(
+							SHARED_OBJECT_BATCH_MESSAGE_METHOD, data.toArray()));
+				} catch (IOException e) {
+					logError("DistributedEventAdmin could not send " //$NON-NLS-1$
+							+ data.size() + " events to target=" + receiver, e); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+
+	private ID[] getRemoteMemberIDs() {
+		final ID[] members = getGroupMemberIDs();
+		final ID localID = getLocalContainerID();
+		final List result = new ArrayList(members.length);
+		for (int i = 0; i < members.length; i++)
+			if (!members[i].equals(localID))
+				result.add(members[i]);
+		return (ID[]) result.toArray(new ID[result.size()]);
+	}
+
+	/**
+	 * Advertise the topics of the local {@link EventHandler}s.
+	 * 
+	 * @param target
+	 *            the member to send to, or <code>null</code> for the group
+	 */
+	private void sendInterest(ID target) {
+		if (!interestRouting || !isConnected())
+			return;
+		final String[] topics = (eventHandlerTracker == null) ? new String[0]
+				: eventHandlerTracker.getTopics();
+		try {
+			sendSharedObjectMsgTo(target, SharedObjectMsg.createMsg(
+					SHARED_OBJECT_INTEREST_MESSAGE_METHOD,
+					new Object[] { topics }));
+		} catch (IOException e) {
+			logWarning("DistributedEventAdmin could not send topics to target=" //$NON-NLS-1$
+					+ target, e);
+		}
+	}
+
+	/**
+	 * Handle the topics advertised by a remote member.
+	 * 
+	 * @param fromID
+	 *            the member. Will not be <code>null</code>.
+	 * @param topics
+	 *            the topic patterns of the member's {@link EventHandler}s.
+	 * @since 1.5
+	 */
+	protected void handleInterest(ID fromID, String[] topics) {
+		final Object previous;
+		synchronized (remoteInterests) {
+			previous = remoteInterests.put(fromID, new TopicInterest(topics));
+		}
+		// the member may not have known about us when we sent our topics
+		if (previous == null)
+			sendInterest(fromID);
+	}
+
+	/**
+	 * Forget the topics advertised by a remote member.
+	 * 
+	 * @param memberID
+	 *            the member that left the group, or <code>null</code> to
+	 *            forget about all members.
+	 */
+	private void removeInterest(ID memberID) {
+		synchronized (remoteInterests) {
+			if (memberID == null)
+				remoteInterests.clear();
+			else
+				remoteInterests.remove(memberID);
+		}
+	}
+
+	/**
+	 * Advertises the local topics when this instance is activated or a member
+	 * joins, and forgets about members that leave.
+	 * 
+	 * @since 1.5
+	 */
+	protected void initialize() throws SharedObjectInitException {
+		super.initialize();
+		addEventProcessor(new IEventProcessor() {
+			public boolean processEvent(org.eclipse.ecf.core.util.Event event) {
+				if (event instanceof ISharedObjectActivatedEvent) {
+					if (getID().equals(
+							((ISharedObjectActivatedEvent) event)
+									.getActivatedID()))
+						sendInterest(null);
+				} else if (event instanceof IContainerConnectedEvent) {
+					final ID targetID = ((IContainerConnectedEvent) event)
+							.getTargetID();
+					if (!targetID.equals(getLocalContainerID()))
+						sendInterest(targetID);
+				} else if (event instanceof IContainerDisconnectedEvent) {
+					final ID targetID = ((IContainerDisconnectedEvent) event)
+							.getTargetID();
+					removeInterest(targetID.equals(getLocalContainerID())
+							|| targetID.equals(getConnectedID()) ? null
+							: targetID);
+				} else if (event instanceof IContainerEjectedEvent) {
+					removeInterest(null);
+				}
+				return false;
+			}
+		});
+	}
+
+	static class QueuedEvent {
+		final ID target;
+		final String topic;
+		final Object[] messageData;
+
+		QueuedEvent(ID target, String topic, Object[] messageData) {
+			this.target = target;
+			this.topic = topic;
+			this.messageData = messageData;
+		}
+	}
+
 /**
 	 * Create message data for deliver to a target (which could be
 	 * <code>null</code> to designate multiple target receivers), The resulting
@@ -554,24 +919,15 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 			Set eventHandlerWrappers = eventHandlerTracker
 					.getHandlers(eventTopic);
 
-			SecurityManager sm = System.getSecurityManager();
-			Permission perm = (sm == null) ? null : new TopicPermission(
-					eventTopic, TopicPermission.SUBSCRIBE);
-
-			CopyOnWriteIdentityMap listeners = new CopyOnWriteIdentityMap();
-			Iterator iter = eventHandlerWrappers.iterator();
-			while (iter.hasNext()) {
-				EventHandlerWrapper wrapper = (EventHandlerWrapper) iter.next();
-				listeners.put(wrapper, perm);
-			}
-
-			ListenerQueue listenerQueue = new ListenerQueue(currentManager);
-			listenerQueue.queueListeners(listeners.entrySet(),
-					eventHandlerTracker);
-			if (isAsync) {
-				listenerQueue.dispatchEventAsynchronous(0, event);
-			} else {
-				listenerQueue.dispatchEventSynchronous(0, event);
+			if (!eventHandlerWrappers.isEmpty()) {
+				ListenerQueue listenerQueue = getListenerQueue(currentManager,
+						eventTopic, eventHandlerWrappers,
+						System.getSecurityManager() != null);
+				if (isAsync) {
+					listenerQueue.dispatchEventAsynchronous(0, event);
+				} else {
+					listenerQueue.dispatchEventSynchronous(0, event);
+				}
 			}
 
 			notifyPostLocalDispatch(event);
@@ -579,6 +935,60 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 		}
 	}
 
+	/**
+	 * Get the queue to dispatch events with the given topic to the given
+	 * handlers. A queue does not change once events have been dispatched with
+	 * it, so it is created once and reused until the handlers for the topic
+	 * change.
+	 */
+	private ListenerQueue getListenerQueue(EventManager manager, String topic,
+			Set eventHandlerWrappers, boolean secure) {
+		synchronized (dispatchCache) {
+			final DispatchEntry entry = (DispatchEntry) dispatchCache
+					.get(topic);
+			// the tracker returns the same set until the handlers change
+			if (entry != null && entry.handlers == eventHandlerWrappers
+					&& entry.manager == manager && entry.secure == secure)
+				return entry.queue;
+		}
+
+		Permission perm = secure ? new TopicPermission(topic,
+				TopicPermission.SUBSCRIBE) : null;
+
+		CopyOnWriteIdentityMap listeners = new CopyOnWriteIdentityMap();
+		Iterator iter = eventHandlerWrappers.iterator();
+		while (iter.hasNext()) {
+			EventHandlerWrapper wrapper = (EventHandlerWrapper) iter.next();
+			listeners.put(wrapper, perm);
+		}
+
+		ListenerQueue listenerQueue = new ListenerQueue(manager);
+		listenerQueue.queueListeners(listeners.entrySet(), eventHandlerTracker);
+
+		synchronized (dispatchCache) {
+			if (dispatchCache.size() >= EventHandlerTracker.MAX_CACHED_TOPICS)
+				dispatchCache.clear();
+			dispatchCache.put(topic, new DispatchEntry(eventHandlerWrappers,
+					manager, secure, listenerQueue));
+		}
+		return listenerQueue;
+	}
+
+	static class DispatchEntry {
+		final Set handlers;
+		final EventManager manager;
+		final boolean secure;
+		final ListenerQueue queue;
+
+		DispatchEntry(Set handlers, EventManager manager, boolean secure,
+				ListenerQueue queue) {
+			this.handlers = handlers;
+			this.manager = manager;
+			this.secure = secure;
+			this.queue = queue;
+		}
+	}
+
 /**
 	 * Handle the shared object message.  This method is called on receiver implementations of 
 	 * the DistributedEventAdmin, so that they can deliver to locally registered {@link EventHandler}s.
@@ -600,20 +1010,28 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 	protected boolean handleSharedObjectMsg(ID fromID, SharedObjectMsg msg) {
 		String soMethod = msg.getMethod();
 		if (SHARED_OBJECT_MESSAGE_METHOD.equals(soMethod)) {
-			try {
-				Object[] messageData = msg.getParameters();
-				Event receivedEvent = createEventFromMessageData(fromID,
-						messageData);
-				if (receivedEvent != null) {
-					notifyReceivedEvent(fromID, receivedEvent);
-					localDispatch(receivedEvent, true);
-				}
-			} catch (Exception e) {
-				logError(
-						"DistributedEventAdmin handleSharedObjectMsg error receiving msg="
-								+ msg, e);
+			receiveEvent(fromID, msg, msg.getParameters());
+			return true;
+		} else if (SHARED_OBJECT_BATCH_MESSAGE_METHOD.equals(soMethod)) {
+			// each parameter is the message data of one event
+			final Object[] batchData = msg.getParameters();
+			for (int i = 0; batchData != null && i < batchData.length; i++) {
+				if (batchData[i] instanceof Object[])
+					receiveEvent(fromID, msg, (Object[]) batchData[i]);
+				else
+					logWarning("DistributedEventAdmin dropped bad event data in batch msg=" //$NON-NLS-1$
+							+ msg + " from=" + fromID); //$NON-NLS-1$
 			}
 			return true;
+		} else if (SHARED_OBJECT_INTEREST_MESSAGE_METHOD.equals(soMethod)) {
+			final Object[] params = msg.getParameters();
+			if (params != null && params.length > 0
+					&& params[0] instanceof String[])
+				handleInterest(fromID, (String[]) params[0]);
+			else
+				logWarning("DistributedEventAdmin dropped bad topics msg=" //$NON-NLS-1$
+						+ msg + " from=" + fromID); //$NON-NLS-1$
+			return true;
 		} else {
 			logError("DistributedEventAdmin received bad shared object msg="
 					+ msg + " from=" + fromID);
@@ -621,6 +1039,22 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 		return false;
 	}
 
+	private void receiveEvent(ID fromID, SharedObjectMsg msg,
+			Object[] messageData) {
+		try {
+			Event receivedEvent = createEventFromMessageData(fromID,
+					messageData);
+			if (receivedEvent != null) {
+				notifyReceivedEvent(fromID, receivedEvent);
+				localDispatch(receivedEvent, true);
+			}
+		} catch (Exception e) {
+			logError(
+					"DistributedEventAdmin handleSharedObjectMsg error receiving msg="
+							+ msg, e);
+		}
+	}
+
 	/**
 	 * @param fromID fromID
 	 * @param receivedEvent received event
@@ -732,6 +1166,8 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 	 * @since 1.2
 	 */
 	public boolean addEventTopicFilters(String[] filters) {
+		if (filters == null)
+			return false;
 		final List asList = Arrays.asList(filters);
 		return eventFilters.addAll(asList);
 	}
@@ -742,6 +1178,8 @@ public class DistributedEventAdmin extends BaseSharedObject implements
 	 * @since 1.2
 	 */
 	public boolean removeEventTopicFilters(String[] filters) {
+		if (filters == null)
+			return false;
 		final List asList = Arrays.asList(filters);
 		return eventFilters.removeAll(asList);
 	}
@@ -13,10 +13,18 @@
 package org.eclipse.ecf.remoteservice.eventadmin;
 
 /**
+ * Service to register to keep events with the given topics from being
+ * distributed by {@link DistributedEventAdmin}. Subclasses override
+ * {@link #getFilters()}.
+ * 
  * @since 1.2
  */
 public class EventTopicFilter {
 
+	/**
+	 * @return the topics of events that are to be dispatched locally only. May
+	 *         be <code>null</code> if there are none.
+	 */
 	public String[] getFilters() {
 		return null;
 	}
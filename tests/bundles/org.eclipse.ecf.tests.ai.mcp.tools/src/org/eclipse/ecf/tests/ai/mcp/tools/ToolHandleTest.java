@@ -0,0 +1,236 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.tests.ai.mcp.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.ecf.ai.mcp.tools.annotation.Tool;
+import org.eclipse.ecf.ai.mcp.tools.annotation.ToolParam;
+import org.eclipse.ecf.ai.mcp.tools.util.ToolHandle;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ToolHandleTest {
+
+	public enum Unit {
+		CELSIUS, FAHRENHEIT
+	}
+
+	public interface Tools {
+
+		@Tool(description = "Add two numbers")
+		int add(@ToolParam(name = "a") int a, @ToolParam(name = "b") int b);
+
+		@Tool(description = "Echo the arguments")
+		Object[] echo(@ToolParam(name = "l", required = false) long l,
+				@ToolParam(name = "d", required = false) double d,
+				@ToolParam(name = "f", required = false) Float f,
+				@ToolParam(name = "s", required = false) short s,
+				@ToolParam(name = "by", required = false) byte by,
+				@ToolParam(name = "bo", required = false) boolean bo,
+				@ToolParam(name = "c", required = false) char c,
+				@ToolParam(name = "str", required = false) String str,
+				@ToolParam(name = "bd", required = false) BigDecimal bd,
+				@ToolParam(name = "bi", required = false) BigInteger bi,
+				@ToolParam(name = "unit", required = false) Unit unit);
+
+		@Tool(description = "Sum an array")
+		long sum(@ToolParam(name = "values") int[] values);
+
+		@Tool(description = "Join strings")
+		String join(@ToolParam(name = "values") String[] values, String notDescribed);
+
+		@Tool(description = "Fail")
+		void fail() throws Exception;
+	}
+
+	public static class ToolsImpl implements Tools {
+
+		public int add(int a, int b) {
+			return a + b;
+		}
+
+		public Object[] echo(long l, double d, Float f, short s, byte by, boolean bo, char c, String str,
+				BigDecimal bd, BigInteger bi, Unit unit) {
+			return new Object[] { l, d, f, s, by, bo, c, str, bd, bi, unit };
+		}
+
+		public long sum(int[] values) {
+			long sum = 0;
+			for (int v : values) {
+				sum += v;
+			}
+			return sum;
+		}
+
+		public String join(String[] values, String notDescribed) {
+			return String.join(",", values) + ":" + notDescribed;
+		}
+
+		public void fail() throws Exception {
+			throw new java.io.IOException("failed");
+		}
+	}
+
+	private final Tools service = new ToolsImpl();
+
+	private Map<String, ToolHandle> handles;
+
+	@Before
+	public void setUp() {
+		handles = new HashMap<String, ToolHandle>();
+		for (ToolHandle h : ToolHandle.fromService(service, Tools.class.getName())) {
+			handles.put(h.getName(), h);
+		}
+	}
+
+	private Object invoke(String tool, Map<String, ?> arguments) throws Exception {
+		return handles.get(tool).invoke(service, arguments);
+	}
+
+	@Test
+	public void testFromService() {
+		assertEquals(5, handles.size());
+		assertTrue(ToolHandle.fromService(service, Runnable.class.getName()).isEmpty());
+	}
+
+	@Test
+	public void testBindByName() throws Exception {
+		assertEquals(3, invoke("add", Map.of("b", 2, "a", 1)));
+	}
+
+	@Test
+	public void testMissingRequiredArgument() throws Exception {
+		try {
+			invoke("add", Map.of("a", 1));
+			fail("missing argument b must be rejected");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("'b'"));
+		}
+		try {
+			invoke("add", null);
+			fail("missing arguments must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testMissingOptionalArguments() throws Exception {
+		Object[] result = (Object[]) invoke("echo", null);
+		assertArrayEquals(new Object[] { 0L, 0.0d, null, (short) 0, (byte) 0, false, '\0', null, null, null, null },
+				result);
+	}
+
+	@Test
+	public void testConvertJsonValues() throws Exception {
+		Map<String, Object> args = new HashMap<String, Object>();
+		// as decoded from JSON
+		args.put("l", 5);
+		args.put("d", 2);
+		args.put("f", 1.5d);
+		args.put("s", 7L);
+		args.put("by", 8L);
+		args.put("bo", true);
+		args.put("c", "x");
+		args.put("str", 42);
+		args.put("bd", 0.25d);
+		args.put("bi", 12345678901234L);
+		args.put("unit", "FAHRENHEIT");
+		Object[] result = (Object[]) invoke("echo", args);
+		assertArrayEquals(new Object[] { 5L, 2.0d, 1.5f, (short) 7, (byte) 8, true, 'x', "42",
+				new BigDecimal("0.25"), BigInteger.valueOf(12345678901234L), Unit.FAHRENHEIT }, result);
+	}
+
+	@Test
+	public void testConvertStrings() throws Exception {
+		Map<String, Object> args = new HashMap<String, Object>();
+		args.put("l", "5");
+		args.put("d", "2.5");
+		args.put("bo", "true");
+		args.put("bi", "100");
+		Object[] result = (Object[]) invoke("echo", args);
+		assertEquals(5L, result[0]);
+		assertEquals(2.5d, result[1]);
+		assertEquals(true, result[5]);
+		assertEquals(BigInteger.valueOf(100), result[9]);
+		assertEquals(3, invoke("add", Map.of("a", "1", "b", "2")));
+	}
+
+	@Test
+	public void testInvalidArguments() throws Exception {
+		assertInvalid("add", Map.of("a", "one", "b", 2), "'a'");
+		assertInvalid("echo", Map.of("c", "xy"), "'c'");
+		assertInvalid("echo", Map.of("unit", "KELVIN"), "'unit'");
+		assertInvalid("echo", Map.of("bi", 1.5d), "'bi'");
+		assertInvalid("sum", Map.of("values", "1,2"), "'values'");
+	}
+
+	private void assertInvalid(String tool, Map<String, ?> arguments, String name) throws Exception {
+		try {
+			invoke(tool, arguments);
+			fail("invalid argument " + name + " must be rejected");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid argument " + name));
+		}
+	}
+
+	@Test
+	public void testConvertArrays() throws Exception {
+		assertEquals(6L, invoke("sum", Map.of("values", List.of(1, 2L, 3.0d))));
+		assertEquals(6L, invoke("sum", Map.of("values", new int[] { 1, 2, 3 })));
+		assertEquals(0L, invoke("sum", Map.of("values", List.of())));
+	}
+
+	@Test
+	public void testParameterWithoutToolParam() throws Exception {
+		ToolHandle join = handles.get("join");
+		assertEquals(1, join.getToolDescription().toolParamDescriptions().size());
+		assertTrue(((Map<?, ?>) join.getInputSchema().get("properties")).containsKey("values"));
+		assertEquals(1, ((Map<?, ?>) join.getInputSchema().get("properties")).size());
+		assertEquals("a,b:null", invoke("join", Map.of("values", List.of("a", "b"))));
+	}
+
+	@Test
+	public void testInputSchema() {
+		assertEquals(
+				"{\"type\":\"object\",\"properties\":{\"a\":{\"type\":\"integer\"},\"b\":{\"type\":\"integer\"}},\"required\":[\"a\",\"b\"]}",
+				handles.get("add").getInputSchemaJson());
+		Map<?, ?> properties = (Map<?, ?>) handles.get("echo").getInputSchema().get("properties");
+		assertNull(handles.get("echo").getInputSchema().get("required"));
+		assertEquals(Map.of("type", "string", "enum", List.of("CELSIUS", "FAHRENHEIT")), properties.get("unit"));
+		assertEquals(Map.of("type", "array", "items", Map.of("type", "integer")),
+				((Map<?, ?>) handles.get("sum").getInputSchema().get("properties")).get("values"));
+	}
+
+	@Test
+	public void testToolException() throws Exception {
+		try {
+			invoke("fail", null);
+			fail("tool exception must be thrown");
+		} catch (java.io.IOException e) {
+			assertEquals("failed", e.getMessage());
+		}
+	}
+
+}
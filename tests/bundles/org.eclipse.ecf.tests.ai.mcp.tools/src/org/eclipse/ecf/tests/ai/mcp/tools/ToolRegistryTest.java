@@ -0,0 +1,127 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.tests.ai.mcp.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.ecf.ai.mcp.tools.annotation.Tool;
+import org.eclipse.ecf.ai.mcp.tools.annotation.ToolParam;
+import org.eclipse.ecf.ai.mcp.tools.service.ToolGroupService;
+import org.eclipse.ecf.ai.mcp.tools.service.ToolRegistry;
+import org.eclipse.ecf.ai.mcp.tools.util.ToolDescription;
+import org.eclipse.ecf.ai.mcp.tools.util.ToolHandle;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ToolRegistryTest {
+
+	public interface Greeter {
+
+		@Tool(description = "Greet someone")
+		String greet(@ToolParam(name = "name") String name);
+	}
+
+	public static class GreeterService implements Greeter, ToolGroupService {
+
+		int handleRequests;
+
+		public String greet(String name) {
+			return "Hello " + name;
+		}
+
+		@Override
+		public List<ToolHandle> getToolHandles(String interfaceClassName) {
+			handleRequests++;
+			return ToolGroupService.super.getToolHandles(interfaceClassName);
+		}
+	}
+
+	private ToolRegistry registry;
+
+	@Before
+	public void setUp() {
+		registry = new ToolRegistry();
+	}
+
+	@Test
+	public void testAddAndCall() throws Exception {
+		GreeterService svc = new GreeterService();
+		List<ToolDescription> added = registry.addToolGroupService(svc, Greeter.class.getName());
+		assertEquals(1, added.size());
+		assertEquals(1, svc.handleRequests);
+		assertEquals(added, registry.getToolDescriptions());
+		assertEquals("Hello you", registry.callTool("greet", Map.of("name", "you")));
+		try {
+			registry.callTool("unknown", null);
+			fail("unknown tool must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testAddSameServiceAgain() {
+		GreeterService svc = new GreeterService();
+		registry.addToolGroupService(svc, Greeter.class.getName());
+		ToolRegistry.RegisteredTool tool = registry.getTool("greet");
+		assertTrue(registry.addToolGroupService(svc, Greeter.class.getName()).isEmpty());
+		// the tool registered first is kept
+		assertSame(tool, registry.getTool("greet"));
+		assertEquals(1, registry.getToolDescriptions().size());
+	}
+
+	@Test
+	public void testConflictingService() {
+		registry.addToolGroupService(new GreeterService(), Greeter.class.getName());
+		try {
+			registry.addToolGroupService(new GreeterService(), Greeter.class.getName());
+			fail("tool of another service with the same name must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testToolsOfService() {
+		GreeterService svc = new GreeterService();
+		assertTrue(registry.getToolDescriptions(svc).isEmpty());
+		registry.addToolGroupService(svc, Greeter.class.getName());
+		List<ToolDescription> descriptions = registry.getToolDescriptions(svc);
+		assertEquals(1, descriptions.size());
+		assertEquals("greet", descriptions.get(0).name());
+		assertEquals(descriptions, registry.getToolDescriptions(svc));
+		// no new handles for listing the tools
+		assertEquals(1, svc.handleRequests);
+		assertEquals(1, registry.getTools(svc).size());
+	}
+
+	@Test
+	public void testRemove() {
+		GreeterService svc = new GreeterService();
+		registry.addToolGroupService(svc, Greeter.class.getName());
+		assertFalse(registry.removeToolGroupService(new GreeterService()));
+		assertTrue(registry.removeToolGroupService(svc));
+		assertNull(registry.getTool("greet"));
+		assertTrue(registry.getToolDescriptions().isEmpty());
+		assertTrue(registry.getToolDescriptions(svc).isEmpty());
+		assertFalse(registry.removeToolGroupService(svc));
+	}
+}
@@ -0,0 +1,210 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.tests.ai.mcp.transports;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.ecf.ai.mcp.transports.MessageDecoder;
+import org.junit.Test;
+
+public class MessageDecoderTest {
+
+	private static byte[] utf8(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void put(MessageDecoder decoder, byte[] b, int offset, int length) throws IOException {
+		decoder.put(ByteBuffer.wrap(b, offset, length));
+	}
+
+	private static List<String> drain(MessageDecoder decoder) throws IOException {
+		List<String> messages = new ArrayList<>();
+		String message;
+		while ((message = decoder.next()) != null) {
+			messages.add(message);
+		}
+		return messages;
+	}
+
+	@Test
+	public void testSeveralMessagesInOneRead() throws IOException {
+		MessageDecoder decoder = new MessageDecoder("\n", 64, 1024);
+		decoder.put(ByteBuffer.wrap(utf8("one\ntwo\n\nthree")));
+		assertEquals(List.of("one", "two", ""), drain(decoder));
+		assertEquals(5, decoder.getPending());
+		decoder.put(ByteBuffer.wrap(utf8("\n")));
+		assertEquals("three", decoder.next());
+		assertNull(decoder.next());
+		assertEquals(0, decoder.getPending());
+	}
+
+	@Test
+	public void testDelimiterSplitAcrossReads() throws IOException {
+		byte[] b = utf8("first\r\nsecond\r\n");
+		// every possible split, including between the two delimiter bytes
+		for (int split = 0; split <= b.length; split++) {
+			MessageDecoder decoder = new MessageDecoder("\r\n", 4, 1024);
+			put(decoder, b, 0, split);
+			List<String> messages = drain(decoder);
+			put(decoder, b, split, b.length - split);
+			messages.addAll(drain(decoder));
+			assertEquals("split at " + split, List.of("first", "second"), messages);
+		}
+	}
+
+	@Test
+	public void testPartialDelimiterInMessage() throws IOException {
+		MessageDecoder decoder = new MessageDecoder("\r\n", 16, 1024);
+		decoder.put(ByteBuffer.wrap(utf8("a\rb\n\r")));
+		assertNull(decoder.next());
+		decoder.put(ByteBuffer.wrap(utf8("\n")));
+		assertEquals("a\rb\n", decoder.next());
+	}
+
+	@Test
+	public void testMessageOverManyReads() throws IOException {
+		MessageDecoder decoder = new MessageDecoder("\n", 8, 1024);
+		String message = "x".repeat(500);
+		byte[] b = utf8(message + "\n");
+		for (int i = 0; i < b.length; i++) {
+			put(decoder, b, i, 1);
+			if (i < b.length - 1) {
+				assertNull(decoder.next());
+			}
+		}
+		assertEquals(message, decoder.next());
+	}
+
+	@Test
+	public void testMultibyteCharacterSplitAcrossReads() throws IOException {
+		// two, three and four byte sequences
+		String message = "\u00e9\u20ac\ud83d\ude00";
+		byte[] b = utf8(message + "\n");
+		for (int split = 1; split < b.length; split++) {
+			MessageDecoder decoder = new MessageDecoder("\n", 4, 1024);
+			put(decoder, b, 0, split);
+			assertNull(decoder.next());
+			put(decoder, b, split, b.length - split);
+			assertEquals("split at " + split, message, decoder.next());
+		}
+	}
+
+	@Test
+	public void testMaxMessageSize() throws IOException {
+		MessageDecoder decoder = new MessageDecoder("\n", 16, 100);
+		String max = "m".repeat(100);
+		decoder.put(ByteBuffer.wrap(utf8(max + "\n")));
+		assertEquals(max, decoder.next());
+
+		try {
+			decoder.put(ByteBuffer.wrap(utf8("m".repeat(101))));
+			decoder.next();
+			fail("Message over the maximum size accepted");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testMaxMessageSizeWithDelimiterInNextRead() throws IOException {
+		MessageDecoder decoder = new MessageDecoder("\r\n", 16, 100);
+		String max = "m".repeat(100);
+		// the message and the first byte of the delimiter
+		decoder.put(ByteBuffer.wrap(utf8(max + "\r")));
+		assertNull(decoder.next());
+		decoder.put(ByteBuffer.wrap(utf8("\n")));
+		assertEquals(max, decoder.next());
+	}
+
+	@Test
+	public void testReadRejectsMessageOverMaxSize() throws IOException {
+		MessageDecoder decoder = new MessageDecoder("\n", 16, 100);
+		ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(utf8("m".repeat(1000))));
+		try {
+			while (decoder.read(channel) >= 0) {
+				assertNull(decoder.next());
+			}
+			fail("Message over the maximum size accepted");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(decoder.getCapacity() <= 101);
+	}
+
+	@Test
+	public void testShrinksAfterLargeMessage() throws IOException {
+		MessageDecoder decoder = new MessageDecoder("\n", 16, 100000);
+		String large = "l".repeat(10000);
+		decoder.put(ByteBuffer.wrap(utf8(large + "\n")));
+		assertTrue(decoder.getCapacity() > 16);
+		assertEquals(large, decoder.next());
+		assertEquals(16, decoder.getCapacity());
+
+		// still works after shrinking
+		decoder.put(ByteBuffer.wrap(utf8("small\n")));
+		assertEquals("small", decoder.next());
+		assertEquals(16, decoder.getCapacity());
+	}
+
+	@Test
+	public void testShrinksOncePendingBytesFit() throws IOException {
+		MessageDecoder decoder = new MessageDecoder("\n", 16, 100000);
+		String large = "l".repeat(1000);
+		String next = "n".repeat(100);
+		decoder.put(ByteBuffer.wrap(utf8(large + "\n" + next)));
+		assertEquals(large, decoder.next());
+		// the start of the next message does not fit into the initial size
+		assertTrue(decoder.getCapacity() > 16);
+		assertEquals(100, decoder.getPending());
+
+		decoder.put(ByteBuffer.wrap(utf8("\nrest")));
+		assertEquals(next, decoder.next());
+		assertEquals(16, decoder.getCapacity());
+		assertEquals(4, decoder.getPending());
+		decoder.put(ByteBuffer.wrap(utf8("\n")));
+		assertEquals("rest", decoder.next());
+	}
+
+	@Test
+	public void testReadFromChannel() throws IOException {
+		StringBuilder input = new StringBuilder();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			String message = "message " + i + " \u00fc".repeat(i);
+			expected.add(message);
+			input.append(message).append('\n');
+		}
+		InputStream in = new ByteArrayInputStream(utf8(input.toString()));
+		MessageDecoder decoder = new MessageDecoder("\n", 8, 1024);
+		ReadableByteChannel channel = Channels.newChannel(in);
+		List<String> messages = new ArrayList<>();
+		while (decoder.read(channel) >= 0) {
+			messages.addAll(drain(decoder));
+		}
+		assertEquals(expected, messages);
+		assertEquals(0, decoder.getPending());
+	}
+}
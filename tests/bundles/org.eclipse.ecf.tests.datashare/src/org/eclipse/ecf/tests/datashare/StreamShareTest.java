@@ -0,0 +1,151 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.tests.datashare;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.eclipse.ecf.core.identity.ID;
+import org.eclipse.ecf.datashare.IStreamContainerAdapter;
+import org.eclipse.ecf.datashare.StreamShare;
+import org.eclipse.ecf.tests.ContainerAbstractTestCase;
+
+public class StreamShareTest extends ContainerAbstractTestCase {
+
+	private static final int SIZE = 8 * 1024 * 1024;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		setClientCount(2);
+		createServerAndClients();
+		// create the stream channels before connecting
+		for (int i = 0; i < clientCount; i++)
+			assertNotNull(getStreamShare(i));
+		connectClients();
+	}
+
+	protected void tearDown() throws Exception {
+		cleanUpServerAndClients();
+		super.tearDown();
+	}
+
+	protected ID getContainerID(int clientIndex) {
+		return getClients()[clientIndex].getID();
+	}
+
+	protected StreamShare getStreamShare(int clientIndex) {
+		return (StreamShare) getClients()[clientIndex].getAdapter(IStreamContainerAdapter.class);
+	}
+
+	private static byte valueAt(int i) {
+		return (byte) (i * 31 + (i >>> 8));
+	}
+
+	private Thread startWriter(final OutputStream out, final int size, final Exception[] error) {
+		final Thread writer = new Thread(new Runnable() {
+			public void run() {
+				final byte[] buf = new byte[10000];
+				try {
+					for (int pos = 0; pos < size;) {
+						final int len = Math.min(buf.length, size - pos);
+						for (int i = 0; i < len; i++)
+							buf[i] = valueAt(pos + i);
+						out.write(buf, 0, len);
+						pos += len;
+					}
+					out.close();
+				} catch (final IOException e) {
+					error[0] = e;
+				}
+			}
+		});
+		writer.start();
+		return writer;
+	}
+
+	public void testGetStreamContainerAdapter() throws Exception {
+		final StreamShare share = getStreamShare(0);
+		assertSame(share, getStreamShare(0));
+		assertFalse(share.isDisposed());
+		assertNotNull(share.getChannel());
+	}
+
+	public void testNoPendingStream() throws Exception {
+		assertNull(getStreamShare(1).getInputStream());
+		assertNull(getStreamShare(1).getInputStream(100));
+	}
+
+	public void testStream() throws Exception {
+		final Exception[] error = new Exception[1];
+		final Thread writer = startWriter(getStreamShare(0).getOutputStream(getContainerID(1)), SIZE, error);
+
+		final InputStream in = getStreamShare(1).getInputStream(10000);
+		assertNotNull(in);
+		assertEquals(getContainerID(0), ((StreamShare.IncomingStream) in).getFromContainerID());
+		final byte[] buf = new byte[7777];
+		int pos = 0;
+		int n;
+		while ((n = in.read(buf)) != -1) {
+			for (int i = 0; i < n; i++)
+				assertEquals("byte " + (pos + i), valueAt(pos + i), buf[i]);
+			pos += n;
+		}
+		in.close();
+		writer.join(10000);
+		assertNull(error[0]);
+		assertEquals(SIZE, pos);
+	}
+
+	public void testCancel() throws Exception {
+		final Exception[] error = new Exception[1];
+		final Thread writer = startWriter(getStreamShare(0).getOutputStream(getContainerID(1)), SIZE, error);
+
+		final InputStream in = getStreamShare(1).getInputStream(10000);
+		assertNotNull(in);
+		assertTrue(in.read(new byte[1000]) > 0);
+		// the writer is blocked on the credit window and must fail once cancelled
+		in.close();
+		writer.join(10000);
+		assertFalse(writer.isAlive());
+		assertNotNull(error[0]);
+	}
+
+	public void testWindowIsEnforced() throws Exception {
+		final StreamShare receiver = getStreamShare(1);
+		final int chunk = receiver.getWindowSize() / 2 + 1;
+		final long streamId = 42;
+		// open a stream and send more than the initial window without waiting for credit
+		final ByteBuffer open = ByteBuffer.allocate(9).put((byte) 1).putLong(streamId);
+		getStreamShare(0).getChannel().sendMessage(getContainerID(1), open.array());
+		final InputStream in = receiver.getInputStream(10000);
+		assertNotNull(in);
+		for (int i = 0; i < 2; i++) {
+			final ByteBuffer data = ByteBuffer.allocate(9 + chunk).put((byte) 2).putLong(streamId);
+			getStreamShare(0).getChannel().sendMessage(getContainerID(1), data.array());
+		}
+		// reading would grant more credit, so let both chunks arrive first
+		Thread.sleep(1000);
+		try {
+			final byte[] buf = new byte[chunk];
+			while (in.read(buf) != -1) {
+				// drain the data within the window
+			}
+			fail("Data beyond the window was accepted"); //$NON-NLS-1$
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+}
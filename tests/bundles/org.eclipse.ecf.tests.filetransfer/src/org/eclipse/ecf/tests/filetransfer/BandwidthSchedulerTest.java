@@ -0,0 +1,99 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.tests.filetransfer;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.ecf.provider.filetransfer.util.BandwidthScheduler;
+
+public class BandwidthSchedulerTest extends TestCase {
+
+	private static final int BLOCK = 4096;
+
+	protected BandwidthScheduler scheduler;
+
+	protected URL url;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		scheduler = new BandwidthScheduler();
+		url = new URL("http://www.eclipse.org/ecf/index.html");
+	}
+
+	protected void tearDown() throws Exception {
+		scheduler = null;
+		super.tearDown();
+	}
+
+	private long transfer(URL u, int blocks) throws Exception {
+		final long start = System.currentTimeMillis();
+		for (int i = 0; i < blocks; i++)
+			scheduler.acquire(u, BandwidthScheduler.DEFAULT_PRIORITY, BLOCK, null);
+		return System.currentTimeMillis() - start;
+	}
+
+	public void testUnlimited() throws Exception {
+		assertTrue(transfer(url, 1000) < 500);
+	}
+
+	public void testGlobalRate() throws Exception {
+		scheduler.setGlobalRate(BLOCK * 20);
+		// 20 blocks at 20 blocks/second should take about one second
+		final long elapsed = transfer(url, 20);
+		assertTrue("elapsed=" + elapsed, elapsed >= 800);
+	}
+
+	public void testHostRate() throws Exception {
+		scheduler.setHostRate("www.eclipse.org", BLOCK * 20);
+		assertTrue(transfer(new URL("http://localhost/foo"), 100) < 500);
+		final long elapsed = transfer(url, 20);
+		assertTrue("elapsed=" + elapsed, elapsed >= 800);
+	}
+
+	public void testRemoveRate() throws Exception {
+		scheduler.setGlobalRate(BLOCK);
+		scheduler.setGlobalRate(0);
+		assertTrue(transfer(url, 1000) < 500);
+	}
+
+	public void testPriority() throws Exception {
+		assertEquals(BandwidthScheduler.DEFAULT_PRIORITY, scheduler.getPriority(url, null));
+		scheduler.setHostPriority("WWW.ECLIPSE.ORG", BandwidthScheduler.BACKGROUND_PRIORITY);
+		assertEquals(BandwidthScheduler.BACKGROUND_PRIORITY, scheduler.getPriority(url, null));
+		final Map options = new HashMap();
+		options.put(BandwidthScheduler.PRIORITY_OPTION, "8");
+		assertEquals(BandwidthScheduler.INTERACTIVE_PRIORITY, scheduler.getPriority(url, options));
+		options.put(BandwidthScheduler.PRIORITY_OPTION, Integer.valueOf(99));
+		assertEquals(BandwidthScheduler.MAX_PRIORITY, scheduler.getPriority(url, options));
+	}
+
+	public void testCancel() throws Exception {
+		scheduler.setGlobalRate(1);
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		scheduler.acquire(url, BandwidthScheduler.DEFAULT_PRIORITY, BLOCK, monitor);
+		monitor.setCanceled(true);
+		try {
+			scheduler.acquire(url, BandwidthScheduler.DEFAULT_PRIORITY, BLOCK, monitor);
+			fail("acquire should have been canceled");
+		} catch (OperationCanceledException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.tests.filetransfer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.ecf.filetransfer.ISendFileTransferOptions;
+import org.eclipse.ecf.filetransfer.SendFileTransferException;
+
+public class FileChunkedSendTest extends AbstractSendTestCase {
+
+	File inputFile = null;
+	File outputFile = null;
+	byte[] content = null;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		content = new byte[100000];
+		for (int i = 0; i < content.length; i++)
+			content[i] = (byte) i;
+		inputFile = Files.createTempFile("ECFTest", "input.bin").toFile();
+		Files.write(inputFile.toPath(), content);
+		outputFile = Files.createTempFile("ECFTest", "output.bin").toFile();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		inputFile.delete();
+		outputFile.delete();
+	}
+
+	private void send(Object chunkSize, Object resumeOffset) throws Exception {
+		final Map options = new HashMap();
+		if (chunkSize != null)
+			options.put(ISendFileTransferOptions.CHUNK_SIZE, chunkSize);
+		if (resumeOffset != null)
+			options.put(ISendFileTransferOptions.RESUME_OFFSET, resumeOffset);
+		sendAdapter.sendOutgoingRequest(createFileID(outputFile.toURI().toURL()), inputFile, createFileTransferListener(), options);
+		waitForDone(10000);
+	}
+
+	public void testChunkedSend() throws Exception {
+		send(Integer.valueOf(16384), null);
+		assertTrue(Arrays.equals(content, Files.readAllBytes(outputFile.toPath())));
+	}
+
+	public void testResume() throws Exception {
+		// target holds the first 40000 bytes plus some garbage from an interrupted send
+		final byte[] partial = new byte[45000];
+		System.arraycopy(content, 0, partial, 0, 40000);
+		Files.write(outputFile.toPath(), partial);
+		send("16384", Long.valueOf(40000));
+		assertTrue(Arrays.equals(content, Files.readAllBytes(outputFile.toPath())));
+	}
+
+	public void testResumeBeyondTarget() throws Exception {
+		try {
+			send(null, Long.valueOf(50000));
+			fail("resume offset beyond target size should fail");
+		} catch (SendFileTransferException e) {
+			// expected
+		}
+		assertEquals(0, outputFile.length());
+	}
+}
@@ -30,9 +30,9 @@ import org.osgi.framework.FrameworkUtil;
  * executing the tests.
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ FileBrowseTest.class, FileIDFactoryTest.class, FileSendTest.class, GetRemoteFileNameTest.class,
+@Suite.SuiteClasses({ BandwidthSchedulerTest.class, FileBrowseTest.class, FileChunkedSendTest.class, FileIDFactoryTest.class, FileSendTest.class, GetRemoteFileNameTest.class,
 		NamespaceTest.class, URIProtocolFactoryRetrieveTest.class, URLBrowseTest.class, URLCancelTest.class,
-		URLPartialRetrieveTest.class, URLRetrievePauseResumeTest.class, URLRetrieveTest.class })
+		URLPartialRetrieveTest.class, URLRetrieveChecksumTest.class, URLRetrievePauseResumeTest.class, URLRetrieveTest.class, URLRetrieveTimingsTest.class })
 public class URLConnectionTestSuite {
 
 	private static void displayAllProviders() {
@@ -0,0 +1,100 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.tests.filetransfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.ecf.filetransfer.IRetrieveFileTransferOptions;
+import org.eclipse.ecf.filetransfer.InvalidChecksumException;
+import org.eclipse.ecf.filetransfer.events.IIncomingFileTransferReceiveStartEvent;
+
+public class URLRetrieveChecksumTest extends AbstractRetrieveTestCase {
+
+	File inputFile = null;
+	File outputFile = null;
+	byte[] content = null;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		content = new byte[100000];
+		for (int i = 0; i < content.length; i++)
+			content[i] = (byte) i;
+		inputFile = Files.createTempFile("ECFTest", "input.bin").toFile();
+		Files.write(inputFile.toPath(), content);
+		outputFile = Files.createTempFile("ECFTest", "output.bin").toFile();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		inputFile.delete();
+		outputFile.delete();
+	}
+
+	protected void handleStartEvent(IIncomingFileTransferReceiveStartEvent event) {
+		super.handleStartEvent(event);
+		try {
+			incomingFileTransfer = event.receive(outputFile);
+		} catch (final IOException e) {
+			fail(e.getLocalizedMessage());
+		}
+	}
+
+	private void retrieve(Object expectedDigest, String algorithm) throws Exception {
+		final Map options = new HashMap();
+		options.put(IRetrieveFileTransferOptions.EXPECTED_DIGEST, expectedDigest);
+		if (algorithm != null)
+			options.put(IRetrieveFileTransferOptions.DIGEST_ALGORITHM, algorithm);
+		retrieveAdapter.sendRetrieveRequest(createFileID(inputFile.toURI().toURL()), createFileTransferListener(), options);
+		waitForDone(10000);
+	}
+
+	private static String toHex(byte[] bytes) {
+		final StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < bytes.length; i++)
+			sb.append(Integer.toHexString((bytes[i] & 0xff) | 0x100).substring(1));
+		return sb.toString();
+	}
+
+	public void testMatchingSHA256() throws Exception {
+		retrieve(toHex(MessageDigest.getInstance("SHA-256").digest(content)), null);
+		assertDoneOK();
+		assertEquals(content.length, outputFile.length());
+	}
+
+	public void testMatchingMD5Bytes() throws Exception {
+		retrieve(MessageDigest.getInstance("MD5").digest(content), "MD5");
+		assertDoneOK();
+	}
+
+	public void testMismatch() throws Exception {
+		final byte[] wrong = MessageDigest.getInstance("SHA-256").digest(content);
+		wrong[0]++;
+		retrieve(wrong, "SHA-256");
+		final Exception e = getDoneEvent().getException();
+		assertTrue(String.valueOf(e), e instanceof InvalidChecksumException);
+		assertEquals(toHex(wrong), ((InvalidChecksumException) e).getExpectedDigest());
+		assertEquals(toHex(MessageDigest.getInstance("SHA-256").digest(content)), ((InvalidChecksumException) e).getActualDigest());
+	}
+
+	public void testUnknownAlgorithm() throws Exception {
+		retrieve("00", "NO-SUCH-DIGEST");
+		assertHasNoEvent(startEvents, IIncomingFileTransferReceiveStartEvent.class);
+		assertNotNull(getDoneEvent().getException());
+	}
+}
@@ -0,0 +1,96 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.tests.filetransfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.eclipse.ecf.filetransfer.IFileTransferTimings;
+import org.eclipse.ecf.filetransfer.events.IIncomingFileTransferReceiveStartEvent;
+import org.eclipse.ecf.filetransfer.service.IFileTransferMetrics;
+import org.eclipse.ecf.filetransfer.service.IFileTransferStatistics;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+
+public class URLRetrieveTimingsTest extends AbstractRetrieveTestCase {
+
+	File inputFile = null;
+	File outputFile = null;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		inputFile = Files.createTempFile("ECFTest", "input.bin").toFile();
+		Files.write(inputFile.toPath(), new byte[50000]);
+		outputFile = Files.createTempFile("ECFTest", "output.bin").toFile();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		inputFile.delete();
+		outputFile.delete();
+	}
+
+	protected void handleStartEvent(IIncomingFileTransferReceiveStartEvent event) {
+		super.handleStartEvent(event);
+		try {
+			incomingFileTransfer = event.receive(outputFile);
+		} catch (final IOException e) {
+			fail(e.getLocalizedMessage());
+		}
+	}
+
+	public void testDoneEventTimings() throws Exception {
+		testRetrieve(inputFile.toURI().toURL());
+		waitForDone(10000);
+		assertDoneOK();
+		final IFileTransferTimings timings = getDoneEvent().getTimings();
+		assertNotNull(timings);
+		assertEquals(inputFile.length(), timings.getBytesTransferred());
+		assertTrue(timings.getTimeToFirstByte() >= 0);
+		assertTrue(timings.getTotalTime() >= timings.getTimeToFirstByte());
+		assertEquals(0, timings.getRetryCount());
+	}
+
+	private void retrieve() throws Exception {
+		synchronized (lock) {
+			done = false;
+		}
+		doneEvents.clear();
+		testRetrieve(inputFile.toURI().toURL());
+		waitForDone(10000);
+		assertDoneOK();
+	}
+
+	public void testMetricsService() throws Exception {
+		// first retrieve makes sure the provider, and with it the service, is started
+		retrieve();
+		final BundleContext context = FrameworkUtil.getBundle(getClass()).getBundleContext();
+		final ServiceReference reference = context.getServiceReference(IFileTransferMetrics.class.getName());
+		assertNotNull(reference);
+		final IFileTransferMetrics metrics = (IFileTransferMetrics) context.getService(reference);
+		try {
+			final IFileTransferStatistics before = metrics.getRetrieveStatistics("file");
+			assertTrue(before.getTransferCount() > 0);
+			retrieve();
+			final IFileTransferStatistics after = metrics.getRetrieveStatistics("file");
+			assertEquals(before.getTransferCount() + 1, after.getTransferCount());
+			assertEquals(before.getBytesTransferred() + inputFile.length(), after.getBytesTransferred());
+			assertEquals(before.getFailureCount(), after.getFailureCount());
+		} finally {
+			context.ungetService(reference);
+		}
+	}
+}
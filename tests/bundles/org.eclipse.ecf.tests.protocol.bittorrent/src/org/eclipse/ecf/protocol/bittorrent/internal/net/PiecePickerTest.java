@@ -0,0 +1,311 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.protocol.bittorrent.internal.net;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.ecf.protocol.bittorrent.internal.torrent.Piece;
+import org.eclipse.ecf.protocol.bittorrent.internal.torrent.PieceState;
+
+public class PiecePickerTest extends TestCase {
+
+	private static final int BLOCK = 16384;
+
+	/**
+	 * the number of completed pieces from which on the picker stops picking
+	 * at random.
+	 */
+	private static final int RANDOM_FIRST_PIECES = 4;
+
+	private static Piece[] createPieces(int count) {
+		final PieceState[] states = PieceState.createStates(count);
+		final Piece[] pieces = new Piece[count];
+		for (int i = 0; i < count; i++) {
+			pieces[i] = new Piece(states[i], i);
+			pieces[i].setLength(2 * BLOCK);
+		}
+		return pieces;
+	}
+
+	private static int[] levels(int count, int level) {
+		final int[] levels = new int[count];
+		Arrays.fill(levels, level);
+		return levels;
+	}
+
+	private static boolean[] all(int count) {
+		final boolean[] has = new boolean[count];
+		Arrays.fill(has, true);
+		return has;
+	}
+
+	private static boolean[] only(int count, int[] numbers) {
+		final boolean[] has = new boolean[count];
+		for (int i = 0; i < numbers.length; i++) {
+			has[numbers[i]] = true;
+		}
+		return has;
+	}
+
+	/**
+	 * creates a picker that wants all pieces and picks rarest first.
+	 */
+	private static PiecePicker createPicker(Piece[] pieces) {
+		final PiecePicker picker = new PiecePicker(pieces);
+		picker.setLevels(levels(pieces.length, PiecePicker.NORMAL),
+				RANDOM_FIRST_PIECES);
+		return picker;
+	}
+
+	/**
+	 * requests every block of the piece, as a peer connection would.
+	 */
+	private static void requestAll(Piece piece) {
+		while (!piece.isFullyRequested()) {
+			assertNotNull(piece.getRequestInformation());
+		}
+	}
+
+	private static void complete(Piece piece) {
+		piece.addBlock(0, BLOCK);
+		piece.addBlock(BLOCK, BLOCK);
+		assertTrue(piece.isComplete());
+	}
+
+	public void testNothingWantedBeforeSetLevels() {
+		final PiecePicker picker = new PiecePicker(createPieces(3));
+		assertNull(picker.pick(all(3)));
+		assertFalse(picker.isWanted(all(3)));
+	}
+
+	public void testStartedPiecesFirst() {
+		final Piece[] pieces = createPieces(10);
+		final PiecePicker picker = createPicker(pieces);
+		picker.addPeer(all(10));
+
+		final Piece first = picker.pick(all(10));
+		assertNotNull(first);
+		// a started piece with blocks left to request is picked again
+		assertSame(first, picker.pick(all(10)));
+		// even if the other pieces are rarer now
+		picker.addPeer(only(10, new int[] {first.getNumber()}));
+		assertSame(first, picker.pick(all(10)));
+
+		requestAll(first);
+		final Piece second = picker.pick(all(10));
+		assertNotSame(first, second);
+		assertSame(second, picker.pick(all(10)));
+	}
+
+	public void testPartiallyWrittenPiecesAreResumedFirst() {
+		final Piece[] pieces = createPieces(10);
+		pieces[7].addBlock(0, BLOCK);
+		final PiecePicker picker = createPicker(pieces);
+		// piece 7 is the most common piece
+		picker.addPeer(all(10));
+		picker.addPeer(only(10, new int[] {7}));
+		assertSame(pieces[7], picker.pick(all(10)));
+	}
+
+	public void testRandomFirstPieces() {
+		final int count = 10;
+		final int rarest = 3;
+		final boolean[] common = all(count);
+		common[rarest] = false;
+		final Set picked = new HashSet();
+		for (int i = 0; i < 200; i++) {
+			final PiecePicker picker = new PiecePicker(createPieces(count));
+			picker.setLevels(levels(count, PiecePicker.NORMAL), 0);
+			picker.addPeer(all(count));
+			picker.addPeer(common);
+			picked.add(Integer.valueOf(picker.pick(all(count)).getNumber()));
+		}
+		// rarest first would have picked the same piece every time
+		assertTrue(picked.size() > 1);
+	}
+
+	public void testRarestFirstAfterRandomFirstPieces() {
+		final int count = 10;
+		final int rarest = 3;
+		final Piece[] pieces = createPieces(count);
+		final PiecePicker picker = new PiecePicker(pieces);
+		picker.setLevels(levels(count, PiecePicker.NORMAL), 0);
+		final boolean[] common = all(count);
+		common[rarest] = false;
+		picker.addPeer(all(count));
+		picker.addPeer(common);
+
+		// completing pieces ends the random phase
+		final int[] done = new int[] {0, 1, 2, 4};
+		for (int i = 0; i < done.length; i++) {
+			picker.pieceCompleted(done[i]);
+		}
+		assertSame(pieces[rarest], picker.pick(all(count)));
+	}
+
+	public void testRarestFirst() {
+		final int count = 5;
+		final Piece[] pieces = createPieces(count);
+		final PiecePicker picker = createPicker(pieces);
+		// availability 3, 2, 1, 3, 2
+		picker.addPeer(all(count));
+		picker.addPeer(only(count, new int[] {0, 1, 3, 4}));
+		picker.addPeer(only(count, new int[] {0, 3}));
+		final int[] availability = new int[] {3, 2, 1, 3, 2};
+
+		int last = 0;
+		final Set picked = new HashSet();
+		for (int i = 0; i < count; i++) {
+			final Piece piece = picker.pick(all(count));
+			assertNotNull(piece);
+			assertTrue(picked.add(piece));
+			assertTrue(availability[piece.getNumber()] >= last);
+			last = availability[piece.getNumber()];
+			requestAll(piece);
+		}
+	}
+
+	public void testRarestPieceOfPeer() {
+		final int count = 5;
+		final Piece[] pieces = createPieces(count);
+		final PiecePicker picker = createPicker(pieces);
+		picker.addPeer(all(count));
+		picker.addPeer(only(count, new int[] {0, 1, 3}));
+		// the rarest pieces, 2 and 4, are not offered by this peer
+		final Piece piece = picker.pick(only(count, new int[] {0, 1, 3}));
+		assertTrue(piece.getNumber() == 0 || piece.getNumber() == 1
+				|| piece.getNumber() == 3);
+		assertNull(createPicker(createPieces(count)).pick(new boolean[count]));
+	}
+
+	public void testHighPriorityBeforeRarity() {
+		final int count = 5;
+		final Piece[] pieces = createPieces(count);
+		final PiecePicker picker = new PiecePicker(pieces);
+		final int[] levels = levels(count, PiecePicker.NORMAL);
+		levels[0] = PiecePicker.HIGH;
+		levels[2] = PiecePicker.SKIP;
+		picker.setLevels(levels, RANDOM_FIRST_PIECES);
+		picker.addPeer(all(count));
+		picker.addPeer(only(count, new int[] {0}));
+
+		assertSame(pieces[0], picker.pick(all(count)));
+		requestAll(pieces[0]);
+		// skipped pieces are never picked
+		assertFalse(picker.isWanted(only(count, new int[] {2})));
+		assertNull(picker.pick(only(count, new int[] {2})));
+	}
+
+	public void testEndgame() {
+		final int count = 3;
+		final Piece[] pieces = createPieces(count);
+		final PiecePicker picker = createPicker(pieces);
+		picker.addPeer(all(count));
+		final boolean[] first = only(count, new int[] {0, 1});
+
+		for (int i = 0; i < 2; i++) {
+			requestAll(picker.pick(first));
+		}
+		// not every wanted piece has been started yet
+		assertNull(picker.pick(first));
+
+		final Piece last = picker.pick(all(count));
+		assertSame(pieces[2], last);
+		requestAll(last);
+
+		// endgame, pieces with outstanding requests are handed out again
+		final Set picked = new HashSet();
+		for (int i = 0; i < 100; i++) {
+			final Piece piece = picker.pick(all(count));
+			assertNotNull(piece);
+			picked.add(piece);
+		}
+		assertEquals(count, picked.size());
+		assertSame(pieces[1], picker.pick(only(count, new int[] {1})));
+
+		// complete pieces are not re-issued
+		complete(pieces[1]);
+		assertNull(picker.pick(only(count, new int[] {1})));
+		picker.pieceCompleted(1);
+		assertNull(picker.pick(only(count, new int[] {1})));
+		for (int i = 0; i < 100; i++) {
+			assertNotSame(pieces[1], picker.pick(all(count)));
+		}
+	}
+
+	public void testAvailabilityFollowsPeers() {
+		final int count = 3;
+		final Piece[] pieces = createPieces(count);
+		final PiecePicker picker = createPicker(pieces);
+		final boolean[] peer = only(count, new int[] {0, 2});
+		picker.addPeer(all(count));
+		picker.addPeer(peer);
+		// availability 2, 1, 2
+		assertSame(pieces[1], picker.pick(all(count)));
+		requestAll(pieces[1]);
+
+		picker.removePeer(peer);
+		picker.addPeer(only(count, new int[] {0}));
+		// availability 2, 1, 1
+		assertSame(pieces[2], picker.pick(all(count)));
+	}
+
+	public void testPieceAvailable() {
+		final int count = 3;
+		final Piece[] pieces = createPieces(count);
+		final PiecePicker picker = createPicker(pieces);
+		picker.addPeer(all(count));
+		picker.pieceAvailable(0);
+		picker.pieceAvailable(2);
+		assertSame(pieces[1], picker.pick(all(count)));
+	}
+
+	public void testRemovePeerDoesNotGoNegative() {
+		final int count = 3;
+		final Piece[] pieces = createPieces(count);
+		final PiecePicker picker = createPicker(pieces);
+		picker.addPeer(only(count, new int[] {1}));
+		// a peer that was never added
+		picker.removePeer(all(count));
+		picker.removePeer(all(count));
+		picker.addPeer(only(count, new int[] {0, 2}));
+		// availability 1, 0, 1
+		assertSame(pieces[1], picker.pick(all(count)));
+	}
+
+	public void testLengthIsChecked() {
+		final PiecePicker picker = createPicker(createPieces(3));
+		try {
+			picker.addPeer(new boolean[2]);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			picker.removePeer(new boolean[4]);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			picker.setLevels(new int[2], 0);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
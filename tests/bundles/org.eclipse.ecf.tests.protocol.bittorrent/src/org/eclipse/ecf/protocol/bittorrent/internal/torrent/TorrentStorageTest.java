@@ -0,0 +1,296 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.protocol.bittorrent.internal.torrent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TorrentStorageTest extends TestCase {
+
+	private static final int BLOCK = 16384;
+
+	/**
+	 * the size of a mapped region of the storage.
+	 */
+	private static final long REGION_SIZE = 1 << 28;
+
+	private File dir;
+
+	private final List files = new ArrayList();
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("storage", ".test"); //$NON-NLS-1$ //$NON-NLS-2$
+		dir.delete();
+		dir.mkdir();
+	}
+
+	protected void tearDown() throws Exception {
+		for (int i = 0; i < files.size(); i++) {
+			((DataFile) files.get(i)).getChannel().close();
+		}
+		final File[] children = dir.listFiles();
+		for (int i = 0; i < children.length; i++) {
+			children[i].delete();
+		}
+		dir.delete();
+		super.tearDown();
+	}
+
+	private DataFile[] createFiles(long[] lengths) throws IOException {
+		final DataFile[] created = new DataFile[lengths.length];
+		for (int i = 0; i < lengths.length; i++) {
+			created[i] = new DataFile(new File(dir, "file" + i), lengths[i]); //$NON-NLS-1$
+			files.add(created[i]);
+		}
+		return created;
+	}
+
+	private static String hash(byte[] b, int offset, int length)
+			throws Exception {
+		final MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+		digest.update(b, offset, length);
+		return new String(digest.digest(), "ISO-8859-1"); //$NON-NLS-1$
+	}
+
+	/**
+	 * the hashes of the pieces of the given data.
+	 */
+	private static String[] hashes(byte[] data, int pieceLength)
+			throws Exception {
+		final String[] hashes = new String[(data.length + pieceLength - 1)
+				/ pieceLength];
+		for (int i = 0; i < hashes.length; i++) {
+			final int offset = i * pieceLength;
+			hashes[i] = hash(data, offset, Math.min(pieceLength, data.length
+					- offset));
+		}
+		return hashes;
+	}
+
+	private static byte[] data(int length, long seed) {
+		final byte[] b = new byte[length];
+		new Random(seed).nextBytes(b);
+		return b;
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		final RandomAccessFile in = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			final byte[] b = new byte[(int) in.length()];
+			in.readFully(b);
+			return b;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * writes the blocks of a piece in reverse order.
+	 */
+	private static void writePiece(TorrentStorage storage, int piece,
+			byte[] data, int offset, int length) throws IOException {
+		for (int index = (length - 1) / BLOCK * BLOCK; index >= 0; index -= BLOCK) {
+			storage.write(piece, index, data, offset + index, Math.min(BLOCK,
+					length - index));
+		}
+	}
+
+	public void testPieceSpanningFiles() throws Exception {
+		final long[] lengths = new long[] {0, 10, 0, 20000, 0, 0, 5, 30000, 0};
+		final int pieceLength = 2 * BLOCK;
+		final byte[] data = data(50015, 1);
+		final DataFile[] dataFiles = createFiles(lengths);
+		final TorrentStorage storage = new TorrentStorage(dataFiles, hashes(
+				data, pieceLength), pieceLength);
+		assertEquals(pieceLength, storage.getLength(0));
+		assertEquals(50015 - pieceLength, storage.getLength(1));
+
+		for (int piece = 1; piece >= 0; piece--) {
+			final int offset = piece * pieceLength;
+			writePiece(storage, piece, data, offset, storage.getLength(piece));
+			assertTrue(storage.complete(piece));
+			assertTrue(storage.verify(piece));
+		}
+		// a block across the zero length files in the middle
+		assertTrue(Arrays.equals(Arrays.copyOfRange(data, 20000, 20020),
+				storage.read(0, 20000, 20)));
+		storage.close();
+
+		int start = 0;
+		for (int i = 0; i < lengths.length; i++) {
+			final byte[] b = readFile(new File(dir, "file" + i)); //$NON-NLS-1$
+			assertEquals(lengths[i], b.length);
+			assertTrue(Arrays.equals(Arrays.copyOfRange(data, start, start
+					+ b.length), b));
+			start += b.length;
+		}
+	}
+
+	public void testOffsetsPastRegionsAnd2GB() throws Exception {
+		// sparse files, only the pieces written take up space
+		final long first = (1L << 31) + 1000;
+		final long[] lengths = new long[] {first, 1000000000L};
+		final int pieceLength = 1000000;
+		final int count = (int) ((first + lengths[1] + pieceLength - 1) / pieceLength);
+		final String[] hashes = new String[count];
+		Arrays.fill(hashes, ""); //$NON-NLS-1$
+
+		// across the first region boundary, across 2 GB, the region boundary
+		// and the end of the first file, and across a region boundary of the
+		// second file
+		final int[] pieces = new int[] {(int) (REGION_SIZE / pieceLength),
+				(int) (first / pieceLength),
+				(int) ((first + REGION_SIZE) / pieceLength), count - 1};
+		final byte[][] data = new byte[pieces.length][];
+		final DataFile[] dataFiles = createFiles(lengths);
+		for (int i = 0; i < pieces.length; i++) {
+			final int length = (int) Math.min(pieceLength, first + lengths[1]
+					- (long) pieces[i] * pieceLength);
+			data[i] = data(length, pieces[i]);
+			hashes[pieces[i]] = hash(data[i], 0, length);
+		}
+		final TorrentStorage storage = new TorrentStorage(dataFiles, hashes,
+				pieceLength);
+		for (int i = 0; i < pieces.length; i++) {
+			assertEquals(data[i].length, storage.getLength(pieces[i]));
+			writePiece(storage, pieces[i], data[i], 0, data[i].length);
+			assertTrue(storage.complete(pieces[i]));
+		}
+		storage.close();
+		for (int i = 0; i < pieces.length; i++) {
+			assertTrue(storage.verify(pieces[i]));
+			assertTrue(Arrays.equals(data[i], storage.read(pieces[i], 0,
+					data[i].length)));
+		}
+
+		// the bytes around 2 GB are in the right files
+		final long position = (long) pieces[1] * pieceLength;
+		final int split = (int) (first - position);
+		final RandomAccessFile in = new RandomAccessFile(new File(dir, "file0"), "r"); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			in.seek(position);
+			final byte[] b = new byte[split];
+			in.readFully(b);
+			assertTrue(Arrays.equals(Arrays.copyOfRange(data[1], 0, split), b));
+			assertEquals(-1, in.read());
+		} finally {
+			in.close();
+		}
+		storage.close();
+	}
+
+	public void testHashMismatchLeavesFilesUnwritten() throws Exception {
+		final int pieceLength = 4 * BLOCK;
+		final byte[] data = data(2 * pieceLength, 2);
+		final DataFile[] dataFiles = createFiles(new long[] {pieceLength + 100,
+				pieceLength - 100});
+		final TorrentStorage storage = new TorrentStorage(dataFiles, hashes(
+				data, pieceLength), pieceLength);
+
+		final byte[] corrupt = (byte[]) data.clone();
+		corrupt[pieceLength + 3 * BLOCK] ^= 1;
+		writePiece(storage, 1, corrupt, pieceLength, pieceLength);
+		assertFalse(storage.complete(1));
+		assertTrue(Arrays.equals(new byte[pieceLength], storage.read(1, 0,
+				pieceLength)));
+		storage.close();
+		assertTrue(Arrays.equals(new byte[pieceLength + 100], readFile(new File(
+				dir, "file0")))); //$NON-NLS-1$
+		assertTrue(Arrays.equals(new byte[pieceLength - 100], readFile(new File(
+				dir, "file1")))); //$NON-NLS-1$
+
+		// the piece can be downloaded again
+		writePiece(storage, 1, data, pieceLength, pieceLength);
+		assertTrue(storage.complete(1));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(data, pieceLength,
+				2 * pieceLength), storage.read(1, 0, pieceLength)));
+	}
+
+	public void testFlushWritesPartialPieces() throws Exception {
+		final int pieceLength = 4 * BLOCK;
+		final byte[] data = data(2 * pieceLength, 3);
+		final String[] hashes = hashes(data, pieceLength);
+		final DataFile[] dataFiles = createFiles(new long[] {data.length});
+		final TorrentStorage storage = new TorrentStorage(dataFiles, hashes,
+				pieceLength);
+		storage.write(0, 0, data, 0, BLOCK);
+		storage.write(0, 2 * BLOCK, data, 2 * BLOCK, BLOCK);
+		storage.write(1, BLOCK, data, pieceLength + BLOCK, 100);
+		// nothing is written before the pieces are complete
+		assertTrue(Arrays.equals(new byte[BLOCK], storage.read(0, 0, BLOCK)));
+
+		storage.flush();
+		final byte[] b = readFile(new File(dir, "file0")); //$NON-NLS-1$
+		final byte[] expected = new byte[data.length];
+		System.arraycopy(data, 0, expected, 0, BLOCK);
+		System.arraycopy(data, 2 * BLOCK, expected, 2 * BLOCK, BLOCK);
+		System.arraycopy(data, pieceLength + BLOCK, expected, pieceLength
+				+ BLOCK, 100);
+		assertTrue(Arrays.equals(expected, b));
+
+		// a later session sees the flushed blocks and completes the pieces
+		final TorrentStorage resumed = new TorrentStorage(dataFiles, hashes,
+				pieceLength);
+		resumed.write(0, BLOCK, data, BLOCK, BLOCK);
+		resumed.write(0, 3 * BLOCK, data, 3 * BLOCK, BLOCK);
+		assertTrue(resumed.complete(0));
+		writePiece(resumed, 1, data, pieceLength, pieceLength);
+		assertTrue(resumed.complete(1));
+		resumed.close();
+		assertTrue(Arrays.equals(data, readFile(new File(dir, "file0")))); //$NON-NLS-1$
+	}
+
+	public void testVerifyReportsEveryPieceOnce() throws Exception {
+		// enough pieces for the verification to be split up
+		final int pieceLength = BLOCK;
+		final int count = 3000;
+		final String zeros = hash(new byte[pieceLength], 0, pieceLength);
+		final String[] hashes = new String[count];
+		for (int i = 0; i < count; i++) {
+			hashes[i] = i % 3 == 0 ? zeros : "invalid"; //$NON-NLS-1$
+		}
+		final DataFile[] dataFiles = createFiles(new long[] {
+				(long) count * pieceLength / 2, (long) count * pieceLength / 2});
+		final TorrentStorage storage = new TorrentStorage(dataFiles, hashes,
+				pieceLength);
+		// blocks that have not been written are discarded
+		storage.write(0, 0, data(BLOCK, 4), 0, BLOCK);
+
+		final Thread caller = Thread.currentThread();
+		final int[] reported = new int[count];
+		final boolean[] valid = new boolean[count];
+		final boolean[] validReported = new boolean[count];
+		storage.verify(valid, new TorrentStorage.VerificationListener() {
+			public void pieceVerified(int piece, boolean isValid) {
+				assertSame(caller, Thread.currentThread());
+				reported[piece]++;
+				validReported[piece] = isValid;
+			}
+		});
+		for (int i = 0; i < count; i++) {
+			assertEquals(1, reported[i]);
+			assertEquals(i % 3 == 0, valid[i]);
+			assertEquals(valid[i], validReported[i]);
+		}
+		storage.close();
+	}
+}
@@ -38,8 +38,23 @@ public class ConcreteNIOChannel extends NIOChannel {
 		return getLocalPort();
 	}
 
-	protected void sendRequest(ID receiver) throws ECFException {
-		// nothing to do
+	private ECFException requestFailure;
+
+	private int requestCount;
+
+	public synchronized void setRequestFailure(ECFException requestFailure) {
+		this.requestFailure = requestFailure;
+	}
+
+	public synchronized int getRequestCount() {
+		return requestCount;
+	}
+
+	protected synchronized void sendRequest(ID receiver) throws ECFException {
+		requestCount++;
+		if (requestFailure != null) {
+			throw requestFailure;
+		}
 	}
 
 }
@@ -12,7 +12,13 @@
  *****************************************************************************/
 package org.eclipse.ecf.tests.provider.datashare.nio;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -285,4 +291,150 @@ public class NIODatashareTest extends TestCase {
 		assertEquals(expected1, actual[0]);
 		assertEquals(expected2, actual[1]);
 	}
+
+	public void testMultipleMessagesBeforeConnect() throws Exception {
+		final int count = 50;
+		final List actual = Collections.synchronizedList(new ArrayList());
+
+		channelA = createChannel(channelContainerA);
+
+		int targetPort = channelA.getPort();
+
+		channelB = createChannel(channelContainerB, new IChannelListener() {
+			public void handleChannelEvent(IChannelEvent event) {
+				if (event instanceof IChannelMessageEvent) {
+					actual.add(((IChannelMessageEvent) event).getData());
+
+					if (actual.size() == count) {
+						synchronized (waitObject) {
+							waitObject.notify();
+						}
+					}
+				}
+			}
+		});
+
+		// all of these must be held back until the channels have connected
+		for (int i = 0; i < count; i++) {
+			channelA.sendMessage(containerB.getConnectedID(), new byte[] {
+					(byte) i, (byte) (i + 1) });
+		}
+
+		channelContainerB.enqueue(new InetSocketAddress(LOCALHOST, targetPort));
+
+		waitForCompletion(5000);
+
+		assertEquals(count, actual.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals(new byte[] { (byte) i, (byte) (i + 1) },
+					(byte[]) actual.get(i));
+		}
+	}
+
+	public void testOneWaySend4M() throws Exception {
+		final byte[][] actual = new byte[1][];
+
+		channelA = createChannel(channelContainerA);
+
+		int targetPort = channelA.getPort();
+
+		channelB = createChannel(channelContainerB, new IChannelListener() {
+			public void handleChannelEvent(IChannelEvent event) {
+				if (event instanceof IChannelMessageEvent) {
+					actual[0] = ((IChannelMessageEvent) event).getData();
+
+					synchronized (waitObject) {
+						waitObject.notify();
+					}
+				}
+			}
+		});
+
+		// larger than the socket buffers, so it is written in several passes
+		byte[] expected = new byte[4 * 1024 * 1024];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = (byte) (i % 251);
+		}
+
+		channelA.sendMessage(containerB.getConnectedID(), expected);
+
+		channelContainerB.enqueue(new InetSocketAddress(LOCALHOST, targetPort));
+
+		waitForCompletion(10000);
+
+		assertEquals(expected, actual[0]);
+	}
+
+	public void testFailedRequestIsRetried() throws Exception {
+		final byte[][] actual = new byte[1][];
+
+		channelA = createChannel(channelContainerA);
+
+		int targetPort = channelA.getPort();
+
+		channelB = createChannel(channelContainerB, new IChannelListener() {
+			public void handleChannelEvent(IChannelEvent event) {
+				if (event instanceof IChannelMessageEvent) {
+					actual[0] = ((IChannelMessageEvent) event).getData();
+
+					synchronized (waitObject) {
+						waitObject.notify();
+					}
+				}
+			}
+		});
+
+		channelA.setRequestFailure(new ECFException("request failed")); //$NON-NLS-1$
+		try {
+			channelA.sendMessage(containerB.getConnectedID(), new byte[] { 1,
+					2, 3 });
+			fail("The failed request should have been reported"); //$NON-NLS-1$
+		} catch (ECFException e) {
+			// expected
+		}
+
+		// the next message must send a new request instead of waiting for
+		// the failed one
+		channelA.setRequestFailure(null);
+		byte[] expected = { 4, 5, 6 };
+		channelA.sendMessage(containerB.getConnectedID(), expected);
+		assertEquals(2, channelA.getRequestCount());
+
+		channelContainerB.enqueue(new InetSocketAddress(LOCALHOST, targetPort));
+
+		waitForCompletion(5000);
+
+		assertEquals(expected, actual[0]);
+	}
+
+	public void testOversizedMessageIsRejected() throws Exception {
+		channelA = createChannel(channelContainerA);
+		try {
+			channelA.sendMessage(containerB.getConnectedID(),
+					new byte[16 * 1024 * 1024 + 1]);
+			fail("An oversized message should have been rejected"); //$NON-NLS-1$
+		} catch (ECFException e) {
+			// expected
+		}
+		assertEquals(0, channelA.getRequestCount());
+	}
+
+	public void testOversizedFrameClosesConnection() throws Exception {
+		channelA = createChannel(channelContainerA);
+
+		Socket socket = new Socket(LOCALHOST, channelA.getPort());
+		try {
+			socket.setSoTimeout(5000);
+			DataOutputStream out = new DataOutputStream(socket
+					.getOutputStream());
+			// announce a frame far larger than any message
+			out.writeInt(Integer.MAX_VALUE);
+			out.flush();
+
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			assertEquals(-1, in.read());
+		} finally {
+			socket.close();
+		}
+	}
 }
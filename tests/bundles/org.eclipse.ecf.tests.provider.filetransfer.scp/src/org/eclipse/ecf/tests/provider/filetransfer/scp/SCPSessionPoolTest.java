@@ -0,0 +1,130 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.tests.provider.filetransfer.scp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.eclipse.ecf.core.security.ConnectContextFactory;
+import org.eclipse.ecf.filetransfer.IFileTransferListener;
+import org.eclipse.ecf.filetransfer.IRetrieveFileTransferContainerAdapter;
+import org.eclipse.ecf.filetransfer.events.*;
+import org.eclipse.ecf.filetransfer.identity.FileIDFactory;
+import org.eclipse.ecf.internal.provider.filetransfer.scp.Activator;
+import org.eclipse.ecf.internal.provider.filetransfer.scp.ScpSessionPool;
+
+/**
+ * Tests that retrieve requests for the same account share a pooled session.
+ */
+public class SCPSessionPoolTest extends AbstractSCPTest {
+
+	private String retrieveFile = System.getProperty("retrieveFile", "test.txt"); //$NON-NLS-1$ //$NON-NLS-2$
+	private IRetrieveFileTransferContainerAdapter adapter = null;
+	private ScpSessionPool pool = null;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		adapter = (IRetrieveFileTransferContainerAdapter) baseContainer.getAdapter(IRetrieveFileTransferContainerAdapter.class);
+		adapter.setConnectContextForAuthentication(ConnectContextFactory.createUsernamePasswordConnectContext(username, password));
+		pool = Activator.getDefault().getSessionPool();
+		// start without sessions of other tests
+		pool.dispose();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception {
+		pool.dispose();
+		pool = null;
+		adapter = null;
+		super.tearDown();
+	}
+
+	private String getTargetURL(String file) {
+		return "scp://" + host + (file.startsWith("/") ? "" : "/") + file; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	/**
+	 * Retrieve a file and wait for the transfer to finish.
+	 *
+	 * @return the exception that the transfer failed with, or
+	 *         <code>null</code>
+	 */
+	private Exception retrieve(String file) throws Exception {
+		final Object lock = new Object();
+		final Exception[] result = new Exception[1];
+		final boolean[] done = new boolean[1];
+		final IFileTransferListener listener = new IFileTransferListener() {
+			public void handleTransferEvent(IFileTransferEvent event) {
+				if (event instanceof IIncomingFileTransferReceiveStartEvent) {
+					try {
+						((IIncomingFileTransferReceiveStartEvent) event).receive(new ByteArrayOutputStream());
+					} catch (IOException e) {
+						fail(e.getLocalizedMessage());
+					}
+				} else if (event instanceof IIncomingFileTransferReceiveDoneEvent) {
+					synchronized (lock) {
+						result[0] = ((IIncomingFileTransferReceiveDoneEvent) event).getException();
+						done[0] = true;
+						lock.notifyAll();
+					}
+				}
+			}
+		};
+		adapter.sendRetrieveRequest(FileIDFactory.getDefault().createFileID(adapter.getRetrieveNamespace(), getTargetURL(file)), listener, null);
+		// failures to connect are reported before sendRetrieveRequest returns
+		final long end = System.currentTimeMillis() + 60000;
+		synchronized (lock) {
+			while (!done[0]) {
+				final long wait = end - System.currentTimeMillis();
+				if (wait <= 0)
+					fail("Retrieving " + file + " timed out"); //$NON-NLS-1$ //$NON-NLS-2$
+				lock.wait(wait);
+			}
+			return result[0];
+		}
+	}
+
+	public void testSessionIsReused() throws Exception {
+		assertNull(retrieve(retrieveFile));
+		assertEquals(1, pool.getSessionCount());
+		assertNull(retrieve(retrieveFile));
+		assertEquals(1, pool.getSessionCount());
+	}
+
+	public void testMissingFileKeepsSession() throws Exception {
+		assertNull(retrieve(retrieveFile));
+		assertEquals(1, pool.getSessionCount());
+		// reported by scp on the pooled session, which is still usable
+		assertNotNull(retrieve(retrieveFile + ".doesnotexist")); //$NON-NLS-1$
+		assertEquals(1, pool.getSessionCount());
+		assertNull(retrieve(retrieveFile));
+		assertEquals(1, pool.getSessionCount());
+	}
+
+	public void testWrongPasswordUsesOwnSession() throws Exception {
+		assertNull(retrieve(retrieveFile));
+		adapter.setConnectContextForAuthentication(ConnectContextFactory.createUsernamePasswordConnectContext(username, password + "wrong")); //$NON-NLS-1$
+		// authentication is not skipped by the pooled session
+		assertNotNull(retrieve(retrieveFile));
+		assertEquals(1, pool.getSessionCount());
+	}
+}
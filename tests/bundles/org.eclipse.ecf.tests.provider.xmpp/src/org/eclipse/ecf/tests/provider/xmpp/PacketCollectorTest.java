@@ -0,0 +1,191 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.tests.provider.xmpp;
+
+import java.util.Collection;
+
+import junit.framework.TestCase;
+
+import org.jivesoftware.smack.Connection;
+import org.jivesoftware.smack.ConnectionConfiguration;
+import org.jivesoftware.smack.PacketCollector;
+import org.jivesoftware.smack.Roster;
+import org.jivesoftware.smack.filter.AndFilter;
+import org.jivesoftware.smack.filter.PacketIDFilter;
+import org.jivesoftware.smack.filter.PacketTypeFilter;
+import org.jivesoftware.smack.packet.IQ;
+import org.jivesoftware.smack.packet.Message;
+import org.jivesoftware.smack.packet.Packet;
+import org.jivesoftware.smack.packet.Presence;
+
+/**
+ * Tests that the packet collectors of a Smack connection which wait for a packet
+ * ID are only handed the packets with that ID.
+ */
+public class PacketCollectorTest extends TestCase {
+
+	/**
+	 * Connection that is never connected, to get at the collectors for a packet.
+	 */
+	static class TestConnection extends Connection {
+
+		TestConnection() {
+			super(new ConnectionConfiguration("localhost", 5222));
+		}
+
+		Collection getCollectors(Packet packet) {
+			return getPacketCollectors(packet);
+		}
+
+		Collection getAllCollectors() {
+			return getPacketCollectors();
+		}
+
+		public String getUser() {
+			return null;
+		}
+
+		public String getConnectionID() {
+			return null;
+		}
+
+		public boolean isConnected() {
+			return false;
+		}
+
+		public boolean isAuthenticated() {
+			return false;
+		}
+
+		public boolean isAnonymous() {
+			return false;
+		}
+
+		public boolean isSecureConnection() {
+			return false;
+		}
+
+		public boolean isUsingCompression() {
+			return false;
+		}
+
+		public void connect() {
+			// not connected
+		}
+
+		public void login(String username, String password, String resource) {
+			// not connected
+		}
+
+		public void loginAnonymously() {
+			// not connected
+		}
+
+		public void sendPacket(Packet packet) {
+			// not connected
+		}
+
+		public Roster getRoster() {
+			return null;
+		}
+
+		public void disconnect(Presence unavailablePresence) {
+			// not connected
+		}
+	}
+
+	private TestConnection connection;
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		connection = new TestConnection();
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception {
+		connection = null;
+		super.tearDown();
+	}
+
+	private Packet createMessage(String packetID) {
+		final Message message = new Message();
+		message.setPacketID(packetID);
+		return message;
+	}
+
+	public void testIDCollectorGetsPacketWithID() throws Exception {
+		final PacketCollector collector = connection.createPacketCollector(new PacketIDFilter("a"));
+		final Collection collectors = connection.getCollectors(createMessage("a"));
+		assertEquals(1, collectors.size());
+		assertTrue(collectors.contains(collector));
+	}
+
+	public void testIDCollectorDoesNotGetOtherPackets() throws Exception {
+		connection.createPacketCollector(new PacketIDFilter("a"));
+		assertTrue(connection.getCollectors(createMessage("b")).isEmpty());
+		assertTrue(connection.getCollectors(createMessage(Packet.ID_NOT_AVAILABLE)).isEmpty());
+	}
+
+	public void testCollectorsWithSameID() throws Exception {
+		final PacketCollector first = connection.createPacketCollector(new PacketIDFilter("a"));
+		final PacketCollector second = connection.createPacketCollector(new PacketIDFilter("a"));
+		final Collection collectors = connection.getCollectors(createMessage("a"));
+		assertEquals(2, collectors.size());
+		assertTrue(collectors.contains(first));
+		assertTrue(collectors.contains(second));
+	}
+
+	public void testAndFilterWithIDFilter() throws Exception {
+		final PacketCollector collector = connection.createPacketCollector(new AndFilter(new PacketTypeFilter(IQ.class), new PacketIDFilter("b")));
+		assertTrue(connection.getCollectors(createMessage("a")).isEmpty());
+		final Collection collectors = connection.getCollectors(createMessage("b"));
+		assertEquals(1, collectors.size());
+		assertTrue(collectors.contains(collector));
+		collector.cancel();
+		assertTrue(connection.getCollectors(createMessage("b")).isEmpty());
+	}
+
+	public void testGenericCollectorGetsEveryPacket() throws Exception {
+		final PacketCollector generic = connection.createPacketCollector(new PacketTypeFilter(Message.class));
+		final PacketCollector id = connection.createPacketCollector(new PacketIDFilter("a"));
+		Collection collectors = connection.getCollectors(createMessage("a"));
+		assertEquals(2, collectors.size());
+		assertTrue(collectors.contains(generic));
+		assertTrue(collectors.contains(id));
+		collectors = connection.getCollectors(createMessage("b"));
+		assertEquals(1, collectors.size());
+		assertTrue(collectors.contains(generic));
+	}
+
+	public void testCancelRemovesCollector() throws Exception {
+		final PacketCollector first = connection.createPacketCollector(new PacketIDFilter("a"));
+		final PacketCollector second = connection.createPacketCollector(new PacketIDFilter("a"));
+		final PacketCollector generic = connection.createPacketCollector(new PacketTypeFilter(Message.class));
+		assertEquals(3, connection.getAllCollectors().size());
+		first.cancel();
+		Collection collectors = connection.getCollectors(createMessage("a"));
+		assertEquals(2, collectors.size());
+		assertFalse(collectors.contains(first));
+		second.cancel();
+		generic.cancel();
+		assertTrue(connection.getCollectors(createMessage("a")).isEmpty());
+		assertTrue(connection.getAllCollectors().isEmpty());
+	}
+
+}
@@ -0,0 +1,382 @@
+/****************************************************************************
+ * Copyright (c) 2008 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+
+package org.eclipse.ecf.tests.provider.xmpp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.ecf.core.ContainerFactory;
+import org.eclipse.ecf.core.IContainer;
+import org.eclipse.ecf.core.identity.ID;
+import org.eclipse.ecf.core.identity.IDFactory;
+import org.eclipse.ecf.core.sharedobject.ISharedObjectContainer;
+import org.eclipse.ecf.internal.provider.xmpp.XMPPContainerPresenceHelper;
+import org.eclipse.ecf.internal.provider.xmpp.events.IQEvent;
+import org.eclipse.ecf.internal.provider.xmpp.events.PresenceEvent;
+import org.eclipse.ecf.presence.IPresence;
+import org.eclipse.ecf.presence.IPresenceListener;
+import org.eclipse.ecf.presence.roster.IRoster;
+import org.eclipse.ecf.presence.roster.IRosterBatchListener;
+import org.eclipse.ecf.presence.roster.IRosterEntry;
+import org.eclipse.ecf.presence.roster.IRosterGroup;
+import org.eclipse.ecf.presence.roster.IRosterItem;
+import org.eclipse.ecf.presence.roster.IRosterListener;
+import org.eclipse.ecf.presence.roster.IRosterSubscriptionListener;
+import org.eclipse.ecf.provider.xmpp.XMPPContainer;
+import org.eclipse.ecf.provider.xmpp.identity.XMPPID;
+import org.jivesoftware.smack.packet.DefaultPacketExtension;
+import org.jivesoftware.smack.packet.IQ;
+import org.jivesoftware.smack.packet.Presence;
+import org.jivesoftware.smack.packet.RosterPacket;
+
+/**
+ * Tests the presence handling of the XMPP container without connecting it. The
+ * presence helper is added to the container as a shared object, so that
+ * presences which waited for their vCard are handed back through its queue.
+ */
+public class PresenceHelperTest extends TestCase {
+
+	private static final long TIMEOUT = 5000;
+
+	private static final String CONTACT = "contact@ecf.eclipse.org/ECF";
+
+	private static final String STRANGER = "stranger@ecf.eclipse.org/ECF";
+
+	private static final String CONTACT_ADDRESS = "contact@ecf.eclipse.org";
+
+	private static final String FRIEND_ADDRESS = "friend@ecf.eclipse.org";
+
+	private static final String GROUP = "Friends";
+
+	private IContainer container;
+
+	private XMPPContainerPresenceHelper helper;
+
+	private final List presences = new ArrayList();
+
+	private final List subscriptions = new ArrayList();
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		container = ContainerFactory.getDefault().createContainer(XMPP.CONTAINER_NAME);
+		helper = new XMPPContainerPresenceHelper((XMPPContainer) container);
+		((ISharedObjectContainer) container).getSharedObjectManager().addSharedObject(IDFactory.getDefault().createStringID(getName()), helper, null);
+		helper.getRosterManager().addPresenceListener(new IPresenceListener() {
+			public void handlePresence(ID fromID, IPresence presence) {
+				synchronized (presences) {
+					presences.add(fromID);
+					presences.notifyAll();
+				}
+			}
+		});
+		helper.getRosterManager().addRosterSubscriptionListener(new IRosterSubscriptionListener() {
+			public void handleSubscribeRequest(ID fromID) {
+				synchronized (subscriptions) {
+					subscriptions.add(fromID);
+				}
+			}
+
+			public void handleSubscribed(ID fromID) {
+				synchronized (subscriptions) {
+					subscriptions.add(fromID);
+				}
+			}
+
+			public void handleUnsubscribed(ID fromID) {
+				synchronized (subscriptions) {
+					subscriptions.add(fromID);
+				}
+			}
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception {
+		container.dispose();
+		super.tearDown();
+		helper = null;
+		container = null;
+	}
+
+	private Presence createPresence(Presence.Type type, String from) {
+		final Presence presence = new Presence(type);
+		presence.setFrom(from);
+		// announces a vCard, but no photo, so the disk cache is not used
+		presence.addExtension(new DefaultPacketExtension("x", "vcard-temp:x:update"));
+		return presence;
+	}
+
+	private void waitForPresences(int count) throws InterruptedException {
+		final long end = System.currentTimeMillis() + TIMEOUT;
+		synchronized (presences) {
+			while (presences.size() < count) {
+				final long wait = end - System.currentTimeMillis();
+				if (wait <= 0)
+					fail("Received " + presences.size() + " presences, expected " + count);
+				presences.wait(wait);
+			}
+		}
+	}
+
+	public void testPresenceIsDeliveredAgainAfterVCard() throws Exception {
+		helper.handleEvent(new PresenceEvent(createPresence(Presence.Type.available, CONTACT)));
+		// the vCard cannot be loaded while disconnected, but the presence is
+		// handed back all the same
+		waitForPresences(2);
+	}
+
+	public void testSubscribeIsDeliveredOnce() throws Exception {
+		helper.handleEvent(new PresenceEvent(createPresence(Presence.Type.subscribe, STRANGER)));
+		assertEquals(1, subscriptions.size());
+		helper.handleEvent(new PresenceEvent(createPresence(Presence.Type.available, CONTACT)));
+		waitForPresences(2);
+		// give a wrongly queued subscribe request time to arrive
+		Thread.sleep(500);
+		synchronized (subscriptions) {
+			assertEquals(1, subscriptions.size());
+		}
+		synchronized (presences) {
+			assertEquals(2, presences.size());
+		}
+	}
+
+	public void testSubscriptionPresencesAreDeliveredOnce() throws Exception {
+		final Presence.Type[] types = new Presence.Type[] {Presence.Type.subscribed, Presence.Type.unsubscribed};
+		for (int i = 0; i < types.length; i++) {
+			helper.handleEvent(new PresenceEvent(createPresence(types[i], STRANGER)));
+		}
+		helper.handleEvent(new PresenceEvent(createPresence(Presence.Type.available, CONTACT)));
+		waitForPresences(2);
+		Thread.sleep(500);
+		synchronized (subscriptions) {
+			assertEquals(types.length, subscriptions.size());
+		}
+	}
+
+	private void pushRosterItem(String user, String group, RosterPacket.ItemType type) {
+		final RosterPacket packet = new RosterPacket();
+		packet.setType(IQ.Type.SET);
+		final RosterPacket.Item item = new RosterPacket.Item(user, null);
+		item.setItemType(type);
+		if (group != null)
+			item.addGroupName(group);
+		packet.addRosterItem(item);
+		helper.handleEvent(new IQEvent(packet));
+	}
+
+	private void sendPresence(Presence.Type type, String from) {
+		final Presence presence = new Presence(type);
+		presence.setFrom(from);
+		helper.handleEvent(new PresenceEvent(presence));
+	}
+
+	private Collection getRosterItems() {
+		return helper.getRosterManager().getRoster().getItems();
+	}
+
+	/**
+	 * @return the entries for the bare address, directly in the roster or in
+	 * one of its groups
+	 */
+	private List getEntries(String bareAddress) {
+		final List result = new ArrayList();
+		for (final Iterator i = getRosterItems().iterator(); i.hasNext();) {
+			final IRosterItem item = (IRosterItem) i.next();
+			final Collection entries;
+			if (item instanceof IRosterGroup)
+				entries = ((IRosterGroup) item).getEntries();
+			else {
+				entries = new ArrayList();
+				entries.add(item);
+			}
+			for (final Iterator j = entries.iterator(); j.hasNext();) {
+				final IRosterEntry entry = (IRosterEntry) j.next();
+				if (((XMPPID) entry.getUser().getID()).getUsernameAtHost().equals(bareAddress))
+					result.add(entry);
+			}
+		}
+		return result;
+	}
+
+	private IRosterGroup getGroup(String name) {
+		for (final Iterator i = getRosterItems().iterator(); i.hasNext();) {
+			final IRosterItem item = (IRosterItem) i.next();
+			if (item instanceof IRosterGroup && item.getName().equals(name))
+				return (IRosterGroup) item;
+		}
+		return null;
+	}
+
+	public void testRosterPushAddsEntries() throws Exception {
+		pushRosterItem(CONTACT_ADDRESS, null, RosterPacket.ItemType.both);
+		pushRosterItem(FRIEND_ADDRESS, GROUP, RosterPacket.ItemType.both);
+		assertEquals(2, getRosterItems().size());
+		assertEquals(1, getEntries(CONTACT_ADDRESS).size());
+		assertNotNull(getGroup(GROUP));
+		assertEquals(1, getGroup(GROUP).getEntries().size());
+		// presences are applied to the entries found through the index
+		sendPresence(Presence.Type.available, CONTACT);
+		sendPresence(Presence.Type.available, FRIEND_ADDRESS + "/ECF");
+		assertEquals(IPresence.Type.AVAILABLE, ((IRosterEntry) getEntries(CONTACT_ADDRESS).get(0)).getPresence().getType());
+		assertEquals(IPresence.Type.AVAILABLE, ((IRosterEntry) getEntries(FRIEND_ADDRESS).get(0)).getPresence().getType());
+	}
+
+	public void testRosterPushAddsEntryToExistingGroup() throws Exception {
+		pushRosterItem(FRIEND_ADDRESS, GROUP, RosterPacket.ItemType.both);
+		pushRosterItem(CONTACT_ADDRESS, GROUP, RosterPacket.ItemType.both);
+		assertEquals(1, getRosterItems().size());
+		assertEquals(2, getGroup(GROUP).getEntries().size());
+		sendPresence(Presence.Type.available, CONTACT);
+		assertEquals(IPresence.Type.AVAILABLE, ((IRosterEntry) getEntries(CONTACT_ADDRESS).get(0)).getPresence().getType());
+	}
+
+	public void testRosterPushRemovesEntries() throws Exception {
+		pushRosterItem(CONTACT_ADDRESS, null, RosterPacket.ItemType.both);
+		pushRosterItem(FRIEND_ADDRESS, GROUP, RosterPacket.ItemType.both);
+		pushRosterItem(FRIEND_ADDRESS, null, RosterPacket.ItemType.remove);
+		// the group is removed with its last entry
+		assertNull(getGroup(GROUP));
+		assertTrue(getEntries(FRIEND_ADDRESS).isEmpty());
+		pushRosterItem(CONTACT_ADDRESS, null, RosterPacket.ItemType.remove);
+		assertTrue(getRosterItems().isEmpty());
+		// removed contacts are not added back by their presences
+		sendPresence(Presence.Type.available, CONTACT);
+		assertTrue(getRosterItems().isEmpty());
+		// and can be added again
+		pushRosterItem(FRIEND_ADDRESS, GROUP, RosterPacket.ItemType.both);
+		assertEquals(1, getEntries(FRIEND_ADDRESS).size());
+	}
+
+	public void testAdditionalClientIsAddedAndRemoved() throws Exception {
+		pushRosterItem(CONTACT_ADDRESS, null, RosterPacket.ItemType.both);
+		sendPresence(Presence.Type.available, CONTACT);
+		assertEquals(1, getEntries(CONTACT_ADDRESS).size());
+		// a second client of the same contact gets its own entry
+		sendPresence(Presence.Type.available, CONTACT_ADDRESS + "/Other");
+		assertEquals(2, getEntries(CONTACT_ADDRESS).size());
+		sendPresence(Presence.Type.available, CONTACT_ADDRESS + "/Other");
+		assertEquals(2, getEntries(CONTACT_ADDRESS).size());
+		// which is removed when the client goes offline
+		sendPresence(Presence.Type.unavailable, CONTACT_ADDRESS + "/Other");
+		final List entries = getEntries(CONTACT_ADDRESS);
+		assertEquals(1, entries.size());
+		assertEquals(IPresence.Type.AVAILABLE, ((IRosterEntry) entries.get(0)).getPresence().getType());
+		// the last client keeps the entry, but without a resource
+		sendPresence(Presence.Type.unavailable, CONTACT);
+		assertEquals(1, getEntries(CONTACT_ADDRESS).size());
+		assertEquals(IPresence.Type.UNAVAILABLE, ((IRosterEntry) getEntries(CONTACT_ADDRESS).get(0)).getPresence().getType());
+	}
+
+	/**
+	 * Records the roster entry notifications, each as a list of the
+	 * user names of the added entries and of the removed entries.
+	 */
+	static class RecordingRosterListener implements IRosterListener {
+
+		final List added = new ArrayList();
+
+		final List removed = new ArrayList();
+
+		public void handleRosterEntryAdd(IRosterEntry entry) {
+			added.add(getUser(entry));
+		}
+
+		public void handleRosterEntryRemove(IRosterEntry entry) {
+			removed.add(getUser(entry));
+		}
+
+		public void handleRosterUpdate(IRoster roster, IRosterItem changedValue) {
+			// not recorded
+		}
+
+		static String getUser(IRosterEntry entry) {
+			return ((XMPPID) entry.getUser().getID()).getUsernameAtHost();
+		}
+	}
+
+	static class RecordingRosterBatchListener extends RecordingRosterListener implements IRosterBatchListener {
+
+		int batches;
+
+		public void handleRosterEntriesChanged(IRosterEntry[] addedEntries, IRosterEntry[] removedEntries) {
+			batches++;
+			for (int i = 0; i < addedEntries.length; i++)
+				added.add(getUser(addedEntries[i]));
+			for (int i = 0; i < removedEntries.length; i++)
+				removed.add(getUser(removedEntries[i]));
+		}
+
+		public void handleRosterEntryAdd(IRosterEntry entry) {
+			fail("Batch listener notified about a single entry");
+		}
+
+		public void handleRosterEntryRemove(IRosterEntry entry) {
+			fail("Batch listener notified about a single entry");
+		}
+	}
+
+	private void pushRosterItems(String[] users, RosterPacket.ItemType[] types) {
+		final RosterPacket packet = new RosterPacket();
+		packet.setType(IQ.Type.SET);
+		for (int i = 0; i < users.length; i++) {
+			final RosterPacket.Item item = new RosterPacket.Item(users[i], null);
+			item.setItemType(types[i]);
+			packet.addRosterItem(item);
+		}
+		helper.handleEvent(new IQEvent(packet));
+	}
+
+	public void testRosterPacketIsOneBatch() throws Exception {
+		pushRosterItem(FRIEND_ADDRESS, null, RosterPacket.ItemType.both);
+		final RecordingRosterBatchListener batch = new RecordingRosterBatchListener();
+		final RecordingRosterListener single = new RecordingRosterListener();
+		helper.getRosterManager().addRosterListener(batch);
+		helper.getRosterManager().addRosterListener(single);
+
+		pushRosterItems(new String[] {CONTACT_ADDRESS, FRIEND_ADDRESS}, new RosterPacket.ItemType[] {RosterPacket.ItemType.both, RosterPacket.ItemType.remove});
+		assertEquals(1, batch.batches);
+		assertEquals(1, batch.added.size());
+		assertEquals(CONTACT_ADDRESS, batch.added.get(0));
+		assertEquals(1, batch.removed.size());
+		assertEquals(FRIEND_ADDRESS, batch.removed.get(0));
+		// listeners without batch support are notified once per entry
+		assertEquals(batch.added, single.added);
+		assertEquals(batch.removed, single.removed);
+	}
+
+	public void testDisconnectClearsRoster() throws Exception {
+		pushRosterItem(CONTACT_ADDRESS, null, RosterPacket.ItemType.both);
+		pushRosterItem(FRIEND_ADDRESS, GROUP, RosterPacket.ItemType.both);
+		helper.disconnect();
+		assertTrue(getRosterItems().isEmpty());
+		sendPresence(Presence.Type.available, CONTACT);
+		assertTrue(getRosterItems().isEmpty());
+		// entries and groups of the old roster are not found anymore
+		pushRosterItem(CONTACT_ADDRESS, null, RosterPacket.ItemType.both);
+		pushRosterItem(FRIEND_ADDRESS, GROUP, RosterPacket.ItemType.both);
+		assertEquals(2, getRosterItems().size());
+		assertEquals(1, getEntries(CONTACT_ADDRESS).size());
+		assertEquals(1, getGroup(GROUP).getEntries().size());
+	}
+
+}
@@ -0,0 +1,153 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package ch.ethz.iks.r_osgi.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class EndpointExecutorTest extends TestCase {
+
+	private static final long TIMEOUT = 10000;
+
+	/**
+	 * a request that blocks until released and records how many requests of
+	 * the same executor run at the same time.
+	 */
+	private static class BlockingRequest implements Runnable {
+
+		private final AtomicInteger running;
+
+		private final AtomicInteger peak;
+
+		private final CountDownLatch started;
+
+		private final CountDownLatch release;
+
+		private final CountDownLatch done;
+
+		BlockingRequest(AtomicInteger running, AtomicInteger peak,
+				CountDownLatch started, CountDownLatch release,
+				CountDownLatch done) {
+			this.running = running;
+			this.peak = peak;
+			this.started = started;
+			this.release = release;
+			this.done = done;
+		}
+
+		public void run() {
+			final int n = running.incrementAndGet();
+			int p;
+			while (n > (p = peak.get()) && !peak.compareAndSet(p, n)) {
+				// retry
+			}
+			started.countDown();
+			try {
+				release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				running.decrementAndGet();
+				done.countDown();
+			}
+		}
+	}
+
+	private static void waitForCompleted(EndpointExecutor executor, long count)
+			throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (executor.getCompletedCount() < count
+				|| executor.getActiveCount() > 0) {
+			assertTrue(System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	public void testConcurrencyLimit() throws Exception {
+		final int limit = 3;
+		final int requests = 20;
+		final EndpointExecutor executor = new EndpointExecutor(limit);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(limit);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(requests);
+		for (int i = 0; i < requests; i++) {
+			executor.execute(new BlockingRequest(running, peak, started,
+					release, done));
+		}
+
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		// give further workers the chance to start if the limit was broken
+		Thread.sleep(200);
+		assertEquals(limit, running.get());
+		assertEquals(limit, executor.getActiveCount());
+		assertEquals(requests - limit, executor.getQueueDepth());
+		assertTrue(executor.getPeakQueueDepth() >= requests - limit);
+
+		release.countDown();
+		assertTrue(done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		waitForCompleted(executor, requests);
+		assertEquals(limit, peak.get());
+		assertEquals(0, executor.getQueueDepth());
+		assertEquals(requests, executor.getCompletedCount());
+	}
+
+	public void testLimitIsPerEndpoint() throws Exception {
+		final EndpointExecutor busy = new EndpointExecutor(1);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(2);
+		busy.execute(new BlockingRequest(running, peak, started, release, done));
+		busy.execute(new BlockingRequest(running, peak, started, release, done));
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		// another endpoint is not held up by the busy one
+		final EndpointExecutor other = new EndpointExecutor(1);
+		final CountDownLatch ran = new CountDownLatch(1);
+		other.execute(new Runnable() {
+			public void run() {
+				ran.countDown();
+			}
+		});
+		assertTrue(ran.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals(1, busy.getQueueDepth());
+
+		release.countDown();
+		assertTrue(done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		waitForCompleted(busy, 2);
+		assertEquals(1, peak.get());
+	}
+
+	public void testFailingRequestKeepsSlot() throws Exception {
+		final EndpointExecutor executor = new EndpointExecutor(1);
+		final CountDownLatch ran = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+			public void run() {
+				throw new IllegalStateException("request failed"); //$NON-NLS-1$
+			}
+		});
+		executor.execute(new Runnable() {
+			public void run() {
+				ran.countDown();
+			}
+		});
+		assertTrue(ran.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		waitForCompleted(executor, 2);
+	}
+}
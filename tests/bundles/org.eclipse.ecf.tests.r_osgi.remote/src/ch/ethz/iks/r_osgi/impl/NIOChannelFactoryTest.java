@@ -0,0 +1,339 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package ch.ethz.iks.r_osgi.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.osgi.framework.ServiceRegistration;
+
+import ch.ethz.iks.r_osgi.Remoting;
+import ch.ethz.iks.r_osgi.URI;
+import ch.ethz.iks.r_osgi.channels.ChannelEndpoint;
+import ch.ethz.iks.r_osgi.channels.NetworkChannel;
+import ch.ethz.iks.r_osgi.messages.RemoteOSGiMessage;
+import ch.ethz.iks.r_osgi.messages.StreamDataMessage;
+
+public class NIOChannelFactoryTest extends TestCase {
+
+	private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+	private static final int MAX_QUEUED_BYTES = 64 * 1024;
+
+	private static final long TIMEOUT = 10000;
+
+	private NIOChannelFactory factory;
+
+	/**
+	 * the endpoints created for incoming connections.
+	 */
+	private final List accepted = new ArrayList();
+
+	/**
+	 * whether the endpoints of incoming connections send every message back.
+	 */
+	private boolean echo;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		factory = new NIOChannelFactory(MAX_FRAME_SIZE, MAX_QUEUED_BYTES);
+		factory.activate(new TestRemoting());
+	}
+
+	protected void tearDown() throws Exception {
+		factory.deactivate(null);
+		super.tearDown();
+	}
+
+	private URI getURI() {
+		return URI.create(NIOChannelFactory.PROTOCOL + "://localhost:" //$NON-NLS-1$
+				+ factory.getListeningPort(NIOChannelFactory.PROTOCOL));
+	}
+
+	private static byte[] data(int size) {
+		final byte[] b = new byte[size];
+		for (int i = 0; i < size; i++) {
+			b[i] = (byte) (i % 251);
+		}
+		return b;
+	}
+
+	private static StreamDataMessage message(short id, byte[] b) {
+		final StreamDataMessage msg = new StreamDataMessage();
+		msg.setStreamID(id);
+		msg.setData(b, b.length);
+		return msg;
+	}
+
+	private RecordingEndpoint waitForAccepted() throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + TIMEOUT;
+		synchronized (accepted) {
+			while (accepted.isEmpty()) {
+				final long wait = deadline - System.currentTimeMillis();
+				assertTrue("No incoming connection", wait > 0); //$NON-NLS-1$
+				accepted.wait(wait);
+			}
+			return (RecordingEndpoint) accepted.get(0);
+		}
+	}
+
+	public void testFrameLargerThanSocketBuffers() throws Exception {
+		echo = true;
+		final RecordingEndpoint client = new RecordingEndpoint(false);
+		final NIOChannelFactory.NIOChannel channel = (NIOChannelFactory.NIOChannel) factory
+				.getConnection(client, getURI());
+		final Socket socket = channel.socketChannel.socket();
+		final byte[] b = data(8 * 1024 * 1024);
+		assertTrue(b.length > socket.getSendBufferSize()
+				+ socket.getReceiveBufferSize());
+
+		channel.sendMessage(message((short) 1, b));
+		channel.sendMessage(message((short) 2, data(10)));
+
+		final List received = client.waitForMessages(2);
+		final StreamDataMessage large = (StreamDataMessage) received.get(0);
+		assertEquals(1, large.getStreamID());
+		assertTrue(Arrays.equals(b, large.getData()));
+		final StreamDataMessage small = (StreamDataMessage) received.get(1);
+		assertEquals(2, small.getStreamID());
+		assertTrue(Arrays.equals(data(10), small.getData()));
+		assertEquals(0, channel.getQueuedBytes());
+		channel.close();
+	}
+
+	public void testSendRejectsFrameOverMaxFrameSize() throws Exception {
+		final RecordingEndpoint client = new RecordingEndpoint(false);
+		final NetworkChannel channel = factory.getConnection(client, getURI());
+		try {
+			channel.sendMessage(message((short) 1, data(MAX_FRAME_SIZE + 1)));
+			fail();
+		} catch (final IOException e) {
+			// expected
+		}
+
+		// the channel can still be used
+		channel.sendMessage(message((short) 2, data(10)));
+		final List received = waitForAccepted().waitForMessages(1);
+		assertEquals(2, ((StreamDataMessage) received.get(0)).getStreamID());
+		channel.close();
+	}
+
+	public void testReceiveRejectsFrameOverMaxFrameSize() throws Exception {
+		final Socket socket = new Socket("localhost", factory //$NON-NLS-1$
+				.getListeningPort(NIOChannelFactory.PROTOCOL));
+		try {
+			final DataOutputStream out = new DataOutputStream(socket
+					.getOutputStream());
+			out.writeInt(MAX_FRAME_SIZE + 1);
+			out.flush();
+
+			final RecordingEndpoint server = waitForAccepted();
+			server.waitForClose();
+			assertTrue(server.getMessages().isEmpty());
+			// the connection has been closed
+			socket.setSoTimeout((int) TIMEOUT);
+			assertEquals(-1, socket.getInputStream().read());
+		} finally {
+			socket.close();
+		}
+	}
+
+	public void testSendBlocksAtMaxQueuedBytes() throws Exception {
+		// a peer that does not read until told to
+		final java.net.ServerSocket server = new java.net.ServerSocket(0);
+		try {
+			final NIOChannelFactory.NIOChannel channel = (NIOChannelFactory.NIOChannel) factory
+					.getConnection(new RecordingEndpoint(false), URI
+							.create(NIOChannelFactory.PROTOCOL
+									+ "://localhost:" + server.getLocalPort())); //$NON-NLS-1$
+			final Socket peer = server.accept();
+			final Socket socket = channel.socketChannel.socket();
+			final int size = 16 * 1024;
+			// more than the socket buffers and the outbound queue can hold
+			final int count = (socket.getSendBufferSize()
+					+ peer.getReceiveBufferSize() + MAX_QUEUED_BYTES)
+					/ size * 4;
+
+			final int[] sent = new int[1];
+			final IOException[] failure = new IOException[1];
+			final Thread sender = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int i = 0; i < count; i++) {
+							channel.sendMessage(message((short) i, data(size)));
+							synchronized (sent) {
+								sent[0]++;
+							}
+						}
+					} catch (final IOException e) {
+						failure[0] = e;
+					}
+				}
+			});
+			sender.setDaemon(true);
+			sender.start();
+
+			// wait until the sender is blocked
+			final long deadline = System.currentTimeMillis() + TIMEOUT;
+			int last = -1;
+			while (true) {
+				Thread.sleep(200);
+				final int now;
+				synchronized (sent) {
+					now = sent[0];
+				}
+				if (now == last) {
+					break;
+				}
+				last = now;
+				assertTrue("Sender does not block", System.currentTimeMillis() < deadline); //$NON-NLS-1$
+			}
+			assertTrue(sender.isAlive());
+			assertEquals(Thread.State.WAITING, sender.getState());
+			assertTrue(last < count);
+			assertTrue(channel.getQueuedBytes() > MAX_QUEUED_BYTES);
+			assertTrue(channel.getQueuedBytes() <= MAX_QUEUED_BYTES + size + 1024);
+
+			// reading makes room for the sender
+			final DataInputStream in = new DataInputStream(peer
+					.getInputStream());
+			for (int i = 0; i < count; i++) {
+				final int len = in.readInt();
+				assertTrue(len > size && len < size + 1024);
+				in.readFully(new byte[len]);
+			}
+			sender.join(TIMEOUT);
+			assertFalse(sender.isAlive());
+			assertNull(failure[0]);
+			assertEquals(count, sent[0]);
+			assertEquals(0, channel.getQueuedBytes());
+			channel.close();
+			peer.close();
+		} finally {
+			server.close();
+		}
+	}
+
+	/**
+	 * binds incoming connections to a new recording endpoint.
+	 */
+	private class TestRemoting implements Remoting {
+
+		public ChannelEndpoint getEndpoint(String uri) {
+			return null;
+		}
+
+		public void createEndpoint(NetworkChannel channel) {
+			final RecordingEndpoint e = new RecordingEndpoint(echo);
+			e.channel = channel;
+			channel.bind(e);
+			synchronized (accepted) {
+				accepted.add(e);
+				accepted.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * records the messages received by a channel.
+	 */
+	private class RecordingEndpoint implements ChannelEndpoint {
+
+		NetworkChannel channel;
+
+		private final boolean echo;
+
+		private final List messages = new ArrayList();
+
+		private boolean closed;
+
+		RecordingEndpoint(boolean echo) {
+			this.echo = echo;
+		}
+
+		public synchronized void receivedMessage(RemoteOSGiMessage msg) {
+			if (msg == null) {
+				closed = true;
+			} else {
+				messages.add(msg);
+				if (echo) {
+					try {
+						channel.sendMessage(msg);
+					} catch (final IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+			notifyAll();
+		}
+
+		synchronized List getMessages() {
+			return new ArrayList(messages);
+		}
+
+		synchronized List waitForMessages(int count)
+				throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + TIMEOUT;
+			while (messages.size() < count) {
+				final long wait = deadline - System.currentTimeMillis();
+				assertTrue("Received " + messages.size() + " of " + count //$NON-NLS-1$ //$NON-NLS-2$
+						+ " messages", wait > 0); //$NON-NLS-1$
+				wait(wait);
+			}
+			return new ArrayList(messages);
+		}
+
+		synchronized void waitForClose() throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + TIMEOUT;
+			while (!closed) {
+				final long wait = deadline - System.currentTimeMillis();
+				assertTrue("Channel has not been closed", wait > 0); //$NON-NLS-1$
+				wait(wait);
+			}
+		}
+
+		public Object invokeMethod(String service, String methodSignature,
+				Object[] args) throws Throwable {
+			throw new UnsupportedOperationException();
+		}
+
+		public Dictionary getProperties(String service) {
+			return null;
+		}
+
+		public Dictionary getPresentationProperties(String service) {
+			return null;
+		}
+
+		public void trackRegistration(String service, ServiceRegistration reg) {
+		}
+
+		public void untrackRegistration(String service) {
+		}
+
+		public URI getRemoteAddress() {
+			return channel == null ? null : channel.getRemoteAddress();
+		}
+
+		public void dispose() {
+		}
+	}
+}
@@ -0,0 +1,228 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package ch.ethz.iks.r_osgi.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import ch.ethz.iks.r_osgi.URI;
+import ch.ethz.iks.r_osgi.messages.DeliverServiceMessage;
+
+public class ProxyBundleCacheTest extends TestCase {
+
+	private static final String VERSION = "1.4.0.test"; //$NON-NLS-1$
+
+	private static final String INTERFACE = "test.cache.CacheService"; //$NON-NLS-1$
+
+	private static final URI SERVICE = URI
+			.create("r-osgi://localhost:9278#42"); //$NON-NLS-1$
+
+	private static final byte[] MARKER = new byte[] {1, 2, 3};
+
+	private File dir;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("proxycache", ".test"); //$NON-NLS-1$ //$NON-NLS-2$
+		dir.delete();
+	}
+
+	protected void tearDown() throws Exception {
+		final File[] files = dir.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; i++) {
+				files[i].delete();
+			}
+		}
+		dir.delete();
+		super.tearDown();
+	}
+
+	/**
+	 * generate the bytecode of a service interface.
+	 */
+	private static byte[] interfaceClass(String[] methods) {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT
+				| Opcodes.ACC_INTERFACE, INTERFACE.replace('.', '/'), null,
+				"java/lang/Object", null); //$NON-NLS-1$
+		for (int i = 0; i < methods.length; i++) {
+			writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT,
+					methods[i], "()Ljava/lang/String;", null, null).visitEnd(); //$NON-NLS-1$
+		}
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	private static DeliverServiceMessage deliver(String[] methods) {
+		final DeliverServiceMessage deliv = new DeliverServiceMessage();
+		deliv.setServiceID(SERVICE.getFragment());
+		deliv.setInterfaceNames(new String[] {INTERFACE});
+		deliv.setImports(""); //$NON-NLS-1$
+		deliv.setExports(""); //$NON-NLS-1$
+		final Map injections = new HashMap();
+		injections.put(INTERFACE.replace('.', '/') + ".class", //$NON-NLS-1$
+				interfaceClass(methods));
+		deliv.setInjections(injections);
+		return deliv;
+	}
+
+	private File getFile(ProxyBundleCache cache, URI service,
+			DeliverServiceMessage deliv) {
+		return new File(dir, cache.computeKey(service, deliv) + ".jar"); //$NON-NLS-1$
+	}
+
+	private static void write(File file, byte[] b) throws IOException {
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(b);
+		} finally {
+			out.close();
+		}
+	}
+
+	private int countEntries() {
+		final String[] names = dir.list();
+		int count = 0;
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].endsWith(".jar")) { //$NON-NLS-1$
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public void testHit() throws Exception {
+		final ProxyBundleCache cache = new ProxyBundleCache(dir, 10, VERSION);
+		final DeliverServiceMessage deliv = deliver(new String[] {"a"}); //$NON-NLS-1$
+		final byte[] bundle = cache.getProxyBundle(SERVICE, deliv);
+		assertTrue(bundle.length > 0);
+		final File file = getFile(cache, SERVICE, deliv);
+		assertTrue(Arrays.equals(bundle, readFile(file)));
+
+		// replace the cached bundle, a hit returns it without generating
+		write(file, MARKER);
+		assertTrue(Arrays.equals(MARKER, cache.getProxyBundle(SERVICE,
+				deliver(new String[] {"a"})))); //$NON-NLS-1$
+		assertEquals(1, countEntries());
+	}
+
+	public void testChangedInterfaceMisses() throws Exception {
+		final ProxyBundleCache cache = new ProxyBundleCache(dir, 10, VERSION);
+		final DeliverServiceMessage deliv = deliver(new String[] {"a"}); //$NON-NLS-1$
+		cache.getProxyBundle(SERVICE, deliv);
+		write(getFile(cache, SERVICE, deliv), MARKER);
+
+		final DeliverServiceMessage changed = deliver(new String[] {"a", "b"}); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFalse(cache.computeKey(SERVICE, deliv).equals(
+				cache.computeKey(SERVICE, changed)));
+		final byte[] bundle = cache.getProxyBundle(SERVICE, changed);
+		assertFalse(Arrays.equals(MARKER, bundle));
+		assertEquals(2, countEntries());
+	}
+
+	public void testChangedVersionMisses() throws Exception {
+		final DeliverServiceMessage deliv = deliver(new String[] {"a"}); //$NON-NLS-1$
+		final ProxyBundleCache cache = new ProxyBundleCache(dir, 10, VERSION);
+		cache.getProxyBundle(SERVICE, deliv);
+		write(getFile(cache, SERVICE, deliv), MARKER);
+
+		final ProxyBundleCache updated = new ProxyBundleCache(dir, 10,
+				"1.4.1.test"); //$NON-NLS-1$
+		assertFalse(Arrays.equals(MARKER, updated.getProxyBundle(SERVICE,
+				deliv)));
+		assertEquals(2, countEntries());
+	}
+
+	public void testChangedServiceMisses() throws Exception {
+		final ProxyBundleCache cache = new ProxyBundleCache(dir, 10, VERSION);
+		final DeliverServiceMessage deliv = deliver(new String[] {"a"}); //$NON-NLS-1$
+		final URI other = URI.create("r-osgi://localhost:9278#43"); //$NON-NLS-1$
+		assertFalse(cache.computeKey(SERVICE, deliv).equals(
+				cache.computeKey(other, deliv)));
+	}
+
+	public void testKeyIgnoresInjectionOrder() throws Exception {
+		final ProxyBundleCache cache = new ProxyBundleCache(dir, 10, VERSION);
+		final DeliverServiceMessage deliv = deliver(new String[] {"a"}); //$NON-NLS-1$
+		final DeliverServiceMessage same = deliver(new String[] {"a"}); //$NON-NLS-1$
+		final Map injections = new HashMap();
+		injections.put("test/cache/Z.class", new byte[] {1}); //$NON-NLS-1$
+		injections.put("test/cache/A.class", new byte[] {2}); //$NON-NLS-1$
+		injections.putAll(deliv.getInjections());
+		deliv.setInjections(injections);
+		final Map reordered = new LinkedHashMap();
+		reordered.put("test/cache/A.class", new byte[] {2}); //$NON-NLS-1$
+		reordered.putAll(same.getInjections());
+		reordered.put("test/cache/Z.class", new byte[] {1}); //$NON-NLS-1$
+		same.setInjections(reordered);
+		assertEquals(cache.computeKey(SERVICE, deliv), cache.computeKey(
+				SERVICE, same));
+
+		reordered.put("test/cache/Z.class", new byte[] {3}); //$NON-NLS-1$
+		assertFalse(cache.computeKey(SERVICE, deliv).equals(
+				cache.computeKey(SERVICE, same)));
+	}
+
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		final ProxyBundleCache cache = new ProxyBundleCache(dir, 2, VERSION);
+		final DeliverServiceMessage deliv = deliver(new String[] {"a"}); //$NON-NLS-1$
+		final URI first = URI.create("r-osgi://localhost:9278#1"); //$NON-NLS-1$
+		final URI second = URI.create("r-osgi://localhost:9278#2"); //$NON-NLS-1$
+		final URI third = URI.create("r-osgi://localhost:9278#3"); //$NON-NLS-1$
+
+		cache.getProxyBundle(first, deliv);
+		cache.getProxyBundle(second, deliv);
+		assertEquals(2, countEntries());
+		final long now = System.currentTimeMillis();
+		getFile(cache, first, deliv).setLastModified(now - 20000);
+		getFile(cache, second, deliv).setLastModified(now - 10000);
+
+		// a hit makes the first bundle the most recently used one
+		cache.getProxyBundle(first, deliv);
+		cache.getProxyBundle(third, deliv);
+		assertEquals(2, countEntries());
+		assertTrue(getFile(cache, first, deliv).exists());
+		assertFalse(getFile(cache, second, deliv).exists());
+		assertTrue(getFile(cache, third, deliv).exists());
+	}
+
+	public void testRemove() throws Exception {
+		final ProxyBundleCache cache = new ProxyBundleCache(dir, 10, VERSION);
+		final DeliverServiceMessage deliv = deliver(new String[] {"a"}); //$NON-NLS-1$
+		cache.getProxyBundle(SERVICE, deliv);
+		cache.remove(SERVICE, deliv);
+		assertEquals(0, countEntries());
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			return in.readAllBytes();
+		} finally {
+			in.close();
+		}
+	}
+}
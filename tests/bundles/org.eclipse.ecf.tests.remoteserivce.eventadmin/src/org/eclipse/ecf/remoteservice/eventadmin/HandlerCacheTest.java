@@ -0,0 +1,185 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.remoteservice.eventadmin;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * Checks that handlers registered, modified or unregistered after the handlers
+ * of a topic have been cached are taken into account.
+ */
+public class HandlerCacheTest {
+
+	private static final String TOPIC = "org/eclipse/ecf/tests/eventadmin/cache";
+
+	private BundleContext context;
+	private LocalEventAdmin dea;
+	private final List registrations = new ArrayList();
+
+	/**
+	 * Dispatches events to local handlers only.
+	 */
+	static class LocalEventAdmin extends DistributedEventAdmin {
+
+		LocalEventAdmin(BundleContext context) {
+			super(context);
+		}
+
+		void dispatch(Event event) {
+			localDispatch(event, false);
+		}
+
+		Set getHandlers(String topic) {
+			return eventHandlerTracker.getHandlers(topic);
+		}
+	}
+
+	/**
+	 * Counts the events received.
+	 */
+	static class CountingHandler implements EventHandler {
+		int count;
+
+		public synchronized void handleEvent(Event event) {
+			count++;
+		}
+
+		synchronized int getCount() {
+			return count;
+		}
+	}
+
+	@Before
+	public void setup() {
+		context = FrameworkUtil.getBundle(getClass()).getBundleContext();
+		Assert.assertNotNull(context);
+		dea = new LocalEventAdmin(context);
+		dea.start();
+	}
+
+	@After
+	public void tearDown() {
+		for (Iterator i = registrations.iterator(); i.hasNext();) {
+			try {
+				((ServiceRegistration) i.next()).unregister();
+			} catch (IllegalStateException e) {
+				// already unregistered by the test
+			}
+		}
+		dea.stop();
+	}
+
+	private ServiceRegistration register(EventHandler handler, String topic) {
+		final ServiceRegistration reg = context.registerService(
+				EventHandler.class.getName(), handler, topics(topic));
+		registrations.add(reg);
+		return reg;
+	}
+
+	private static Dictionary topics(String topic) {
+		final Dictionary props = new Hashtable();
+		props.put(EventConstants.EVENT_TOPIC, topic);
+		return props;
+	}
+
+	private void dispatch() {
+		dea.dispatch(new Event(TOPIC, new HashMap<String, Object>()));
+	}
+
+	@Test
+	public void testCachedWhileHandlersUnchanged() {
+		register(new CountingHandler(), TOPIC);
+		final Set handlers = dea.getHandlers(TOPIC);
+		Assert.assertEquals(1, handlers.size());
+		Assert.assertSame(handlers, dea.getHandlers(TOPIC));
+	}
+
+	@Test
+	public void testHandlerRegisteredAfterCaching() {
+		final CountingHandler first = new CountingHandler();
+		register(first, TOPIC);
+		dispatch();
+		Assert.assertEquals(1, first.getCount());
+
+		final CountingHandler exact = new CountingHandler();
+		final CountingHandler wildcard = new CountingHandler();
+		register(exact, TOPIC);
+		register(wildcard, "org/eclipse/ecf/tests/eventadmin/*");
+		dispatch();
+		Assert.assertEquals(2, first.getCount());
+		Assert.assertEquals(1, exact.getCount());
+		Assert.assertEquals(1, wildcard.getCount());
+	}
+
+	@Test
+	public void testHandlerRegisteredAfterCachingNoHandlers() {
+		// caches that there is no handler for the topic
+		dispatch();
+		Assert.assertTrue(dea.getHandlers(TOPIC).isEmpty());
+
+		final CountingHandler handler = new CountingHandler();
+		register(handler, TOPIC);
+		dispatch();
+		Assert.assertEquals(1, handler.getCount());
+	}
+
+	@Test
+	public void testHandlerUnregisteredAfterCaching() {
+		final CountingHandler stays = new CountingHandler();
+		final CountingHandler leaves = new CountingHandler();
+		register(stays, TOPIC);
+		final ServiceRegistration reg = register(leaves, TOPIC);
+		dispatch();
+		Assert.assertEquals(1, stays.getCount());
+		Assert.assertEquals(1, leaves.getCount());
+
+		reg.unregister();
+		Assert.assertEquals(1, dea.getHandlers(TOPIC).size());
+		dispatch();
+		Assert.assertEquals(2, stays.getCount());
+		Assert.assertEquals(1, leaves.getCount());
+	}
+
+	@Test
+	public void testHandlerTopicChangedAfterCaching() {
+		final CountingHandler stays = new CountingHandler();
+		final CountingHandler moves = new CountingHandler();
+		register(stays, TOPIC);
+		final ServiceRegistration reg = register(moves, TOPIC);
+		dispatch();
+		Assert.assertEquals(1, moves.getCount());
+
+		// the handler is still registered, only a stale cache would call it
+		reg.setProperties(topics("org/eclipse/ecf/tests/eventadmin/other"));
+		dispatch();
+		Assert.assertEquals(2, stays.getCount());
+		Assert.assertEquals(1, moves.getCount());
+	}
+}
@@ -0,0 +1,228 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.remoteservice.eventadmin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.ecf.core.identity.ID;
+import org.eclipse.ecf.core.identity.IDFactory;
+import org.eclipse.ecf.core.sharedobject.SharedObjectMsg;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+public class InterestRoutingTest {
+
+	private static final String INTEREST_METHOD = "__handleInterestSharedObjectMsg";
+
+	private ID local;
+	private ID telemetry;
+	private ID other;
+	private ID unknown;
+	private RoutingEventAdmin dea;
+
+	/**
+	 * Records the messages sent instead of sending them.
+	 */
+	static class RoutingEventAdmin extends TestDistributedEventAdmin {
+		final ID localID;
+		final ID[] members;
+		// List<Object[]{ID,SharedObjectMsg}>
+		final List sent = new ArrayList();
+		final List received = new ArrayList();
+
+		RoutingEventAdmin(ID localID, ID[] members) {
+			this.localID = localID;
+			this.members = members;
+		}
+
+		protected ID[] getGroupMemberIDs() {
+			return members;
+		}
+
+		protected ID getLocalContainerID() {
+			return localID;
+		}
+
+		protected ID getConnectedID() {
+			return localID;
+		}
+
+		protected void sendSharedObjectMsgTo(ID toID, SharedObjectMsg msg) throws IOException {
+			sent.add(new Object[] { toID, msg });
+		}
+
+		protected void notifyReceivedEvent(ID fromID, Event receivedEvent) {
+			received.add(receivedEvent);
+		}
+
+		public boolean handleSharedObjectMsg(ID fromID, SharedObjectMsg msg) {
+			return super.handleSharedObjectMsg(fromID, msg);
+		}
+
+		public void flushEvents() {
+			super.flushEvents();
+		}
+	}
+
+	@Before
+	public void setup() throws Exception {
+		local = IDFactory.getDefault().createStringID("local");
+		telemetry = IDFactory.getDefault().createStringID("telemetry");
+		other = IDFactory.getDefault().createStringID("other");
+		unknown = IDFactory.getDefault().createStringID("unknown");
+		dea = new RoutingEventAdmin(local, new ID[] { local, telemetry, other, unknown });
+	}
+
+	@After
+	public void tearDown() {
+		dea.setBatchWindow(0);
+	}
+
+	private Event createEvent(String topic) {
+		final Map<String, Object> map = new HashMap<String, Object>();
+		map.put("value", Integer.valueOf(42));
+		return new Event(topic, map);
+	}
+
+	private void advertise(ID fromID, String[] topics) {
+		Assert.assertTrue(dea.handleSharedObjectMsg(fromID, SharedObjectMsg.createMsg(INTEREST_METHOD, new Object[] { topics })));
+	}
+
+	private List getSentTo() {
+		final List result = new ArrayList();
+		for (int i = 0; i < dea.sent.size(); i++)
+			result.add(((Object[]) dea.sent.get(i))[0]);
+		return result;
+	}
+
+	@Test
+	public void testSendToGroupWithoutInterests() {
+		dea.sendMessage(createEvent("telemetry/cpu"));
+		Assert.assertEquals(1, dea.sent.size());
+		Assert.assertNull(getSentTo().get(0));
+	}
+
+	@Test
+	public void testReplyToNewMember() {
+		advertise(telemetry, new String[] { "telemetry/*" });
+		// our (empty) interest is sent back once
+		Assert.assertEquals(1, dea.sent.size());
+		Assert.assertEquals(telemetry, getSentTo().get(0));
+		advertise(telemetry, new String[] { "telemetry/*", "alerts" });
+		Assert.assertEquals(1, dea.sent.size());
+	}
+
+	@Test
+	public void testRouteToInterestedMembers() {
+		advertise(telemetry, new String[] { "telemetry/*" });
+		advertise(other, new String[] { "alerts" });
+		dea.sent.clear();
+
+		dea.sendMessage(createEvent("telemetry/cpu"));
+		// other is not interested, unknown has not advertised its topics
+		Assert.assertEquals(2, dea.sent.size());
+		Assert.assertTrue(getSentTo().contains(telemetry));
+		Assert.assertTrue(getSentTo().contains(unknown));
+
+		dea.sent.clear();
+		dea.sendMessage(createEvent("alerts"));
+		Assert.assertEquals(2, dea.sent.size());
+		Assert.assertTrue(getSentTo().contains(other));
+		Assert.assertTrue(getSentTo().contains(unknown));
+	}
+
+	@Test
+	public void testSendToGroupIfAllInterested() {
+		advertise(telemetry, new String[] { "telemetry/*" });
+		advertise(other, new String[] { "*" });
+		advertise(unknown, new String[] { "telemetry/cpu" });
+		dea.sent.clear();
+
+		dea.sendMessage(createEvent("telemetry/cpu"));
+		Assert.assertEquals(1, dea.sent.size());
+		Assert.assertNull(getSentTo().get(0));
+	}
+
+	@Test
+	public void testInterestRoutingDisabled() {
+		advertise(telemetry, new String[] { "telemetry/*" });
+		advertise(other, new String[0]);
+		advertise(unknown, new String[0]);
+		dea.sent.clear();
+
+		dea.sendMessage(createEvent("alerts"));
+		Assert.assertEquals(0, dea.sent.size());
+
+		dea.setInterestRouting(false);
+		dea.sendMessage(createEvent("alerts"));
+		Assert.assertEquals(1, dea.sent.size());
+		Assert.assertNull(getSentTo().get(0));
+	}
+
+	@Test
+	public void testBatch() {
+		dea.setBatchWindow(60000);
+		for (int i = 0; i < 10; i++)
+			dea.sendMessage(createEvent("telemetry/cpu"));
+		Assert.assertEquals(0, dea.sent.size());
+		dea.flushEvents();
+		Assert.assertEquals(1, dea.sent.size());
+
+		// deliver the batch to another instance
+		final RoutingEventAdmin receiver = new RoutingEventAdmin(telemetry, new ID[] { local, telemetry });
+		Assert.assertTrue(receiver.handleSharedObjectMsg(local, (SharedObjectMsg) ((Object[]) dea.sent.get(0))[1]));
+		Assert.assertEquals(10, receiver.received.size());
+		Assert.assertEquals("telemetry/cpu", ((Event) receiver.received.get(9)).getTopic());
+	}
+
+	@Test
+	public void testBatchRouted() {
+		advertise(telemetry, new String[] { "telemetry/*" });
+		advertise(other, new String[] { "alerts" });
+		advertise(unknown, new String[0]);
+		dea.sent.clear();
+
+		dea.setBatchWindow(60000);
+		dea.sendMessage(createEvent("telemetry/cpu"));
+		dea.sendMessage(createEvent("alerts"));
+		dea.sendMessage(createEvent("telemetry/mem"));
+		dea.flushEvents();
+		// one message per interested member
+		Assert.assertEquals(2, dea.sent.size());
+		final int t = getSentTo().indexOf(telemetry);
+		Assert.assertEquals(2, ((SharedObjectMsg) ((Object[]) dea.sent.get(t))[1]).getParameters().length);
+		final int o = getSentTo().indexOf(other);
+		Assert.assertEquals(1, ((SharedObjectMsg) ((Object[]) dea.sent.get(o))[1]).getParameters().length);
+	}
+
+	@Test
+	public void testBatchFull() {
+		dea.setBatchWindow(60000);
+		for (int i = 0; i < DistributedEventAdmin.MAX_BATCH_SIZE; i++)
+			dea.sendMessage(createEvent("telemetry/cpu"));
+		Assert.assertEquals(1, dea.sent.size());
+	}
+
+	@Test
+	public void testNullTopicFilters() {
+		Assert.assertFalse(dea.addEventTopicFilters(new EventTopicFilter().getFilters()));
+		Assert.assertFalse(dea.removeEventTopicFilters(null));
+	}
+}
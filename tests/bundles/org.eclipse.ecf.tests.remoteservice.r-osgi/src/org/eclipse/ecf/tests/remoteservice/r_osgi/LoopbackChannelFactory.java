@@ -0,0 +1,273 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.tests.remoteservice.r_osgi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import ch.ethz.iks.r_osgi.Remoting;
+import ch.ethz.iks.r_osgi.URI;
+import ch.ethz.iks.r_osgi.channels.ChannelEndpoint;
+import ch.ethz.iks.r_osgi.channels.NetworkChannel;
+import ch.ethz.iks.r_osgi.channels.NetworkChannelFactory;
+import ch.ethz.iks.r_osgi.messages.RemoteOSGiMessage;
+import ch.ethz.iks.util.SmartObjectInputStream;
+import ch.ethz.iks.util.SmartObjectOutputStream;
+
+/**
+ * Network channel factory that connects two endpoints of the local R-OSGi
+ * instance in memory. Messages are serialized like on a socket and delivered
+ * in order by one thread per channel. The messages received by each side are
+ * recorded.
+ */
+public class LoopbackChannelFactory implements NetworkChannelFactory {
+
+	public static final String PROTOCOL = "r-osgi-loopback";
+
+	private Remoting remoting;
+
+	private ChannelEndpoint clientEndpoint;
+
+	private LoopbackChannel client;
+
+	private LoopbackChannel server;
+
+	public void activate(Remoting r) throws IOException {
+		this.remoting = r;
+	}
+
+	public void deactivate(Remoting r) throws IOException {
+		this.remoting = null;
+	}
+
+	public int getListeningPort(String protocol) {
+		return 0;
+	}
+
+	public synchronized NetworkChannel getConnection(ChannelEndpoint endpoint, URI endpointURI) throws IOException {
+		if (remoting == null) {
+			throw new IOException("Factory has not been activated");
+		}
+		final URI local = URI.create(PROTOCOL + "://localhost:" + (endpointURI.getPort() + 1));
+		client = new LoopbackChannel(local, endpointURI);
+		server = new LoopbackChannel(endpointURI, local);
+		client.peer = server;
+		server.peer = client;
+		client.bind(endpoint);
+		clientEndpoint = endpoint;
+		// binds the server channel to a new endpoint
+		remoting.createEndpoint(server);
+		client.start();
+		server.start();
+		return client;
+	}
+
+	/**
+	 * @return the endpoint that connected.
+	 */
+	public synchronized ChannelEndpoint getClientEndpoint() {
+		return clientEndpoint;
+	}
+
+	/**
+	 * @return the channel of the endpoint that connected.
+	 */
+	public synchronized LoopbackChannel getClientChannel() {
+		return client;
+	}
+
+	/**
+	 * @return the channel of the endpoint that accepted the connection.
+	 */
+	public synchronized LoopbackChannel getServerChannel() {
+		return server;
+	}
+
+	public static class LoopbackChannel implements NetworkChannel, Runnable {
+
+		private static final Object STOP = new Object();
+
+		private static final Object CLOSED = new Object();
+
+		private final URI localAddress;
+
+		private final URI remoteAddress;
+
+		private final LinkedList queue = new LinkedList();
+
+		private final List received = new ArrayList();
+
+		LoopbackChannel peer;
+
+		private ChannelEndpoint endpoint;
+
+		private boolean closed;
+
+		private boolean stopped;
+
+		LoopbackChannel(URI localAddress, URI remoteAddress) {
+			this.localAddress = localAddress;
+			this.remoteAddress = remoteAddress;
+		}
+
+		void start() {
+			final Thread t = new Thread(this, "Loopback channel " + localAddress);
+			t.setDaemon(true);
+			t.start();
+		}
+
+		public String getProtocol() {
+			return PROTOCOL;
+		}
+
+		public URI getRemoteAddress() {
+			return remoteAddress;
+		}
+
+		public URI getLocalAddress() {
+			return localAddress;
+		}
+
+		public void bind(ChannelEndpoint e) {
+			this.endpoint = e;
+		}
+
+		public void sendMessage(RemoteOSGiMessage message) throws IOException {
+			synchronized (queue) {
+				if (closed) {
+					throw new IOException("Channel is closed");
+				}
+			}
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final SmartObjectOutputStream out = new SmartObjectOutputStream(bytes);
+			message.send(out);
+			out.close();
+			peer.deliver(bytes.toByteArray());
+		}
+
+		public void close() throws IOException {
+			synchronized (queue) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				queue.add(STOP);
+				queue.notifyAll();
+			}
+			peer.deliver(CLOSED);
+		}
+
+		private void deliver(Object frame) {
+			synchronized (queue) {
+				queue.add(frame);
+				queue.notifyAll();
+			}
+		}
+
+		public void run() {
+			while (true) {
+				final Object frame;
+				synchronized (queue) {
+					while (queue.isEmpty()) {
+						try {
+							queue.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					frame = queue.removeFirst();
+				}
+				if (frame == STOP) {
+					stopped();
+					return;
+				}
+				if (frame == CLOSED) {
+					synchronized (queue) {
+						closed = true;
+					}
+					// tells the endpoint that the connection is gone
+					endpoint.receivedMessage(null);
+					stopped();
+					return;
+				}
+				final RemoteOSGiMessage msg;
+				try {
+					msg = RemoteOSGiMessage.parse(new SmartObjectInputStream(new ByteArrayInputStream((byte[]) frame)));
+				} catch (Exception e) {
+					e.printStackTrace();
+					continue;
+				}
+				synchronized (received) {
+					received.add(msg);
+					received.notifyAll();
+				}
+				endpoint.receivedMessage(msg);
+			}
+		}
+
+		private void stopped() {
+			synchronized (queue) {
+				stopped = true;
+				queue.notifyAll();
+			}
+		}
+
+		/**
+		 * Wait until the channel has been closed and, if the peer closed it,
+		 * the endpoint has been disposed.
+		 * 
+		 * @param timeout the timeout in milliseconds.
+		 * @return <code>true</code> if the channel has been closed.
+		 * @throws InterruptedException if interrupted while waiting.
+		 */
+		public boolean waitForClose(long timeout) throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + timeout;
+			synchronized (queue) {
+				while (!stopped) {
+					final long wait = deadline - System.currentTimeMillis();
+					if (wait <= 0) {
+						return false;
+					}
+					queue.wait(wait);
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @param type the message type.
+		 * @return the messages of the given type received by this side.
+		 */
+		public List getReceived(Class type) {
+			final List result = new ArrayList();
+			synchronized (received) {
+				for (Iterator i = received.iterator(); i.hasNext();) {
+					final Object msg = i.next();
+					if (type.isInstance(msg)) {
+						result.add(msg);
+					}
+				}
+			}
+			return result;
+		}
+
+		public String toString() {
+			return "LoopbackChannel(" + localAddress + " -> " + remoteAddress + ")";
+		}
+	}
+}
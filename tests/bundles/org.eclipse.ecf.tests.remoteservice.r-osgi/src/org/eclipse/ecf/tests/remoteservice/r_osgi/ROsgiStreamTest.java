@@ -0,0 +1,363 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.tests.remoteservice.r_osgi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.ecf.tests.remoteservice.Activator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.util.tracker.ServiceTracker;
+
+import ch.ethz.iks.r_osgi.RemoteOSGiService;
+import ch.ethz.iks.r_osgi.RemoteServiceReference;
+import ch.ethz.iks.r_osgi.URI;
+import ch.ethz.iks.r_osgi.channels.NetworkChannelFactory;
+import ch.ethz.iks.r_osgi.messages.StreamDataMessage;
+import ch.ethz.iks.r_osgi.messages.StreamRequestMessage;
+
+/**
+ * Tests streams passed to and from remote services, over two endpoints of the
+ * local R-OSGi instance that are connected by a {@link LoopbackChannelFactory}.
+ * Expects the default read-ahead window and write buffer size.
+ */
+public class ROsgiStreamTest extends TestCase {
+
+	private static final URI ENDPOINT = URI.create(LoopbackChannelFactory.PROTOCOL + "://localhost:10");
+
+	private static final int GATE_AFTER_READS = 2;
+
+	private static final int GATED_CHUNK = 1000;
+
+	private static final long TIMEOUT = 10000;
+
+	static byte[] data(int size) {
+		final byte[] b = new byte[size];
+		for (int i = 0; i < size; i++) {
+			b[i] = (byte) (i % 251);
+		}
+		return b;
+	}
+
+	/**
+	 * Endless stream whose reads block after the first ones until the gate is
+	 * opened.
+	 */
+	static class GatedInputStream extends InputStream {
+
+		private int reads;
+
+		private int total;
+
+		private boolean open;
+
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		public synchronized int read(byte[] b, int off, int len) throws IOException {
+			if (reads++ >= GATE_AFTER_READS) {
+				final long deadline = System.currentTimeMillis() + TIMEOUT;
+				while (!open && System.currentTimeMillis() < deadline) {
+					try {
+						wait(100);
+					} catch (InterruptedException e) {
+						throw new IOException(e.getMessage());
+					}
+				}
+			}
+			final int n = Math.min(len, GATED_CHUNK);
+			total += n;
+			return n;
+		}
+
+		synchronized void openGate() {
+			open = true;
+			notifyAll();
+		}
+
+		synchronized int getTotal() {
+			return total;
+		}
+	}
+
+	static class StreamServiceImpl implements StreamService {
+
+		GatedInputStream gated;
+
+		public InputStream open(int size) {
+			return new ByteArrayInputStream(data(size));
+		}
+
+		public InputStream openFailing(final int size) {
+			return new InputStream() {
+				private int pos;
+
+				public int read() throws IOException {
+					final byte[] b = new byte[1];
+					return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+				}
+
+				public int read(byte[] b, int off, int len) throws IOException {
+					if (pos == size) {
+						throw new IOException("stream broken");
+					}
+					final int n = Math.min(len, size - pos);
+					System.arraycopy(data(size), pos, b, off, n);
+					pos += n;
+					return n;
+				}
+			};
+		}
+
+		public synchronized InputStream openGated() {
+			gated = new GatedInputStream();
+			return gated;
+		}
+
+		public void write(OutputStream out, int size) throws IOException {
+			final byte[] b = data(size);
+			for (int i = 0; i < size; i++) {
+				out.write(b[i]);
+			}
+		}
+
+		public void writeAndFail(OutputStream out, int size) throws IOException {
+			write(out, size);
+			throw new IOException("write failed");
+		}
+	}
+
+	private final StreamServiceImpl service = new StreamServiceImpl();
+
+	private final LoopbackChannelFactory factory = new LoopbackChannelFactory();
+
+	private ServiceTracker remoteOSGiTracker;
+
+	private ServiceRegistration factoryRegistration;
+
+	private ServiceRegistration serviceRegistration;
+
+	private RemoteOSGiService remoteOSGi;
+
+	private String serviceURI;
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		final BundleContext context = Activator.getDefault().getContext();
+		remoteOSGiTracker = new ServiceTracker(context, RemoteOSGiService.class.getName(), null);
+		remoteOSGiTracker.open();
+		remoteOSGi = (RemoteOSGiService) remoteOSGiTracker.waitForService(TIMEOUT);
+		assertNotNull("RemoteOSGiService not available", remoteOSGi);
+
+		final Hashtable factoryProps = new Hashtable();
+		factoryProps.put(NetworkChannelFactory.PROTOCOL_PROPERTY, LoopbackChannelFactory.PROTOCOL);
+		factoryRegistration = context.registerService(NetworkChannelFactory.class.getName(), factory, factoryProps);
+
+		final Hashtable serviceProps = new Hashtable();
+		serviceProps.put(RemoteOSGiService.R_OSGi_REGISTRATION, Boolean.TRUE);
+		serviceRegistration = context.registerService(StreamService.class.getName(), service, serviceProps);
+
+		final RemoteServiceReference[] refs = remoteOSGi.connect(ENDPOINT);
+		for (int i = 0; refs != null && i < refs.length; i++) {
+			if (StreamService.class.getName().equals(refs[i].getServiceInterfaces()[0])) {
+				serviceURI = refs[i].getURI().toString();
+			}
+		}
+		assertNotNull("StreamService not leased", serviceURI);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception {
+		if (remoteOSGi != null) {
+			remoteOSGi.disconnect(ENDPOINT);
+		}
+		if (factory.getServerChannel() != null) {
+			// the endpoint of the other side must be gone before the next test
+			// connects with the same addresses
+			assertTrue(factory.getServerChannel().waitForClose(TIMEOUT));
+		}
+		if (serviceRegistration != null) {
+			serviceRegistration.unregister();
+		}
+		if (factoryRegistration != null) {
+			factoryRegistration.unregister();
+		}
+		remoteOSGiTracker.close();
+		super.tearDown();
+	}
+
+	private Object invoke(String methodSignature, Object[] args) throws Throwable {
+		return factory.getClientEndpoint().invokeMethod(serviceURI, methodSignature, args);
+	}
+
+	private static int countStreamRequests(List requests, byte op) {
+		int count = 0;
+		for (Iterator i = requests.iterator(); i.hasNext();) {
+			if (((StreamRequestMessage) i.next()).getOp() == op) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int countStreamData(List messages, int len) {
+		int count = 0;
+		for (Iterator i = messages.iterator(); i.hasNext();) {
+			if (((StreamDataMessage) i.next()).getLen() == len) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public void testReadAheadDeliversEOF() throws Throwable {
+		// more than the read-ahead window, so credit is returned while reading
+		final int size = 300000;
+		final InputStream in = (InputStream) invoke("open(I)Ljava/io/InputStream;", new Object[] {new Integer(size)});
+		final byte[] expected = data(size);
+		final byte[] b = new byte[size];
+		int pos = 0;
+		int n;
+		while ((n = in.read(b, pos, Math.min(8192, size - pos))) > 0) {
+			pos += n;
+		}
+		assertEquals(size, pos);
+		for (int i = 0; i < size; i++) {
+			assertEquals(expected[i], b[i]);
+		}
+		// the end of the stream is reported again
+		assertEquals(-1, in.read());
+		assertEquals(-1, in.read(b, 0, 1));
+		in.close();
+
+		// all data was pushed, no request for single reads
+		final List requests = factory.getServerChannel().getReceived(StreamRequestMessage.class);
+		assertEquals(0, countStreamRequests(requests, StreamRequestMessage.READ));
+		assertEquals(0, countStreamRequests(requests, StreamRequestMessage.READ_ARRAY));
+		assertTrue(countStreamRequests(requests, StreamRequestMessage.READ_AHEAD) >= 2);
+		assertEquals(1, countStreamData(factory.getClientChannel().getReceived(StreamDataMessage.class), StreamDataMessage.EOF));
+	}
+
+	public void testReadAheadDeliversException() throws Throwable {
+		final int size = 1000;
+		final InputStream in = (InputStream) invoke("openFailing(I)Ljava/io/InputStream;", new Object[] {new Integer(size)});
+		final byte[] b = new byte[size + 1];
+		int pos = 0;
+		try {
+			while (true) {
+				final int n = in.read(b, pos, b.length - pos);
+				assertTrue("unexpected end of stream", n > 0);
+				pos += n;
+			}
+		} catch (IOException e) {
+			assertEquals("stream broken", e.getMessage());
+		}
+		// the data before the exception is delivered
+		assertEquals(size, pos);
+		final byte[] expected = data(size);
+		for (int i = 0; i < size; i++) {
+			assertEquals(expected[i], b[i]);
+		}
+		// and the exception is thrown again
+		try {
+			in.read();
+			fail("exception must be thrown again");
+		} catch (IOException e) {
+			assertEquals("stream broken", e.getMessage());
+		}
+		in.close();
+		assertEquals(1, countStreamData(factory.getClientChannel().getReceived(StreamDataMessage.class), StreamDataMessage.EXCEPTION));
+	}
+
+	public void testCloseReleasesStream() throws Throwable {
+		final InputStream in = (InputStream) invoke("openGated()Ljava/io/InputStream;", new Object[0]);
+		assertTrue(in.read() >= 0);
+		in.close();
+		try {
+			in.read();
+			fail("closed stream must not be readable");
+		} catch (IOException e) {
+			// expected
+		}
+
+		// the owner is told to stop pushing
+		final LoopbackChannelFactory.LoopbackChannel server = factory.getServerChannel();
+		final long deadline = System.currentTimeMillis() + TIMEOUT;
+		List requests;
+		while (true) {
+			requests = server.getReceived(StreamRequestMessage.class);
+			final StreamRequestMessage last = (StreamRequestMessage) requests.get(requests.size() - 1);
+			if (last.getLenOrVal() == StreamRequestMessage.RELEASE_READ_AHEAD) {
+				break;
+			}
+			assertTrue("stream not released", System.currentTimeMillis() < deadline);
+			Thread.sleep(50);
+		}
+		// give the owner time to process the release
+		Thread.sleep(500);
+		service.gated.openGate();
+		Thread.sleep(500);
+		// the pushing thread stops after the read that was blocked, instead of
+		// reading on until the whole window is used
+		final int total = service.gated.getTotal();
+		assertTrue("owner read " + total + " bytes", total <= (GATE_AFTER_READS + 1) * GATED_CHUNK);
+		Thread.sleep(200);
+		assertEquals(total, service.gated.getTotal());
+	}
+
+	public void testBufferedOutputArgumentSentOnReturn() throws Throwable {
+		final int size = 1000;
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		invoke("write(Ljava/io/OutputStream;I)V", new Object[] {out, new Integer(size)});
+		// the service neither flushed nor closed the stream
+		assertEquals(size, out.size());
+		final byte[] expected = data(size);
+		final byte[] b = out.toByteArray();
+		for (int i = 0; i < size; i++) {
+			assertEquals(expected[i], b[i]);
+		}
+		// the single byte writes were sent together
+		final List requests = factory.getClientChannel().getReceived(StreamRequestMessage.class);
+		assertEquals(0, countStreamRequests(requests, StreamRequestMessage.WRITE));
+		assertEquals(1, countStreamRequests(requests, StreamRequestMessage.WRITE_ARRAY));
+	}
+
+	public void testBufferedOutputArgumentSentOnException() throws Throwable {
+		final int size = 1000;
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			invoke("writeAndFail(Ljava/io/OutputStream;I)V", new Object[] {out, new Integer(size)});
+			fail("exception of the service must be thrown");
+		} catch (IOException e) {
+			assertEquals("write failed", e.getMessage());
+		}
+		assertEquals(size, out.size());
+	}
+
+}
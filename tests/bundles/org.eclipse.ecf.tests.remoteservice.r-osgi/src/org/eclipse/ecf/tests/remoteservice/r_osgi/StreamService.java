@@ -0,0 +1,48 @@
+/****************************************************************************
+ * Copyright (c) 2026 Composent, Inc. and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Contributors:
+ *    Composent, Inc. - initial API and implementation
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *****************************************************************************/
+package org.eclipse.ecf.tests.remoteservice.r_osgi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Service that passes streams over R-OSGi.
+ */
+public interface StreamService {
+
+	/**
+	 * @return a stream of <code>size</code> bytes.
+	 */
+	InputStream open(int size);
+
+	/**
+	 * @return a stream that throws an exception after <code>size</code> bytes.
+	 */
+	InputStream openFailing(int size);
+
+	/**
+	 * @return an endless stream whose reads block after the first ones.
+	 */
+	InputStream openGated();
+
+	/**
+	 * Write <code>size</code> bytes one by one, without flushing.
+	 */
+	void write(OutputStream out, int size) throws IOException;
+
+	/**
+	 * Write <code>size</code> bytes one by one, without flushing, and fail.
+	 */
+	void writeAndFail(OutputStream out, int size) throws IOException;
+}
@@ -0,0 +1,134 @@
+package org.eclipse.ecf.tests.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.ecf.core.identity.IDFactory;
+import org.eclipse.ecf.internal.tests.sync.Activator;
+import org.eclipse.ecf.sync.IBatchModelSynchronizationStrategy;
+import org.eclipse.ecf.sync.IModelChange;
+import org.eclipse.ecf.sync.IModelChangeMessage;
+import org.eclipse.ecf.sync.IModelSynchronizationStrategy;
+import org.eclipse.ecf.sync.doc.DocumentChangeMessage;
+import org.eclipse.ecf.sync.doc.IDocumentSynchronizationStrategyFactory;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Transforms remote operations while many local operations are
+ * unacknowledged, as on a link with a high round trip time. Both sites make
+ * their changes before any message is delivered, so every remote operation has
+ * to be transformed against all local operations. Remote operations are
+ * transformed one at a time, or in batches as DocShare receives them.
+ * <p>
+ * Each run keeps the remote operations per second in {@link #opsPerSecond},
+ * and fails if it is below {@link #MIN_OPS_PER_SECOND}.
+ * </p>
+ */
+public class ColaHistoryBenchmarkTest extends TestCase {
+
+	private static final String TEXT = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+	/**
+	 * Number of remote operations transformed together in batched runs.
+	 */
+	private static final int BATCH_SIZE = 16;
+
+	/**
+	 * Lowest accepted throughput. About a fifth of what 1000 outstanding
+	 * operations per site reach on a developer machine, and above what the
+	 * list based history reached.
+	 */
+	private static final long MIN_OPS_PER_SECOND = 500;
+
+	/**
+	 * Remote operations per second of the last run.
+	 */
+	long opsPerSecond;
+
+	private IModelSynchronizationStrategy createStrategy(String name, boolean isInitiator) throws Exception {
+		final IDocumentSynchronizationStrategyFactory factory = Activator.getDefault().getColaSynchronizationStrategyFactory();
+		return factory.createDocumentSynchronizationStrategy(IDFactory.getDefault().createStringID(name), isInitiator);
+	}
+
+	private List makeLocalChanges(Random random, IDocument document, IModelSynchronizationStrategy strategy, int count) throws Exception {
+		final List messages = new ArrayList();
+		for (int i = 0; i < count; i++) {
+			final DocumentChangeMessage change = new DocumentChangeMessage(random.nextInt(document.getLength() + 1), 0, String.valueOf((char) ('a' + random.nextInt(26))));
+			change.applyToModel(document);
+			final IModelChangeMessage[] changeMessages = strategy.registerLocalChange(change);
+			for (int j = 0; j < changeMessages.length; j++)
+				messages.add(changeMessages[j].serialize());
+		}
+		return messages;
+	}
+
+	private long applyRemoteChanges(IDocument document, IModelSynchronizationStrategy strategy, List messages, int batchSize) throws Exception {
+		final long start = System.nanoTime();
+		for (int i = 0; i < messages.size(); i += batchSize) {
+			final IModelChange[] remoteChanges = new IModelChange[Math.min(batchSize, messages.size() - i)];
+			for (int j = 0; j < remoteChanges.length; j++)
+				remoteChanges[j] = strategy.deserializeRemoteChange((byte[]) messages.get(i + j));
+			final IModelChange[] changes;
+			if (batchSize == 1)
+				changes = strategy.transformRemoteChange(remoteChanges[0]);
+			else
+				changes = ((IBatchModelSynchronizationStrategy) strategy).transformRemoteChanges(remoteChanges);
+			for (int j = 0; j < changes.length; j++)
+				changes[j].applyToModel(document);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private String runBenchmark(int outstanding, int batchSize) throws Exception {
+		final Random random = new Random(outstanding);
+		final IDocument initiatorDocument = new Document(TEXT);
+		final IDocument receiverDocument = new Document(TEXT);
+		final String name = outstanding + "/" + batchSize;
+		final IModelSynchronizationStrategy initiator = createStrategy("initiator" + name, true);
+		final IModelSynchronizationStrategy receiver = createStrategy("receiver" + name, false);
+
+		final List fromInitiator = makeLocalChanges(random, initiatorDocument, initiator, outstanding);
+		final List fromReceiver = makeLocalChanges(random, receiverDocument, receiver, outstanding);
+
+		final long nanos = applyRemoteChanges(initiatorDocument, initiator, fromReceiver, batchSize) + applyRemoteChanges(receiverDocument, receiver, fromInitiator, batchSize);
+		opsPerSecond = (long) (2.0 * outstanding * 1000000000 / Math.max(1, nanos));
+
+		assertEquals(initiatorDocument.get(), receiverDocument.get());
+		assertEquals(TEXT.length() + 2 * outstanding, initiatorDocument.get().length());
+		return initiatorDocument.get();
+	}
+
+	private void assertThroughput() {
+		assertTrue("remote operations per second: " + opsPerSecond, opsPerSecond >= MIN_OPS_PER_SECOND);
+	}
+
+	public void testOutstanding100() throws Exception {
+		runBenchmark(100, 1);
+	}
+
+	public void testOutstanding1000() throws Exception {
+		runBenchmark(1000, 1);
+		assertThroughput();
+	}
+
+	public void testOutstanding5000() throws Exception {
+		runBenchmark(5000, 1);
+	}
+
+	public void testBatchedOutstanding1000() throws Exception {
+		runBenchmark(1000, BATCH_SIZE);
+		assertThroughput();
+	}
+
+	public void testBatchedOutstanding5000() throws Exception {
+		runBenchmark(5000, BATCH_SIZE);
+	}
+
+	public void testBatchedSameAsSingle() throws Exception {
+		assertEquals(runBenchmark(300, 1), runBenchmark(300, BATCH_SIZE));
+	}
+}
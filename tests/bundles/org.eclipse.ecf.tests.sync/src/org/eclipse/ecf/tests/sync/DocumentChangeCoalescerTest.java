@@ -0,0 +1,147 @@
+package org.eclipse.ecf.tests.sync;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.ecf.core.identity.IDFactory;
+import org.eclipse.ecf.internal.sync.doc.cola.ColaDocumentChangeMessage;
+import org.eclipse.ecf.internal.tests.sync.Activator;
+import org.eclipse.ecf.sync.IModelChangeMessage;
+import org.eclipse.ecf.sync.IModelSynchronizationStrategy;
+import org.eclipse.ecf.sync.doc.DocumentChangeCoalescer;
+import org.eclipse.ecf.sync.doc.DocumentChangeMessage;
+import org.eclipse.ecf.sync.doc.IDocumentChange;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+public class DocumentChangeCoalescerTest extends TestCase {
+
+	private static final String TEXT = "abcdefghijklmnopqrstuvwxyz";
+
+	private DocumentChangeCoalescer coalescer;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		coalescer = new DocumentChangeCoalescer();
+	}
+
+	private void apply(IDocument document, IDocumentChange change) throws Exception {
+		document.replace(change.getOffset(), change.getLengthOfReplacedText(), change.getText());
+	}
+
+	private void change(IDocument document, int offset, int length, String text) throws Exception {
+		final IDocumentChange change = new DocumentChangeMessage(offset, length, text);
+		apply(document, change);
+		coalescer.add(change);
+	}
+
+	private String replay(IDocumentChange[] changes) throws Exception {
+		final IDocument document = new Document(TEXT);
+		for (int i = 0; i < changes.length; i++)
+			apply(document, changes[i]);
+		return document.get();
+	}
+
+	public void testTyping() throws Exception {
+		final IDocument document = new Document(TEXT);
+		for (int i = 0; i < 10; i++)
+			change(document, 5 + i, 0, "x");
+		final IDocumentChange[] changes = coalescer.flush();
+		assertEquals(1, changes.length);
+		assertEquals(5, changes[0].getOffset());
+		assertEquals(0, changes[0].getLengthOfReplacedText());
+		assertEquals("xxxxxxxxxx", changes[0].getText());
+		assertTrue(coalescer.isEmpty());
+	}
+
+	public void testBackspace() throws Exception {
+		final IDocument document = new Document(TEXT);
+		change(document, 5, 0, "ab");
+		change(document, 6, 1, "");
+		// deletes the typed 'a' and the 'e' before it
+		change(document, 4, 2, "");
+		final IDocumentChange[] changes = coalescer.flush();
+		assertEquals(1, changes.length);
+		assertEquals(4, changes[0].getOffset());
+		assertEquals(1, changes[0].getLengthOfReplacedText());
+		assertEquals("", changes[0].getText());
+		assertEquals(document.get(), replay(changes));
+	}
+
+	public void testTypeAndUndo() throws Exception {
+		final IDocument document = new Document(TEXT);
+		change(document, 5, 0, "a");
+		change(document, 5, 1, "");
+		assertTrue(coalescer.isEmpty());
+	}
+
+	public void testNotAdjacent() throws Exception {
+		final IDocument document = new Document(TEXT);
+		change(document, 2, 0, "x");
+		change(document, 10, 0, "y");
+		change(document, 20, 1, "z");
+		final IDocumentChange[] changes = coalescer.flush();
+		assertEquals(3, changes.length);
+		assertEquals(document.get(), replay(changes));
+	}
+
+	public void testMaxTextLength() throws Exception {
+		coalescer = new DocumentChangeCoalescer(4);
+		final IDocument document = new Document(TEXT);
+		for (int i = 0; i < 10; i++)
+			change(document, i, 0, "x");
+		final IDocumentChange[] changes = coalescer.flush();
+		assertEquals(3, changes.length);
+		assertEquals(document.get(), replay(changes));
+	}
+
+	public void testRandomEdits() throws Exception {
+		final Random random = new Random(0);
+		for (int run = 0; run < 500; run++) {
+			final IDocument document = new Document(TEXT);
+			int cursor = random.nextInt(TEXT.length());
+			for (int i = 0; i < 40; i++) {
+				final int kind = random.nextInt(5);
+				if (kind < 2) {
+					change(document, cursor, 0, "x");
+					cursor++;
+				} else if (kind == 2 && cursor > 0) {
+					change(document, cursor - 1, 1, "");
+					cursor--;
+				} else {
+					final int offset = random.nextInt(document.getLength() + 1);
+					final int length = random.nextInt(Math.min(3, document.getLength() - offset) + 1);
+					final String text = random.nextBoolean() ? "" : "yz";
+					change(document, offset, length, text);
+					cursor = offset + text.length();
+				}
+			}
+			assertEquals(document.get(), replay(coalescer.flush()));
+		}
+	}
+
+	public void testDefaultSerialization() throws Exception {
+		final IModelSynchronizationStrategy strategy = Activator.getDefault().getColaSynchronizationStrategyFactory().createDocumentSynchronizationStrategy(IDFactory.getDefault().createStringID("default"), true);
+		final IModelChangeMessage[] messages = strategy.registerLocalChange(new DocumentChangeMessage(1234, 0, "\u00e4"));
+		assertEquals(1, messages.length);
+		final byte[] bytes = messages[0].serialize();
+		// peers before 2.2 only read java serialization
+		assertFalse(ColaDocumentChangeMessage.isCompactEncoding(bytes));
+		final DocumentChangeMessage message = DocumentChangeMessage.deserialize(bytes);
+		assertEquals(1234, message.getOffset());
+		assertEquals("\u00e4", message.getText());
+	}
+
+	public void testCompactSerialization() throws Exception {
+		final IModelSynchronizationStrategy strategy = Activator.getDefault().getColaSynchronizationStrategyFactory().createDocumentSynchronizationStrategy(IDFactory.getDefault().createStringID("compact"), true);
+		final IModelChangeMessage[] messages = strategy.registerLocalChange(new DocumentChangeMessage(1234, 0, "\u00e4"));
+		assertEquals(1, messages.length);
+		final byte[] bytes = ((ColaDocumentChangeMessage) messages[0]).serializeCompact();
+		assertTrue(String.valueOf(bytes.length), bytes.length < 16);
+		final DocumentChangeMessage message = (DocumentChangeMessage) strategy.deserializeRemoteChange(bytes);
+		assertEquals(1234, message.getOffset());
+		assertEquals(0, message.getLengthOfReplacedText());
+		assertEquals("\u00e4", message.getText());
+	}
+}